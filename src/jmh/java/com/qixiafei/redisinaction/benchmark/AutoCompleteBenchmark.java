@@ -0,0 +1,87 @@
+package com.qixiafei.redisinaction.benchmark;
+
+import com.qixiafei.redisinaction.autocomplete.AutoCompleteInJava;
+import com.qixiafei.redisinaction.autocomplete.AutoCompleteInRedis;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: 两种自动补全实现的对比. 组织成员和联系人都是随机的小写字母串，关键词取两个字母的前缀. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 11:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AutoCompleteBenchmark {
+
+    private static final String ORG = "bench-org";
+
+    private static final String USER = "bench-user";
+
+    private static final int ORG_MEMBERS = 5000;
+
+    /**
+     * AutoCompleteInJava的联系人列表最多保留100个.
+     */
+    private static final int CONTRACTS = 100;
+
+    private AutoCompleteInRedis inRedis;
+
+    private AutoCompleteInJava inJava;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkRedis redis) {
+        inRedis = redis.bean(AutoCompleteInRedis.class);
+        inJava = redis.bean(AutoCompleteInJava.class);
+        for (int i = 0; i < ORG_MEMBERS; i++) {
+            inRedis.updateOrgMembers(ORG, randomName(8), true);
+        }
+        for (int i = 0; i < CONTRACTS; i++) {
+            inJava.updateContract(USER, randomName(8));
+        }
+    }
+
+    @Benchmark
+    public Set<String> inRedis() throws UnsupportedEncodingException {
+        return inRedis.autoComplete(ORG, randomName(2), 10);
+    }
+
+    @Benchmark
+    public List<String> inJava() {
+        return inJava.autoComplete(USER, randomName(2));
+    }
+
+    private static String randomName(final int length) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final char[] name = new char[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+}
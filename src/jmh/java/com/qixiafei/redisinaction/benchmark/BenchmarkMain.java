@@ -0,0 +1,65 @@
+package com.qixiafei.redisinaction.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Description: 基准测试入口，按benchmark.threads中的每个线程数各跑一轮，
+ * 每轮的完整结果写到target/jmh-threads-N.json，全部结束后汇总打印吞吐和延迟分位数. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 11:50</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        final String include = System.getProperty("benchmark.include", BenchmarkMain.class.getPackage().getName() + ".*");
+        final String redis = System.getProperty("benchmark.redis", "");
+        final List<String> summary = new ArrayList<>();
+        summary.add(String.format("%-55s %7s %14s %10s %10s %10s", "benchmark", "threads", "ops/s",
+                "p50(us)", "p99(us)", "p99.9(us)"));
+        for (String threads : System.getProperty("benchmark.threads", "1,4,16").split(",")) {
+            final int count = Integer.parseInt(threads.trim());
+            final Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(count)
+                    .jvmArgsAppend("-Dbenchmark.redis=" + redis)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-threads-" + count + ".json")
+                    .shouldFailOnError(true)
+                    .build();
+            for (RunResult result : new Runner(options).run()) {
+                summary.add(summarize(result, count));
+            }
+        }
+        summary.forEach(System.out::println);
+    }
+
+    private static String summarize(final RunResult result, final int threads) {
+        final String benchmark = result.getParams().getBenchmark();
+        final String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        final Result<?> primary = result.getPrimaryResult();
+        if (result.getParams().getMode() == Mode.Throughput) {
+            // 基准统一以微秒为单位，吞吐是ops/us
+            return String.format("%-55s %7d %14.0f", name, threads, primary.getScore() * 1_000_000);
+        }
+        final Statistics statistics = primary.getStatistics();
+        return String.format("%-55s %7d %14s %10.1f %10.1f %10.1f", name + " (sample)", threads, "",
+                statistics.getPercentile(50), statistics.getPercentile(99), statistics.getPercentile(99.9));
+    }
+}
@@ -0,0 +1,85 @@
+package com.qixiafei.redisinaction.benchmark;
+
+import com.qixiafei.redisinaction.autocomplete.AutoCompleteInJava;
+import com.qixiafei.redisinaction.autocomplete.AutoCompleteInRedis;
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisServer;
+import com.qixiafei.redisinaction.fakewebretailer.CacheService;
+import com.qixiafei.redisinaction.fakewebretailer.TokenService;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.lock.DefaultLock;
+import com.qixiafei.redisinaction.lock.SemaphoreLock;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+
+/**
+ * <P>Description: 基准测试共享的redis环境. 系统属性benchmark.redis为host:port时连接该redis，
+ * 为空时在当前fork中启动内嵌redis；被测的service放在一个只包含它们和RedisClient的spring容器里，注入方式与应用一致. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 10:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@State(Scope.Benchmark)
+public class BenchmarkRedis {
+
+    /**
+     * 连接池要容纳最大的线程数，否则测到的是等待连接的时间.
+     */
+    private static final int POOL_SIZE = 64;
+
+    private EmbeddedRedisServer server;
+
+    private RedisClient client;
+
+    private AnnotationConfigApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        final String target = System.getProperty("benchmark.redis");
+        final String host;
+        final int port;
+        if (StringUtils.isBlank(target)) {
+            server = new EmbeddedRedisServer(0).start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        } else {
+            host = StringUtils.substringBefore(target, ":");
+            port = Integer.parseInt(StringUtils.substringAfter(target, ":"));
+        }
+        client = RedisClient.standAlonePool(host, port, 2000, 2000, null, POOL_SIZE, POOL_SIZE, POOL_SIZE, false);
+        client.loadScripts();
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(RedisClient.class, () -> client);
+        context.register(TokenService.class, CacheService.class, AutoCompleteInRedis.class, AutoCompleteInJava.class,
+                DefaultLock.class, SemaphoreLock.class);
+        context.refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+        client.close();
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    public RedisClient client() {
+        return client;
+    }
+
+    public <T> T bean(final Class<T> type) {
+        return context.getBean(type);
+    }
+}
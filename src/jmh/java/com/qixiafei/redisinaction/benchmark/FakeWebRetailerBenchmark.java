@@ -0,0 +1,105 @@
+package com.qixiafei.redisinaction.benchmark;
+
+import com.qixiafei.redisinaction.fakewebretailer.CacheService;
+import com.qixiafei.redisinaction.fakewebretailer.TokenService;
+import com.qixiafei.redisinaction.fakewebretailer.TokenUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: 模拟网店的令牌和页面缓存热点路径. 令牌和页面都预先写入，checkToken和getContent测的是命中路径. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 10:50</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FakeWebRetailerBenchmark {
+
+    private static final int TOKENS = 10000;
+
+    private static final int ITEMS = 500;
+
+    private static final int PAGES = 1000;
+
+    /**
+     * updateTokens每批的访问数，结果按单次访问折算时除以这个值.
+     */
+    private static final int BATCH = 100;
+
+    private TokenService tokenService;
+
+    private CacheService cacheService;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkRedis redis) {
+        tokenService = redis.bean(TokenService.class);
+        cacheService = redis.bean(CacheService.class);
+        for (int i = 0; i < TOKENS; i++) {
+            tokenService.updateToken(token(i), "user" + i, null);
+        }
+        for (int i = 0; i < PAGES; i++) {
+            cacheService.getContent(page(i));
+        }
+    }
+
+    @Benchmark
+    public void updateToken() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int i = random.nextInt(TOKENS);
+        tokenService.updateToken(token(i), "user" + i, "item" + random.nextInt(ITEMS));
+    }
+
+    @Benchmark
+    public void updateTokens() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long now = System.currentTimeMillis();
+        final List<TokenUpdate> updates = new ArrayList<>(BATCH);
+        for (int n = 0; n < BATCH; n++) {
+            final int i = random.nextInt(TOKENS);
+            updates.add(new TokenUpdate(token(i), "user" + i, "item" + random.nextInt(ITEMS), now));
+        }
+        tokenService.updateTokens(updates);
+    }
+
+    @Benchmark
+    public String checkToken() {
+        return tokenService.checkToken(token(ThreadLocalRandom.current().nextInt(TOKENS)));
+    }
+
+    @Benchmark
+    public String getContent() {
+        return cacheService.getContent(page(ThreadLocalRandom.current().nextInt(PAGES)));
+    }
+
+    private static String token(final int i) {
+        return "bench-token-" + i;
+    }
+
+    private static String page(final int i) {
+        return "bench-page-" + i;
+    }
+}
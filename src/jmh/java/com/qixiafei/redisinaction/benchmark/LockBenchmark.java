@@ -0,0 +1,100 @@
+package com.qixiafei.redisinaction.benchmark;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.lock.DefaultLock;
+import com.qixiafei.redisinaction.lock.SemaphoreLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <P>Description: 各种锁一次加锁加解锁的开销. uncontended系列每个线程用自己的锁，测的是纯命令开销；
+ * contended系列所有线程抢同一把锁，抢不到直接放弃，测的是冲突下的吞吐. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 11:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LockBenchmark {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final String SHARED = "bench-shared";
+
+    private static final long EXPIRED_MILLIS = 10000;
+
+    private static final int PERMITS = 4;
+
+    private RedisClient client;
+
+    private DefaultLock defaultLock;
+
+    private SemaphoreLock semaphoreLock;
+
+    private String own;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkRedis redis) {
+        client = redis.client();
+        defaultLock = redis.bean(DefaultLock.class);
+        semaphoreLock = redis.bean(SemaphoreLock.class);
+        own = "bench-lock-" + THREADS.incrementAndGet();
+    }
+
+    @Benchmark
+    public void defaultLockUncontended() {
+        defaultLock.release(own, defaultLock.tryAcquire(own, EXPIRED_MILLIS));
+    }
+
+    @Benchmark
+    public boolean defaultLockContended() {
+        final String id = defaultLock.tryAcquire(SHARED, EXPIRED_MILLIS);
+        if (id == null) {
+            return false;
+        }
+        defaultLock.release(SHARED, id);
+        return true;
+    }
+
+    @Benchmark
+    public boolean semaphoreLockContended() {
+        final String id = semaphoreLock.tryAcquire(SHARED, EXPIRED_MILLIS, PERMITS);
+        if (id == null) {
+            return false;
+        }
+        semaphoreLock.release(SHARED, id);
+        return true;
+    }
+
+    /**
+     * RedisClient自带的SET NX加lua脚本解锁.
+     */
+    @Benchmark
+    public void scriptUnlockUncontended() {
+        final String serialNo = UUID.randomUUID().toString();
+        client.setNotExist(own, serialNo, EXPIRED_MILLIS);
+        client.tryUnlock(own, serialNo);
+    }
+}
@@ -0,0 +1,122 @@
+package com.qixiafei.redisinaction.benchmark;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: RedisClient单命令、批量命令和管道的吞吐与延迟. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 10:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RedisClientBenchmark {
+
+    private static final int KEYS = 10000;
+
+    private static final int BATCH = 100;
+
+    private static final String VALUE = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private RedisClient client;
+
+    private List<String> batchKeys;
+
+    private Map<String, String> batchValues;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkRedis redis) {
+        client = redis.client();
+        batchKeys = new ArrayList<>(BATCH);
+        batchValues = new HashMap<>();
+        for (int i = 0; i < BATCH; i++) {
+            batchKeys.add(key(i));
+            batchValues.put(key(i), VALUE);
+        }
+        client.mset(batchValues);
+    }
+
+    @Benchmark
+    public String get() {
+        return client.get(randomKey());
+    }
+
+    @Benchmark
+    public boolean set() {
+        return client.set(randomKey(), VALUE);
+    }
+
+    @Benchmark
+    public Long incr() {
+        return client.incr("bench:counter");
+    }
+
+    @Benchmark
+    public Long hset() {
+        return client.hset("bench:hash", randomKey(), VALUE);
+    }
+
+    @Benchmark
+    public String hget() {
+        return client.hget("bench:hash", randomKey());
+    }
+
+    @Benchmark
+    public Long zadd() {
+        return client.zadd("bench:zset", ThreadLocalRandom.current().nextDouble(), randomKey());
+    }
+
+    @Benchmark
+    public List<String> mget() {
+        return client.mget(batchKeys);
+    }
+
+    @Benchmark
+    public void mset() {
+        client.mset(batchValues);
+    }
+
+    @Benchmark
+    public void pipelinedSet() {
+        client.pipelined(batchKeys.get(0), pipeline -> {
+            for (String key : batchKeys) {
+                pipeline.set(key, VALUE);
+            }
+        });
+    }
+
+    private static String randomKey() {
+        return key(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    private static String key(final int i) {
+        return "bench:key:" + i;
+    }
+}
@@ -1,11 +1,25 @@
 package com.qixiafei.redisinaction;
 
+import com.qixiafei.redisinaction.fakewebretailer.LoginStore;
+import com.qixiafei.redisinaction.fakewebretailer.TokenService;
+import com.qixiafei.redisinaction.fakewebretailer.TokenWriteBehind;
+import com.qixiafei.redisinaction.fakewebretailer.cleaner.Cleaner;
+import com.qixiafei.redisinaction.fakewebretailer.cleaner.SessionCleaner;
+import com.qixiafei.redisinaction.jedis.NearCache;
 import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.RedisMetrics;
+import com.qixiafei.redisinaction.jedis.ShardDistribution;
+import com.qixiafei.redisinaction.jedis.SubscriptionManager;
+import com.qixiafei.redisinaction.jedis.ValueCompressor;
+import com.qixiafei.redisinaction.pressure.LoadConfig;
+import com.qixiafei.redisinaction.pressure.LoadGenerator;
+import com.qixiafei.redisinaction.pressure.LoadStats;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
@@ -14,15 +28,12 @@ import redis.clients.jedis.Response;
 import javax.annotation.Resource;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 
 @Slf4j
 @RestController
 @SpringBootApplication
 public class RedisInActionApplication {
 
-    private volatile boolean stop = false;
-
     public static void main(String[] args) {
         SpringApplication.run(RedisInActionApplication.class, args);
     }
@@ -30,6 +41,15 @@ public class RedisInActionApplication {
     @Resource
     private RedisClient redisClient;
 
+    @Resource
+    private LoadGenerator loadGenerator;
+
+    @Resource
+    private TokenService tokenService;
+
+    @Resource
+    private Cleaner cleaner;
+
     @RequestMapping("redis/get/{key}")
     public String getKey(final @PathVariable String key) {
         return redisClient.get(key);
@@ -56,25 +76,25 @@ public class RedisInActionApplication {
         return redisClient.incr(key) + "";
     }
 
+    /**
+     * 启动压测，立即返回，参数见{@link LoadConfig}，例如redis/pressure/start?threads=8&rate=20000&mix=get:80,set:20.
+     */
     @RequestMapping("redis/pressure/start")
-    public void startPressure() {
-        stop = false;
-        final String key = UUID.randomUUID().toString();
-        log.info("pressure start,key is {}", key);
-        Long num = 0L;
-        long startMillis = System.currentTimeMillis();
-        while (!stop) {
-            num = redisClient.incr(key);
-        }
-        long elapase = (System.currentTimeMillis() - startMillis) / 1000;
-        log.info("stop by user ,now is {},average per second is {} ", num, num / elapase);
+    public LoadStats startPressure(final LoadConfig config) {
+        return loadGenerator.start(config);
     }
 
-
     @RequestMapping("redis/pressure/stop")
-    public void stopPressure() {
-        this.stop = true;
-        log.info("call stop");
+    public LoadStats stopPressure() {
+        return loadGenerator.stop();
+    }
+
+    /**
+     * 压测实时统计，包含每秒的吞吐和延迟.
+     */
+    @RequestMapping("redis/pressure/stats")
+    public LoadStats pressureStats() {
+        return loadGenerator.stats();
     }
 
 
@@ -100,10 +120,64 @@ public class RedisInActionApplication {
         return info;
     }
 
+    @RequestMapping("redis/metrics")
+    public RedisMetrics.Snapshot metrics() {
+        return redisClient.metricsSnapshot();
+    }
+
+    @RequestMapping("redis/metrics/reset")
+    public void resetMetrics() {
+        redisClient.resetMetrics();
+    }
+
+    @RequestMapping("redis/nearcache")
+    public NearCache.Stats nearCache() {
+        return redisClient.nearCacheStats();
+    }
+
+    /**
+     * key在各节点上的分布和倾斜程度，例如redis/shards?match=cart:*.
+     */
+    @RequestMapping("redis/shards")
+    public ShardDistribution shards(@RequestParam(required = false) final String match) {
+        return redisClient.keyDistribution(match, 1000);
+    }
+
+    @RequestMapping("redis/subscriptions")
+    public SubscriptionManager.Stats subscriptions() {
+        return redisClient.subscriptions().stats();
+    }
+
+    @RequestMapping("retailer/token/writebehind")
+    public TokenWriteBehind.Stats tokenWriteBehind() {
+        return tokenService.writeBehindStats();
+    }
+
+    @RequestMapping("retailer/login/memory")
+    public LoginStore.MemoryReport loginMemory(@RequestParam(defaultValue = "32") final int samples,
+                                               @RequestParam(defaultValue = "10000000") final long expected) {
+        return tokenService.loginMemoryReport(samples, expected);
+    }
+
+    @RequestMapping("retailer/token/cache")
+    public NearCache.Stats tokenCache() {
+        return tokenService.tokenCacheStats();
+    }
+
+    @RequestMapping("retailer/cleaner")
+    public SessionCleaner.Stats cleaner() {
+        return cleaner.stats();
+    }
+
+    @RequestMapping("redis/compression")
+    public ValueCompressor.Stats compression() {
+        return redisClient.compressionStats();
+    }
+
 
     @RequestMapping("redis/watch")
     public List<Object> watch() throws InterruptedException {
-        try (Jedis instance = redisClient.getInstance()) {
+        try (Jedis instance = redisClient.getInstance("test")) {
             final Pipeline pipelined = instance.pipelined();
             pipelined.watch("test");
             pipelined.sync();
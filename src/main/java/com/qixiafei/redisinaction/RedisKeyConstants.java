@@ -13,8 +13,12 @@ package com.qixiafei.redisinaction;
  */
 public final class RedisKeyConstants {
 
+    // 集群部署时，需要在同一条命令或脚本里一起操作的key，用ClusterKeys.tagged(前缀, token)生成带hash tag的key
+
     // 用户登录信息hash的key
     public static final String LOGIN_HASH_KEY = "login:";
+    // 分桶存储时登录信息hash的key前缀，后接桶号
+    public static final String LOGIN_BUCKET_KEY_PREFIX = "login:bucket:";
     // token最近登录信息zset的key
     public static final String RECENT_ZSET_KEY = "recent:";
     // token最近浏览信息zset的key前缀
@@ -27,12 +31,20 @@ public final class RedisKeyConstants {
     public static final String DELAY_ZSET_KEY = "delay:";
     // 数据行缓存调度zset key
     public static final String SCHEDULE_ZSET_KEY = "schedule:";
-    // 行数据缓存string key
+    // 行数据缓存string key，JSON格式，已不再写入，只在行取消缓存时删除
     public static final String INV_KEY_PREFIX = "inv:";
+    // 行数据缓存string key，RowData.CODEC二进制格式
+    public static final String INV_BIN_KEY_PREFIX = "inv:bin:";
     // 最近联系人列表前缀
     public static final String CONTRACT_LIST_PREFIX = "recent:contract:";
     // 组织成员zset前缀
     public static final String ORG_MEMBER_PREFIX = "org:member:";
+    // 令牌失效广播channel
+    public static final String TOKEN_INVALIDATE_CHANNEL = "channel:token:invalidate";
+    // 浏览事件stream
+    public static final String VIEW_EVENT_STREAM_KEY = "stream:view";
+    // 日志事件stream
+    public static final String LOG_EVENT_STREAM_KEY = "stream:logger";
 
 
     private RedisKeyConstants() {
@@ -33,11 +33,10 @@ public class AutoCompleteInJava {
         final String key = String.format("%s%s", RedisKeyConstants.CONTRACT_LIST_PREFIX, user);
         final boolean nx = redisClient.setNotExist(String.format(IDEMPOTENT_PATTERN, user, contract), "", 1);
         if (nx) {
-            redisClient.execPipeLine((pipelined) -> {
+            redisClient.pipelined(key, (pipelined) -> {
                 pipelined.lrem(key, 1, contract);
                 pipelined.lpush(key, contract);
                 pipelined.ltrim(key, 0, 99);
-                pipelined.sync();
             });
 
         }
@@ -0,0 +1,115 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Description: 一条命令的参数，下标0是命令名. key、member、field等统一按ISO-8859-1转为String，
+ * 字节与字符一一对应，既保证二进制安全，比较顺序也与redis的memcmp一致. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 14:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Args {
+
+    private final byte[][] argv;
+
+    Args(final byte[][] argv) {
+        this.argv = argv;
+    }
+
+    static Args of(final String... args) {
+        final byte[][] argv = new byte[args.length][];
+        for (int i = 0; i < args.length; i++) {
+            argv[i] = args[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return new Args(argv);
+    }
+
+    int size() {
+        return argv.length;
+    }
+
+    /**
+     * 小写的命令名.
+     */
+    String name() {
+        return str(0).toLowerCase();
+    }
+
+    byte[] bytes(final int i) {
+        return argv[i];
+    }
+
+    String str(final int i) {
+        return new String(argv[i], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 参数是否为指定的关键字，忽略大小写.
+     */
+    boolean is(final int i, final String keyword) {
+        return str(i).equalsIgnoreCase(keyword);
+    }
+
+    List<String> strs(final int from) {
+        return strs(from, argv.length);
+    }
+
+    List<String> strs(final int from, final int to) {
+        final List<String> values = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            values.add(str(i));
+        }
+        return values;
+    }
+
+    long longAt(final int i) {
+        return parseLong(str(i));
+    }
+
+    int intAt(final int i) {
+        final long value = longAt(i);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw CommandError.NOT_INTEGER;
+        }
+        return (int) value;
+    }
+
+    double doubleAt(final int i) {
+        return parseDouble(str(i));
+    }
+
+    static long parseLong(final String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw CommandError.NOT_INTEGER;
+        }
+    }
+
+    static double parseDouble(final String value) {
+        final String lower = value.toLowerCase();
+        if ("inf".equals(lower) || "+inf".equals(lower)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-inf".equals(lower)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            final double parsed = Double.parseDouble(value);
+            if (Double.isNaN(parsed)) {
+                throw CommandError.NOT_FLOAT;
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw CommandError.NOT_FLOAT;
+        }
+    }
+}
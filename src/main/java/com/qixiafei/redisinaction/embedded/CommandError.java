@@ -0,0 +1,36 @@
+package com.qixiafei.redisinaction.embedded;
+
+/**
+ * <P>Description: 命令执行错误，写回客户端时为RESP错误回复，message即错误内容（含ERR、WRONGTYPE等前缀）. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 14:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+class CommandError extends RuntimeException {
+
+    static final CommandError WRONG_TYPE =
+            new CommandError("WRONGTYPE Operation against a key holding the wrong kind of value");
+
+    static final CommandError NOT_INTEGER = err("value is not an integer or out of range");
+
+    static final CommandError NOT_FLOAT = err("value is not a valid float");
+
+    static final CommandError SYNTAX = err("syntax error");
+
+    static final CommandError NO_SUCH_KEY = err("no such key");
+
+    static final CommandError INDEX_OUT_OF_RANGE = err("index out of range");
+
+    CommandError(final String message) {
+        super(message, null, false, false);
+    }
+
+    static CommandError err(final String message) {
+        return new CommandError("ERR " + message);
+    }
+}
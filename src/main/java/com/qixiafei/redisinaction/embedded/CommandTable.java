@@ -0,0 +1,56 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <P>Description: 命令名到实现的映射，参数个数的约定与redis的COMMAND一致：正数为精确个数，负数为最少个数，均包含命令名. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 15:25</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class CommandTable {
+
+    private final Map<String, Spec> specs = new HashMap<>();
+
+    void add(final String name, final int arity, final RedisCommand command) {
+        specs.put(name, new Spec(name, arity, command));
+    }
+
+    /**
+     * 查找命令并校验参数个数.
+     *
+     * @throws CommandError 命令不存在或参数个数不对
+     */
+    Spec lookup(final Args args) {
+        final String name = args.name();
+        final Spec spec = specs.get(name);
+        if (spec == null) {
+            throw CommandError.err("unknown command `" + args.str(0) + "`");
+        }
+        if ((spec.arity > 0 && args.size() != spec.arity) || (spec.arity < 0 && args.size() < -spec.arity)) {
+            throw CommandError.err("wrong number of arguments for '" + name + "' command");
+        }
+        return spec;
+    }
+
+    static final class Spec {
+
+        final String name;
+
+        final int arity;
+
+        final RedisCommand command;
+
+        private Spec(final String name, final int arity, final RedisCommand command) {
+            this.name = name;
+            this.arity = arity;
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,912 @@
+package com.qixiafei.redisinaction.embedded;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.RedisScript;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: 内嵌的内存版redis，讲RESP协议，用于单元测试、基准测试和压测，不需要安装redis.
+ * 与redis一样是单线程事件循环：一个NIO selector处理所有连接的读写，命令在同一线程上依次执行，天然原子，支持大量并发连接和管道.
+ * 支持RedisClient用到的字符串、hash、list、set、有序集合（含ZRANGEBYLEX）、stream与消费组、过期、SCAN系列、阻塞弹出、发布订阅、
+ * MULTI/EXEC/WATCH、EVAL，以及估算的OBJECT ENCODING和MEMORY USAGE. 没有lua解释器，EVAL只能执行通过{@link #registerScript}登记了java实现的脚本，
+ * 项目自带的脚本已经登记. 不支持持久化、复制、集群和多db. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 16:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class EmbeddedRedisServer implements Closeable {
+
+    /**
+     * 没有阻塞命令等待时select的超时，也是定期删除过期key的间隔.
+     */
+    private static final long TICK_MILLIS = 100;
+
+    private static final Set<String> TX_CONTROL = new HashSet<>(Arrays.asList("exec", "discard", "multi", "watch"));
+
+    private static final Set<String> SUBSCRIBE_MODE = new HashSet<>(
+            Arrays.asList("subscribe", "unsubscribe", "psubscribe", "punsubscribe", "ping", "quit"));
+
+    private final int requestedPort;
+
+    private final CommandTable table = new CommandTable();
+
+    private final Keyspace db = new Keyspace(this::onTouch);
+
+    private final Set<Session> sessions = new HashSet<>();
+
+    private final Map<String, Set<Session>> watchers = new HashMap<>();
+
+    private final Map<String, Set<Session>> blockedOn = new HashMap<>();
+
+    private final Set<Session> blockedSessions = new HashSet<>();
+
+    /**
+     * 被修改过、且有阻塞命令在等待的key.
+     */
+    private final Set<String> readyKeys = new LinkedHashSet<>();
+
+    /**
+     * 阻塞结束、需要继续处理已缓冲命令的连接.
+     */
+    private final List<Session> resumable = new ArrayList<>();
+
+    /**
+     * 本轮有输出待发送的连接.
+     */
+    private final Set<Session> pendingWrites = new LinkedHashSet<>();
+
+    private final Map<String, Set<Session>> channelSubscribers = new HashMap<>();
+
+    private final Map<String, Set<Session>> patternSubscribers = new HashMap<>();
+
+    /**
+     * 脚本sha1到java实现.
+     */
+    private final Map<String, ScriptHandler> scriptHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * 已经通过EVAL或SCRIPT LOAD缓存的脚本sha1.
+     */
+    private final Set<String> loadedScripts = new HashSet<>();
+
+    /**
+     * CONFIG GET/SET可见的配置，只有决定对象编码的几项，取值为redis 5的默认值.
+     */
+    private final Map<String, String> config = new LinkedHashMap<>();
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    private long commandsProcessed = 0;
+
+    private long connectionsReceived = 0;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread loop;
+
+    private volatile boolean running = false;
+
+    private volatile int port;
+
+    /**
+     * 监听随机端口，启动后用{@link #getPort()}获取.
+     */
+    public EmbeddedRedisServer() {
+        this(0);
+    }
+
+    /**
+     * @param port 监听端口，0代表随机端口
+     */
+    public EmbeddedRedisServer(final int port) {
+        this.requestedPort = port;
+        config.put("hash-max-ziplist-entries", "512");
+        config.put("hash-max-ziplist-value", "64");
+        config.put("zset-max-ziplist-entries", "128");
+        config.put("zset-max-ziplist-value", "64");
+        config.put("set-max-intset-entries", "512");
+        registerCommands();
+        KeyCommands.register(table);
+        StringCommands.register(table);
+        HashCommands.register(table);
+        ListCommands.register(table);
+        SetCommands.register(table);
+        ZSetCommands.register(table);
+        StreamCommands.register(table);
+        registerScript(RedisClient.UNLOCK_SCRIPT, (redis, keys, args) -> {
+            final String current = redis.callString("get", keys.get(0));
+            final Object second = args.get(0).equals(current) ? redis.call("del", keys.get(0)) : args.get(1);
+            return Arrays.asList(current, second);
+        });
+    }
+
+    /**
+     * 命令行启动，供压测使用：java EmbeddedRedisServer [port].
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final EmbeddedRedisServer server = new EmbeddedRedisServer(args.length > 0 ? Integer.parseInt(args[0]) : 6379)
+                .start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * 绑定端口并启动事件循环线程.
+     *
+     * @return this
+     * @throws IOException 端口绑定失败
+     */
+    public synchronized EmbeddedRedisServer start() throws IOException {
+        if (running) {
+            return this;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", requestedPort), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        port = serverChannel.socket().getLocalPort();
+        running = true;
+        loop = new Thread(this::run, "embedded-redis-" + port);
+        loop.setDaemon(true);
+        loop.start();
+        log.info("内嵌redis已启动，port={}", port);
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 登记脚本的java实现，EVAL、EVALSHA按sha1找到实现后执行.
+     *
+     * @param script  脚本
+     * @param handler java实现
+     */
+    public void registerScript(final RedisScript script, final ScriptHandler handler) {
+        scriptHandlers.put(script.getSha1(), handler);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("内嵌redis已关闭，port={}", port);
+    }
+
+    // ==== 事件循环 start ===========================
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(selectTimeout());
+                final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    final SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            final Session session = (Session) key.attachment();
+                            if (key.isReadable()) {
+                                read(session);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                pendingWrites.add(session);
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        if (key.attachment() != null) {
+                            log.debug("内嵌redis连接异常，关闭连接", e);
+                            close((Session) key.attachment());
+                        } else {
+                            log.warn("内嵌redis接受连接失败", e);
+                        }
+                    }
+                }
+                expireBlocked();
+                db.expireCycle();
+                handleReadyKeys();
+                drainResumable();
+                flushPending();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("内嵌redis事件循环异常退出", e);
+        } finally {
+            for (Session session : new ArrayList<>(sessions)) {
+                close(session);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                log.warn("关闭内嵌redis监听失败", e);
+            }
+        }
+    }
+
+    private long selectTimeout() {
+        long timeout = TICK_MILLIS;
+        final long now = System.nanoTime();
+        for (Session session : blockedSessions) {
+            if (session.blockedDeadline != 0) {
+                timeout = Math.min(timeout, Math.max(1, TimeUnit.NANOSECONDS.toMillis(session.blockedDeadline - now)));
+            }
+        }
+        return timeout;
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        final Session session = new Session(channel);
+        session.selectionKey = channel.register(selector, SelectionKey.OP_READ, session);
+        sessions.add(session);
+        connectionsReceived++;
+    }
+
+    private void read(final Session session) throws IOException {
+        readBuffer.clear();
+        final int n = session.channel.read(readBuffer);
+        if (n < 0) {
+            close(session);
+            return;
+        }
+        readBuffer.flip();
+        session.reader.feed(readBuffer);
+        process(session);
+        drainResumable();
+    }
+
+    /**
+     * 继续处理阻塞结束的连接上已经缓冲的命令，这些命令又可能唤醒其他连接.
+     */
+    private void drainResumable() {
+        while (!resumable.isEmpty()) {
+            process(resumable.remove(0));
+        }
+    }
+
+    /**
+     * 执行连接上已缓冲的所有完整命令，遇到阻塞命令停下.
+     */
+    private void process(final Session session) {
+        while (session.blocked == null && !session.closeAfterWrite && session.channel.isOpen()) {
+            final byte[][] argv;
+            try {
+                argv = session.reader.next();
+            } catch (CommandError e) {
+                reply(session, e);
+                session.closeAfterWrite = true;
+                return;
+            }
+            if (argv == null) {
+                return;
+            }
+            dispatch(session, new Args(argv));
+            handleReadyKeys();
+        }
+    }
+
+    private void dispatch(final Session session, final Args args) {
+        commandsProcessed++;
+        final String name = args.name();
+        if (session.queued != null && !TX_CONTROL.contains(name)) {
+            try {
+                table.lookup(args);
+                session.queued.add(args);
+                reply(session, Reply.QUEUED);
+            } catch (CommandError e) {
+                session.queueError = true;
+                reply(session, e);
+            }
+            return;
+        }
+        if (session.subscriptions() > 0 && !SUBSCRIBE_MODE.contains(name)) {
+            reply(session, CommandError.err("only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT allowed in this context"));
+            return;
+        }
+        final Object result = call(session, args);
+        if (result instanceof Reply.Block) {
+            block(session, (Reply.Block) result);
+        } else {
+            reply(session, result);
+        }
+    }
+
+    /**
+     * 执行一条命令并返回回复，错误以CommandError对象返回.
+     */
+    private Object call(final Session session, final Args args) {
+        try {
+            return table.lookup(args).command.execute(session, db, args);
+        } catch (CommandError e) {
+            return e;
+        } catch (RuntimeException e) {
+            log.warn("内嵌redis执行{}出错", args.name(), e);
+            return CommandError.err(e.toString());
+        }
+    }
+
+    private void reply(final Session session, final Object reply) {
+        session.out.write(reply);
+        pendingWrites.add(session);
+    }
+
+    private void flushPending() {
+        for (Session session : pendingWrites) {
+            try {
+                flush(session);
+            } catch (IOException e) {
+                log.debug("内嵌redis写出失败，关闭连接", e);
+                close(session);
+            }
+        }
+        pendingWrites.clear();
+    }
+
+    private void flush(final Session session) throws IOException {
+        if (!session.channel.isOpen()) {
+            return;
+        }
+        if (session.out.size > 0) {
+            final int n = session.channel.write(ByteBuffer.wrap(session.out.buf, 0, session.out.size));
+            session.out.consume(n);
+        }
+        if (session.out.size > 0) {
+            session.selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (session.closeAfterWrite) {
+            close(session);
+        } else {
+            session.selectionKey.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void close(final Session session) {
+        if (!sessions.remove(session)) {
+            return;
+        }
+        unwatchAll(session);
+        unblock(session);
+        resumable.remove(session);
+        for (String channel : session.channels) {
+            removeSubscriber(channelSubscribers, channel, session);
+        }
+        for (String pattern : session.patterns) {
+            removeSubscriber(patternSubscribers, pattern, session);
+        }
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            log.debug("关闭连接失败", e);
+        }
+    }
+
+    // ==== 事件循环 end ===========================
+
+    // ==== 阻塞命令 start ===========================
+
+    private void block(final Session session, final Reply.Block block) {
+        session.blocked = block;
+        session.blockedDeadline = block.timeoutMillis == 0 ? 0
+                : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(block.timeoutMillis);
+        for (String key : block.keys) {
+            blockedOn.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(session);
+        }
+        blockedSessions.add(session);
+    }
+
+    private void unblock(final Session session) {
+        if (session.blocked == null) {
+            return;
+        }
+        for (String key : session.blocked.keys) {
+            removeSubscriber(blockedOn, key, session);
+        }
+        blockedSessions.remove(session);
+        session.blocked = null;
+    }
+
+    /**
+     * 按阻塞的先后顺序尝试唤醒等待被修改key的连接.
+     */
+    private void handleReadyKeys() {
+        while (!readyKeys.isEmpty()) {
+            final Iterator<String> it = readyKeys.iterator();
+            final String key = it.next();
+            it.remove();
+            final Set<Session> waiting = blockedOn.get(key);
+            if (waiting == null) {
+                continue;
+            }
+            for (Session session : new ArrayList<>(waiting)) {
+                if (session.blocked == null) {
+                    continue;
+                }
+                Object result;
+                try {
+                    result = session.blocked.retry.get();
+                } catch (CommandError e) {
+                    result = e;
+                }
+                if (result == null) {
+                    break;
+                }
+                unblock(session);
+                reply(session, result);
+                resumable.add(session);
+            }
+        }
+    }
+
+    private void expireBlocked() {
+        if (blockedSessions.isEmpty()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        for (Session session : new ArrayList<>(blockedSessions)) {
+            if (session.blockedDeadline != 0 && now - session.blockedDeadline >= 0) {
+                final Object timeoutReply = session.blocked.timeoutReply;
+                unblock(session);
+                reply(session, timeoutReply);
+                resumable.add(session);
+            }
+        }
+    }
+
+    private void onTouch(final String key) {
+        final Set<Session> watching = watchers.get(key);
+        if (watching != null) {
+            for (Session session : watching) {
+                session.dirty = true;
+            }
+        }
+        if (blockedOn.containsKey(key)) {
+            readyKeys.add(key);
+        }
+    }
+
+    // ==== 阻塞命令 end ===========================
+
+    private void registerCommands() {
+        // ==== 连接与服务器 命令 start ===========================
+        table.add("ping", -1, (s, db, args) -> {
+            if (s.subscriptions() > 0) {
+                return Arrays.asList("pong", args.size() > 1 ? args.bytes(1) : "");
+            }
+            return args.size() > 1 ? args.bytes(1) : Reply.PONG;
+        });
+        table.add("echo", 2, (s, db, args) -> args.bytes(1));
+        table.add("quit", 1, (s, db, args) -> {
+            s.closeAfterWrite = true;
+            return Reply.OK;
+        });
+        table.add("auth", 2, (s, db, args) -> Reply.OK);
+        table.add("select", 2, (s, db, args) -> {
+            if (args.longAt(1) != 0) {
+                throw CommandError.err("embedded redis only supports db 0");
+            }
+            return Reply.OK;
+        });
+        table.add("client", -2, (s, db, args) -> {
+            if (args.is(1, "setname") && args.size() == 3) {
+                s.name = args.str(2);
+                return Reply.OK;
+            }
+            if (args.is(1, "getname")) {
+                return s.name;
+            }
+            if (args.is(1, "list")) {
+                final StringBuilder list = new StringBuilder();
+                for (Session session : sessions) {
+                    list.append("addr=").append(session.channel.socket().getRemoteSocketAddress())
+                            .append(" name=").append(session.name == null ? "" : session.name).append('\n');
+                }
+                return list.toString();
+            }
+            throw CommandError.err("unsupported CLIENT subcommand");
+        });
+        table.add("command", -1, (s, db, args) -> Collections.emptyList());
+        table.add("config", -2, (s, db, args) -> {
+            if (args.is(1, "get") && args.size() == 3) {
+                final List<String> reply = new ArrayList<>();
+                config.forEach((name, value) -> {
+                    if (Glob.matches(args.str(2).toLowerCase(), name)) {
+                        reply.add(name);
+                        reply.add(value);
+                    }
+                });
+                return reply;
+            }
+            if (args.is(1, "set") && args.size() == 4) {
+                final String name = args.str(2).toLowerCase();
+                if (config.containsKey(name)) {
+                    args.longAt(3);
+                    config.put(name, args.str(3));
+                }
+                return Reply.OK;
+            }
+            return Reply.OK;
+        });
+        table.add("object", 3, (s, db, args) -> {
+            if (!args.is(1, "encoding")) {
+                throw CommandError.err("unsupported OBJECT subcommand");
+            }
+            final Object value = db.get(args.str(2));
+            return value == null ? null : ObjectEncoding.encoding(value, config);
+        });
+        table.add("memory", -3, (s, db, args) -> {
+            if (!args.is(1, "usage")) {
+                throw CommandError.err("unsupported MEMORY subcommand");
+            }
+            final Object value = db.get(args.str(2));
+            return value == null ? null : ObjectEncoding.usage(args.str(2), value, config);
+        });
+        table.add("info", -1, (s, db, args) -> info());
+        table.add("dbsize", 1, (s, db, args) -> (long) db.size());
+        table.add("flushdb", -1, (s, db, args) -> {
+            db.clear();
+            return Reply.OK;
+        });
+        table.add("flushall", -1, (s, db, args) -> {
+            db.clear();
+            return Reply.OK;
+        });
+        table.add("time", 1, (s, db, args) -> {
+            final long micros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            return Arrays.asList(Long.toString(micros / 1_000_000), Long.toString(micros % 1_000_000));
+        });
+        // ==== 连接与服务器 命令 end ===========================
+
+        // ==== 事务 命令 start ===========================
+        table.add("multi", 1, (s, db, args) -> {
+            if (s.queued != null) {
+                throw CommandError.err("MULTI calls can not be nested");
+            }
+            s.beginMulti();
+            return Reply.OK;
+        });
+        table.add("discard", 1, (s, db, args) -> {
+            if (s.queued == null) {
+                throw CommandError.err("DISCARD without MULTI");
+            }
+            s.endMulti();
+            unwatchAll(s);
+            return Reply.OK;
+        });
+        table.add("exec", 1, (s, db, args) -> {
+            if (s.queued == null) {
+                throw CommandError.err("EXEC without MULTI");
+            }
+            final List<Args> queued = s.queued;
+            final boolean abort = s.queueError;
+            final boolean dirty = s.dirty;
+            s.endMulti();
+            unwatchAll(s);
+            if (abort) {
+                return new CommandError("EXECABORT Transaction discarded because of previous errors.");
+            }
+            if (dirty) {
+                return Reply.NULL_ARRAY;
+            }
+            final List<Object> results = new ArrayList<>(queued.size());
+            s.nonBlocking = true;
+            try {
+                for (Args queuedArgs : queued) {
+                    results.add(call(s, queuedArgs));
+                }
+            } finally {
+                s.nonBlocking = false;
+            }
+            return results;
+        });
+        table.add("watch", -2, (s, db, args) -> {
+            if (s.queued != null) {
+                throw CommandError.err("WATCH inside MULTI is not allowed");
+            }
+            for (String key : args.strs(1)) {
+                if (s.watched.add(key)) {
+                    watchers.computeIfAbsent(key, k -> new HashSet<>()).add(s);
+                }
+            }
+            return Reply.OK;
+        });
+        table.add("unwatch", 1, (s, db, args) -> {
+            unwatchAll(s);
+            return Reply.OK;
+        });
+        // ==== 事务 命令 end ===========================
+
+        // ==== 发布订阅 命令 start ===========================
+        table.add("subscribe", -2, (s, db, args) -> subscribe(s, args.strs(1), false));
+        table.add("psubscribe", -2, (s, db, args) -> subscribe(s, args.strs(1), true));
+        table.add("unsubscribe", -1, (s, db, args) -> unsubscribe(s, args.strs(1), false));
+        table.add("punsubscribe", -1, (s, db, args) -> unsubscribe(s, args.strs(1), true));
+        table.add("publish", 3, (s, db, args) -> publish(args.str(1), args.bytes(2)));
+        table.add("pubsub", -2, (s, db, args) -> {
+            if (args.is(1, "channels")) {
+                final List<Object> channels = new ArrayList<>();
+                for (String channel : channelSubscribers.keySet()) {
+                    if (args.size() < 3 || Glob.matches(args.str(2), channel)) {
+                        channels.add(channel);
+                    }
+                }
+                return channels;
+            }
+            if (args.is(1, "numsub")) {
+                final List<Object> counts = new ArrayList<>();
+                for (String channel : args.strs(2)) {
+                    counts.add(channel);
+                    counts.add((long) channelSubscribers.getOrDefault(channel, Collections.emptySet()).size());
+                }
+                return counts;
+            }
+            if (args.is(1, "numpat")) {
+                return (long) patternSubscribers.size();
+            }
+            throw CommandError.err("unsupported PUBSUB subcommand");
+        });
+        // ==== 发布订阅 命令 end ===========================
+
+        // ==== 脚本 命令 start ===========================
+        table.add("eval", -3, (s, db, args) -> {
+            final String sha1 = RedisScript.of("eval", args.str(1)).getSha1();
+            loadedScripts.add(sha1);
+            return runScript(s, sha1, args);
+        });
+        table.add("evalsha", -3, (s, db, args) -> {
+            final String sha1 = args.str(1).toLowerCase();
+            if (!loadedScripts.contains(sha1)) {
+                throw new CommandError("NOSCRIPT No matching script. Please use EVAL.");
+            }
+            return runScript(s, sha1, args);
+        });
+        table.add("script", -2, (s, db, args) -> {
+            if (args.is(1, "load") && args.size() == 3) {
+                final String sha1 = RedisScript.of("load", args.str(2)).getSha1();
+                loadedScripts.add(sha1);
+                return sha1;
+            }
+            if (args.is(1, "exists")) {
+                final List<Object> exists = new ArrayList<>();
+                for (String sha1 : args.strs(2)) {
+                    exists.add(loadedScripts.contains(sha1.toLowerCase()));
+                }
+                return exists;
+            }
+            if (args.is(1, "flush")) {
+                loadedScripts.clear();
+                return Reply.OK;
+            }
+            throw CommandError.err("unsupported SCRIPT subcommand");
+        });
+        // ==== 脚本 命令 end ===========================
+    }
+
+    private void unwatchAll(final Session session) {
+        for (String key : session.watched) {
+            removeSubscriber(watchers, key, session);
+        }
+        session.watched.clear();
+        session.dirty = false;
+    }
+
+    private Object subscribe(final Session session, final List<String> targets, final boolean pattern) {
+        final List<Object> replies = new ArrayList<>(targets.size());
+        for (String target : targets) {
+            if ((pattern ? session.patterns : session.channels).add(target)) {
+                (pattern ? patternSubscribers : channelSubscribers)
+                        .computeIfAbsent(target, k -> new LinkedHashSet<>()).add(session);
+            }
+            replies.add(Arrays.asList(pattern ? "psubscribe" : "subscribe", target, (long) session.subscriptions()));
+        }
+        return new Reply.Multi(replies);
+    }
+
+    private Object unsubscribe(final Session session, final List<String> targets, final boolean pattern) {
+        final Set<String> subscribed = pattern ? session.patterns : session.channels;
+        final List<String> removing = targets.isEmpty() ? new ArrayList<>(subscribed) : targets;
+        final String type = pattern ? "punsubscribe" : "unsubscribe";
+        if (removing.isEmpty()) {
+            return Arrays.asList(type, null, (long) session.subscriptions());
+        }
+        final List<Object> replies = new ArrayList<>(removing.size());
+        for (String target : removing) {
+            if (subscribed.remove(target)) {
+                removeSubscriber(pattern ? patternSubscribers : channelSubscribers, target, session);
+            }
+            replies.add(Arrays.asList(type, target, (long) session.subscriptions()));
+        }
+        return new Reply.Multi(replies);
+    }
+
+    private long publish(final String channel, final byte[] message) {
+        long receivers = 0;
+        final Set<Session> subscribers = channelSubscribers.get(channel);
+        if (subscribers != null) {
+            for (Session subscriber : subscribers) {
+                reply(subscriber, Arrays.asList("message", channel, message));
+                receivers++;
+            }
+        }
+        for (Map.Entry<String, Set<Session>> entry : patternSubscribers.entrySet()) {
+            if (Glob.matches(entry.getKey(), channel)) {
+                for (Session subscriber : entry.getValue()) {
+                    reply(subscriber, Arrays.asList("pmessage", entry.getKey(), channel, message));
+                    receivers++;
+                }
+            }
+        }
+        return receivers;
+    }
+
+    private static void removeSubscriber(final Map<String, Set<Session>> index, final String key,
+                                         final Session session) {
+        final Set<Session> members = index.get(key);
+        if (members != null && members.remove(session) && members.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private Object runScript(final Session session, final String sha1, final Args args) {
+        final ScriptHandler handler = scriptHandlers.get(sha1);
+        if (handler == null) {
+            throw CommandError.err("embedded redis has no java implementation for script " + sha1
+                    + ", use EmbeddedRedisServer.registerScript");
+        }
+        final int numKeys = args.intAt(2);
+        if (numKeys < 0 || 3 + numKeys > args.size()) {
+            throw CommandError.err("Number of keys can't be greater than number of args");
+        }
+        final boolean nonBlocking = session.nonBlocking;
+        session.nonBlocking = true;
+        try {
+            return luaReply(handler.run(command -> {
+                final Object result = call(session, Args.of(command));
+                if (result instanceof CommandError) {
+                    throw (CommandError) result;
+                }
+                return result;
+            }, args.strs(3, 3 + numKeys), args.strs(3 + numKeys)));
+        } finally {
+            session.nonBlocking = nonBlocking;
+        }
+    }
+
+    /**
+     * 按lua到redis的转换规则处理脚本返回值：false和nil为空回复，true为1，数字取整，数组遇到nil截断.
+     */
+    private static Object luaReply(final Object value) {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return null;
+        }
+        if (Boolean.TRUE.equals(value)) {
+            return 1L;
+        }
+        if (value instanceof Double) {
+            return (long) (double) (Double) value;
+        }
+        if (value instanceof List) {
+            final List<Object> items = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                if (item == null || Boolean.FALSE.equals(item)) {
+                    break;
+                }
+                items.add(luaReply(item));
+            }
+            return items;
+        }
+        return value;
+    }
+
+    private byte[] info() {
+        final String info = "# Server\r\n"
+                + "redis_version:5.0.0\r\n"
+                + "redis_mode:standalone\r\n"
+                + "tcp_port:" + port + "\r\n"
+                + "\r\n# Clients\r\n"
+                + "connected_clients:" + sessions.size() + "\r\n"
+                + "blocked_clients:" + blockedSessions.size() + "\r\n"
+                + "\r\n# Stats\r\n"
+                + "total_connections_received:" + connectionsReceived + "\r\n"
+                + "total_commands_processed:" + commandsProcessed + "\r\n"
+                + "pubsub_channels:" + channelSubscribers.size() + "\r\n"
+                + "pubsub_patterns:" + patternSubscribers.size() + "\r\n"
+                + "\r\n# Replication\r\n"
+                + "role:master\r\n"
+                + "connected_slaves:0\r\n"
+                + "\r\n# Keyspace\r\n"
+                + (db.size() == 0 ? "" : "db0:keys=" + db.size() + ",expires=0,avg_ttl=0\r\n");
+        return info.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 脚本的java实现. 参数和返回的字符串都是按ISO-8859-1解码的原始字节，与{@link Call#callString}一致.
+     */
+    public interface ScriptHandler {
+
+        /**
+         * 执行脚本.
+         *
+         * @param redis 相当于lua里的redis.call
+         * @param keys  KEYS
+         * @param args  ARGV
+         * @return 返回值，按lua到redis的转换规则处理
+         */
+        Object run(Call redis, List<String> keys, List<String> args);
+    }
+
+    /**
+     * 脚本内执行命令.
+     */
+    public interface Call {
+
+        /**
+         * 执行命令，出错时抛出异常，与redis.call一致.
+         *
+         * @param command 命令及参数
+         * @return 回复：bulk为byte[]，整数为Long，数组为List，空回复为null
+         */
+        Object call(String... command);
+
+        /**
+         * 执行返回bulk的命令，结果按ISO-8859-1解码.
+         *
+         * @param command 命令及参数
+         * @return 结果，空回复为null
+         */
+        default String callString(final String... command) {
+            final Object result = call(command);
+            return result == null ? null : new String((byte[]) result, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.qixiafei.redisinaction.embedded;
+
+/**
+ * <P>Description: redis风格的glob匹配，用于KEYS、SCAN MATCH和PSUBSCRIBE，支持*、?、[...]、[^...]和\转义. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 14:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Glob {
+
+    private Glob() {
+    }
+
+    static boolean matches(final String pattern, final String value) {
+        return matches(pattern, 0, value, 0);
+    }
+
+    private static boolean matches(final String p, int pi, final String s, int si) {
+        while (pi < p.length()) {
+            final char c = p.charAt(pi);
+            switch (c) {
+                case '*':
+                    while (pi + 1 < p.length() && p.charAt(pi + 1) == '*') {
+                        pi++;
+                    }
+                    if (pi + 1 == p.length()) {
+                        return true;
+                    }
+                    for (int i = si; i <= s.length(); i++) {
+                        if (matches(p, pi + 1, s, i)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case '?':
+                    if (si >= s.length()) {
+                        return false;
+                    }
+                    si++;
+                    pi++;
+                    break;
+                case '[': {
+                    if (si >= s.length()) {
+                        return false;
+                    }
+                    final char target = s.charAt(si);
+                    pi++;
+                    final boolean negate = pi < p.length() && p.charAt(pi) == '^';
+                    if (negate) {
+                        pi++;
+                    }
+                    boolean matched = false;
+                    while (pi < p.length() && p.charAt(pi) != ']') {
+                        if (p.charAt(pi) == '\\' && pi + 1 < p.length()) {
+                            pi++;
+                            matched |= p.charAt(pi) == target;
+                        } else if (pi + 2 < p.length() && p.charAt(pi + 1) == '-' && p.charAt(pi + 2) != ']') {
+                            char from = p.charAt(pi);
+                            char to = p.charAt(pi + 2);
+                            if (from > to) {
+                                final char tmp = from;
+                                from = to;
+                                to = tmp;
+                            }
+                            matched |= target >= from && target <= to;
+                            pi += 2;
+                        } else {
+                            matched |= p.charAt(pi) == target;
+                        }
+                        pi++;
+                    }
+                    if (matched == negate) {
+                        return false;
+                    }
+                    pi++;
+                    si++;
+                    break;
+                }
+                case '\\':
+                    if (pi + 1 < p.length()) {
+                        pi++;
+                    }
+                    // fall through
+                default:
+                    if (si >= s.length() || p.charAt(pi) != s.charAt(si)) {
+                        return false;
+                    }
+                    si++;
+                    pi++;
+            }
+        }
+        return si == s.length();
+    }
+}
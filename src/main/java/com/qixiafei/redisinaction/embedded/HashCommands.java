@@ -0,0 +1,164 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <P>Description: hash命令，field为String，value为byte[]. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 17:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class HashCommands {
+
+    private HashCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        table.add("hget", 3, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            return hash == null ? null : hash.get(args.str(2));
+        });
+        final RedisCommand hset = (s, db, args) -> {
+            if (args.size() % 2 != 0) {
+                throw CommandError.err("wrong number of arguments for '" + args.name() + "' command");
+            }
+            final String key = args.str(1);
+            final Map<String, byte[]> hash = db.hash(key, true);
+            long added = 0;
+            for (int i = 2; i < args.size(); i += 2) {
+                if (hash.put(args.str(i), args.bytes(i + 1)) == null) {
+                    added++;
+                }
+            }
+            db.touchContainer(key, hash);
+            return "hmset".equals(args.name()) ? Reply.OK : added;
+        };
+        table.add("hset", -4, hset);
+        table.add("hmset", -4, hset);
+        table.add("hsetnx", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final Map<String, byte[]> hash = db.hash(key, true);
+            final boolean added = hash.putIfAbsent(args.str(2), args.bytes(3)) == null;
+            db.touchContainer(key, hash);
+            return added;
+        });
+        table.add("hmget", -3, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            final List<Object> values = new ArrayList<>(args.size() - 2);
+            for (String field : args.strs(2)) {
+                values.add(hash == null ? null : hash.get(field));
+            }
+            return values;
+        });
+        table.add("hgetall", 2, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            if (hash == null) {
+                return Collections.emptyList();
+            }
+            final List<Object> pairs = new ArrayList<>(hash.size() * 2);
+            for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+                pairs.add(entry.getKey());
+                pairs.add(entry.getValue());
+            }
+            return pairs;
+        });
+        table.add("hdel", -3, (s, db, args) -> {
+            final String key = args.str(1);
+            final Map<String, byte[]> hash = db.hash(key, false);
+            if (hash == null) {
+                return 0L;
+            }
+            long removed = 0;
+            for (String field : args.strs(2)) {
+                if (hash.remove(field) != null) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                db.touchContainer(key, hash);
+            }
+            return removed;
+        });
+        table.add("hexists", 3, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            return hash != null && hash.containsKey(args.str(2));
+        });
+        table.add("hlen", 2, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            return hash == null ? 0L : (long) hash.size();
+        });
+        table.add("hstrlen", 3, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            final byte[] value = hash == null ? null : hash.get(args.str(2));
+            return value == null ? 0L : (long) value.length;
+        });
+        table.add("hkeys", 2, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            return hash == null ? Collections.emptyList() : new ArrayList<Object>(hash.keySet());
+        });
+        table.add("hvals", 2, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            return hash == null ? Collections.emptyList() : new ArrayList<Object>(hash.values());
+        });
+        table.add("hincrby", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final long delta = args.longAt(3);
+            final Map<String, byte[]> existing = db.hash(key, false);
+            final byte[] old = existing == null ? null : existing.get(args.str(2));
+            final long current;
+            try {
+                current = old == null ? 0 : Long.parseLong(new String(old, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException e) {
+                throw CommandError.err("hash value is not an integer");
+            }
+            final long value;
+            try {
+                value = Math.addExact(current, delta);
+            } catch (ArithmeticException e) {
+                throw CommandError.err("increment or decrement would overflow");
+            }
+            final Map<String, byte[]> hash = db.hash(key, true);
+            hash.put(args.str(2), Long.toString(value).getBytes(StandardCharsets.ISO_8859_1));
+            db.touchContainer(key, hash);
+            return value;
+        });
+        table.add("hincrbyfloat", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final double delta = args.doubleAt(3);
+            final Map<String, byte[]> existing = db.hash(key, false);
+            final byte[] old = existing == null ? null : existing.get(args.str(2));
+            final double current;
+            try {
+                current = old == null ? 0 : Args.parseDouble(new String(old, StandardCharsets.ISO_8859_1));
+            } catch (CommandError e) {
+                throw CommandError.err("hash value is not a float");
+            }
+            final double value = current + delta;
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw CommandError.err("increment would produce NaN or Infinity");
+            }
+            final byte[] result = Reply.formatDouble(value).getBytes(StandardCharsets.ISO_8859_1);
+            final Map<String, byte[]> hash = db.hash(key, true);
+            hash.put(args.str(2), result);
+            db.touchContainer(key, hash);
+            return result;
+        });
+        table.add("hscan", -3, (s, db, args) -> {
+            final Map<String, byte[]> hash = db.hash(args.str(1), false);
+            if (hash == null) {
+                return Arrays.asList("0", Collections.emptyList());
+            }
+            return Scan.scan(hash.keySet(), args, 2, null, field -> Arrays.asList(field, hash.get(field)));
+        });
+    }
+}
@@ -0,0 +1,244 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * <P>Description: key相关的通用命令：删除、过期、类型、遍历、重命名和SORT. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 16:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class KeyCommands {
+
+    private KeyCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        final RedisCommand del = (s, db, args) -> {
+            long removed = 0;
+            for (String key : args.strs(1)) {
+                if (db.exists(key) && db.remove(key)) {
+                    removed++;
+                }
+            }
+            return removed;
+        };
+        table.add("del", -2, del);
+        table.add("unlink", -2, del);
+        table.add("exists", -2, (s, db, args) -> {
+            long count = 0;
+            for (String key : args.strs(1)) {
+                if (db.exists(key)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        table.add("type", 2, (s, db, args) -> new Reply.Status(Keyspace.type(db.get(args.str(1)))));
+        table.add("expire", 3, (s, db, args) ->
+                db.expireAt(args.str(1), System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(args.longAt(2))));
+        table.add("pexpire", 3, (s, db, args) ->
+                db.expireAt(args.str(1), System.currentTimeMillis() + args.longAt(2)));
+        table.add("expireat", 3, (s, db, args) ->
+                db.expireAt(args.str(1), TimeUnit.SECONDS.toMillis(args.longAt(2))));
+        table.add("pexpireat", 3, (s, db, args) -> db.expireAt(args.str(1), args.longAt(2)));
+        table.add("ttl", 2, (s, db, args) -> {
+            final long pttl = db.pttl(args.str(1));
+            return pttl < 0 ? pttl : (pttl + 500) / 1000;
+        });
+        table.add("pttl", 2, (s, db, args) -> db.pttl(args.str(1)));
+        table.add("persist", 2, (s, db, args) -> db.persist(args.str(1)));
+        table.add("keys", 2, (s, db, args) -> {
+            final List<Object> keys = new ArrayList<>();
+            for (String key : db.keys()) {
+                if (Glob.matches(args.str(1), key)) {
+                    keys.add(key);
+                }
+            }
+            return keys;
+        });
+        table.add("scan", -2, (s, db, args) -> Scan.scan(db.keys(), args, 1,
+                (key, type) -> Keyspace.type(db.get(key)).equalsIgnoreCase(type), Collections::singletonList));
+        table.add("randomkey", 1, (s, db, args) -> {
+            final List<String> keys = db.keys();
+            return keys.isEmpty() ? null : keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+        });
+        table.add("rename", 3, (s, db, args) -> {
+            rename(db, args.str(1), args.str(2));
+            return Reply.OK;
+        });
+        table.add("renamenx", 3, (s, db, args) -> {
+            if (!db.exists(args.str(1))) {
+                throw CommandError.NO_SUCH_KEY;
+            }
+            if (db.exists(args.str(2))) {
+                return 0L;
+            }
+            rename(db, args.str(1), args.str(2));
+            return 1L;
+        });
+        table.add("sort", -2, KeyCommands::sort);
+    }
+
+    private static void rename(final Keyspace db, final String from, final String to) {
+        final Object value = db.get(from);
+        if (value == null) {
+            throw CommandError.NO_SUCH_KEY;
+        }
+        if (from.equals(to)) {
+            return;
+        }
+        final Long expireAt = db.expireAtOf(from);
+        db.remove(from);
+        db.put(to, value);
+        if (expireAt != null) {
+            db.expireAt(to, expireAt);
+        }
+    }
+
+    /**
+     * SORT key [BY pattern] [LIMIT offset count] [GET pattern ...] [ASC|DESC] [ALPHA] [STORE destination].
+     */
+    private static Object sort(final Session session, final Keyspace db, final Args args) {
+        final String key = args.str(1);
+        String by = null;
+        final List<String> gets = new ArrayList<>();
+        int offset = 0;
+        int count = -1;
+        boolean desc = false;
+        boolean alpha = false;
+        String store = null;
+        for (int i = 2; i < args.size(); i++) {
+            if (args.is(i, "by") && i + 1 < args.size()) {
+                by = args.str(++i);
+            } else if (args.is(i, "limit") && i + 2 < args.size()) {
+                offset = args.intAt(++i);
+                count = args.intAt(++i);
+            } else if (args.is(i, "get") && i + 1 < args.size()) {
+                gets.add(args.str(++i));
+            } else if (args.is(i, "asc")) {
+                desc = false;
+            } else if (args.is(i, "desc")) {
+                desc = true;
+            } else if (args.is(i, "alpha")) {
+                alpha = true;
+            } else if (args.is(i, "store") && i + 1 < args.size()) {
+                store = args.str(++i);
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        final List<String> elements = elements(db.get(key));
+        final boolean sort = by == null || by.contains("*");
+        if (sort) {
+            final List<Object[]> weighted = new ArrayList<>(elements.size());
+            for (String element : elements) {
+                final String weight = by == null ? element : lookup(db, by, element);
+                final Object sortKey;
+                if (alpha) {
+                    sortKey = weight == null ? "" : weight;
+                } else {
+                    try {
+                        sortKey = weight == null ? 0.0 : Args.parseDouble(weight);
+                    } catch (CommandError e) {
+                        throw CommandError.err("One or more scores can't be converted into double");
+                    }
+                }
+                weighted.add(new Object[]{sortKey, element});
+            }
+            final boolean descending = desc;
+            weighted.sort((a, b) -> {
+                @SuppressWarnings("unchecked") final int c = ((Comparable<Object>) a[0]).compareTo(b[0]);
+                final int result = c != 0 ? c : ((String) a[1]).compareTo((String) b[1]);
+                return descending ? -result : result;
+            });
+            elements.clear();
+            for (Object[] pair : weighted) {
+                elements.add((String) pair[1]);
+            }
+        }
+        final int from = Math.max(0, offset);
+        final int to = count < 0 ? elements.size() : Math.min(elements.size(), from + count);
+        final List<Object> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (gets.isEmpty()) {
+                result.add(elements.get(i));
+            } else {
+                for (String get : gets) {
+                    result.add(lookup(db, get, elements.get(i)));
+                }
+            }
+        }
+        if (store != null) {
+            final LinkedList<byte[]> list = new LinkedList<>();
+            for (Object value : result) {
+                list.add(value == null ? new byte[0] : ((String) value).getBytes(StandardCharsets.ISO_8859_1));
+            }
+            if (list.isEmpty()) {
+                db.remove(store);
+            } else {
+                db.put(store, list);
+            }
+            return (long) list.size();
+        }
+        return result;
+    }
+
+    private static List<String> elements(final Object value) {
+        final List<String> elements = new ArrayList<>();
+        if (value == null) {
+            return elements;
+        }
+        if (value instanceof LinkedList) {
+            for (Object item : (List<?>) value) {
+                elements.add(new String((byte[]) item, StandardCharsets.ISO_8859_1));
+            }
+        } else if (value instanceof Set) {
+            for (Object item : (Set<?>) value) {
+                elements.add((String) item);
+            }
+        } else if (value instanceof ZSet) {
+            for (ZSet.Entry entry : ((ZSet) value).all()) {
+                elements.add(entry.member);
+            }
+        } else {
+            throw CommandError.WRONG_TYPE;
+        }
+        return elements;
+    }
+
+    /**
+     * SORT的BY、GET模式：#代表元素本身，*替换为元素，key->field读取hash的field.
+     */
+    private static String lookup(final Keyspace db, final String pattern, final String element) {
+        if ("#".equals(pattern)) {
+            return element;
+        }
+        final int arrow = pattern.indexOf("->");
+        final String keyPattern = arrow < 0 ? pattern : pattern.substring(0, arrow);
+        final String key = keyPattern.replaceFirst("\\*", Matcher.quoteReplacement(element));
+        final Object value = db.get(key);
+        if (arrow >= 0) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            final byte[] field = (byte[]) ((Map<?, ?>) value).get(pattern.substring(arrow + 2));
+            return field == null ? null : new String(field, StandardCharsets.ISO_8859_1);
+        }
+        return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.ISO_8859_1) : null;
+    }
+}
@@ -0,0 +1,314 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * <P>Description: 单个db的数据，只在事件循环线程访问，不需要加锁.
+ * value的类型：字符串为byte[]，hash为HashMap，list为LinkedList，set为HashSet，有序集合为{@link ZSet}，stream为{@link Stream}.
+ * 过期与redis一样是惰性删除加定期删除，定期删除按过期时间排成小顶堆，只处理到期的key；每次修改都会通知onTouch，用于WATCH失效和唤醒阻塞命令. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 15:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Keyspace {
+
+    /**
+     * 每轮定期删除最多删除的key数，避免一次卡住事件循环太久.
+     */
+    private static final int EXPIRE_BATCH = 1000;
+
+    private final Map<String, Object> data = new HashMap<>();
+
+    /**
+     * key到过期时间（毫秒时间戳）.
+     */
+    private final Map<String, Long> expires = new HashMap<>();
+
+    /**
+     * 按过期时间排序的(过期时间, key)，过期时间被修改或移除后旧条目留在堆里，出堆时与expires比对后丢弃.
+     */
+    private final PriorityQueue<Expiry> expiryQueue = new PriorityQueue<>();
+
+    private final Consumer<String> onTouch;
+
+    Keyspace(final Consumer<String> onTouch) {
+        this.onTouch = onTouch;
+    }
+
+    /**
+     * 获取未过期的value，已过期的顺便删除.
+     */
+    Object get(final String key) {
+        final Object value = data.get(key);
+        if (value != null && isExpired(key)) {
+            remove(key);
+            return null;
+        }
+        return value;
+    }
+
+    boolean exists(final String key) {
+        return get(key) != null;
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * 写入value并清除过期时间，与SET的语义一致.
+     */
+    void put(final String key, final Object value) {
+        data.put(key, value);
+        expires.remove(key);
+        touch(key);
+    }
+
+    boolean remove(final String key) {
+        if (data.remove(key) == null) {
+            return false;
+        }
+        expires.remove(key);
+        touch(key);
+        return true;
+    }
+
+    /**
+     * 通知key被修改，原地修改容器的命令必须调用.
+     */
+    void touch(final String key) {
+        onTouch.accept(key);
+    }
+
+    /**
+     * 容器类型的value修改后调用，容器为空时与redis一样删除key.
+     */
+    void touchContainer(final String key, final Object container) {
+        final boolean empty;
+        if (container instanceof Map) {
+            empty = ((Map<?, ?>) container).isEmpty();
+        } else if (container instanceof List) {
+            empty = ((List<?>) container).isEmpty();
+        } else if (container instanceof Set) {
+            empty = ((Set<?>) container).isEmpty();
+        } else {
+            empty = container instanceof ZSet && ((ZSet) container).size() == 0;
+        }
+        if (empty) {
+            remove(key);
+        } else {
+            touch(key);
+        }
+    }
+
+    // ==== 类型化访问 start ===========================
+
+    byte[] string(final String key) {
+        return cast(get(key), byte[].class);
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, byte[]> hash(final String key, final boolean create) {
+        Map<String, byte[]> hash = cast(get(key), Map.class);
+        if (hash == null && create) {
+            hash = new HashMap<>();
+            data.put(key, hash);
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    LinkedList<byte[]> list(final String key, final boolean create) {
+        LinkedList<byte[]> list = cast(get(key), LinkedList.class);
+        if (list == null && create) {
+            list = new LinkedList<>();
+            data.put(key, list);
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    Set<String> set(final String key, final boolean create) {
+        Set<String> set = cast(get(key), Set.class);
+        if (set == null && create) {
+            set = new HashSet<>();
+            data.put(key, set);
+        }
+        return set;
+    }
+
+    ZSet zset(final String key, final boolean create) {
+        ZSet zset = cast(get(key), ZSet.class);
+        if (zset == null && create) {
+            zset = new ZSet();
+            data.put(key, zset);
+        }
+        return zset;
+    }
+
+    Stream stream(final String key, final boolean create) {
+        Stream stream = cast(get(key), Stream.class);
+        if (stream == null && create) {
+            stream = new Stream();
+            data.put(key, stream);
+        }
+        return stream;
+    }
+
+    static String type(final Object value) {
+        if (value == null) {
+            return "none";
+        }
+        if (value instanceof byte[]) {
+            return "string";
+        }
+        if (value instanceof Map) {
+            return "hash";
+        }
+        if (value instanceof List) {
+            return "list";
+        }
+        if (value instanceof Set) {
+            return "set";
+        }
+        if (value instanceof Stream) {
+            return "stream";
+        }
+        return "zset";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(final Object value, final Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        if (!type.isInstance(value)) {
+            throw CommandError.WRONG_TYPE;
+        }
+        return (T) value;
+    }
+
+    // ==== 类型化访问 end ===========================
+
+    // ==== 过期 start ===========================
+
+    /**
+     * @param expireAt 过期时间戳（毫秒），已经过去时直接删除
+     * @return key是否存在
+     */
+    boolean expireAt(final String key, final long expireAt) {
+        if (!exists(key)) {
+            return false;
+        }
+        if (expireAt <= System.currentTimeMillis()) {
+            remove(key);
+        } else {
+            expires.put(key, expireAt);
+            expiryQueue.add(new Expiry(expireAt, key));
+            touch(key);
+        }
+        return true;
+    }
+
+    /**
+     * @return 剩余毫秒数，-1代表没有过期时间，-2代表key不存在
+     */
+    long pttl(final String key) {
+        if (!exists(key)) {
+            return -2;
+        }
+        final Long expireAt = expires.get(key);
+        return expireAt == null ? -1 : Math.max(0, expireAt - System.currentTimeMillis());
+    }
+
+    boolean persist(final String key) {
+        if (exists(key) && expires.remove(key) != null) {
+            touch(key);
+            return true;
+        }
+        return false;
+    }
+
+    Long expireAtOf(final String key) {
+        return expires.get(key);
+    }
+
+    /**
+     * 定期删除已到期的key.
+     */
+    void expireCycle() {
+        final long now = System.currentTimeMillis();
+        for (int removed = 0; removed < EXPIRE_BATCH; ) {
+            final Expiry head = expiryQueue.peek();
+            if (head == null || head.expireAt > now) {
+                return;
+            }
+            expiryQueue.poll();
+            final Long current = expires.get(head.key);
+            if (current != null && current == head.expireAt) {
+                remove(head.key);
+                removed++;
+            }
+        }
+    }
+
+    /**
+     * 过期时间堆的条目.
+     */
+    private static final class Expiry implements Comparable<Expiry> {
+
+        private final long expireAt;
+
+        private final String key;
+
+        private Expiry(final long expireAt, final String key) {
+            this.expireAt = expireAt;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(final Expiry o) {
+            return Long.compare(expireAt, o.expireAt);
+        }
+    }
+
+    private boolean isExpired(final String key) {
+        final Long expireAt = expires.get(key);
+        return expireAt != null && expireAt <= System.currentTimeMillis();
+    }
+
+    // ==== 过期 end ===========================
+
+    /**
+     * 所有未过期的key的快照.
+     */
+    List<String> keys() {
+        final List<String> keys = new ArrayList<>(data.size());
+        for (String key : new ArrayList<>(data.keySet())) {
+            if (exists(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    void clear() {
+        for (String key : new ArrayList<>(data.keySet())) {
+            remove(key);
+        }
+        expiryQueue.clear();
+    }
+}
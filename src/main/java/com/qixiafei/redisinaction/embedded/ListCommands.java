@@ -0,0 +1,262 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: list命令，包括阻塞弹出. 阻塞命令没有数据时返回{@link Reply.Block}，
+ * 由事件循环在key被修改后重试，EXEC和脚本中不阻塞. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 17:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class ListCommands {
+
+    private ListCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        table.add("lpush", -3, (s, db, args) -> push(db, args, true, false));
+        table.add("rpush", -3, (s, db, args) -> push(db, args, false, false));
+        table.add("lpushx", -3, (s, db, args) -> push(db, args, true, true));
+        table.add("rpushx", -3, (s, db, args) -> push(db, args, false, true));
+        table.add("lpop", 2, (s, db, args) -> pop(db, args.str(1), true));
+        table.add("rpop", 2, (s, db, args) -> pop(db, args.str(1), false));
+        table.add("llen", 2, (s, db, args) -> {
+            final LinkedList<byte[]> list = db.list(args.str(1), false);
+            return list == null ? 0L : (long) list.size();
+        });
+        table.add("lindex", 3, (s, db, args) -> {
+            final LinkedList<byte[]> list = db.list(args.str(1), false);
+            if (list == null) {
+                return null;
+            }
+            long index = args.longAt(2);
+            if (index < 0) {
+                index += list.size();
+            }
+            return index < 0 || index >= list.size() ? null : list.get((int) index);
+        });
+        table.add("lrange", 4, (s, db, args) -> {
+            final LinkedList<byte[]> list = db.list(args.str(1), false);
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            final int[] range = normalize(args.longAt(2), args.longAt(3), list.size());
+            if (range == null) {
+                return Collections.emptyList();
+            }
+            final List<Object> values = new ArrayList<>(range[1] - range[0] + 1);
+            final ListIterator<byte[]> it = list.listIterator(range[0]);
+            for (int i = range[0]; i <= range[1]; i++) {
+                values.add(it.next());
+            }
+            return values;
+        });
+        table.add("lrem", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final LinkedList<byte[]> list = db.list(key, false);
+            if (list == null) {
+                return 0L;
+            }
+            final long count = args.longAt(2);
+            final byte[] value = args.bytes(3);
+            final Iterator<byte[]> it = count < 0 ? list.descendingIterator() : list.iterator();
+            long removed = 0;
+            while (it.hasNext() && (count == 0 || removed < Math.abs(count))) {
+                if (Arrays.equals(it.next(), value)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                db.touchContainer(key, list);
+            }
+            return removed;
+        });
+        table.add("lset", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final LinkedList<byte[]> list = db.list(key, false);
+            if (list == null) {
+                throw CommandError.NO_SUCH_KEY;
+            }
+            long index = args.longAt(2);
+            if (index < 0) {
+                index += list.size();
+            }
+            if (index < 0 || index >= list.size()) {
+                throw CommandError.INDEX_OUT_OF_RANGE;
+            }
+            list.set((int) index, args.bytes(3));
+            db.touch(key);
+            return Reply.OK;
+        });
+        table.add("ltrim", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final LinkedList<byte[]> list = db.list(key, false);
+            if (list == null) {
+                return Reply.OK;
+            }
+            final int[] range = normalize(args.longAt(2), args.longAt(3), list.size());
+            if (range == null) {
+                list.clear();
+            } else {
+                final int tail = list.size() - 1 - range[1];
+                for (int i = 0; i < range[0]; i++) {
+                    list.removeFirst();
+                }
+                for (int i = 0; i < tail; i++) {
+                    list.removeLast();
+                }
+            }
+            db.touchContainer(key, list);
+            return Reply.OK;
+        });
+        table.add("linsert", 5, (s, db, args) -> {
+            final String key = args.str(1);
+            final boolean before;
+            if (args.is(2, "before")) {
+                before = true;
+            } else if (args.is(2, "after")) {
+                before = false;
+            } else {
+                throw CommandError.SYNTAX;
+            }
+            final LinkedList<byte[]> list = db.list(key, false);
+            if (list == null) {
+                return 0L;
+            }
+            final ListIterator<byte[]> it = list.listIterator();
+            while (it.hasNext()) {
+                if (Arrays.equals(it.next(), args.bytes(3))) {
+                    if (before) {
+                        it.previous();
+                    }
+                    it.add(args.bytes(4));
+                    db.touch(key);
+                    return (long) list.size();
+                }
+            }
+            return -1L;
+        });
+        table.add("rpoplpush", 3, (s, db, args) -> rpoplpush(db, args.str(1), args.str(2)));
+        table.add("blpop", -3, (s, db, args) -> blockingPop(s, db, args, true));
+        table.add("brpop", -3, (s, db, args) -> blockingPop(s, db, args, false));
+        table.add("brpoplpush", 4, (s, db, args) -> {
+            final String source = args.str(1);
+            final String destination = args.str(2);
+            final long timeout = timeoutMillis(args, 3);
+            final Object value = rpoplpush(db, source, destination);
+            if (value != null || s.nonBlocking) {
+                return value;
+            }
+            return new Reply.Block(Collections.singletonList(source), timeout,
+                    () -> rpoplpush(db, source, destination), null);
+        });
+    }
+
+    /**
+     * 把redis风格的闭区间下标（负数从末尾算）归一化.
+     *
+     * @return {from, to}，区间为空时返回null
+     */
+    static int[] normalize(long start, long stop, final int size) {
+        if (start < 0) {
+            start += size;
+        }
+        if (stop < 0) {
+            stop += size;
+        }
+        if (start < 0) {
+            start = 0;
+        }
+        if (stop >= size) {
+            stop = size - 1;
+        }
+        if (start > stop || start >= size) {
+            return null;
+        }
+        return new int[]{(int) start, (int) stop};
+    }
+
+    private static long push(final Keyspace db, final Args args, final boolean left, final boolean onlyExisting) {
+        final String key = args.str(1);
+        final LinkedList<byte[]> list = db.list(key, !onlyExisting);
+        if (list == null) {
+            return 0L;
+        }
+        for (int i = 2; i < args.size(); i++) {
+            if (left) {
+                list.addFirst(args.bytes(i));
+            } else {
+                list.addLast(args.bytes(i));
+            }
+        }
+        db.touchContainer(key, list);
+        return list.size();
+    }
+
+    private static byte[] pop(final Keyspace db, final String key, final boolean left) {
+        final LinkedList<byte[]> list = db.list(key, false);
+        if (list == null) {
+            return null;
+        }
+        final byte[] value = left ? list.removeFirst() : list.removeLast();
+        db.touchContainer(key, list);
+        return value;
+    }
+
+    private static byte[] rpoplpush(final Keyspace db, final String source, final String destination) {
+        final LinkedList<byte[]> from = db.list(source, false);
+        if (from == null) {
+            return null;
+        }
+        // 先检查目标类型，避免弹出后才发现无法写入
+        db.list(destination, false);
+        final byte[] value = from.removeLast();
+        db.touchContainer(source, from);
+        final LinkedList<byte[]> to = db.list(destination, true);
+        to.addFirst(value);
+        db.touchContainer(destination, to);
+        return value;
+    }
+
+    private static Object blockingPop(final Session session, final Keyspace db, final Args args, final boolean left) {
+        final List<String> keys = args.strs(1, args.size() - 1);
+        final long timeout = timeoutMillis(args, args.size() - 1);
+        final Object popped = popFirst(db, keys, left);
+        if (popped != null || session.nonBlocking) {
+            return popped == null ? Reply.NULL_ARRAY : popped;
+        }
+        return new Reply.Block(keys, timeout, () -> popFirst(db, keys, left), Reply.NULL_ARRAY);
+    }
+
+    private static Object popFirst(final Keyspace db, final List<String> keys, final boolean left) {
+        for (String key : keys) {
+            final byte[] value = pop(db, key, left);
+            if (value != null) {
+                return Arrays.asList(key, value);
+            }
+        }
+        return null;
+    }
+
+    private static long timeoutMillis(final Args args, final int index) {
+        final double seconds = args.doubleAt(index);
+        if (seconds < 0) {
+            throw CommandError.err("timeout is negative");
+        }
+        return (long) (seconds * TimeUnit.SECONDS.toMillis(1));
+    }
+}
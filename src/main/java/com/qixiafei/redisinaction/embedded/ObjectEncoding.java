@@ -0,0 +1,234 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <P>Description: 模拟redis 5的OBJECT ENCODING和MEMORY USAGE. 编码按当前内容和配置的阈值判断，
+ * 不模拟redis中hash、zset转为hashtable、skiplist后不再转回的行为；内存按64位redis的数据结构大小估算，
+ * 不含jemalloc的对齐，只用于比较不同存储方式的相对大小. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/26 15:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class ObjectEncoding {
+
+    /**
+     * redisObject大小.
+     */
+    private static final long ROBJ = 16;
+
+    /**
+     * dictEntry大小.
+     */
+    private static final long DICT_ENTRY = 24;
+
+    /**
+     * dict结构和两个哈希表头.
+     */
+    private static final long DICT = 96;
+
+    /**
+     * sdshdr8头部和结尾的\0.
+     */
+    private static final long SDS_OVERHEAD = 4;
+
+    /**
+     * ziplist头部和结尾标记.
+     */
+    private static final long ZIPLIST_OVERHEAD = 11;
+
+    /**
+     * ziplist中短元素的prevlen和encoding.
+     */
+    private static final long ZIPLIST_ENTRY_OVERHEAD = 2;
+
+    private static final long SKIPLIST_NODE = 48;
+
+    private static final long QUICKLIST = 40;
+
+    private static final long QUICKLIST_NODE = 32;
+
+    private static final int QUICKLIST_FILL = 128;
+
+    private ObjectEncoding() {
+    }
+
+    static String encoding(final Object value, final Map<String, String> config) {
+        if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            if (isInteger(bytes)) {
+                return "int";
+            }
+            return bytes.length <= 44 ? "embstr" : "raw";
+        }
+        if (value instanceof Map) {
+            return compactHash(cast(value), config) ? "ziplist" : "hashtable";
+        }
+        if (value instanceof List) {
+            return "quicklist";
+        }
+        if (value instanceof Set) {
+            return intset(cast(value), config) ? "intset" : "hashtable";
+        }
+        if (value instanceof Stream) {
+            return "stream";
+        }
+        return compactZSet((ZSet) value, config) ? "ziplist" : "skiplist";
+    }
+
+    /**
+     * 估算key占用的字节数，包含key本身.
+     */
+    static long usage(final String key, final Object value, final Map<String, String> config) {
+        final long base = DICT_ENTRY + ROBJ + sds(key.getBytes(StandardCharsets.UTF_8).length);
+        if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            return base + (isInteger(bytes) ? 0 : bytes.length + SDS_OVERHEAD);
+        }
+        if (value instanceof Map) {
+            final Map<String, byte[]> hash = cast(value);
+            long size = 0;
+            if (compactHash(hash, config)) {
+                size = ZIPLIST_OVERHEAD;
+                for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+                    size += length(entry.getKey()) + entry.getValue().length + 2 * ZIPLIST_ENTRY_OVERHEAD;
+                }
+                return base + size;
+            }
+            size = dict(hash.size());
+            for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+                size += DICT_ENTRY + sds(length(entry.getKey())) + sds(entry.getValue().length);
+            }
+            return base + size;
+        }
+        if (value instanceof List) {
+            final List<byte[]> list = cast(value);
+            long size = QUICKLIST + (list.size() + QUICKLIST_FILL - 1) / QUICKLIST_FILL
+                    * (QUICKLIST_NODE + ZIPLIST_OVERHEAD);
+            for (byte[] element : list) {
+                size += element.length + ZIPLIST_ENTRY_OVERHEAD;
+            }
+            return base + size;
+        }
+        if (value instanceof Set) {
+            final Set<String> set = cast(value);
+            if (intset(set, config)) {
+                return base + 8 + 8L * set.size();
+            }
+            long size = dict(set.size());
+            for (String member : set) {
+                size += DICT_ENTRY + sds(length(member));
+            }
+            return base + size;
+        }
+        if (value instanceof Stream) {
+            return base + 64L * ((Stream) value).size();
+        }
+        final ZSet zset = (ZSet) value;
+        long size;
+        if (compactZSet(zset, config)) {
+            size = ZIPLIST_OVERHEAD;
+            for (String member : zset.scores().keySet()) {
+                // member和score各一个元素
+                size += length(member) + 8 + 2 * ZIPLIST_ENTRY_OVERHEAD;
+            }
+            return base + size;
+        }
+        size = dict(zset.size());
+        for (String member : zset.scores().keySet()) {
+            size += DICT_ENTRY + SKIPLIST_NODE + sds(length(member));
+        }
+        return base + size;
+    }
+
+    private static boolean compactHash(final Map<String, byte[]> hash, final Map<String, String> config) {
+        if (hash.size() > intConfig(config, "hash-max-ziplist-entries")) {
+            return false;
+        }
+        final int maxValue = intConfig(config, "hash-max-ziplist-value");
+        for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+            if (length(entry.getKey()) > maxValue || entry.getValue().length > maxValue) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean compactZSet(final ZSet zset, final Map<String, String> config) {
+        if (zset.size() > intConfig(config, "zset-max-ziplist-entries")) {
+            return false;
+        }
+        final int maxValue = intConfig(config, "zset-max-ziplist-value");
+        return allShorter(zset.scores().keySet(), maxValue);
+    }
+
+    private static boolean intset(final Set<String> set, final Map<String, String> config) {
+        if (set.size() > intConfig(config, "set-max-intset-entries")) {
+            return false;
+        }
+        for (String member : set) {
+            if (!isInteger(member.getBytes(StandardCharsets.UTF_8))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allShorter(final Collection<String> values, final int maxLength) {
+        for (String value : values) {
+            if (length(value) > maxLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 哈希表头加上按2的幂扩容的桶数组.
+     */
+    private static long dict(final int size) {
+        long buckets = 4;
+        while (buckets < size) {
+            buckets <<= 1;
+        }
+        return DICT + 8 * buckets;
+    }
+
+    private static long sds(final int length) {
+        return length + SDS_OVERHEAD;
+    }
+
+    private static int length(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static boolean isInteger(final byte[] bytes) {
+        if (bytes.length == 0 || bytes.length > 20) {
+            return false;
+        }
+        try {
+            final String text = new String(bytes, StandardCharsets.US_ASCII);
+            return Long.toString(Long.parseLong(text)).equals(text);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int intConfig(final Map<String, String> config, final String name) {
+        return Integer.parseInt(config.get(name));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(final Object value) {
+        return (T) value;
+    }
+}
@@ -0,0 +1,25 @@
+package com.qixiafei.redisinaction.embedded;
+
+/**
+ * <P>Description: 一个命令的实现，在事件循环线程上执行，返回值按{@link Reply}的规则编码. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 15:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+interface RedisCommand {
+
+    /**
+     * 执行命令.
+     *
+     * @param session 发起命令的连接
+     * @param db      数据
+     * @param args    参数，下标0是命令名，参数个数已经校验过
+     * @return 回复
+     */
+    Object execute(Session session, Keyspace db, Args args);
+}
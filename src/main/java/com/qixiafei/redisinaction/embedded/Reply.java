@@ -0,0 +1,197 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <P>Description: 回复的编码. 命令直接返回java对象，按类型编码为RESP：
+ * null为空bulk，byte[]和String为bulk（String按ISO-8859-1还原为原始字节），Long、Integer、Boolean为整数，
+ * Double为bulk形式的浮点数，Collection为数组，{@link Status}为状态回复，{@link CommandError}为错误回复. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 14:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Reply {
+
+    static final Status OK = new Status("OK");
+
+    static final Status QUEUED = new Status("QUEUED");
+
+    static final Status PONG = new Status("PONG");
+
+    /**
+     * 空数组回复（*-1），如BLPOP超时、EXEC被放弃.
+     */
+    static final Object NULL_ARRAY = new Object();
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private Reply() {
+    }
+
+    /**
+     * 状态回复.
+     */
+    static final class Status {
+
+        private final String text;
+
+        Status(final String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * 依次写出多个回复，而不是一个数组，如SUBSCRIBE多个频道.
+     */
+    static final class Multi {
+
+        final Collection<?> replies;
+
+        Multi(final Collection<?> replies) {
+            this.replies = replies;
+        }
+    }
+
+    /**
+     * 阻塞命令暂时没有数据时返回，连接挂起直到keys中任一被修改后retry返回非null，或者超时后回复timeoutReply.
+     */
+    static final class Block {
+
+        final List<String> keys;
+
+        /**
+         * 超时毫秒数，0代表一直等待.
+         */
+        final long timeoutMillis;
+
+        final Supplier<Object> retry;
+
+        final Object timeoutReply;
+
+        Block(final List<String> keys, final long timeoutMillis, final Supplier<Object> retry,
+              final Object timeoutReply) {
+            this.keys = keys;
+            this.timeoutMillis = timeoutMillis;
+            this.retry = retry;
+            this.timeoutReply = timeoutReply;
+        }
+    }
+
+    /**
+     * 把浮点数格式化为redis的形式：整数不带小数点，无穷为inf和-inf.
+     */
+    static String formatDouble(final double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e17) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * 可增长的输出缓冲区.
+     */
+    static final class Buffer {
+
+        byte[] buf = new byte[256];
+
+        int size = 0;
+
+        void write(final Object reply) {
+            if (reply == null) {
+                raw("$-1\r\n");
+            } else if (reply == NULL_ARRAY) {
+                raw("*-1\r\n");
+            } else if (reply instanceof byte[]) {
+                bulk((byte[]) reply);
+            } else if (reply instanceof String) {
+                bulk(((String) reply).getBytes(StandardCharsets.ISO_8859_1));
+            } else if (reply instanceof Long || reply instanceof Integer) {
+                line(':', reply.toString());
+            } else if (reply instanceof Boolean) {
+                line(':', (Boolean) reply ? "1" : "0");
+            } else if (reply instanceof Double) {
+                bulk(formatDouble((Double) reply).getBytes(StandardCharsets.ISO_8859_1));
+            } else if (reply instanceof Status) {
+                line('+', reply.toString());
+            } else if (reply instanceof CommandError) {
+                line('-', ((CommandError) reply).getMessage().replace('\r', ' ').replace('\n', ' '));
+            } else if (reply instanceof Collection) {
+                final Collection<?> items = (Collection<?>) reply;
+                line('*', Integer.toString(items.size()));
+                for (Object item : items) {
+                    write(item);
+                }
+            } else if (reply instanceof Multi) {
+                for (Object item : ((Multi) reply).replies) {
+                    write(item);
+                }
+            } else {
+                throw new IllegalArgumentException("不支持的回复类型" + reply.getClass());
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * 丢弃已经写出的前n个字节.
+         */
+        void consume(final int n) {
+            System.arraycopy(buf, n, buf, 0, size - n);
+            size -= n;
+        }
+
+        private void bulk(final byte[] value) {
+            line('$', Integer.toString(value.length));
+            append(value, value.length);
+            append(CRLF, 2);
+        }
+
+        private void line(final char type, final String text) {
+            ensure(text.length() + 3);
+            buf[size++] = (byte) type;
+            for (int i = 0; i < text.length(); i++) {
+                buf[size++] = (byte) text.charAt(i);
+            }
+            buf[size++] = '\r';
+            buf[size++] = '\n';
+        }
+
+        private void raw(final String text) {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buf[size++] = (byte) text.charAt(i);
+            }
+        }
+
+        private void append(final byte[] bytes, final int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, buf, size, length);
+            size += length;
+        }
+
+        private void ensure(final int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+}
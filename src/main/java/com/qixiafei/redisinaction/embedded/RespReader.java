@@ -0,0 +1,167 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <P>Description: 增量解析客户端发来的命令，支持RESP数组和内联命令（telnet、redis-cli的inline形式）.
+ * 数据不完整时返回null，等待更多数据到达后继续解析，管道里的多条命令依次取出. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 14:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class RespReader {
+
+    /**
+     * 单个参数的最大长度，与redis的proto-max-bulk-len默认值一致.
+     */
+    private static final int MAX_BULK = 512 * 1024 * 1024;
+
+    private byte[] buf = new byte[1024];
+
+    private int start = 0;
+
+    private int end = 0;
+
+    /**
+     * 追加从连接读到的数据.
+     */
+    void feed(final ByteBuffer data) {
+        final int length = data.remaining();
+        if (end + length > buf.length) {
+            final int pending = end - start;
+            if (pending + length > buf.length) {
+                buf = Arrays.copyOfRange(buf, start, start + Math.max(buf.length * 2, pending + length));
+            } else {
+                System.arraycopy(buf, start, buf, 0, pending);
+            }
+            start = 0;
+            end = pending;
+        }
+        data.get(buf, end, length);
+        end += length;
+    }
+
+    /**
+     * 取出下一条完整的命令.
+     *
+     * @return 命令及参数，数据不完整时返回null
+     * @throws CommandError 协议错误，连接应当关闭
+     */
+    byte[][] next() {
+        while (start < end && (buf[start] == '\r' || buf[start] == '\n')) {
+            start++;
+        }
+        if (start == end) {
+            return null;
+        }
+        return buf[start] == '*' ? nextMultiBulk() : nextInline();
+    }
+
+    private byte[][] nextMultiBulk() {
+        int pos = start + 1;
+        final int lineEnd = findCrlf(pos);
+        if (lineEnd < 0) {
+            return null;
+        }
+        final int count = (int) parseLong(pos, lineEnd);
+        pos = lineEnd + 2;
+        if (count <= 0) {
+            start = pos;
+            return next();
+        }
+        final byte[][] args = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            if (pos >= end) {
+                return null;
+            }
+            if (buf[pos] != '$') {
+                throw CommandError.err("Protocol error: expected '$', got '" + (char) buf[pos] + "'");
+            }
+            final int lenEnd = findCrlf(pos + 1);
+            if (lenEnd < 0) {
+                return null;
+            }
+            final long length = parseLong(pos + 1, lenEnd);
+            if (length < 0 || length > MAX_BULK) {
+                throw CommandError.err("Protocol error: invalid bulk length");
+            }
+            pos = lenEnd + 2;
+            if (end - pos < length + 2) {
+                return null;
+            }
+            args[i] = Arrays.copyOfRange(buf, pos, pos + (int) length);
+            pos += (int) length + 2;
+        }
+        start = pos;
+        return args;
+    }
+
+    private byte[][] nextInline() {
+        final int lineEnd = findLf(start);
+        if (lineEnd < 0) {
+            return null;
+        }
+        final List<byte[]> args = new ArrayList<>();
+        int i = start;
+        final int stop = lineEnd > start && buf[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        while (i < stop) {
+            while (i < stop && buf[i] == ' ') {
+                i++;
+            }
+            final int from = i;
+            while (i < stop && buf[i] != ' ') {
+                i++;
+            }
+            if (i > from) {
+                args.add(Arrays.copyOfRange(buf, from, i));
+            }
+        }
+        start = lineEnd + 1;
+        return args.isEmpty() ? next() : args.toArray(new byte[0][]);
+    }
+
+    private int findCrlf(final int from) {
+        for (int i = from; i < end - 1; i++) {
+            if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int findLf(final int from) {
+        for (int i = from; i < end; i++) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long parseLong(final int from, final int to) {
+        if (from == to) {
+            throw CommandError.err("Protocol error: invalid length");
+        }
+        long value = 0;
+        boolean negative = false;
+        for (int i = from; i < to; i++) {
+            final byte b = buf[i];
+            if (i == from && b == '-') {
+                negative = true;
+            } else if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            } else {
+                throw CommandError.err("Protocol error: invalid length");
+            }
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,96 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * <P>Description: SCAN系列命令的游标实现. 游标是元素hashCode（无符号）的下界，每次返回hash不小于游标的最小的一批元素，
+ * hash相同的元素一次全部返回，所以遍历期间一直存在的元素恰好返回一次，与redis的保证一致. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 15:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Scan {
+
+    private static final int DEFAULT_COUNT = 10;
+
+    private Scan() {
+    }
+
+    /**
+     * @param items     全部元素
+     * @param args      命令参数
+     * @param cursorAt  游标参数的下标，之后是MATCH、COUNT等选项
+     * @param type      TYPE选项的过滤器，参数为元素和类型名，只有SCAN支持，其余传null
+     * @param expand    把一个元素展开成回复中的若干项，如HSCAN的field和value
+     * @return [下一个游标, 元素列表]
+     */
+    static List<Object> scan(final Collection<String> items, final Args args, final int cursorAt,
+                             final TypeFilter type, final Function<String, List<Object>> expand) {
+        final long cursor = args.longAt(cursorAt);
+        String pattern = null;
+        String typeName = null;
+        int count = DEFAULT_COUNT;
+        for (int i = cursorAt + 1; i < args.size(); i += 2) {
+            if (i + 1 >= args.size()) {
+                throw CommandError.SYNTAX;
+            }
+            if (args.is(i, "match")) {
+                pattern = args.str(i + 1);
+            } else if (args.is(i, "count")) {
+                count = args.intAt(i + 1);
+                if (count < 1) {
+                    throw CommandError.SYNTAX;
+                }
+            } else if (args.is(i, "type") && type != null) {
+                typeName = args.str(i + 1);
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        // 大顶堆保留hash最小的count个
+        final PriorityQueue<String> smallest = new PriorityQueue<>(
+                (a, b) -> Long.compare(hash(b), hash(a)));
+        for (String item : items) {
+            if (hash(item) >= cursor) {
+                smallest.add(item);
+                if (smallest.size() > count) {
+                    smallest.poll();
+                }
+            }
+        }
+        if (smallest.isEmpty()) {
+            return Arrays.asList("0", new ArrayList<>());
+        }
+        final long boundary = hash(smallest.peek());
+        final List<Object> page = new ArrayList<>();
+        boolean more = false;
+        for (String item : items) {
+            final long hash = hash(item);
+            if (hash > boundary) {
+                more = true;
+            } else if (hash >= cursor && (pattern == null || Glob.matches(pattern, item))
+                    && (typeName == null || type.matches(item, typeName))) {
+                page.addAll(expand.apply(item));
+            }
+        }
+        return Arrays.asList(more ? Long.toString(boundary + 1) : "0", page);
+    }
+
+    private static long hash(final String item) {
+        return item.hashCode() & 0xffffffffL;
+    }
+
+    interface TypeFilter {
+        boolean matches(String item, String type);
+    }
+}
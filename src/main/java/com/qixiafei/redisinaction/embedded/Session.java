@@ -0,0 +1,89 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <P>Description: 一个客户端连接的状态：读写缓冲、事务、订阅和阻塞命令. 只在事件循环线程访问. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 15:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Session {
+
+    final SocketChannel channel;
+
+    SelectionKey selectionKey;
+
+    final RespReader reader = new RespReader();
+
+    final Reply.Buffer out = new Reply.Buffer();
+
+    String name;
+
+    /**
+     * MULTI之后排队的命令，为null代表不在事务中.
+     */
+    List<Args> queued;
+
+    /**
+     * 排队时有命令出错，EXEC直接放弃.
+     */
+    boolean queueError;
+
+    /**
+     * WATCH的key被修改过.
+     */
+    boolean dirty;
+
+    final Set<String> watched = new HashSet<>();
+
+    final Set<String> channels = new LinkedHashSet<>();
+
+    final Set<String> patterns = new LinkedHashSet<>();
+
+    /**
+     * 正在等待的阻塞命令.
+     */
+    Reply.Block blocked;
+
+    /**
+     * 阻塞命令的超时时间戳（纳秒），0代表一直等待.
+     */
+    long blockedDeadline;
+
+    /**
+     * EXEC和脚本中阻塞命令不阻塞，没有数据时直接返回超时结果.
+     */
+    boolean nonBlocking;
+
+    boolean closeAfterWrite;
+
+    Session(final SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    void beginMulti() {
+        queued = new ArrayList<>();
+        queueError = false;
+    }
+
+    void endMulti() {
+        queued = null;
+        queueError = false;
+    }
+
+    int subscriptions() {
+        return channels.size() + patterns.size();
+    }
+}
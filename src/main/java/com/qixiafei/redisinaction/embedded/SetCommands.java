@@ -0,0 +1,198 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <P>Description: set命令. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 18:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class SetCommands {
+
+    private SetCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        table.add("sadd", -3, (s, db, args) -> {
+            final String key = args.str(1);
+            final Set<String> set = db.set(key, true);
+            long added = 0;
+            for (String member : args.strs(2)) {
+                if (set.add(member)) {
+                    added++;
+                }
+            }
+            db.touchContainer(key, set);
+            return added;
+        });
+        table.add("srem", -3, (s, db, args) -> {
+            final String key = args.str(1);
+            final Set<String> set = db.set(key, false);
+            if (set == null) {
+                return 0L;
+            }
+            long removed = 0;
+            for (String member : args.strs(2)) {
+                if (set.remove(member)) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                db.touchContainer(key, set);
+            }
+            return removed;
+        });
+        table.add("smembers", 2, (s, db, args) -> members(db, args.str(1)));
+        table.add("sismember", 3, (s, db, args) -> {
+            final Set<String> set = db.set(args.str(1), false);
+            return set != null && set.contains(args.str(2));
+        });
+        table.add("scard", 2, (s, db, args) -> {
+            final Set<String> set = db.set(args.str(1), false);
+            return set == null ? 0L : (long) set.size();
+        });
+        table.add("spop", -2, (s, db, args) -> {
+            final String key = args.str(1);
+            final Set<String> set = db.set(key, false);
+            final boolean single = args.size() == 2;
+            final long count = single ? 1 : args.longAt(2);
+            if (count < 0) {
+                throw CommandError.err("value is out of range, must be positive");
+            }
+            if (set == null) {
+                return single ? null : Collections.emptyList();
+            }
+            final List<Object> popped = new ArrayList<>();
+            for (Object member : random(set, (int) Math.min(count, set.size()), false)) {
+                set.remove(member);
+                popped.add(member);
+            }
+            db.touchContainer(key, set);
+            return single ? popped.get(0) : popped;
+        });
+        table.add("srandmember", -2, (s, db, args) -> {
+            final Set<String> set = db.set(args.str(1), false);
+            if (args.size() == 2) {
+                return set == null ? null : random(set, 1, false).get(0);
+            }
+            final long count = args.longAt(2);
+            if (set == null) {
+                return Collections.emptyList();
+            }
+            return count >= 0 ? random(set, (int) Math.min(count, set.size()), false)
+                    : random(set, (int) Math.min(-count, Integer.MAX_VALUE), true);
+        });
+        table.add("smove", 4, (s, db, args) -> {
+            final String source = args.str(1);
+            final String destination = args.str(2);
+            final Set<String> from = db.set(source, false);
+            db.set(destination, false);
+            if (from == null || !from.remove(args.str(3))) {
+                return 0L;
+            }
+            db.touchContainer(source, from);
+            final Set<String> to = db.set(destination, true);
+            to.add(args.str(3));
+            db.touchContainer(destination, to);
+            return 1L;
+        });
+        table.add("sinter", -2, (s, db, args) -> new ArrayList<Object>(inter(db, args.strs(1))));
+        table.add("sunion", -2, (s, db, args) -> new ArrayList<Object>(union(db, args.strs(1))));
+        table.add("sdiff", -2, (s, db, args) -> new ArrayList<Object>(diff(db, args.strs(1))));
+        table.add("sinterstore", -3, (s, db, args) -> store(db, args.str(1), inter(db, args.strs(2))));
+        table.add("sunionstore", -3, (s, db, args) -> store(db, args.str(1), union(db, args.strs(2))));
+        table.add("sdiffstore", -3, (s, db, args) -> store(db, args.str(1), diff(db, args.strs(2))));
+        table.add("sscan", -3, (s, db, args) -> {
+            final Set<String> set = db.set(args.str(1), false);
+            if (set == null) {
+                return Arrays.asList("0", Collections.emptyList());
+            }
+            return Scan.scan(set, args, 2, null, Collections::singletonList);
+        });
+    }
+
+    private static List<Object> members(final Keyspace db, final String key) {
+        final Set<String> set = db.set(key, false);
+        return set == null ? Collections.emptyList() : new ArrayList<>(set);
+    }
+
+    /**
+     * 随机取count个member，repeat为true时可以重复.
+     */
+    private static List<Object> random(final Set<String> set, final int count, final boolean repeat) {
+        final List<String> members = new ArrayList<>(set);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<Object> picked = new ArrayList<>(count);
+        if (repeat) {
+            for (int i = 0; i < count && !members.isEmpty(); i++) {
+                picked.add(members.get(random.nextInt(members.size())));
+            }
+            return picked;
+        }
+        Collections.shuffle(members, random);
+        picked.addAll(members.subList(0, count));
+        return picked;
+    }
+
+    private static Set<String> inter(final Keyspace db, final List<String> keys) {
+        Set<String> result = null;
+        for (String key : keys) {
+            final Set<String> set = db.set(key, false);
+            if (set == null) {
+                return new HashSet<>();
+            }
+            if (result == null) {
+                result = new HashSet<>(set);
+            } else {
+                result.retainAll(set);
+            }
+        }
+        return result == null ? new HashSet<>() : result;
+    }
+
+    private static Set<String> union(final Keyspace db, final List<String> keys) {
+        final Set<String> result = new HashSet<>();
+        for (String key : keys) {
+            final Set<String> set = db.set(key, false);
+            if (set != null) {
+                result.addAll(set);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> diff(final Keyspace db, final List<String> keys) {
+        final Iterator<String> it = keys.iterator();
+        final Set<String> first = db.set(it.next(), false);
+        final Set<String> result = first == null ? new HashSet<>() : new HashSet<>(first);
+        while (it.hasNext()) {
+            final Set<String> set = db.set(it.next(), false);
+            if (set != null) {
+                result.removeAll(set);
+            }
+        }
+        return result;
+    }
+
+    private static long store(final Keyspace db, final String destination, final Set<String> result) {
+        if (result.isEmpty()) {
+            db.remove(destination);
+        } else {
+            db.put(destination, result);
+        }
+        return result.size();
+    }
+}
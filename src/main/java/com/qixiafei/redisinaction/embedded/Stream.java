@@ -0,0 +1,161 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <P>Description: stream，消息按id排序存放在红黑树里，对应redis的radix tree；每个消费组记录最后投递的id、待确认列表和消费者. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 16:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class Stream {
+
+    final TreeMap<Id, byte[][]> entries = new TreeMap<>();
+
+    final Map<String, Group> groups = new LinkedHashMap<>();
+
+    /**
+     * 曾经添加过的最大id，消息被删除后也不回退.
+     */
+    Id lastId = Id.MIN;
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * XADD *生成的id：毫秒时间戳，同一毫秒内序号递增，时钟回拨时沿用最后的时间戳.
+     */
+    Id nextId(final long now) {
+        return now > lastId.ms ? new Id(now, 0) : new Id(lastId.ms, lastId.seq + 1);
+    }
+
+    void add(final Id id, final byte[][] fields) {
+        entries.put(id, fields);
+        lastId = id;
+    }
+
+    /**
+     * 删除最旧的消息直到长度不超过maxLen.
+     *
+     * @return 删除的条数
+     */
+    long trim(final long maxLen) {
+        long removed = 0;
+        while (entries.size() > maxLen) {
+            entries.pollFirstEntry();
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * 消息id，毫秒时间戳加序号. redis按无符号比较，测试场景中不会出现超过Long.MAX_VALUE的id，这里按有符号比较.
+     */
+    static final class Id implements Comparable<Id> {
+
+        static final Id MIN = new Id(0, 0);
+
+        static final Id MAX = new Id(Long.MAX_VALUE, Long.MAX_VALUE);
+
+        final long ms;
+
+        final long seq;
+
+        Id(final long ms, final long seq) {
+            this.ms = ms;
+            this.seq = seq;
+        }
+
+        /**
+         * 解析ms-seq或只有ms的id，"-"和"+"分别代表最小和最大.
+         *
+         * @param defaultSeq 省略序号时使用的序号
+         */
+        static Id parse(final String text, final long defaultSeq) {
+            if ("-".equals(text)) {
+                return MIN;
+            }
+            if ("+".equals(text)) {
+                return MAX;
+            }
+            final int dash = text.indexOf('-');
+            try {
+                if (dash < 0) {
+                    return new Id(Long.parseLong(text), defaultSeq);
+                }
+                return new Id(Long.parseLong(text.substring(0, dash)), Long.parseLong(text.substring(dash + 1)));
+            } catch (NumberFormatException e) {
+                throw CommandError.err("Invalid stream ID specified as stream command argument");
+            }
+        }
+
+        @Override
+        public int compareTo(final Id o) {
+            final int byMs = Long.compare(ms, o.ms);
+            return byMs != 0 ? byMs : Long.compare(seq, o.seq);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Id && ((Id) o).ms == ms && ((Id) o).seq == seq;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ms) * 31 + Long.hashCode(seq);
+        }
+
+        @Override
+        public String toString() {
+            return ms + "-" + seq;
+        }
+    }
+
+    /**
+     * 消费组.
+     */
+    static final class Group {
+
+        Id lastDelivered;
+
+        /**
+         * 待确认列表.
+         */
+        final TreeMap<Id, Pending> pending = new TreeMap<>();
+
+        /**
+         * 消费者名称到最后活跃时间.
+         */
+        final Map<String, Long> consumers = new LinkedHashMap<>();
+
+        Group(final Id lastDelivered) {
+            this.lastDelivered = lastDelivered;
+        }
+    }
+
+    /**
+     * 待确认列表中的一条.
+     */
+    static final class Pending {
+
+        String consumer;
+
+        long deliveredAt;
+
+        long deliveries;
+
+        Pending(final String consumer, final long deliveredAt) {
+            this.consumer = consumer;
+            this.deliveredAt = deliveredAt;
+            this.deliveries = 1;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Supplier;
+
+/**
+ * <P>Description: stream命令，包括消费组. XREADGROUP读取新消息时没有数据返回{@link Reply.Block}，
+ * 由事件循环在stream被修改后重试. MAXLEN ~按精确裁剪处理. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 16:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class StreamCommands {
+
+    private static final String NEW_ENTRIES = ">";
+
+    private StreamCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        table.add("xadd", -5, StreamCommands::xadd);
+        table.add("xlen", 2, (s, db, args) -> {
+            final Stream stream = db.stream(args.str(1), false);
+            return stream == null ? 0L : (long) stream.size();
+        });
+        table.add("xrange", -4, (s, db, args) -> range(db, args, false));
+        table.add("xrevrange", -4, (s, db, args) -> range(db, args, true));
+        table.add("xdel", -3, (s, db, args) -> {
+            final String key = args.str(1);
+            final Stream stream = db.stream(key, false);
+            if (stream == null) {
+                return 0L;
+            }
+            long removed = 0;
+            for (String id : args.strs(2)) {
+                if (stream.entries.remove(Stream.Id.parse(id, 0)) != null) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                db.touch(key);
+            }
+            return removed;
+        });
+        table.add("xtrim", -4, (s, db, args) -> {
+            final String key = args.str(1);
+            if (!args.is(2, "maxlen")) {
+                throw CommandError.SYNTAX;
+            }
+            final int index = args.is(3, "~") || args.is(3, "=") ? 4 : 3;
+            if (index >= args.size()) {
+                throw CommandError.SYNTAX;
+            }
+            final Stream stream = db.stream(key, false);
+            if (stream == null) {
+                return 0L;
+            }
+            final long removed = stream.trim(args.longAt(index));
+            if (removed > 0) {
+                db.touch(key);
+            }
+            return removed;
+        });
+        table.add("xgroup", -2, StreamCommands::xgroup);
+        table.add("xreadgroup", -7, StreamCommands::xreadgroup);
+        table.add("xack", -4, (s, db, args) -> {
+            final Stream.Group group = group(db, args.str(1), args.str(2), false);
+            if (group == null) {
+                return 0L;
+            }
+            long acked = 0;
+            for (String id : args.strs(3)) {
+                if (group.pending.remove(Stream.Id.parse(id, 0)) != null) {
+                    acked++;
+                }
+            }
+            return acked;
+        });
+        table.add("xpending", -3, StreamCommands::xpending);
+        table.add("xclaim", -6, StreamCommands::xclaim);
+    }
+
+    private static Object xadd(final Session session, final Keyspace db, final Args args) {
+        final String key = args.str(1);
+        int i = 2;
+        long maxLen = -1;
+        if (args.is(i, "maxlen")) {
+            i++;
+            if (args.is(i, "~") || args.is(i, "=")) {
+                i++;
+            }
+            maxLen = args.longAt(i++);
+        }
+        if (i >= args.size() || (args.size() - i - 1) % 2 != 0 || args.size() - i - 1 == 0) {
+            throw CommandError.err("wrong number of arguments for 'xadd' command");
+        }
+        final Stream existing = db.stream(key, false);
+        final Stream.Id last = existing == null ? Stream.Id.MIN : existing.lastId;
+        final String idArg = args.str(i++);
+        final Stream.Id id;
+        if ("*".equals(idArg)) {
+            id = existing == null ? new Stream.Id(System.currentTimeMillis(), 0)
+                    : existing.nextId(System.currentTimeMillis());
+        } else {
+            id = Stream.Id.parse(idArg, 0);
+            if (id.compareTo(last) <= 0) {
+                throw CommandError.err("The ID specified in XADD is equal or smaller than the target stream top item");
+            }
+        }
+        final byte[][] fields = new byte[args.size() - i][];
+        for (int f = 0; f < fields.length; f++) {
+            fields[f] = args.bytes(i + f);
+        }
+        final Stream stream = db.stream(key, true);
+        stream.add(id, fields);
+        if (maxLen >= 0) {
+            stream.trim(maxLen);
+        }
+        db.touch(key);
+        return id.toString();
+    }
+
+    private static Object range(final Keyspace db, final Args args, final boolean reverse) {
+        final Stream stream = db.stream(args.str(1), false);
+        final Stream.Id from = Stream.Id.parse(args.str(reverse ? 3 : 2), 0);
+        final Stream.Id to = Stream.Id.parse(args.str(reverse ? 2 : 3), Long.MAX_VALUE);
+        long count = Long.MAX_VALUE;
+        if (args.size() == 6 && args.is(4, "count")) {
+            count = args.longAt(5);
+        } else if (args.size() != 4) {
+            throw CommandError.SYNTAX;
+        }
+        if (stream == null || from.compareTo(to) > 0) {
+            return Collections.emptyList();
+        }
+        NavigableMap<Stream.Id, byte[][]> range = stream.entries.subMap(from, true, to, true);
+        if (reverse) {
+            range = range.descendingMap();
+        }
+        final List<Object> result = new ArrayList<>();
+        for (Map.Entry<Stream.Id, byte[][]> entry : range.entrySet()) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.add(entry(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    private static Object xgroup(final Session session, final Keyspace db, final Args args) {
+        if (args.is(1, "create") && (args.size() == 5 || args.size() == 6)) {
+            final String key = args.str(2);
+            final boolean mkStream = args.size() == 6 && args.is(5, "mkstream");
+            if (args.size() == 6 && !mkStream) {
+                throw CommandError.SYNTAX;
+            }
+            final Stream stream = db.stream(key, mkStream);
+            if (stream == null) {
+                throw CommandError.err("The XGROUP subcommand requires the key to exist. "
+                        + "Note that for CREATE you may want to use the MKSTREAM option to create an empty stream automatically.");
+            }
+            if (stream.groups.containsKey(args.str(3))) {
+                throw new CommandError("BUSYGROUP Consumer Group name already exists");
+            }
+            stream.groups.put(args.str(3), new Stream.Group(startId(stream, args.str(4))));
+            db.touch(key);
+            return Reply.OK;
+        }
+        if (args.is(1, "destroy") && args.size() == 4) {
+            final Stream stream = db.stream(args.str(2), false);
+            return stream != null && stream.groups.remove(args.str(3)) != null ? 1L : 0L;
+        }
+        if (args.is(1, "setid") && args.size() == 5) {
+            final Stream stream = db.stream(args.str(2), false);
+            final Stream.Group group = group(db, args.str(2), args.str(3), true);
+            group.lastDelivered = startId(stream, args.str(4));
+            return Reply.OK;
+        }
+        if (args.is(1, "delconsumer") && args.size() == 5) {
+            final Stream.Group group = group(db, args.str(2), args.str(3), true);
+            final String consumer = args.str(4);
+            long removed = 0;
+            for (Iterator<Stream.Pending> it = group.pending.values().iterator(); it.hasNext(); ) {
+                if (it.next().consumer.equals(consumer)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            group.consumers.remove(consumer);
+            return removed;
+        }
+        throw CommandError.err("Unknown subcommand or wrong number of arguments for '" + args.str(1) + "'");
+    }
+
+    private static Object xreadgroup(final Session session, final Keyspace db, final Args args) {
+        if (!args.is(1, "group")) {
+            throw CommandError.SYNTAX;
+        }
+        final String groupName = args.str(2);
+        final String consumer = args.str(3);
+        long count = 0;
+        long block = -1;
+        boolean noAck = false;
+        int i = 4;
+        for (; i < args.size() && !args.is(i, "streams"); i++) {
+            if (args.is(i, "count") && i + 1 < args.size()) {
+                count = args.longAt(++i);
+            } else if (args.is(i, "block") && i + 1 < args.size()) {
+                block = args.longAt(++i);
+            } else if (args.is(i, "noack")) {
+                noAck = true;
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        final int streams = args.size() - i - 1;
+        if (streams <= 0 || streams % 2 != 0) {
+            throw CommandError.err("Unbalanced XREADGROUP list of streams: for each stream key an ID or '$' must be specified.");
+        }
+        final List<String> keys = args.strs(i + 1, i + 1 + streams / 2);
+        final List<String> ids = args.strs(i + 1 + streams / 2);
+        for (String key : keys) {
+            if (group(db, key, groupName, false) == null) {
+                throw new CommandError("NOGROUP No such key '" + key + "' or consumer group '" + groupName
+                        + "' in XREADGROUP with GROUP option");
+            }
+        }
+        final long limit = count <= 0 ? Long.MAX_VALUE : count;
+        final boolean readNoAck = noAck;
+        final Supplier<Object> read = () -> {
+            final List<Object> result = new ArrayList<>();
+            for (int k = 0; k < keys.size(); k++) {
+                final String key = keys.get(k);
+                final Stream stream = db.stream(key, false);
+                final Stream.Group group = group(db, key, groupName, false);
+                if (stream == null || group == null) {
+                    throw new CommandError("NOGROUP No such key '" + key + "' or consumer group '" + groupName
+                            + "' in XREADGROUP with GROUP option");
+                }
+                final long now = System.currentTimeMillis();
+                group.consumers.put(consumer, now);
+                final List<Object> entries = NEW_ENTRIES.equals(ids.get(k))
+                        ? deliverNew(stream, group, consumer, limit, readNoAck, now)
+                        : history(stream, group, consumer, Stream.Id.parse(ids.get(k), 0), limit, now);
+                if (!entries.isEmpty() || !NEW_ENTRIES.equals(ids.get(k))) {
+                    result.add(Arrays.asList(key, entries));
+                }
+            }
+            return result.isEmpty() ? null : result;
+        };
+        final Object result = read.get();
+        if (result != null) {
+            return result;
+        }
+        if (block < 0 || session.nonBlocking) {
+            return Reply.NULL_ARRAY;
+        }
+        return new Reply.Block(keys, block, read, Reply.NULL_ARRAY);
+    }
+
+    private static List<Object> deliverNew(final Stream stream, final Stream.Group group, final String consumer,
+                                           final long limit, final boolean noAck, final long now) {
+        final List<Object> entries = new ArrayList<>();
+        for (Map.Entry<Stream.Id, byte[][]> entry : stream.entries.tailMap(group.lastDelivered, false).entrySet()) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            group.lastDelivered = entry.getKey();
+            if (!noAck) {
+                group.pending.put(entry.getKey(), new Stream.Pending(consumer, now));
+            }
+            entries.add(entry(entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+
+    /**
+     * 读取消费者自己未确认的消息，投递次数加1，消息已被删除时字段为nil.
+     */
+    private static List<Object> history(final Stream stream, final Stream.Group group, final String consumer,
+                                        final Stream.Id after, final long limit, final long now) {
+        final List<Object> entries = new ArrayList<>();
+        for (Map.Entry<Stream.Id, Stream.Pending> entry : group.pending.tailMap(after, false).entrySet()) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            final Stream.Pending pending = entry.getValue();
+            if (!pending.consumer.equals(consumer)) {
+                continue;
+            }
+            pending.deliveredAt = now;
+            pending.deliveries++;
+            entries.add(entry(entry.getKey(), stream.entries.get(entry.getKey())));
+        }
+        return entries;
+    }
+
+    private static Object xpending(final Session session, final Keyspace db, final Args args) {
+        final String key = args.str(1);
+        final Stream.Group group = group(db, key, args.str(2), false);
+        if (group == null) {
+            throw new CommandError("NOGROUP No such key '" + key + "' or consumer group '" + args.str(2) + "'");
+        }
+        if (args.size() == 3) {
+            if (group.pending.isEmpty()) {
+                return Arrays.asList(0L, null, null, Reply.NULL_ARRAY);
+            }
+            final Map<String, Long> perConsumer = new LinkedHashMap<>();
+            for (Stream.Pending pending : group.pending.values()) {
+                perConsumer.merge(pending.consumer, 1L, Long::sum);
+            }
+            final List<Object> consumers = new ArrayList<>(perConsumer.size());
+            for (Map.Entry<String, Long> entry : perConsumer.entrySet()) {
+                consumers.add(Arrays.asList(entry.getKey(), entry.getValue().toString()));
+            }
+            return Arrays.asList((long) group.pending.size(), group.pending.firstKey().toString(),
+                    group.pending.lastKey().toString(), consumers);
+        }
+        if (args.size() != 6 && args.size() != 7) {
+            throw CommandError.SYNTAX;
+        }
+        final Stream.Id from = Stream.Id.parse(args.str(3), 0);
+        final Stream.Id to = Stream.Id.parse(args.str(4), Long.MAX_VALUE);
+        final long count = args.longAt(5);
+        final String consumer = args.size() == 7 ? args.str(6) : null;
+        final long now = System.currentTimeMillis();
+        final List<Object> result = new ArrayList<>();
+        if (from.compareTo(to) > 0) {
+            return result;
+        }
+        for (Map.Entry<Stream.Id, Stream.Pending> entry : group.pending.subMap(from, true, to, true).entrySet()) {
+            if (result.size() >= count) {
+                break;
+            }
+            final Stream.Pending pending = entry.getValue();
+            if (consumer == null || consumer.equals(pending.consumer)) {
+                result.add(Arrays.asList(entry.getKey().toString(), pending.consumer,
+                        now - pending.deliveredAt, pending.deliveries));
+            }
+        }
+        return result;
+    }
+
+    private static Object xclaim(final Session session, final Keyspace db, final Args args) {
+        final String key = args.str(1);
+        final Stream stream = db.stream(key, false);
+        final Stream.Group group = group(db, key, args.str(2), false);
+        if (group == null) {
+            throw new CommandError("NOGROUP No such key '" + key + "' or consumer group '" + args.str(2) + "'");
+        }
+        final String consumer = args.str(3);
+        final long minIdle = args.longAt(4);
+        final long now = System.currentTimeMillis();
+        final List<Stream.Id> ids = new ArrayList<>();
+        int i = 5;
+        for (; i < args.size() && Character.isDigit(args.str(i).charAt(0)); i++) {
+            ids.add(Stream.Id.parse(args.str(i), 0));
+        }
+        long deliveredAt = now;
+        Long retryCount = null;
+        boolean force = false;
+        boolean justId = false;
+        for (; i < args.size(); i++) {
+            if (args.is(i, "idle") && i + 1 < args.size()) {
+                deliveredAt = now - args.longAt(++i);
+            } else if (args.is(i, "time") && i + 1 < args.size()) {
+                deliveredAt = args.longAt(++i);
+            } else if (args.is(i, "retrycount") && i + 1 < args.size()) {
+                retryCount = args.longAt(++i);
+            } else if (args.is(i, "force")) {
+                force = true;
+            } else if (args.is(i, "justid")) {
+                justId = true;
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        group.consumers.put(consumer, now);
+        final List<Object> result = new ArrayList<>();
+        for (Stream.Id id : ids) {
+            final byte[][] fields = stream.entries.get(id);
+            Stream.Pending pending = group.pending.get(id);
+            if (pending == null && force && fields != null) {
+                pending = new Stream.Pending(consumer, now);
+                pending.deliveries = 0;
+                group.pending.put(id, pending);
+            }
+            if (pending == null || now - pending.deliveredAt < minIdle) {
+                continue;
+            }
+            if (fields == null) {
+                // 消息已被删除，从待确认列表中移除
+                group.pending.remove(id);
+                continue;
+            }
+            pending.consumer = consumer;
+            pending.deliveredAt = deliveredAt;
+            if (retryCount != null) {
+                pending.deliveries = retryCount;
+            } else if (!justId) {
+                pending.deliveries++;
+            }
+            result.add(justId ? id.toString() : entry(id, fields));
+        }
+        return result;
+    }
+
+    /**
+     * @param required 不存在时是否抛出NOGROUP错误
+     */
+    private static Stream.Group group(final Keyspace db, final String key, final String name,
+                                      final boolean required) {
+        final Stream stream = db.stream(key, false);
+        final Stream.Group group = stream == null ? null : stream.groups.get(name);
+        if (group == null && required) {
+            throw new CommandError("NOGROUP No such key '" + key + "' or consumer group '" + name + "'");
+        }
+        return group;
+    }
+
+    private static Stream.Id startId(final Stream stream, final String id) {
+        return "$".equals(id) ? stream.lastId : Stream.Id.parse(id, 0);
+    }
+
+    private static Object entry(final Stream.Id id, final byte[][] fields) {
+        return Arrays.asList(id.toString(), fields == null ? null : Arrays.asList(fields));
+    }
+}
@@ -0,0 +1,331 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: 字符串命令，value统一以byte[]保存. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 17:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class StringCommands {
+
+    /**
+     * SETRANGE、SETBIT允许的最大长度，与redis一致为512MB.
+     */
+    private static final long MAX_LENGTH = 512L * 1024 * 1024;
+
+    private StringCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        table.add("get", 2, (s, db, args) -> db.string(args.str(1)));
+        table.add("set", -3, StringCommands::set);
+        table.add("setnx", 3, (s, db, args) -> {
+            if (db.exists(args.str(1))) {
+                return 0L;
+            }
+            db.put(args.str(1), args.bytes(2));
+            return 1L;
+        });
+        table.add("setex", 4, (s, db, args) ->
+                setExpire(db, args.str(1), args.bytes(3), TimeUnit.SECONDS.toMillis(args.longAt(2))));
+        table.add("psetex", 4, (s, db, args) -> setExpire(db, args.str(1), args.bytes(3), args.longAt(2)));
+        table.add("getset", 3, (s, db, args) -> {
+            final byte[] old = db.string(args.str(1));
+            db.put(args.str(1), args.bytes(2));
+            return old;
+        });
+        table.add("mget", -2, (s, db, args) -> {
+            final List<Object> values = new ArrayList<>(args.size() - 1);
+            for (String key : args.strs(1)) {
+                final Object value = db.get(key);
+                values.add(value instanceof byte[] ? value : null);
+            }
+            return values;
+        });
+        table.add("mset", -3, (s, db, args) -> {
+            requirePairs(args);
+            for (int i = 1; i < args.size(); i += 2) {
+                db.put(args.str(i), args.bytes(i + 1));
+            }
+            return Reply.OK;
+        });
+        table.add("msetnx", -3, (s, db, args) -> {
+            requirePairs(args);
+            for (int i = 1; i < args.size(); i += 2) {
+                if (db.exists(args.str(i))) {
+                    return 0L;
+                }
+            }
+            for (int i = 1; i < args.size(); i += 2) {
+                db.put(args.str(i), args.bytes(i + 1));
+            }
+            return 1L;
+        });
+        table.add("incr", 2, (s, db, args) -> incrBy(db, args.str(1), 1));
+        table.add("decr", 2, (s, db, args) -> incrBy(db, args.str(1), -1));
+        table.add("incrby", 3, (s, db, args) -> incrBy(db, args.str(1), args.longAt(2)));
+        table.add("decrby", 3, (s, db, args) -> incrBy(db, args.str(1), -args.longAt(2)));
+        table.add("incrbyfloat", 3, (s, db, args) -> {
+            final String key = args.str(1);
+            final byte[] old = db.string(key);
+            final double value = (old == null ? 0 : parseFloat(old)) + args.doubleAt(2);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw CommandError.err("increment would produce NaN or Infinity");
+            }
+            final byte[] result = Reply.formatDouble(value).getBytes(StandardCharsets.ISO_8859_1);
+            keepTtlPut(db, key, result);
+            return result;
+        });
+        table.add("append", 3, (s, db, args) -> {
+            final String key = args.str(1);
+            final byte[] old = db.string(key);
+            final byte[] suffix = args.bytes(2);
+            final byte[] value = old == null ? suffix : concat(old, suffix);
+            keepTtlPut(db, key, value);
+            return (long) value.length;
+        });
+        table.add("strlen", 2, (s, db, args) -> {
+            final byte[] value = db.string(args.str(1));
+            return value == null ? 0L : (long) value.length;
+        });
+        table.add("getrange", 4, (s, db, args) -> {
+            final byte[] value = db.string(args.str(1));
+            if (value == null) {
+                return new byte[0];
+            }
+            final int[] range = ListCommands.normalize(args.longAt(2), args.longAt(3), value.length);
+            return range == null ? new byte[0] : Arrays.copyOfRange(value, range[0], range[1] + 1);
+        });
+        table.add("setrange", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final long offset = args.longAt(2);
+            final byte[] patch = args.bytes(3);
+            if (offset < 0 || offset + patch.length > MAX_LENGTH) {
+                throw CommandError.err("offset is out of range");
+            }
+            byte[] value = db.string(key);
+            if (value == null) {
+                value = new byte[0];
+            }
+            if (patch.length == 0) {
+                return (long) value.length;
+            }
+            if (offset + patch.length > value.length) {
+                value = Arrays.copyOf(value, (int) offset + patch.length);
+            }
+            System.arraycopy(patch, 0, value, (int) offset, patch.length);
+            keepTtlPut(db, key, value);
+            return (long) value.length;
+        });
+        table.add("getbit", 3, (s, db, args) -> {
+            final byte[] value = db.string(args.str(1));
+            final long offset = args.longAt(2);
+            if (offset < 0) {
+                throw CommandError.err("bit offset is not an integer or out of range");
+            }
+            if (value == null || offset / 8 >= value.length) {
+                return 0L;
+            }
+            return (long) ((value[(int) (offset / 8)] >> (7 - (int) (offset % 8))) & 1);
+        });
+        table.add("setbit", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final long offset = args.longAt(2);
+            final long bit = args.longAt(3);
+            if (offset < 0 || offset / 8 >= MAX_LENGTH) {
+                throw CommandError.err("bit offset is not an integer or out of range");
+            }
+            if (bit != 0 && bit != 1) {
+                throw CommandError.err("bit is not an integer or out of range");
+            }
+            byte[] value = db.string(key);
+            final int index = (int) (offset / 8);
+            if (value == null) {
+                value = new byte[index + 1];
+            } else if (index >= value.length) {
+                value = Arrays.copyOf(value, index + 1);
+            }
+            final int mask = 1 << (7 - (int) (offset % 8));
+            final long old = (value[index] & mask) == 0 ? 0 : 1;
+            value[index] = (byte) (bit == 1 ? value[index] | mask : value[index] & ~mask);
+            keepTtlPut(db, key, value);
+            return old;
+        });
+        table.add("bitcount", -2, (s, db, args) -> {
+            final byte[] value = db.string(args.str(1));
+            if (value == null) {
+                return 0L;
+            }
+            int from = 0;
+            int to = value.length - 1;
+            if (args.size() == 4) {
+                final int[] range = ListCommands.normalize(args.longAt(2), args.longAt(3), value.length);
+                if (range == null) {
+                    return 0L;
+                }
+                from = range[0];
+                to = range[1];
+            } else if (args.size() != 2) {
+                throw CommandError.SYNTAX;
+            }
+            long count = 0;
+            for (int i = from; i <= to; i++) {
+                count += Integer.bitCount(value[i] & 0xff);
+            }
+            return count;
+        });
+        table.add("bitop", -4, (s, db, args) -> {
+            final String op = args.str(1).toLowerCase();
+            final List<byte[]> sources = new ArrayList<>();
+            int length = 0;
+            for (String key : args.strs(3)) {
+                final byte[] value = db.string(key);
+                sources.add(value == null ? new byte[0] : value);
+                length = Math.max(length, value == null ? 0 : value.length);
+            }
+            if ("not".equals(op) && sources.size() != 1) {
+                throw CommandError.err("BITOP NOT must be called with a single source key.");
+            }
+            final byte[] result = new byte[length];
+            for (int i = 0; i < length; i++) {
+                int acc = byteAt(sources.get(0), i);
+                for (int j = 1; j < sources.size(); j++) {
+                    final int b = byteAt(sources.get(j), i);
+                    switch (op) {
+                        case "and":
+                            acc &= b;
+                            break;
+                        case "or":
+                            acc |= b;
+                            break;
+                        case "xor":
+                            acc ^= b;
+                            break;
+                        default:
+                            throw CommandError.SYNTAX;
+                    }
+                }
+                result[i] = (byte) ("not".equals(op) ? ~acc : acc);
+            }
+            if (length == 0) {
+                db.remove(args.str(2));
+            } else {
+                db.put(args.str(2), result);
+            }
+            return (long) length;
+        });
+    }
+
+    /**
+     * SET key value [EX seconds|PX milliseconds] [NX|XX] [KEEPTTL] [GET].
+     */
+    private static Object set(final Session session, final Keyspace db, final Args args) {
+        final String key = args.str(1);
+        long ttlMillis = -1;
+        boolean nx = false;
+        boolean xx = false;
+        boolean keepTtl = false;
+        boolean get = false;
+        for (int i = 3; i < args.size(); i++) {
+            if (args.is(i, "ex") && i + 1 < args.size()) {
+                ttlMillis = TimeUnit.SECONDS.toMillis(args.longAt(++i));
+            } else if (args.is(i, "px") && i + 1 < args.size()) {
+                ttlMillis = args.longAt(++i);
+            } else if (args.is(i, "nx")) {
+                nx = true;
+            } else if (args.is(i, "xx")) {
+                xx = true;
+            } else if (args.is(i, "keepttl")) {
+                keepTtl = true;
+            } else if (args.is(i, "get")) {
+                get = true;
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        if ((nx && xx) || (ttlMillis != -1 && keepTtl)) {
+            throw CommandError.SYNTAX;
+        }
+        if (ttlMillis != -1 && ttlMillis <= 0) {
+            throw CommandError.err("invalid expire time in set");
+        }
+        final byte[] old = get ? db.string(key) : null;
+        final boolean exists = db.exists(key);
+        if ((nx && exists) || (xx && !exists)) {
+            return get ? old : null;
+        }
+        if (keepTtl) {
+            keepTtlPut(db, key, args.bytes(2));
+        } else {
+            db.put(key, args.bytes(2));
+        }
+        if (ttlMillis > 0) {
+            db.expireAt(key, System.currentTimeMillis() + ttlMillis);
+        }
+        return get ? old : Reply.OK;
+    }
+
+    private static Object setExpire(final Keyspace db, final String key, final byte[] value, final long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw CommandError.err("invalid expire time in setex");
+        }
+        db.put(key, value);
+        db.expireAt(key, System.currentTimeMillis() + ttlMillis);
+        return Reply.OK;
+    }
+
+    private static long incrBy(final Keyspace db, final String key, final long delta) {
+        final byte[] old = db.string(key);
+        final long current = old == null ? 0 : Args.parseLong(new String(old, StandardCharsets.ISO_8859_1));
+        final long value;
+        try {
+            value = Math.addExact(current, delta);
+        } catch (ArithmeticException e) {
+            throw CommandError.err("increment or decrement would overflow");
+        }
+        keepTtlPut(db, key, Long.toString(value).getBytes(StandardCharsets.ISO_8859_1));
+        return value;
+    }
+
+    /**
+     * 修改字符串的值但保留过期时间，INCR、APPEND等命令的语义.
+     */
+    private static void keepTtlPut(final Keyspace db, final String key, final byte[] value) {
+        final Long expireAt = db.expireAtOf(key);
+        db.put(key, value);
+        if (expireAt != null) {
+            db.expireAt(key, expireAt);
+        }
+    }
+
+    private static double parseFloat(final byte[] value) {
+        return Args.parseDouble(new String(value, StandardCharsets.ISO_8859_1));
+    }
+
+    private static void requirePairs(final Args args) {
+        if (args.size() % 2 == 0) {
+            throw CommandError.err("wrong number of arguments for '" + args.name() + "' command");
+        }
+    }
+
+    private static byte[] concat(final byte[] a, final byte[] b) {
+        final byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static int byteAt(final byte[] value, final int i) {
+        return i < value.length ? value[i] & 0xff : 0;
+    }
+}
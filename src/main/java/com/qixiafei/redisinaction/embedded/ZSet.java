@@ -0,0 +1,147 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * <P>Description: 有序集合，member到score的哈希表加按(score, member)排序的红黑树，与redis的dict加跳表对应.
+ * 排名通过遍历计算，测试场景的集合规模下足够. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 14:50</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class ZSet {
+
+    private final Map<String, Double> scores = new HashMap<>();
+
+    private final TreeSet<Entry> sorted = new TreeSet<>();
+
+    int size() {
+        return scores.size();
+    }
+
+    Double score(final String member) {
+        return scores.get(member);
+    }
+
+    /**
+     * @return 是否为新增的member
+     */
+    boolean put(final String member, final double score) {
+        final Double old = scores.put(member, score);
+        if (old != null) {
+            if (old == score) {
+                return false;
+            }
+            sorted.remove(new Entry(old, member, 0));
+        }
+        sorted.add(new Entry(score, member, 0));
+        return old == null;
+    }
+
+    boolean remove(final String member) {
+        final Double old = scores.remove(member);
+        if (old == null) {
+            return false;
+        }
+        sorted.remove(new Entry(old, member, 0));
+        return true;
+    }
+
+    /**
+     * 从小到大的排名，不存在返回-1.
+     */
+    int rank(final String member) {
+        final Double score = scores.get(member);
+        return score == null ? -1 : sorted.headSet(new Entry(score, member, 0)).size();
+    }
+
+    /**
+     * 按下标取区间，start、stop已经归一化为非负且start<=stop.
+     */
+    List<Entry> range(final int start, final int stop, final boolean reverse) {
+        final List<Entry> result = new ArrayList<>(stop - start + 1);
+        final Iterator<Entry> it = reverse ? sorted.descendingIterator() : sorted.iterator();
+        for (int i = 0; it.hasNext() && i <= stop; i++) {
+            final Entry entry = it.next();
+            if (i >= start) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按score区间取子集.
+     */
+    NavigableSet<Entry> byScore(final double min, final boolean minExclusive, final double max,
+                                final boolean maxExclusive) {
+        if (min > max) {
+            return new TreeSet<>();
+        }
+        final Entry from = new Entry(min, null, minExclusive ? 1 : -1);
+        final Entry to = new Entry(max, null, maxExclusive ? -1 : 1);
+        if (from.compareTo(to) > 0) {
+            return new TreeSet<>();
+        }
+        return sorted.subSet(from, false, to, false);
+    }
+
+    NavigableSet<Entry> all() {
+        return sorted;
+    }
+
+    Map<String, Double> scores() {
+        return scores;
+    }
+
+    /**
+     * 有序集合中的一个元素. bound不为0时是查询边界：-1排在同score所有member之前，1排在之后.
+     */
+    static final class Entry implements Comparable<Entry> {
+
+        final double score;
+
+        final String member;
+
+        private final int bound;
+
+        Entry(final double score, final String member, final int bound) {
+            this.score = score;
+            this.member = member;
+            this.bound = bound;
+        }
+
+        @Override
+        public int compareTo(final Entry o) {
+            final int byScore = Double.compare(score, o.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            if (bound != 0 || o.bound != 0) {
+                return Integer.compare(bound, o.bound);
+            }
+            return member.compareTo(o.member);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Entry && compareTo((Entry) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(score) * 31 + (member == null ? bound : member.hashCode());
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package com.qixiafei.redisinaction.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <P>Description: 有序集合命令. score以Double返回，由{@link Reply}格式化为redis的字符串形式. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 18:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class ZSetCommands {
+
+    private ZSetCommands() {
+    }
+
+    static void register(final CommandTable table) {
+        table.add("zadd", -4, ZSetCommands::zadd);
+        table.add("zincrby", 4, (s, db, args) -> {
+            final String key = args.str(1);
+            final ZSet zset = db.zset(key, true);
+            final Double old = zset.score(args.str(3));
+            final double score = (old == null ? 0 : old) + args.doubleAt(2);
+            if (Double.isNaN(score)) {
+                db.touchContainer(key, zset);
+                throw CommandError.err("resulting score is not a number (NaN)");
+            }
+            zset.put(args.str(3), score);
+            db.touchContainer(key, zset);
+            return score;
+        });
+        table.add("zscore", 3, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            return zset == null ? null : zset.score(args.str(2));
+        });
+        table.add("zcard", 2, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            return zset == null ? 0L : (long) zset.size();
+        });
+        table.add("zcount", 4, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            return zset == null ? 0L : (long) byScore(zset, args.str(2), args.str(3), false).size();
+        });
+        table.add("zrank", 3, (s, db, args) -> rank(db, args, false));
+        table.add("zrevrank", 3, (s, db, args) -> rank(db, args, true));
+        table.add("zrem", -3, (s, db, args) -> {
+            final String key = args.str(1);
+            final ZSet zset = db.zset(key, false);
+            if (zset == null) {
+                return 0L;
+            }
+            long removed = 0;
+            for (String member : args.strs(2)) {
+                if (zset.remove(member)) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                db.touchContainer(key, zset);
+            }
+            return removed;
+        });
+        table.add("zrange", -4, (s, db, args) -> range(db, args, false));
+        table.add("zrevrange", -4, (s, db, args) -> range(db, args, true));
+        table.add("zrangebyscore", -4, (s, db, args) -> rangeByScore(db, args, false));
+        table.add("zrevrangebyscore", -4, (s, db, args) -> rangeByScore(db, args, true));
+        table.add("zrangebylex", -4, (s, db, args) -> rangeByLex(db, args, false));
+        table.add("zrevrangebylex", -4, (s, db, args) -> rangeByLex(db, args, true));
+        table.add("zlexcount", 4, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            return zset == null ? 0L : (long) byLex(zset, args.str(2), args.str(3), false).size();
+        });
+        table.add("zremrangebyrank", 4, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            if (zset == null) {
+                return 0L;
+            }
+            final int[] bounds = ListCommands.normalize(args.longAt(2), args.longAt(3), zset.size());
+            return bounds == null ? 0L : removeAll(db, args.str(1), zset, zset.range(bounds[0], bounds[1], false));
+        });
+        table.add("zremrangebyscore", 4, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            return zset == null ? 0L
+                    : removeAll(db, args.str(1), zset, byScore(zset, args.str(2), args.str(3), false));
+        });
+        table.add("zremrangebylex", 4, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            return zset == null ? 0L
+                    : removeAll(db, args.str(1), zset, byLex(zset, args.str(2), args.str(3), false));
+        });
+        table.add("zunionstore", -4, (s, db, args) -> store(db, args, true));
+        table.add("zinterstore", -4, (s, db, args) -> store(db, args, false));
+        table.add("zscan", -3, (s, db, args) -> {
+            final ZSet zset = db.zset(args.str(1), false);
+            if (zset == null) {
+                return Arrays.asList("0", Collections.emptyList());
+            }
+            return Scan.scan(zset.scores().keySet(), args, 2, null,
+                    member -> Arrays.asList(member, zset.score(member)));
+        });
+    }
+
+    private static Object zadd(final Session session, final Keyspace db, final Args args) {
+        boolean nx = false;
+        boolean xx = false;
+        boolean ch = false;
+        boolean incr = false;
+        int i = 2;
+        for (; i < args.size(); i++) {
+            if (args.is(i, "nx")) {
+                nx = true;
+            } else if (args.is(i, "xx")) {
+                xx = true;
+            } else if (args.is(i, "ch")) {
+                ch = true;
+            } else if (args.is(i, "incr")) {
+                incr = true;
+            } else {
+                break;
+            }
+        }
+        final int pairs = args.size() - i;
+        if (pairs == 0 || pairs % 2 != 0 || (nx && xx) || (incr && pairs != 2)) {
+            throw nx && xx ? CommandError.err("XX and NX options at the same time are not compatible")
+                    : CommandError.SYNTAX;
+        }
+        // 先解析全部score，任何一个非法都不修改数据
+        final double[] scores = new double[pairs / 2];
+        for (int j = 0; j < scores.length; j++) {
+            scores[j] = args.doubleAt(i + j * 2);
+        }
+        final String key = args.str(1);
+        final ZSet zset = db.zset(key, !xx);
+        if (zset == null) {
+            return incr ? null : 0L;
+        }
+        long changed = 0;
+        long added = 0;
+        Double result = null;
+        for (int j = 0; j < scores.length; j++) {
+            final String member = args.str(i + j * 2 + 1);
+            final Double old = zset.score(member);
+            if ((nx && old != null) || (xx && old == null)) {
+                continue;
+            }
+            final double score = incr ? (old == null ? 0 : old) + scores[j] : scores[j];
+            if (Double.isNaN(score)) {
+                db.touchContainer(key, zset);
+                throw CommandError.err("resulting score is not a number (NaN)");
+            }
+            if (zset.put(member, score)) {
+                added++;
+                changed++;
+            } else if (old != score) {
+                changed++;
+            }
+            result = score;
+        }
+        db.touchContainer(key, zset);
+        if (incr) {
+            return result;
+        }
+        return ch ? changed : added;
+    }
+
+    private static Object rank(final Keyspace db, final Args args, final boolean reverse) {
+        final ZSet zset = db.zset(args.str(1), false);
+        if (zset == null) {
+            return null;
+        }
+        final int rank = zset.rank(args.str(2));
+        if (rank < 0) {
+            return null;
+        }
+        return (long) (reverse ? zset.size() - 1 - rank : rank);
+    }
+
+    private static Object range(final Keyspace db, final Args args, final boolean reverse) {
+        final boolean withScores = withScores(args, 4);
+        final ZSet zset = db.zset(args.str(1), false);
+        if (zset == null) {
+            return Collections.emptyList();
+        }
+        final int[] bounds = ListCommands.normalize(args.longAt(2), args.longAt(3), zset.size());
+        if (bounds == null) {
+            return Collections.emptyList();
+        }
+        return reply(zset.range(bounds[0], bounds[1], reverse), withScores, 0, -1);
+    }
+
+    private static Object rangeByScore(final Keyspace db, final Args args, final boolean reverse) {
+        boolean withScores = false;
+        long offset = 0;
+        long count = -1;
+        for (int i = 4; i < args.size(); i++) {
+            if (args.is(i, "withscores")) {
+                withScores = true;
+            } else if (args.is(i, "limit") && i + 2 < args.size()) {
+                offset = args.longAt(i + 1);
+                count = args.longAt(i + 2);
+                i += 2;
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        // ZREVRANGEBYSCORE的参数顺序是max min
+        final String min = reverse ? args.str(3) : args.str(2);
+        final String max = reverse ? args.str(2) : args.str(3);
+        final ZSet zset = db.zset(args.str(1), false);
+        if (zset == null) {
+            return Collections.emptyList();
+        }
+        return reply(byScore(zset, min, max, reverse), withScores, offset, count);
+    }
+
+    private static Object rangeByLex(final Keyspace db, final Args args, final boolean reverse) {
+        long offset = 0;
+        long count = -1;
+        if (args.size() > 4) {
+            if (args.size() != 7 || !args.is(4, "limit")) {
+                throw CommandError.SYNTAX;
+            }
+            offset = args.longAt(5);
+            count = args.longAt(6);
+        }
+        final String min = reverse ? args.str(3) : args.str(2);
+        final String max = reverse ? args.str(2) : args.str(3);
+        final ZSet zset = db.zset(args.str(1), false);
+        if (zset == null) {
+            return Collections.emptyList();
+        }
+        return reply(byLex(zset, min, max, reverse), false, offset, count);
+    }
+
+    private static boolean withScores(final Args args, final int at) {
+        if (args.size() == at) {
+            return false;
+        }
+        if (args.size() == at + 1 && args.is(at, "withscores")) {
+            return true;
+        }
+        throw CommandError.SYNTAX;
+    }
+
+    /**
+     * 按score区间过滤，边界支持"("开区间和-inf/+inf.
+     */
+    private static List<ZSet.Entry> byScore(final ZSet zset, final String min, final String max,
+                                            final boolean reverse) {
+        final boolean minExclusive = min.startsWith("(");
+        final boolean maxExclusive = max.startsWith("(");
+        final double from = parseBound(minExclusive ? min.substring(1) : min);
+        final double to = parseBound(maxExclusive ? max.substring(1) : max);
+        final Collection<ZSet.Entry> entries = reverse
+                ? zset.byScore(from, minExclusive, to, maxExclusive).descendingSet()
+                : zset.byScore(from, minExclusive, to, maxExclusive);
+        return new ArrayList<>(entries);
+    }
+
+    private static double parseBound(final String bound) {
+        try {
+            return Args.parseDouble(bound);
+        } catch (CommandError e) {
+            throw CommandError.err("min or max is not a float");
+        }
+    }
+
+    /**
+     * 按member字典序过滤，边界为"-"、"+"、"[x"或"(x". 与redis一样假设所有member的score相同.
+     */
+    private static List<ZSet.Entry> byLex(final ZSet zset, final String min, final String max,
+                                          final boolean reverse) {
+        checkLex(min);
+        checkLex(max);
+        final NavigableSet<ZSet.Entry> all = zset.all();
+        if (all.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final double score = all.first().score;
+        final List<ZSet.Entry> result = new ArrayList<>();
+        if (all.last().score == score) {
+            // score全部相同时按member有序，直接取子树
+            final NavigableSet<ZSet.Entry> range = lexRange(all, score, min, max);
+            result.addAll(reverse ? range.descendingSet() : range);
+            return result;
+        }
+        for (ZSet.Entry entry : all) {
+            if (aboveMin(entry.member, min) && belowMax(entry.member, max)) {
+                result.add(entry);
+            }
+        }
+        if (reverse) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    private static NavigableSet<ZSet.Entry> lexRange(final NavigableSet<ZSet.Entry> all, final double score,
+                                                     final String min, final String max) {
+        if ("+".equals(min) || "-".equals(max)) {
+            return new TreeSet<>();
+        }
+        final ZSet.Entry from = "-".equals(min) ? all.first() : new ZSet.Entry(score, min.substring(1), 0);
+        final ZSet.Entry to = "+".equals(max) ? all.last() : new ZSet.Entry(score, max.substring(1), 0);
+        if (from.compareTo(to) > 0) {
+            return new TreeSet<>();
+        }
+        return all.subSet(from, "-".equals(min) || min.charAt(0) == '[', to, "+".equals(max) || max.charAt(0) == '[');
+    }
+
+    private static void checkLex(final String bound) {
+        if (!"-".equals(bound) && !"+".equals(bound) && !bound.startsWith("[") && !bound.startsWith("(")) {
+            throw CommandError.err("min or max not valid string range item");
+        }
+    }
+
+    private static boolean aboveMin(final String member, final String min) {
+        if ("-".equals(min)) {
+            return true;
+        }
+        if ("+".equals(min)) {
+            return false;
+        }
+        final int cmp = member.compareTo(min.substring(1));
+        return min.charAt(0) == '[' ? cmp >= 0 : cmp > 0;
+    }
+
+    private static boolean belowMax(final String member, final String max) {
+        if ("+".equals(max)) {
+            return true;
+        }
+        if ("-".equals(max)) {
+            return false;
+        }
+        final int cmp = member.compareTo(max.substring(1));
+        return max.charAt(0) == '[' ? cmp <= 0 : cmp < 0;
+    }
+
+    /**
+     * 按LIMIT截取并组装回复，count为负代表不限.
+     */
+    private static List<Object> reply(final List<ZSet.Entry> entries, final boolean withScores,
+                                      final long offset, final long count) {
+        final List<Object> reply = new ArrayList<>();
+        if (offset < 0) {
+            return reply;
+        }
+        final long end = count < 0 ? entries.size() : Math.min(entries.size(), offset + count);
+        for (long i = offset; i < end; i++) {
+            final ZSet.Entry entry = entries.get((int) i);
+            reply.add(entry.member);
+            if (withScores) {
+                reply.add(entry.score);
+            }
+        }
+        return reply;
+    }
+
+    private static long removeAll(final Keyspace db, final String key, final ZSet zset,
+                                  final List<ZSet.Entry> entries) {
+        for (ZSet.Entry entry : entries) {
+            zset.remove(entry.member);
+        }
+        if (!entries.isEmpty()) {
+            db.touchContainer(key, zset);
+        }
+        return entries.size();
+    }
+
+    /**
+     * ZUNIONSTORE/ZINTERSTORE destination numkeys key [key ...] [WEIGHTS w ...] [AGGREGATE SUM|MIN|MAX]，
+     * 普通set按score为1参与计算.
+     */
+    private static Object store(final Keyspace db, final Args args, final boolean union) {
+        final String destination = args.str(1);
+        final int numKeys = args.intAt(2);
+        if (numKeys < 1) {
+            throw CommandError.err("at least 1 input key is needed for ZUNIONSTORE/ZINTERSTORE");
+        }
+        if (3 + numKeys > args.size()) {
+            throw CommandError.SYNTAX;
+        }
+        final double[] weights = new double[numKeys];
+        Arrays.fill(weights, 1);
+        String aggregate = "sum";
+        for (int i = 3 + numKeys; i < args.size(); i++) {
+            if (args.is(i, "weights") && i + numKeys < args.size()) {
+                for (int j = 0; j < numKeys; j++) {
+                    weights[j] = parseWeight(args.str(i + 1 + j));
+                }
+                i += numKeys;
+            } else if (args.is(i, "aggregate") && i + 1 < args.size()) {
+                aggregate = args.str(i + 1).toLowerCase();
+                if (!"sum".equals(aggregate) && !"min".equals(aggregate) && !"max".equals(aggregate)) {
+                    throw CommandError.SYNTAX;
+                }
+                i++;
+            } else {
+                throw CommandError.SYNTAX;
+            }
+        }
+        Map<String, Double> result = null;
+        for (int j = 0; j < numKeys; j++) {
+            final Map<String, Double> source = scoresOf(db, args.str(3 + j));
+            final Map<String, Double> next = new HashMap<>();
+            if (result == null) {
+                source.forEach((member, score) -> next.put(member, score * weights[0]));
+            } else if (union) {
+                next.putAll(result);
+                for (Map.Entry<String, Double> entry : source.entrySet()) {
+                    final double weighted = entry.getValue() * weights[j];
+                    final Double current = next.get(entry.getKey());
+                    next.put(entry.getKey(), current == null ? weighted : combine(aggregate, current, weighted));
+                }
+            } else {
+                for (Map.Entry<String, Double> entry : result.entrySet()) {
+                    final Double other = source.get(entry.getKey());
+                    if (other != null) {
+                        next.put(entry.getKey(), combine(aggregate, entry.getValue(), other * weights[j]));
+                    }
+                }
+            }
+            result = next;
+        }
+        if (result.isEmpty()) {
+            db.remove(destination);
+            return 0L;
+        }
+        final ZSet zset = new ZSet();
+        result.forEach((member, score) -> zset.put(member, Double.isNaN(score) ? 0 : score));
+        db.put(destination, zset);
+        return (long) zset.size();
+    }
+
+    private static double parseWeight(final String weight) {
+        try {
+            return Args.parseDouble(weight);
+        } catch (CommandError e) {
+            throw CommandError.err("weight value is not a float");
+        }
+    }
+
+    private static Map<String, Double> scoresOf(final Keyspace db, final String key) {
+        final Object value = db.get(key);
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        if (value instanceof ZSet) {
+            return ((ZSet) value).scores();
+        }
+        if (value instanceof Set) {
+            final Map<String, Double> scores = new HashMap<>();
+            for (Object member : (Set<?>) value) {
+                scores.put((String) member, 1d);
+            }
+            return scores;
+        }
+        throw CommandError.WRONG_TYPE;
+    }
+
+    private static double combine(final String aggregate, final double a, final double b) {
+        switch (aggregate) {
+            case "min":
+                return Math.min(a, b);
+            case "max":
+                return Math.max(a, b);
+            default:
+                return a + b;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.ScanIterator;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.Hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <P>Description: 令牌到用户id的存储. 单个登录hash会长到上千万个field，删除、迁移和rehash都要阻塞redis很久；
+ * 分桶模式按令牌的murmur哈希把登录信息分散到{@link RedisKeyConstants#LOGIN_BUCKET_KEY_PREFIX}开头的多个小hash，
+ * 每个桶的field数控制在hash-max-ziplist-entries（redis 7为hash-max-listpack-entries）以内，保持紧凑编码.
+ * 桶数一旦使用不能再改，改变桶数需要重新迁移.
+ * 迁移分三步，每一步都可以滚动发布：
+ * 1. 所有实例切到MIGRATING：写入同时写旧hash和桶，读取先读桶再读旧hash，删除两边都删.
+ * 滚动发布期间仍在SINGLE的实例清理令牌时只删旧hash，MIGRATING实例写入桶里的副本会留下来，这些令牌在MIGRATING实例上仍然可读；
+ * 2. 所有实例都切到MIGRATING后，在一个实例上执行{@link #migrate}，把旧hash中的令牌复制到桶里，
+ * 并删除桶里有、旧hash中已经没有的令牌，也就是第1步中被SINGLE实例清理的令牌；
+ * 3. 所有实例切到BUCKETED，再执行一次{@link #migrate}，把旧hash剩余的令牌移入桶并分批删除旧hash，避免一次删除大key. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/26 16:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class LoginStore {
+
+    /**
+     * 存储方式.
+     */
+    public enum Mode {
+        /**
+         * 所有令牌在一个登录hash里.
+         */
+        SINGLE,
+        /**
+         * 迁移中，同时写旧hash和桶，读取时桶里没有再读旧hash.
+         */
+        MIGRATING,
+        /**
+         * 只使用桶.
+         */
+        BUCKETED
+    }
+
+    /**
+     * 估算桶数时允许的标准差倍数. 令牌均匀分布时每个桶的field数近似泊松分布，
+     * 平均值加5个标准差以内的桶超过阈值的概率可以忽略.
+     */
+    private static final double SIGMAS = 5;
+
+    /**
+     * 服务端没有返回紧凑编码阈值时使用redis 5的默认值.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private final RedisClient redisClient;
+
+    private final Mode mode;
+
+    private final int buckets;
+
+    /**
+     * @param redisClient redis客户端
+     * @param mode        存储方式
+     * @param buckets     桶数，SINGLE模式下忽略
+     */
+    LoginStore(final RedisClient redisClient, final Mode mode, final int buckets) {
+        if (mode != Mode.SINGLE && buckets <= 0) {
+            throw new IllegalArgumentException("buckets必须大于0");
+        }
+        this.redisClient = redisClient;
+        this.mode = mode;
+        this.buckets = mode == Mode.SINGLE ? 1 : buckets;
+    }
+
+    /**
+     * 计算桶数，使每个桶的平均field数m满足 m + 5 * sqrt(m) <= maxEntries.
+     *
+     * @param expectedTokens 预计的令牌数，一般取清理阈值
+     * @param maxEntries     服务端hash紧凑编码的field数上限
+     * @return 桶数
+     */
+    public static int bucketsFor(final long expectedTokens, final int maxEntries) {
+        final double root = (-SIGMAS + Math.sqrt(SIGMAS * SIGMAS + 4D * maxEntries)) / 2;
+        final double perBucket = Math.max(1, root * root);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) Math.ceil(expectedTokens / perBucket)));
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 令牌所在的hash. MIGRATING模式下是桶，旧hash需要另外读写.
+     *
+     * @param token 令牌
+     * @return hash的key
+     */
+    String keyOf(final String token) {
+        if (mode == Mode.SINGLE) {
+            return RedisKeyConstants.LOGIN_HASH_KEY;
+        }
+        return bucketKey((int) Math.floorMod(Hashing.MURMUR_HASH.hash(token), (long) buckets));
+    }
+
+    /**
+     * 读取令牌对应的用户id.
+     *
+     * @param token 令牌
+     * @return 用户id，不存在返回null
+     */
+    String get(final String token) {
+        final String userId = redisClient.hget(keyOf(token), token);
+        if (userId != null || mode != Mode.MIGRATING) {
+            return userId;
+        }
+        return redisClient.hget(RedisKeyConstants.LOGIN_HASH_KEY, token);
+    }
+
+    /**
+     * 把要写入的登录信息按hash分组，MIGRATING模式下旧hash也是一组.
+     *
+     * @param logins 令牌到用户id
+     * @return hash的key到这个hash要写入的field
+     */
+    Map<String, Map<String, String>> group(final Map<String, String> logins) {
+        final Map<String, Map<String, String>> groups = new LinkedHashMap<>();
+        if (logins.isEmpty()) {
+            return groups;
+        }
+        if (mode != Mode.BUCKETED) {
+            groups.put(RedisKeyConstants.LOGIN_HASH_KEY, logins);
+        }
+        if (mode != Mode.SINGLE) {
+            logins.forEach((token, userId) ->
+                    groups.computeIfAbsent(keyOf(token), key -> new HashMap<>(4)).put(token, userId));
+        }
+        return groups;
+    }
+
+    /**
+     * 删除令牌，所有hash的删除在按节点分组的管道里发送.
+     *
+     * @param tokens 令牌
+     */
+    void remove(final String... tokens) {
+        hdel(removals(tokens));
+    }
+
+    /**
+     * 把要删除的令牌按hash分组，MIGRATING模式下旧hash也是一组.
+     *
+     * @param tokens 令牌
+     * @return hash的key到这个hash要删除的field
+     */
+    Map<String, List<String>> removals(final String... tokens) {
+        final Map<String, List<String>> byKey = new LinkedHashMap<>();
+        if (mode == Mode.MIGRATING) {
+            byKey.put(RedisKeyConstants.LOGIN_HASH_KEY, Arrays.asList(tokens));
+        }
+        for (String token : tokens) {
+            byKey.computeIfAbsent(keyOf(token), key -> new ArrayList<>()).add(token);
+        }
+        return byKey;
+    }
+
+    /**
+     * 把旧hash中的令牌迁移到桶里. 按batchSize用HSCAN遍历旧hash，每批用HSETNX写入桶，不覆盖迁移期间的新写入；
+     * 写入后复查旧hash，复制期间被清理掉的令牌从桶里删除，避免复活.
+     * MIGRATING模式下所有写入都会写旧hash，复制后再遍历所有桶，删除旧hash中已经没有的令牌；
+     * 并发写入的令牌即使被误删，旧hash中仍有一份，读取不受影响，第3步会重新复制.
+     * BUCKETED模式下复制后从旧hash删除这批令牌，旧hash清空后redis自动删除这个key.
+     *
+     * @param batchSize 每批令牌数
+     * @return 迁移结果
+     */
+    MigrationResult migrate(final int batchSize) {
+        if (mode == Mode.SINGLE) {
+            throw new IllegalStateException("SINGLE模式不能迁移，请先切换到MIGRATING或BUCKETED");
+        }
+        final long start = System.currentTimeMillis();
+        final MigrationResult result = new MigrationResult();
+        result.setMode(mode);
+        final Map<String, String> batch = new LinkedHashMap<>(batchSize * 2);
+        try (ScanIterator<Map.Entry<String, String>> it =
+                     redisClient.hscan(RedisKeyConstants.LOGIN_HASH_KEY, null, batchSize)) {
+            while (it.hasNext()) {
+                final Map.Entry<String, String> entry = it.next();
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() >= batchSize) {
+                    migrateBatch(batch, result);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            migrateBatch(batch, result);
+        }
+        if (mode == Mode.MIGRATING) {
+            for (int i = 0; i < buckets; i++) {
+                sweepBucket(bucketKey(i), batchSize, result);
+            }
+        }
+        result.setLegacyRemaining(redisClient.hlen(RedisKeyConstants.LOGIN_HASH_KEY));
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("登录信息迁移完成，{}", result);
+        return result;
+    }
+
+    private void migrateBatch(final Map<String, String> batch, final MigrationResult result) {
+        final Map<String, Map<String, String>> byKey = new LinkedHashMap<>();
+        batch.forEach((token, userId) ->
+                byKey.computeIfAbsent(keyOf(token), key -> new HashMap<>(4)).put(token, userId));
+        final Map<String, Response<Long>> created = new ConcurrentHashMap<>(batch.size() * 2);
+        check(redisClient.pipelined(byKey.keySet(), (pipeline, group) -> {
+            for (String key : group) {
+                byKey.get(key).forEach((token, userId) -> created.put(token, pipeline.hsetnx(key, token, userId)));
+            }
+        }));
+        final String[] tokens = batch.keySet().toArray(new String[0]);
+        final List<String> current = redisClient.hmget(RedisKeyConstants.LOGIN_HASH_KEY, tokens);
+        final Map<String, List<String>> resurrected = new LinkedHashMap<>();
+        final List<String> present = new ArrayList<>(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            final boolean copied = created.get(tokens[i]).get() == 1L;
+            if (current.get(i) == null) {
+                if (copied) {
+                    resurrected.computeIfAbsent(keyOf(tokens[i]), key -> new ArrayList<>()).add(tokens[i]);
+                }
+                continue;
+            }
+            present.add(tokens[i]);
+            if (copied) {
+                result.copied++;
+            } else {
+                result.skipped++;
+            }
+        }
+        result.scanned += tokens.length;
+        if (!resurrected.isEmpty()) {
+            hdel(resurrected);
+            resurrected.values().forEach(list -> result.removed += list.size());
+        }
+        if (mode == Mode.BUCKETED && !present.isEmpty()) {
+            result.deleted += redisClient.hdel(RedisKeyConstants.LOGIN_HASH_KEY, present.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 删除桶里有、旧hash中没有的令牌.
+     */
+    private void sweepBucket(final String key, final int batchSize, final MigrationResult result) {
+        final List<String> batch = new ArrayList<>(batchSize);
+        try (ScanIterator<Map.Entry<String, String>> it = redisClient.hscan(key, null, batchSize)) {
+            while (it.hasNext()) {
+                batch.add(it.next().getKey());
+                if (batch.size() >= batchSize) {
+                    sweepBatch(key, batch, result);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            sweepBatch(key, batch, result);
+        }
+    }
+
+    private void sweepBatch(final String key, final List<String> batch, final MigrationResult result) {
+        final List<String> legacy = redisClient.hmget(RedisKeyConstants.LOGIN_HASH_KEY, batch.toArray(new String[0]));
+        final List<String> orphans = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (legacy.get(i) == null) {
+                orphans.add(batch.get(i));
+            }
+        }
+        if (!orphans.isEmpty()) {
+            result.orphaned += redisClient.hdel(key, orphans.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 比较旧hash和桶的内存占用. 所有桶的field数用HLEN精确统计，编码和内存在均匀抽取的桶上用OBJECT ENCODING、
+     * MEMORY USAGE测量后按field数推算；旧hash的MEMORY USAGE是redis抽样估算的.
+     * 迁移第2步之后两边保存着同样的令牌，每个令牌的字节数可以直接比较.
+     *
+     * @param sampleBuckets  测量内存的桶数
+     * @param expectedTokens 预计的令牌数，用于给出建议桶数
+     * @return 报告
+     */
+    MemoryReport memoryReport(final int sampleBuckets, final long expectedTokens) {
+        final MemoryReport report = new MemoryReport();
+        report.setMode(mode);
+        report.setBuckets(mode == Mode.SINGLE ? 0 : buckets);
+        final int maxEntries = maxEntries();
+        report.setMaxEntries(maxEntries);
+        report.setExpectedTokens(expectedTokens);
+        report.setRecommendedBuckets(bucketsFor(expectedTokens, maxEntries));
+
+        report.setLegacyFields(redisClient.hlen(RedisKeyConstants.LOGIN_HASH_KEY));
+        report.setLegacyEncoding(redisClient.objectEncoding(RedisKeyConstants.LOGIN_HASH_KEY));
+        final Long legacyBytes = redisClient.memoryUsage(RedisKeyConstants.LOGIN_HASH_KEY);
+        report.setLegacyBytes(legacyBytes == null ? 0 : legacyBytes);
+        report.setLegacyBytesPerToken(perToken(report.getLegacyBytes(), report.getLegacyFields()));
+        if (mode == Mode.SINGLE) {
+            return report;
+        }
+
+        final List<String> keys = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            keys.add(bucketKey(i));
+        }
+        final Map<String, Response<Long>> lengths = new ConcurrentHashMap<>(buckets * 2);
+        check(redisClient.pipelined(keys, (pipeline, group) -> {
+            for (String key : group) {
+                lengths.put(key, pipeline.hlen(key));
+            }
+        }));
+        for (String key : keys) {
+            final long fields = lengths.get(key).get();
+            report.bucketFields += fields;
+            if (fields > 0) {
+                report.nonEmptyBuckets++;
+            }
+            if (fields > maxEntries) {
+                report.oversizedBuckets++;
+            }
+            report.maxBucketFields = Math.max(report.maxBucketFields, fields);
+        }
+
+        final int samples = Math.max(1, Math.min(sampleBuckets, buckets));
+        long sampledFields = 0;
+        for (int i = 0; i < samples; i++) {
+            final String key = keys.get((int) ((long) i * buckets / samples));
+            final Long bytes = redisClient.memoryUsage(key);
+            if (bytes == null) {
+                continue;
+            }
+            report.sampledBuckets++;
+            report.sampledBytes += bytes;
+            sampledFields += lengths.get(key).get();
+            final String encoding = redisClient.objectEncoding(key);
+            if ("ziplist".equals(encoding) || "listpack".equals(encoding)) {
+                report.compactSampledBuckets++;
+            }
+        }
+        report.setBucketBytesPerToken(perToken(report.getSampledBytes(), sampledFields));
+        report.setEstimatedBucketBytes(Math.round(report.getBucketBytesPerToken() * report.getBucketFields()));
+        if (report.getLegacyBytesPerToken() > 0 && report.getBucketBytesPerToken() > 0) {
+            report.setSaving(1 - report.getBucketBytesPerToken() / report.getLegacyBytesPerToken());
+        }
+        return report;
+    }
+
+    private int maxEntries() {
+        for (String name : new String[]{"hash-max-listpack-entries", "hash-max-ziplist-entries"}) {
+            final String value = redisClient.configGet(name);
+            if (value != null) {
+                return Integer.parseInt(value);
+            }
+        }
+        return DEFAULT_MAX_ENTRIES;
+    }
+
+    private void hdel(final Map<String, ? extends Collection<String>> byKey) {
+        check(redisClient.pipelined(byKey.keySet(), (pipeline, group) -> {
+            for (String key : group) {
+                pipeline.hdel(key, byKey.get(key).toArray(new String[0]));
+            }
+        }));
+    }
+
+    private static void check(final List<List<Object>> results) {
+        for (List<Object> group : results) {
+            for (Object result : group) {
+                if (result instanceof JedisDataException) {
+                    throw (JedisDataException) result;
+                }
+            }
+        }
+    }
+
+    private static String bucketKey(final int bucket) {
+        return RedisKeyConstants.LOGIN_BUCKET_KEY_PREFIX + bucket;
+    }
+
+    private static double perToken(final long bytes, final long tokens) {
+        return tokens == 0 ? 0 : (double) bytes / tokens;
+    }
+
+    /**
+     * 一次迁移的结果.
+     */
+    @Data
+    public static class MigrationResult {
+        private Mode mode;
+        /**
+         * 遍历到的令牌数.
+         */
+        private long scanned;
+        /**
+         * 复制到桶里的令牌数.
+         */
+        private long copied;
+        /**
+         * 桶里已有、没有覆盖的令牌数.
+         */
+        private long skipped;
+        /**
+         * 复制期间被清理、已从桶里删除的令牌数.
+         */
+        private long removed;
+        /**
+         * MIGRATING模式下桶里有、旧hash中已被清理，从桶里删除的令牌数.
+         */
+        private long orphaned;
+        /**
+         * BUCKETED模式下从旧hash删除的令牌数.
+         */
+        private long deleted;
+        private long legacyRemaining;
+        private long elapsedMillis;
+    }
+
+    /**
+     * 旧hash与桶的内存对比.
+     */
+    @Data
+    public static class MemoryReport {
+        private Mode mode;
+        private int buckets;
+        /**
+         * 服务端hash紧凑编码的field数上限.
+         */
+        private int maxEntries;
+        private long expectedTokens;
+        /**
+         * 按expectedTokens和maxEntries计算的建议桶数.
+         */
+        private int recommendedBuckets;
+        private long legacyFields;
+        private String legacyEncoding;
+        private long legacyBytes;
+        private double legacyBytesPerToken;
+        private long bucketFields;
+        private int nonEmptyBuckets;
+        private long maxBucketFields;
+        /**
+         * field数超过maxEntries、已经不是紧凑编码的桶数.
+         */
+        private int oversizedBuckets;
+        private int sampledBuckets;
+        private int compactSampledBuckets;
+        private long sampledBytes;
+        private double bucketBytesPerToken;
+        /**
+         * 按抽样结果推算的所有桶的字节数.
+         */
+        private long estimatedBucketBytes;
+        /**
+         * 分桶相对旧hash每个令牌节省的内存比例.
+         */
+        private double saving;
+    }
+}
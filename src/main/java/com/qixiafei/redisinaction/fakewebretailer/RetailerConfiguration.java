@@ -0,0 +1,60 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * <P>Description: 按配置开启网店服务的可选特性. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/25 16:45</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+@EnableConfigurationProperties(value = {RetailerProperties.class})
+@Configuration
+public class RetailerConfiguration {
+
+    @Resource
+    private RetailerProperties prop;
+
+    @Resource
+    private TokenService tokenService;
+
+    @PostConstruct
+    public void customize() {
+        final RetailerProperties.LoginStoreConfig loginStore = prop.getLoginStore();
+        if (loginStore.getMode() != LoginStore.Mode.SINGLE) {
+            tokenService.useLoginStore(loginStore.getMode(), loginStore.getBuckets());
+        }
+        if (loginStore.isMigrate()) {
+            final Thread t = new Thread(() -> {
+                try {
+                    tokenService.migrateLogins(loginStore.getMigrationBatchSize());
+                } catch (RuntimeException e) {
+                    log.error("登录信息迁移失败，可以重新执行", e);
+                }
+            }, "login migration t");
+            t.setDaemon(true);
+            t.start();
+        }
+        final RetailerProperties.WriteBehindConfig writeBehind = prop.getWriteBehind();
+        if (writeBehind.isEnabled()) {
+            tokenService.enableWriteBehind(writeBehind.getCapacity(), writeBehind.getFlushIntervalMillis(),
+                    writeBehind.getFlushBatchSize());
+        }
+        final RetailerProperties.TokenCacheConfig tokenCache = prop.getTokenCache();
+        if (tokenCache.isEnabled()) {
+            tokenService.enableTokenCache(tokenCache.getMaxSize(), tokenCache.getTtlMillis(),
+                    tokenCache.getNegativeTtlMillis());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <P>Description: 网店服务配置. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/25 16:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+@ConfigurationProperties(prefix = "retailer")
+public class RetailerProperties {
+
+    /**
+     * 令牌延迟写配置.
+     */
+    private WriteBehindConfig writeBehind = new WriteBehindConfig();
+
+    /**
+     * 令牌本地缓存配置.
+     */
+    private TokenCacheConfig tokenCache = new TokenCacheConfig();
+
+    /**
+     * 登录信息存储配置.
+     */
+    private LoginStoreConfig loginStore = new LoginStoreConfig();
+
+    /**
+     * 会话清理配置.
+     */
+    private CleanerConfig cleaner = new CleanerConfig();
+
+    @Data
+    public static class WriteBehindConfig {
+
+        /**
+         * 是否开启延迟写，开启后updateToken只写内存，由后台线程批量写入redis.
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最多缓冲的令牌数，缓冲满时新令牌改为同步写入.
+         */
+        private int capacity = 100000;
+
+        /**
+         * 批量写入的间隔（毫秒），也是同一令牌多次更新的合并窗口.
+         */
+        private long flushIntervalMillis = 200;
+
+        /**
+         * 每次批量写入的令牌数.
+         */
+        private int flushBatchSize = 1000;
+    }
+
+    @Data
+    public static class TokenCacheConfig {
+
+        /**
+         * 是否开启令牌本地缓存.
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最多缓存的令牌数.
+         */
+        private int maxSize = 100000;
+
+        /**
+         * 已登录令牌的最长缓存时间（毫秒），也是漏掉失效广播时的最长陈旧时间.
+         */
+        private long ttlMillis = 60000;
+
+        /**
+         * 未知令牌的最长缓存时间（毫秒），0代表不缓存未知令牌.
+         */
+        private long negativeTtlMillis = 1000;
+    }
+
+    @Data
+    public static class LoginStoreConfig {
+
+        /**
+         * 存储方式，从SINGLE切到BUCKETED需要经过MIGRATING，见LoginStore.
+         */
+        private LoginStore.Mode mode = LoginStore.Mode.SINGLE;
+
+        /**
+         * 桶数，所有实例必须一致，使用后不能修改. 默认值在1000万令牌时平均每个桶约300个field，
+         * 低于redis 5的hash-max-ziplist-entries默认值512；redis 7的hash-max-listpack-entries默认只有128，
+         * 需要按/retailer/login/memory给出的建议桶数调大.
+         */
+        private int buckets = 32768;
+
+        /**
+         * 启动后是否在后台执行一次迁移，只需要在一个实例上开启.
+         */
+        private boolean migrate = false;
+
+        /**
+         * 迁移时每批的令牌数.
+         */
+        private int migrationBatchSize = 1000;
+    }
+
+    @Data
+    public static class CleanerConfig {
+
+        /**
+         * 最多保留的会话数，超出的部分从最久未访问的开始清理.
+         */
+        private long limit = 10000000;
+
+        /**
+         * 清理线程数，积压较多时每个线程清理一段互不重叠的score区间.
+         */
+        private int workers = 4;
+
+        /**
+         * 每批清理令牌数的下限.
+         */
+        private int minBatchSize = 100;
+
+        /**
+         * 每批清理令牌数的上限.
+         */
+        private int maxBatchSize = 5000;
+
+        /**
+         * 每批清理的目标耗时（毫秒），超过时批大小减半，远低于时加倍.
+         */
+        private long targetBatchMillis = 100;
+    }
+}
@@ -1,7 +1,8 @@
 package com.qixiafei.redisinaction.fakewebretailer;
 
-import com.alibaba.fastjson.JSON;
 import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.jedis.BinaryCodec;
+import com.qixiafei.redisinaction.jedis.Codec;
 import com.qixiafei.redisinaction.jedis.RedisClient;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -10,7 +11,10 @@ import redis.clients.jedis.Tuple;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -45,6 +49,8 @@ public class RowCacheService {
 
     static class RowCacheDaemon implements Runnable {
 
+        private static final int BATCH_SIZE = 500;
+
         private RedisClient redisClient;
 
         RowCacheDaemon(RedisClient redisClient) {
@@ -56,27 +62,52 @@ public class RowCacheService {
 
             while (true) {
 
-                final Set<Tuple> tuples = redisClient.zrangeWithScores(RedisKeyConstants.SCHEDULE_ZSET_KEY, 0, 0);
-                if (!tuples.isEmpty()) {
-                    final Tuple next = tuples.iterator().next();
-                    long nowStamp = System.currentTimeMillis();
-                    if (next != null && next.getScore() <= nowStamp) {
-
-                        final String rowId = next.getElement();
-                        final long delay = (long) redisClient.zscore(RedisKeyConstants.DELAY_ZSET_KEY, rowId).doubleValue();
-                        if (delay <= 0) {
-                            redisClient.zrem(RedisKeyConstants.DELAY_ZSET_KEY, rowId);
-                            redisClient.zrem(RedisKeyConstants.SCHEDULE_ZSET_KEY, rowId);
-                            redisClient.del(RedisKeyConstants.INV_KEY_PREFIX + rowId);
+                // 一次取出最多BATCH_SIZE个到期的行，批量读写，避免逐行往返
+                final long nowStamp = System.currentTimeMillis();
+                final List<String> dueRows = new ArrayList<>();
+                for (Tuple tuple : redisClient.zrangeWithScores(RedisKeyConstants.SCHEDULE_ZSET_KEY, 0, BATCH_SIZE - 1)) {
+                    if (tuple.getScore() > nowStamp) {
+                        break;
+                    }
+                    dueRows.add(tuple.getElement());
+                }
+                if (!dueRows.isEmpty()) {
+                    final List<Double> delays = redisClient.zscore(RedisKeyConstants.DELAY_ZSET_KEY, dueRows);
+                    final List<String> removedRows = new ArrayList<>();
+                    final Map<String, Double> schedule = new HashMap<>();
+                    final Map<String, RowData> rows = new HashMap<>();
+                    for (int i = 0; i < dueRows.size(); i++) {
+                        final String rowId = dueRows.get(i);
+                        final Double delay = delays.get(i);
+                        // 没有延迟或延迟<=0代表不再缓存
+                        if (delay == null || delay <= 0) {
+                            removedRows.add(rowId);
                             continue;
                         }
-
                         final RowData rowData = new RowData();
-                        redisClient.zadd(RedisKeyConstants.SCHEDULE_ZSET_KEY, nowStamp + delay, rowId);
-                        redisClient.set(RedisKeyConstants.INV_KEY_PREFIX + rowId, JSON.toJSONString(rowData));
-
+                        schedule.put(rowId, (double) (nowStamp + delay.longValue()));
+                        rows.put(RedisKeyConstants.INV_BIN_KEY_PREFIX + rowId, rowData);
+                    }
+                    if (!removedRows.isEmpty()) {
+                        final String[] rowIds = removedRows.toArray(new String[0]);
+                        // 旧版本写入的JSON格式key一起删除
+                        final String[] invKeys = new String[rowIds.length * 2];
+                        for (int i = 0; i < rowIds.length; i++) {
+                            invKeys[2 * i] = RedisKeyConstants.INV_BIN_KEY_PREFIX + rowIds[i];
+                            invKeys[2 * i + 1] = RedisKeyConstants.INV_KEY_PREFIX + rowIds[i];
+                        }
+                        redisClient.zrem(RedisKeyConstants.DELAY_ZSET_KEY, rowIds);
+                        redisClient.zrem(RedisKeyConstants.SCHEDULE_ZSET_KEY, rowIds);
+                        redisClient.del(invKeys);
+                    }
+                    if (!schedule.isEmpty()) {
+                        redisClient.zadd(RedisKeyConstants.SCHEDULE_ZSET_KEY, schedule);
+                        redisClient.mset(rows, RowData.CODEC);
+                    }
+                    if (dueRows.size() == BATCH_SIZE) {
+                        // 可能还有到期的行，不休眠
+                        continue;
                     }
-
                 }
 
 
@@ -91,6 +122,23 @@ public class RowCacheService {
 
     @Data
     public static class RowData {
+
+        /**
+         * 缓存行的存储格式，字段按顺序排列不带字段名，比JSON小且编解码更快；新增字段只能追加在末尾.
+         * 和旧的JSON格式不兼容，所以写在{@link RedisKeyConstants#INV_BIN_KEY_PREFIX}下，读JSON的旧客户端不会读到二进制值.
+         */
+        public static final Codec<RowData> CODEC = BinaryCodec.of((out, row) -> out
+                        .writeString(row.getId())
+                        .writeString(row.getName())
+                        .writeString(row.getSex()),
+                in -> {
+                    final RowData row = new RowData();
+                    row.setId(in.readString());
+                    row.setName(in.readString());
+                    row.setSex(in.readString());
+                    return row;
+                });
+
         private String id;
         private String name;
 
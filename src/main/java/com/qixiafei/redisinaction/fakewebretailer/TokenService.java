@@ -1,12 +1,23 @@
 package com.qixiafei.redisinaction.fakewebretailer;
 
 import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.jedis.NearCache;
 import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.queue.EventStream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
+import redis.clients.jedis.exceptions.JedisDataException;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <P>Description: 令牌操作相关类. </P>
@@ -23,22 +34,329 @@ import javax.annotation.Resource;
 @Component
 public class TokenService {
 
+    /**
+     * 每个令牌保留的最近浏览记录数.
+     */
+    private static final int VIEW_LIMIT = 25;
+
     @Resource
     private RedisClient redisClient;
 
+    /**
+     * 延迟写缓冲，未开启时为null.
+     */
+    private volatile TokenWriteBehind writeBehind;
+
+    /**
+     * 令牌本地缓存中所有令牌都是这个key的field，与登录信息实际存在哪个hash无关.
+     */
+    private static final String TOKEN_CACHE_KEY = RedisKeyConstants.LOGIN_HASH_KEY;
+
+    /**
+     * 令牌本地缓存，未开启时为null.
+     */
+    private volatile NearCache tokenCache;
+
+    /**
+     * 登录信息的存储方式，未配置时为null，使用单个登录hash.
+     */
+    private volatile LoginStore loginStore;
+
+    /**
+     * 浏览事件流，未开启时为null.
+     */
+    private volatile EventStream viewEvents;
+
     public String checkToken(final String token) {
-        return redisClient.hget(RedisKeyConstants.LOGIN_HASH_KEY, token);
+        final TokenWriteBehind current = writeBehind;
+        if (current != null) {
+            final String userId = current.bufferedUser(token);
+            if (userId != null) {
+                return userId;
+            }
+        }
+        final NearCache cache = tokenCache;
+        if (cache != null) {
+            return cache.hget(TOKEN_CACHE_KEY, token, () -> loadUser(token));
+        }
+        return loadUser(token);
+    }
+
+    private String loadUser(final String token) {
+        return loginStore().get(token);
     }
 
+    private LoginStore loginStore() {
+        LoginStore store = loginStore;
+        if (store == null) {
+            synchronized (this) {
+                if (loginStore == null) {
+                    loginStore = new LoginStore(redisClient, LoginStore.Mode.SINGLE, 1);
+                }
+                store = loginStore;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * 记录一次页面访问，登录hash、最近登录zset和浏览记录zset的写入在一个管道里发送.
+     * 开启延迟写后只合并进内存缓冲，由后台线程批量写入.
+     *
+     * @param token  用户令牌
+     * @param userId 用户id
+     * @param item   浏览的商品，为空代表没有浏览商品
+     */
     public void updateToken(final String token, final String userId, final String item) {
-        final long timestamp = System.currentTimeMillis();
-        redisClient.hset(RedisKeyConstants.LOGIN_HASH_KEY, token, userId);
-        redisClient.zadd(RedisKeyConstants.RECENT_ZSET_KEY, timestamp, token);
-        if (StringUtils.isNotBlank(item)) {
-            final String viewKey = RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + token;
-            redisClient.zadd(viewKey, timestamp, item);
-            // 保留最近25条记录
-            redisClient.zremRangeByRank(viewKey, 0, -26);
+        final TokenUpdate update = new TokenUpdate(token, userId, item, System.currentTimeMillis());
+        final TokenWriteBehind current = writeBehind;
+        if (current == null || !current.offer(update)) {
+            updateTokens(Collections.singletonList(update));
+        }
+    }
+
+    /**
+     * 开启延迟写，updateToken不再访问redis，更新在内存中按令牌合并后由后台线程批量写入.
+     * 本进程的checkToken能立即读到缓冲中的登录信息，其他进程最多延迟flushIntervalMillis；进程宕机会丢失缓冲中的更新.
+     *
+     * @param capacity            最多缓冲的令牌数，缓冲满时新令牌改为同步写入
+     * @param flushIntervalMillis 批量写入的间隔（毫秒）
+     * @param flushBatchSize      每次updateTokens的令牌数
+     */
+    public synchronized void enableWriteBehind(final int capacity, final long flushIntervalMillis,
+                                               final int flushBatchSize) {
+        final TokenWriteBehind old = writeBehind;
+        writeBehind = new TokenWriteBehind(this::updateTokens, VIEW_LIMIT, capacity, flushIntervalMillis,
+                flushBatchSize);
+        if (old != null) {
+            old.close();
+        }
+        log.info("开启令牌延迟写，capacity={}，flushIntervalMillis={}，flushBatchSize={}", capacity,
+                flushIntervalMillis, flushBatchSize);
+    }
+
+    /**
+     * 获取延迟写统计.
+     *
+     * @return 统计信息，未开启延迟写时返回null
+     */
+    public TokenWriteBehind.Stats writeBehindStats() {
+        final TokenWriteBehind current = writeBehind;
+        return current == null ? null : current.stats();
+    }
+
+    /**
+     * 开启令牌本地缓存，checkToken命中时不再访问redis.
+     * 令牌被清理后通过{@link RedisKeyConstants#TOKEN_INVALIDATE_CHANNEL}广播，所有实例丢弃对应条目；
+     * 广播到达之前其他实例仍可能返回已清理的令牌，漏掉的广播最多在ttlMillis后失效.
+     *
+     * @param maxSize           最多缓存的令牌数
+     * @param ttlMillis         已登录令牌的最长缓存时间（毫秒）
+     * @param negativeTtlMillis 未知令牌的最长缓存时间（毫秒），0代表不缓存未知令牌
+     */
+    public synchronized void enableTokenCache(final int maxSize, final long ttlMillis,
+                                              final long negativeTtlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis必须大于0");
+        }
+        final NearCache old = tokenCache;
+        tokenCache = redisClient.createNearCache(maxSize, NearCache.EvictionPolicy.LRU, ttlMillis, negativeTtlMillis,
+                RedisKeyConstants.TOKEN_INVALIDATE_CHANNEL);
+        if (old != null) {
+            old.close();
+        }
+        log.info("开启令牌本地缓存，maxSize={}，ttlMillis={}，negativeTtlMillis={}", maxSize, ttlMillis,
+                negativeTtlMillis);
+    }
+
+    /**
+     * 获取令牌本地缓存统计.
+     *
+     * @return 统计信息，未开启缓存时返回null
+     */
+    public NearCache.Stats tokenCacheStats() {
+        final NearCache current = tokenCache;
+        return current == null ? null : current.stats();
+    }
+
+    /**
+     * 开启浏览事件，浏览记录写入成功后每次浏览向{@link RedisKeyConstants#VIEW_EVENT_STREAM_KEY}追加一个事件，
+     * 字段为token、userId、item和timestamp，由{@link EventStream#startWorker}启动的消费者按消费组处理.
+     * 每个事件一次XADD往返，开启延迟写时在后台线程上发送，缓冲中同一令牌对同一商品的多次浏览只产生一个事件；
+     * 写入失败后重新调用updateTokens时事件可能重复，处理器需保证幂等.
+     *
+     * @param maxLen stream近似保留的最大长度，0代表不裁剪
+     * @return 浏览事件流
+     */
+    public synchronized EventStream enableViewEvents(final long maxLen) {
+        viewEvents = new EventStream(redisClient, RedisKeyConstants.VIEW_EVENT_STREAM_KEY, maxLen);
+        log.info("开启浏览事件，maxLen={}", maxLen);
+        return viewEvents;
+    }
+
+    /**
+     * 切换登录信息的存储方式，迁移步骤见{@link LoginStore}. 所有实例的桶数必须一致.
+     *
+     * @param mode    存储方式
+     * @param buckets 桶数，SINGLE模式下忽略
+     */
+    public synchronized void useLoginStore(final LoginStore.Mode mode, final int buckets) {
+        loginStore = new LoginStore(redisClient, mode, buckets);
+        log.info("登录信息存储方式为{}，buckets={}", mode, buckets);
+    }
+
+    /**
+     * 把单个登录hash中的令牌迁移到桶里，耗时与令牌数成正比，调用线程一直阻塞到遍历完成.
+     *
+     * @param batchSize 每批令牌数
+     * @return 迁移结果
+     */
+    public LoginStore.MigrationResult migrateLogins(final int batchSize) {
+        return loginStore().migrate(batchSize);
+    }
+
+    /**
+     * 比较单个登录hash和分桶存储的内存占用.
+     *
+     * @param sampleBuckets  测量内存的桶数
+     * @param expectedTokens 预计的令牌数，用于给出建议桶数
+     * @return 报告
+     */
+    public LoginStore.MemoryReport loginMemoryReport(final int sampleBuckets, final long expectedTokens) {
+        return loginStore().memoryReport(sampleBuckets, expectedTokens);
+    }
+
+    /**
+     * 删除令牌的登录信息，并让所有实例的本地缓存失效.
+     *
+     * @param tokens 令牌
+     */
+    public void removeTokens(final String... tokens) {
+        if (tokens.length == 0) {
+            return;
+        }
+        loginStore().remove(tokens);
+        invalidateTokens(tokens);
+    }
+
+    /**
+     * 删除令牌时每个登录hash要删除的field，供清理器把删除命令和其他清理命令放进同一个管道；
+     * 删除完成后需要调用{@link #invalidateTokens}.
+     *
+     * @param tokens 令牌
+     * @return 登录hash的key到要删除的令牌
+     */
+    public Map<String, List<String>> loginRemovals(final String... tokens) {
+        return loginStore().removals(tokens);
+    }
+
+    /**
+     * 令牌从登录hash删除之后调用，本地失效并广播给所有实例. 本实例没有开启缓存时也会广播.
+     *
+     * @param tokens 被删除的令牌
+     */
+    public void invalidateTokens(final String... tokens) {
+        if (tokens.length == 0) {
+            return;
+        }
+        final NearCache cache = tokenCache;
+        if (cache != null) {
+            cache.invalidate(TOKEN_CACHE_KEY, tokens);
+        } else {
+            redisClient.publish(RedisKeyConstants.TOKEN_INVALIDATE_CHANNEL,
+                    NearCache.message("", TOKEN_CACHE_KEY, tokens));
+        }
+    }
+
+    /**
+     * 关闭时把缓冲中的更新全部写入，再关闭本地缓存.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (writeBehind != null) {
+            writeBehind.close();
+            writeBehind = null;
+        }
+        if (tokenCache != null) {
+            tokenCache.close();
+            tokenCache = null;
+        }
+    }
+
+    /**
+     * 批量记录页面访问，同一令牌的多次访问合并：用户id和时间戳取时间戳最大的一次，时间戳相同时取后面的，与延迟写的合并规则一致.
+     * 所有写入按节点分组，每组一个管道，单机模式下整批只有一次往返.
+     * 非原子操作，与逐条调用{@link #updateToken}一样，部分写入失败时已发送的写入不会回滚.
+     * 开启本地缓存时，写入成功后把登录信息放入缓存，必要时广播让其他实例丢弃负缓存.
+     * 开启浏览事件时，写入成功后按传入顺序为每次浏览追加一个事件，同一令牌的多次浏览不合并.
+     *
+     * @param updates 页面访问
+     */
+    public void updateTokens(final Collection<TokenUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        final Map<String, TokenUpdate> latest = new HashMap<>(updates.size() * 2);
+        final Map<String, Map<String, Double>> views = new LinkedHashMap<>();
+        for (TokenUpdate update : updates) {
+            latest.merge(update.getToken(), update,
+                    (old, current) -> current.getTimestamp() >= old.getTimestamp() ? current : old);
+            if (StringUtils.isNotBlank(update.getItem())) {
+                views.computeIfAbsent(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + update.getToken(),
+                        key -> new HashMap<>(4)).merge(update.getItem(), (double) update.getTimestamp(), Math::max);
+            }
+        }
+        final Map<String, String> logins = new HashMap<>(latest.size() * 2);
+        final Map<String, Double> recents = new HashMap<>(latest.size() * 2);
+        for (TokenUpdate update : latest.values()) {
+            logins.put(update.getToken(), update.getUserId());
+            recents.put(update.getToken(), (double) update.getTimestamp());
+        }
+        final Map<String, Map<String, String>> loginGroups = loginStore().group(logins);
+        final List<String> keys = new ArrayList<>(loginGroups.size() + views.size() + 1);
+        keys.addAll(loginGroups.keySet());
+        keys.add(RedisKeyConstants.RECENT_ZSET_KEY);
+        keys.addAll(views.keySet());
+        final List<List<Object>> results = redisClient.pipelined(keys, (pipeline, group) -> {
+            for (String key : group) {
+                if (loginGroups.containsKey(key)) {
+                    pipeline.hset(key, loginGroups.get(key));
+                } else if (RedisKeyConstants.RECENT_ZSET_KEY.equals(key)) {
+                    pipeline.zadd(key, recents);
+                } else {
+                    pipeline.zadd(key, views.get(key));
+                    // 保留最近25条记录
+                    pipeline.zremRangeByRank(key, 0, -VIEW_LIMIT - 1);
+                }
+            }
+        });
+        for (List<Object> group : results) {
+            for (Object result : group) {
+                if (result instanceof JedisDataException) {
+                    throw (JedisDataException) result;
+                }
+            }
+        }
+        final NearCache cache = tokenCache;
+        if (cache != null) {
+            logins.forEach((token, userId) -> cache.put(TOKEN_CACHE_KEY, token, userId));
+        }
+        final EventStream events = viewEvents;
+        if (events != null && !views.isEmpty()) {
+            publishViews(events, updates);
+        }
+    }
+
+    private static void publishViews(final EventStream events, final Collection<TokenUpdate> updates) {
+        for (TokenUpdate update : updates) {
+            if (StringUtils.isNotBlank(update.getItem())) {
+                final Map<String, String> fields = new LinkedHashMap<>(8);
+                fields.put("token", update.getToken());
+                fields.put("userId", update.getUserId());
+                fields.put("item", update.getItem());
+                fields.put("timestamp", Long.toString(update.getTimestamp()));
+                events.publish(fields);
+            }
         }
     }
 }
@@ -0,0 +1,42 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import lombok.Data;
+
+/**
+ * <P>Description: 一次页面访问对令牌的更新，用于{@link TokenService#updateTokens}批量提交. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/25 14:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class TokenUpdate {
+
+    private String token;
+
+    private String userId;
+
+    /**
+     * 浏览的商品，为空代表没有浏览商品.
+     */
+    private String item;
+
+    /**
+     * 访问时间戳（毫秒）.
+     */
+    private long timestamp;
+
+    public TokenUpdate() {
+    }
+
+    public TokenUpdate(final String token, final String userId, final String item, final long timestamp) {
+        this.token = token;
+        this.userId = userId;
+        this.item = item;
+        this.timestamp = timestamp;
+    }
+}
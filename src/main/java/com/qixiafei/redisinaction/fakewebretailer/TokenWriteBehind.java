@@ -0,0 +1,405 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * <P>Description: 令牌更新的延迟写缓冲. 请求线程只把更新合并进内存，后台线程定期把缓冲的令牌成批交给writer写入redis.
+ * 同一令牌在一个窗口内的多次更新合并成一条：用户id和最近访问时间取时间戳最大的一次，浏览记录按商品取最大时间戳，最多保留25条.
+ * 合并用ConcurrentHashMap的putIfAbsent/replace做CAS，不持有全局锁；缓冲的令牌数达到capacity后新令牌直接同步写入，内存有上限.
+ * 进程宕机时最多丢失一个窗口内的更新，关闭时会把剩余更新全部写入. 连接异常时这一批合并回缓冲重试，
+ * 数据错误（如WRONGTYPE）重试也不会成功，这一批记录日志后丢弃. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/25 16:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class TokenWriteBehind implements Closeable {
+
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    /**
+     * 每个令牌缓冲的浏览记录上限，与redis中保留的条数一致.
+     */
+    private final int viewLimit;
+
+    private final Consumer<List<TokenUpdate>> writer;
+
+    private final int capacity;
+
+    private final long flushIntervalNanos;
+
+    private final int flushBatchSize;
+
+    private final ConcurrentHashMap<String, Pending> buffer = new ConcurrentHashMap<>();
+
+    /**
+     * 缓冲的令牌数，ConcurrentHashMap.size()需要遍历计数器，这里单独维护.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 已从缓冲取出、正在写入的一批，写入完成前仍对{@link #bufferedUser}可见.
+     */
+    private volatile Map<String, Pending> writing = Collections.emptyMap();
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder merged = new LongAdder();
+
+    private final LongAdder overflow = new LongAdder();
+
+    private final LongAdder flushedTokens = new LongAdder();
+
+    private final LongAdder flushes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder droppedTokens = new LongAdder();
+
+    /**
+     * @param writer              批量写入，通常是{@link TokenService#updateTokens}
+     * @param viewLimit           每个令牌缓冲的浏览记录上限
+     * @param capacity            最多缓冲的令牌数
+     * @param flushIntervalMillis 两次写入之间的最长间隔（毫秒），即合并窗口
+     * @param flushBatchSize      一次写入的令牌数，缓冲达到这个数量时提前写入
+     */
+    TokenWriteBehind(final Consumer<List<TokenUpdate>> writer, final int viewLimit, final int capacity,
+                     final long flushIntervalMillis, final int flushBatchSize) {
+        if (capacity <= 0 || flushIntervalMillis <= 0 || flushBatchSize <= 0) {
+            throw new IllegalArgumentException("capacity、flushIntervalMillis、flushBatchSize必须大于0");
+        }
+        this.writer = writer;
+        this.viewLimit = viewLimit;
+        this.capacity = capacity;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flushBatchSize = flushBatchSize;
+        this.flusher = new Thread(this::run, "token write behind t");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 把一次更新合并进缓冲.
+     *
+     * @param update 更新
+     * @return 是否已缓冲，缓冲已满且是新令牌时返回false，调用方需要自己同步写入
+     */
+    boolean offer(final TokenUpdate update) {
+        if (!running) {
+            return false;
+        }
+        final String token = update.getToken();
+        while (true) {
+            final Pending current = buffer.get(token);
+            if (current == null) {
+                if (size.get() >= capacity) {
+                    overflow.increment();
+                    return false;
+                }
+                if (buffer.putIfAbsent(token, Pending.of(update)) == null) {
+                    accepted.increment();
+                    if (size.incrementAndGet() >= flushBatchSize) {
+                        LockSupport.unpark(flusher);
+                    }
+                    return true;
+                }
+            } else if (buffer.replace(token, current, current.merge(update, viewLimit))) {
+                accepted.increment();
+                merged.increment();
+                return true;
+            }
+            // 与其他线程或后台写入竞争失败，重新读取
+        }
+    }
+
+    /**
+     * 缓冲中令牌对应的用户id，保证本进程写入后立即可读.
+     *
+     * @param token 令牌
+     * @return 用户id，没有缓冲时返回null
+     */
+    String bufferedUser(final String token) {
+        Pending pending = buffer.get(token);
+        if (pending == null) {
+            pending = writing.get(token);
+        }
+        return pending == null ? null : pending.userId;
+    }
+
+    private void run() {
+        while (running) {
+            // parkNanos可能提前返回，按截止时间等待，缓冲达到flushBatchSize或关闭时被唤醒
+            final long deadline = System.nanoTime() + flushIntervalNanos;
+            long remain;
+            while (running && size.get() < flushBatchSize && (remain = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remain);
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("令牌延迟写入失败，{}ms后重试", ERROR_BACKOFF_MILLIS, e);
+                sleep(ERROR_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * 把缓冲中的全部令牌成批写入. 连接异常时这一批合并回缓冲，下次重试；数据错误时这一批丢弃.
+     */
+    void flush() {
+        final Iterator<String> tokens = buffer.keySet().iterator();
+        while (tokens.hasNext()) {
+            // 先发布正在写入的一批，再从缓冲移出，令牌任何时候都在两者之一中可见
+            final Map<String, Pending> batch = new ConcurrentHashMap<>(flushBatchSize * 2);
+            writing = batch;
+            try {
+                while (batch.size() < flushBatchSize && tokens.hasNext()) {
+                    take(tokens.next(), batch);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                write(batch);
+            } finally {
+                writing = Collections.emptyMap();
+            }
+        }
+    }
+
+    /**
+     * 把令牌从缓冲移到正在写入的一批. 移出前被合并了新的更新时重新读取.
+     */
+    private void take(final String token, final Map<String, Pending> batch) {
+        while (true) {
+            final Pending pending = buffer.get(token);
+            if (pending == null) {
+                batch.remove(token);
+                return;
+            }
+            batch.put(token, pending);
+            if (buffer.remove(token, pending)) {
+                size.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void write(final Map<String, Pending> batch) {
+        final List<TokenUpdate> updates = new ArrayList<>(batch.size() * 2);
+        for (Map.Entry<String, Pending> entry : batch.entrySet()) {
+            entry.getValue().appendTo(entry.getKey(), updates);
+        }
+        try {
+            writer.accept(updates);
+        } catch (JedisDataException e) {
+            failures.increment();
+            droppedTokens.add(batch.size());
+            log.error("令牌延迟写入出现数据错误，丢弃{}个令牌的更新", batch.size(), e);
+            return;
+        } catch (JedisException e) {
+            failures.increment();
+            batch.forEach(this::restore);
+            throw e;
+        } catch (RuntimeException e) {
+            failures.increment();
+            droppedTokens.add(batch.size());
+            log.error("令牌延迟写入失败，丢弃{}个令牌的更新", batch.size(), e);
+            return;
+        }
+        flushes.increment();
+        flushedTokens.add(batch.size());
+    }
+
+    /**
+     * 写入失败的更新合并回缓冲，不受capacity限制，避免丢失.
+     */
+    private void restore(final String token, final Pending failed) {
+        buffer.compute(token, (key, current) -> {
+            if (current == null) {
+                size.incrementAndGet();
+                return failed;
+            }
+            return current.merge(token, failed, viewLimit);
+        });
+    }
+
+    /**
+     * 停止后台线程，把剩余的更新全部写入.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + ERROR_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("关闭时写入剩余令牌更新失败，丢失{}个令牌的更新", size.get(), e);
+        }
+    }
+
+    /**
+     * 获取延迟写统计.
+     *
+     * @return 统计信息
+     */
+    public Stats stats() {
+        final Stats stats = new Stats();
+        stats.setBuffered(size.get());
+        stats.setCapacity(capacity);
+        stats.setAccepted(accepted.sum());
+        stats.setMerged(merged.sum());
+        stats.setOverflow(overflow.sum());
+        stats.setFlushedTokens(flushedTokens.sum());
+        stats.setFlushes(flushes.sum());
+        stats.setFailures(failures.sum());
+        stats.setDroppedTokens(droppedTokens.sum());
+        return stats;
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 一个令牌缓冲中的更新，不可变，合并时生成新对象.
+     */
+    private static final class Pending {
+
+        private static final Comparator<Map.Entry<String, Long>> OLDEST_FIRST =
+                Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey());
+
+        private final String userId;
+
+        private final long timestamp;
+
+        /**
+         * 商品到浏览时间戳.
+         */
+        private final Map<String, Long> items;
+
+        private Pending(final String userId, final long timestamp, final Map<String, Long> items) {
+            this.userId = userId;
+            this.timestamp = timestamp;
+            this.items = items;
+        }
+
+        static Pending of(final TokenUpdate update) {
+            final boolean hasItem = update.getItem() != null && !update.getItem().trim().isEmpty();
+            return new Pending(update.getUserId(), update.getTimestamp(), hasItem
+                    ? Collections.singletonMap(update.getItem(), update.getTimestamp()) : Collections.emptyMap());
+        }
+
+        /**
+         * 合并一次更新，时间戳大的一方生效.
+         */
+        Pending merge(final TokenUpdate update, final int viewLimit) {
+            final boolean newer = update.getTimestamp() >= timestamp;
+            final String item = update.getItem();
+            Map<String, Long> mergedItems = items;
+            if (item != null && !item.trim().isEmpty()) {
+                final Long old = items.get(item);
+                if (old == null || old < update.getTimestamp()) {
+                    mergedItems = new HashMap<>(items);
+                    mergedItems.put(item, update.getTimestamp());
+                    if (mergedItems.size() > viewLimit) {
+                        // 去掉最旧的一条，时间戳相同时与zset一样先去掉字典序小的，redis中也只会保留最近的viewLimit条
+                        mergedItems.remove(Collections.min(mergedItems.entrySet(), OLDEST_FIRST).getKey());
+                    }
+                }
+            }
+            return new Pending(newer ? update.getUserId() : userId, Math.max(timestamp, update.getTimestamp()),
+                    mergedItems);
+        }
+
+        /**
+         * 合并同一令牌的另一份缓冲.
+         */
+        Pending merge(final String token, final Pending other, final int viewLimit) {
+            Pending result = merge(new TokenUpdate(token, other.userId, null, other.timestamp), viewLimit);
+            for (Map.Entry<String, Long> item : other.items.entrySet()) {
+                result = result.merge(new TokenUpdate(token, result.userId, item.getKey(), item.getValue()),
+                        viewLimit);
+            }
+            return result;
+        }
+
+        void appendTo(final String token, final List<TokenUpdate> updates) {
+            if (items.isEmpty()) {
+                updates.add(new TokenUpdate(token, userId, null, timestamp));
+                return;
+            }
+            // 最后一条携带最新的用户id和时间戳，updateTokens按时间戳取最大值
+            for (Map.Entry<String, Long> item : items.entrySet()) {
+                updates.add(new TokenUpdate(token, userId, item.getKey(), item.getValue()));
+            }
+            updates.add(new TokenUpdate(token, userId, null, timestamp));
+        }
+    }
+
+    /**
+     * 延迟写统计.
+     */
+    @Data
+    public static class Stats {
+        /**
+         * 当前缓冲的令牌数.
+         */
+        private int buffered;
+        private int capacity;
+        /**
+         * 进入缓冲的更新数.
+         */
+        private long accepted;
+        /**
+         * 合并进已缓冲令牌的更新数.
+         */
+        private long merged;
+        /**
+         * 缓冲已满改为同步写入的更新数.
+         */
+        private long overflow;
+        private long flushedTokens;
+        private long flushes;
+        private long failures;
+        /**
+         * 因数据错误丢弃的令牌数.
+         */
+        private long droppedTokens;
+    }
+}
@@ -1,12 +1,9 @@
 package com.qixiafei.redisinaction.fakewebretailer.cleaner;
 
 import com.qixiafei.redisinaction.RedisKeyConstants;
-import com.qixiafei.redisinaction.jedis.RedisClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
-
 /**
  * <P>Description: 清除用户购物车信息. </P>
  * <P>CALLED BY:   齐霞飞 </P>
@@ -22,17 +19,13 @@ import javax.annotation.Resource;
 @Component
 public class CartCleaner implements CustomCleaner {
 
-    @Resource
-    private RedisClient redisClient;
-
     @Override
-    public void clean(String[] tokenArr) {
-        final int size = tokenArr.length;
-        final String[] cartKeyArr = new String[size];
-        for (int i = 0; i < size; i++) {
-            cartKeyArr[i] = RedisKeyConstants.CART_HASH_KEY_PREFIX + tokenArr[i];
+    public void clean(String[] tokenArr, CleanPlan plan) {
+        // 分片模式下购物车分布在不同节点上，每个key一条del
+        for (String token : tokenArr) {
+            final String cartKey = RedisKeyConstants.CART_HASH_KEY_PREFIX + token;
+            plan.add(cartKey, pipeline -> pipeline.del(cartKey));
         }
-        redisClient.del(cartKeyArr);
     }
 
     @Override
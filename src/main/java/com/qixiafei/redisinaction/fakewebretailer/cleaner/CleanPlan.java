@@ -0,0 +1,108 @@
+package com.qixiafei.redisinaction.fakewebretailer.cleaner;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.RedisPipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <P>Description: 一批令牌的清理命令. 各清理器把命令按key加入同一个计划，由{@link SessionCleaner}按节点分组，
+ * 每个阶段每组一个管道发送，一批令牌不再按清理器各走一次往返.
+ * 命令分两个阶段：{@link #add}加入的删除命令先发送，所有分组都没有错误后才发送{@link #addFinal}加入的命令.
+ * redis在管道中某个命令出错后仍会执行后面的命令，分片模式下各节点的管道也是并行的，同一个管道里排在最后并不能保证顺序，
+ * 所以驱动清理的recent zset放在第二阶段：删除失败的令牌留在zset里，下一轮重试. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/27 10:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class CleanPlan {
+
+    private final Map<String, List<RedisClient.BatchTask>> commands = new LinkedHashMap<>();
+
+    private final Map<String, List<RedisClient.BatchTask>> finalCommands = new LinkedHashMap<>();
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    private int size;
+
+    CleanPlan() {
+    }
+
+    /**
+     * 加入一条第一阶段的命令.
+     *
+     * @param key     命令操作的key，用于按节点分组
+     * @param command 命令，只能操作这个key
+     */
+    public void add(final String key, final RedisClient.BatchTask command) {
+        commands.computeIfAbsent(key, k -> new ArrayList<>(2)).add(command);
+        size++;
+    }
+
+    /**
+     * 加入一条第二阶段的命令，第一阶段的命令全部成功后才发送.
+     *
+     * @param key     命令操作的key，用于按节点分组
+     * @param command 命令，只能操作这个key
+     */
+    public void addFinal(final String key, final RedisClient.BatchTask command) {
+        finalCommands.computeIfAbsent(key, k -> new ArrayList<>(1)).add(command);
+        size++;
+    }
+
+    /**
+     * 所有命令执行成功后在清理线程中调用.
+     *
+     * @param callback 回调
+     */
+    public void afterExecute(final Runnable callback) {
+        callbacks.add(callback);
+    }
+
+    Set<String> keys() {
+        return commands.keySet();
+    }
+
+    Set<String> finalKeys() {
+        return finalCommands.keySet();
+    }
+
+    /**
+     * 把第一阶段一个分组的命令写入管道.
+     */
+    void exec(final RedisPipeline pipeline, final String[] group) {
+        exec(commands, pipeline, group);
+    }
+
+    /**
+     * 把第二阶段一个分组的命令写入管道.
+     */
+    void execFinal(final RedisPipeline pipeline, final String[] group) {
+        exec(finalCommands, pipeline, group);
+    }
+
+    void executed() {
+        callbacks.forEach(Runnable::run);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static void exec(final Map<String, List<RedisClient.BatchTask>> byKey, final RedisPipeline pipeline,
+                             final String[] group) {
+        for (String key : group) {
+            byKey.getOrDefault(key, Collections.emptyList()).forEach(command -> command.exec(pipeline));
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.qixiafei.redisinaction.fakewebretailer.cleaner;
 
-import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.fakewebretailer.RetailerProperties;
 import com.qixiafei.redisinaction.jedis.RedisClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
@@ -8,15 +8,12 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
 
 /**
- * <P>Description: 随程序启动启动，若登录用户信息超过LIMIT配置，以指定每次最多BATCH_SIZE清除最久不访问的用户. </P>
+ * <P>Description: 随程序启动启动，若登录用户信息超过配置的limit，由{@link SessionCleaner}多线程分批清除最久不访问的用户. </P>
  * <P>CALLED BY:   齐霞飞 </P>
  * <P>UPDATE BY:    </P>
  * <P>CREATE DATE: 2019/5/6 10:27</P>
@@ -30,66 +27,35 @@ import java.util.stream.Collectors;
 @Component
 public class Cleaner implements ApplicationContextAware {
 
-    private static final long LIMIT = 10000000; // 1000万
-    private static final long BATCH_SIZE = 100; //一次最多100个
-
-
     @Resource
     private RedisClient redisClient;
 
+    @Resource
+    private RetailerProperties prop;
+
+    private SessionCleaner sessionCleaner;
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
-        final Thread t = new Thread(new CleanerT(redisClient, applicationContext.getBeansOfType(CustomCleaner.class).entrySet().stream().map(Map.Entry::getValue).collect(Collectors.toSet())));
-        t.setDaemon(true);
-        t.setName("clean session t");
-        t.start();
+        final RetailerProperties.CleanerConfig config = prop.getCleaner();
+        sessionCleaner = new SessionCleaner(redisClient,
+                new ArrayList<>(applicationContext.getBeansOfType(CustomCleaner.class).values()),
+                config.getLimit(), config.getWorkers(), config.getMinBatchSize(), config.getMaxBatchSize(),
+                config.getTargetBatchMillis());
     }
 
-    private static class CleanerT implements Runnable {
-
-        private RedisClient redisClient;
-        private Set<CustomCleaner> cleanerList;
-
-        private CleanerT(final RedisClient redisClient, final Set<CustomCleaner> cleanerList) {
-            this.redisClient = redisClient;
-            if (cleanerList == null || cleanerList.isEmpty()) {
-                log.warn("清理器没有清理执行器，将不产生实际作用");
-                this.cleanerList = Collections.emptySet();
-            } else {
-                this.cleanerList = cleanerList;
-                for (CustomCleaner customCleaner : cleanerList) {
-                    customCleaner.regLog();
-                }
-            }
-        }
-
-
-        @Override
-        public void run() {
-            while (true) {
-                final long size = redisClient.zcard(RedisKeyConstants.RECENT_ZSET_KEY);
-                if (size > LIMIT) {
-                    // 从zset头部移除token，
-                    final long end_index = Math.min(BATCH_SIZE, size - LIMIT);
-                    final Set<String> tokens = redisClient.zrange(RedisKeyConstants.RECENT_ZSET_KEY, 0, end_index - 1);
-                    // 一次完成多个key删除，效率更好
-                    final int tokenSize = tokens.size();
-                    final String[] tokensArr = new String[tokenSize];
-                    tokens.toArray(tokensArr);
-                    for (CustomCleaner customCleaner : cleanerList) {
-                        customCleaner.clean(tokensArr);
-                    }
-
-                    continue;
-                }
+    /**
+     * 获取会话清理统计.
+     *
+     * @return 统计信息
+     */
+    public SessionCleaner.Stats stats() {
+        return sessionCleaner.stats();
+    }
 
-                try {
-                    TimeUnit.SECONDS.sleep(1);
-                } catch (InterruptedException e) {
-                    log.error("clean session thread has bean interrupted!", e);
-                }
-            }
-        }
+    @PreDestroy
+    public void shutdown() {
+        sessionCleaner.close();
     }
 
     private static final int CAPACITY = (1 << 27) - 1;
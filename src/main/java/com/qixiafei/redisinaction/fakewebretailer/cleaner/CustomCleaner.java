@@ -14,11 +14,12 @@ package com.qixiafei.redisinaction.fakewebretailer.cleaner;
 public interface CustomCleaner {
 
     /**
-     * 执行清理.
+     * 把清理命令加入计划，由清理线程和其他清理器的命令在同一个管道里发送，清理器本身不访问redis.
      *
      * @param tokenArr 要清理的token数组
+     * @param plan     这批token的清理计划
      */
-    void clean(final String[] tokenArr);
+    void clean(final String[] tokenArr, final CleanPlan plan);
 
     /**
      * 打印注册成功日志.
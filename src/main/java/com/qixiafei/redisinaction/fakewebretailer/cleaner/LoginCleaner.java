@@ -1,14 +1,13 @@
 package com.qixiafei.redisinaction.fakewebretailer.cleaner;
 
-import com.qixiafei.redisinaction.RedisKeyConstants;
-import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.fakewebretailer.TokenService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 
 /**
- * <P>Description: 清除登录信息. </P>
+ * <P>Description: 清除登录信息，并广播让所有实例的令牌本地缓存失效. </P>
  * <P>CALLED BY:   齐霞飞 </P>
  * <P>UPDATE BY:    </P>
  * <P>CREATE DATE: 2019/5/6 18:40</P>
@@ -23,12 +22,15 @@ import javax.annotation.Resource;
 public class LoginCleaner implements CustomCleaner {
 
     @Resource
-    private RedisClient redisClient;
+    private TokenService tokenService;
 
     @Override
-    public void clean(String[] tokenArr) {
-        redisClient.hdel(RedisKeyConstants.LOGIN_HASH_KEY, tokenArr);
-        log.info("");
+    public void clean(String[] tokenArr, CleanPlan plan) {
+        tokenService.loginRemovals(tokenArr).forEach((key, tokens) -> {
+            final String[] fields = tokens.toArray(new String[0]);
+            plan.add(key, pipeline -> pipeline.hdel(key, fields));
+        });
+        plan.afterExecute(() -> tokenService.invalidateTokens(tokenArr));
     }
 
     @Override
@@ -1,12 +1,9 @@
 package com.qixiafei.redisinaction.fakewebretailer.cleaner;
 
 import com.qixiafei.redisinaction.RedisKeyConstants;
-import com.qixiafei.redisinaction.jedis.RedisClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
-
 /**
  * <P>Description: 清除最新访问记录. </P>
  * <P>CALLED BY:   齐霞飞 </P>
@@ -22,12 +19,11 @@ import javax.annotation.Resource;
 @Component
 public class RecentCleaner implements CustomCleaner {
 
-    @Resource
-    private RedisClient redisClient;
-
     @Override
-    public void clean(String[] tokenArr) {
-        redisClient.zrem(RedisKeyConstants.RECENT_ZSET_KEY, tokenArr);
+    public void clean(String[] tokenArr, CleanPlan plan) {
+        // 其他清理命令全部成功后才删除，失败时令牌留在zset里等下一轮
+        plan.addFinal(RedisKeyConstants.RECENT_ZSET_KEY,
+                pipeline -> pipeline.zrem(RedisKeyConstants.RECENT_ZSET_KEY, tokenArr));
     }
 
     @Override
@@ -0,0 +1,428 @@
+package com.qixiafei.redisinaction.fakewebretailer.cleaner;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: 会话清理. 协调线程每轮用ZCARD计算recent zset超出limit的积压，按排名把积压切成几段互不重叠的score区间，
+ * 交给工作线程并行清理；每个线程在自己的区间里按score游标用ZRANGEBYSCORE ... LIMIT分批取令牌，
+ * 一批令牌所有清理器的命令放进一个{@link CleanPlan}，按节点分组后每组一个管道发送，删除全部成功后再从recent zset移除.
+ * 批大小按积压计算，并受批次耗时调整的上限约束：超过目标耗时减半，低于一半且用满时加倍.
+ * 没有积压时，会话数接近limit休眠100ms，否则休眠1s.
+ * 多个实例各自运行时区间会重叠，清理命令都是幂等的，只是重复劳动. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/27 10:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class SessionCleaner implements Closeable {
+
+    private static final long IDLE_MILLIS = 1000;
+
+    private static final long NEAR_LIMIT_MILLIS = 100;
+
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    /**
+     * 每个工作线程计划用几批清完本轮分到的积压.
+     */
+    private static final int BATCHES_PER_ROUND = 4;
+
+    /**
+     * 每秒清理数的指数平滑系数.
+     */
+    private static final double RATE_ALPHA = 0.3;
+
+    private final RedisClient redisClient;
+
+    private final List<CustomCleaner> cleaners;
+
+    private final long limit;
+
+    private final int workers;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long targetBatchNanos;
+
+    private final ExecutorService pool;
+
+    private final Thread coordinator;
+
+    private volatile boolean running = true;
+
+    /**
+     * 按批次耗时调整的批大小上限.
+     */
+    private final AtomicInteger batchCap;
+
+    /**
+     * 本轮按积压计算的批大小.
+     */
+    private volatile int roundBatchSize;
+
+    private volatile int activeWorkers;
+
+    private volatile long size;
+
+    private volatile long backlog;
+
+    private volatile double tokensPerSecond;
+
+    private volatile long lastRoundMillis;
+
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder cleanedTokens = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder commands = new LongAdder();
+
+    private final LongAdder batchNanos = new LongAdder();
+
+    private final LongAdder rounds = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param redisClient       redis客户端
+     * @param cleaners          清理器，为空时不做任何清理
+     * @param limit             最多保留的会话数
+     * @param workers           工作线程数
+     * @param minBatchSize      每批令牌数下限
+     * @param maxBatchSize      每批令牌数上限
+     * @param targetBatchMillis 每批的目标耗时（毫秒）
+     */
+    public SessionCleaner(final RedisClient redisClient, final List<CustomCleaner> cleaners, final long limit,
+                          final int workers, final int minBatchSize, final int maxBatchSize,
+                          final long targetBatchMillis) {
+        if (limit < 0 || workers <= 0 || minBatchSize <= 0 || maxBatchSize < minBatchSize
+                || targetBatchMillis <= 0) {
+            throw new IllegalArgumentException("limit不能小于0，workers、minBatchSize、targetBatchMillis必须大于0，"
+                    + "maxBatchSize不能小于minBatchSize");
+        }
+        this.redisClient = redisClient;
+        this.cleaners = new ArrayList<>(cleaners);
+        this.limit = limit;
+        this.workers = workers;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetBatchNanos = TimeUnit.MILLISECONDS.toNanos(targetBatchMillis);
+        this.batchCap = new AtomicInteger(minBatchSize);
+        this.roundBatchSize = minBatchSize;
+        this.pool = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                .setNameFormat("clean session worker t-%d").setDaemon(true).build());
+        if (this.cleaners.isEmpty()) {
+            log.warn("清理器没有清理执行器，将不产生实际作用");
+        }
+        this.cleaners.forEach(CustomCleaner::regLog);
+        this.coordinator = new Thread(this::run, "clean session t");
+        this.coordinator.setDaemon(true);
+        this.coordinator.start();
+    }
+
+    private void run() {
+        long lastNanos = System.nanoTime();
+        long lastCleaned = 0;
+        while (running) {
+            long sleepMillis;
+            try {
+                sleepMillis = cleaners.isEmpty() ? IDLE_MILLIS : round();
+            } catch (JedisException e) {
+                failures.increment();
+                log.warn("清理会话失败，{}ms后重试", ERROR_BACKOFF_MILLIS, e);
+                sleepMillis = ERROR_BACKOFF_MILLIS;
+            }
+            if (sleepMillis > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                    log.error("clean session thread has bean interrupted!", e);
+                }
+            }
+            // 空闲时也参与平滑，积压清完后速率逐渐回落到0
+            final long now = System.nanoTime();
+            final long cleaned = cleanedTokens.sum();
+            final double rate = (cleaned - lastCleaned) * 1e9 / Math.max(1, now - lastNanos);
+            tokensPerSecond = tokensPerSecond * (1 - RATE_ALPHA) + rate * RATE_ALPHA;
+            lastNanos = now;
+            lastCleaned = cleaned;
+        }
+    }
+
+    /**
+     * 清理一轮积压.
+     *
+     * @return 之后需要休眠的毫秒数
+     */
+    private long round() {
+        final long total = redisClient.zcard(RedisKeyConstants.RECENT_ZSET_KEY);
+        size = total;
+        final long excess = total - limit;
+        if (excess <= 0) {
+            backlog = 0;
+            activeWorkers = 0;
+            // 与limit相差不到1%时缩短休眠，尖峰时尽早开始清理
+            return limit - total <= limit / 100 ? NEAR_LIMIT_MILLIS : IDLE_MILLIS;
+        }
+        backlog = excess;
+        final int parallelism = (int) Math.min(workers, (excess + minBatchSize - 1) / minBatchSize);
+        final long perWorker = (excess + parallelism - 1) / parallelism;
+        roundBatchSize = (int) Math.max(minBatchSize,
+                Math.min(maxBatchSize, (perWorker + BATCHES_PER_ROUND - 1) / BATCHES_PER_ROUND));
+
+        final long start = System.nanoTime();
+        final List<Future<Long>> futures = new ArrayList<>(parallelism);
+        for (String[] range : split(excess, parallelism)) {
+            futures.add(pool.submit(() -> cleanRange(range[0], range[1])));
+        }
+        activeWorkers = futures.size();
+        // 等待所有区间结束再抛出异常，下一轮不会与还在运行的区间重叠
+        JedisException error = null;
+        for (Future<Long> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof JedisException ? (JedisException) e.getCause()
+                            : new JedisException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                return 0;
+            }
+        }
+        rounds.increment();
+        lastRoundMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (error != null) {
+            throw error;
+        }
+        return 0;
+    }
+
+    /**
+     * 按排名把积压切成parallelism段，相邻两段以分段处的score为界：前一段包含边界，后一段不包含.
+     *
+     * @return 每段的最小、最大score，ZRANGEBYSCORE的写法
+     */
+    private List<String[]> split(final long excess, final int parallelism) {
+        final List<String[]> ranges = new ArrayList<>(parallelism);
+        String min = "-inf";
+        Double lastScore = null;
+        for (int i = 1; i <= parallelism; i++) {
+            final long rank = excess * i / parallelism - 1;
+            final Set<Tuple> boundary = redisClient.zrangeWithScores(RedisKeyConstants.RECENT_ZSET_KEY, rank, rank);
+            if (boundary.isEmpty()) {
+                // 统计之后zset被其他实例清理过，已有的区间足够
+                break;
+            }
+            final double score = boundary.iterator().next().getScore();
+            if (lastScore != null && score == lastScore) {
+                continue;
+            }
+            final String max = Double.toString(score);
+            ranges.add(new String[]{min, max});
+            min = "(" + max;
+            lastScore = score;
+        }
+        return ranges;
+    }
+
+    /**
+     * 分批清理一个score区间内的令牌. 游标按每批最后一个令牌的score推进，清理器没有把令牌移出recent zset时也不会重复清理；
+     * 与批次末尾score相同、没有取到的令牌留给下一轮.
+     *
+     * @return 清理的令牌数
+     */
+    private long cleanRange(final String min, final String max) {
+        String from = min;
+        long cleaned = 0;
+        while (running) {
+            final int batchSize = Math.min(roundBatchSize, batchCap.get());
+            final Set<Tuple> batch = redisClient.zrangeByScoreWithScores(RedisKeyConstants.RECENT_ZSET_KEY,
+                    from, max, 0, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            final String[] tokens = new String[batch.size()];
+            double lastScore = 0;
+            int i = 0;
+            for (Tuple tuple : batch) {
+                tokens[i++] = tuple.getElement();
+                lastScore = tuple.getScore();
+            }
+            final long start = System.nanoTime();
+            clean(tokens);
+            adjust(batchSize, System.nanoTime() - start);
+            cleaned += tokens.length;
+            if (tokens.length < batchSize) {
+                break;
+            }
+            from = "(" + lastScore;
+        }
+        return cleaned;
+    }
+
+    /**
+     * 一批令牌的所有清理命令按节点分组，每组一个管道；删除全部成功后再从recent zset移除.
+     */
+    private void clean(final String[] tokens) {
+        final CleanPlan plan = new CleanPlan();
+        for (CustomCleaner cleaner : cleaners) {
+            cleaner.clean(tokens, plan);
+        }
+        final long start = System.nanoTime();
+        check(redisClient.pipelined(plan.keys(), plan::exec));
+        if (!plan.finalKeys().isEmpty()) {
+            check(redisClient.pipelined(plan.finalKeys(), plan::execFinal));
+        }
+        plan.executed();
+        batchNanos.add(System.nanoTime() - start);
+        batches.increment();
+        commands.add(plan.size());
+        cleanedTokens.add(tokens.length);
+    }
+
+    private static void check(final List<List<Object>> results) {
+        for (List<Object> group : results) {
+            for (Object result : group) {
+                if (result instanceof JedisDataException) {
+                    throw (JedisDataException) result;
+                }
+            }
+        }
+    }
+
+    /**
+     * 批次耗时超过目标时上限减半，低于目标一半且用满上限时加倍.
+     */
+    private void adjust(final int batchSize, final long nanos) {
+        if (nanos > targetBatchNanos) {
+            batchCap.updateAndGet(cap -> Math.max(minBatchSize, cap / 2));
+        } else if (nanos < targetBatchNanos / 2 && batchSize >= batchCap.get()) {
+            batchCap.updateAndGet(cap -> Math.min(maxBatchSize, cap * 2));
+        }
+    }
+
+    /**
+     * 停止协调线程和工作线程，正在发送的批次会被中断.
+     */
+    @Override
+    public void close() {
+        running = false;
+        coordinator.interrupt();
+        try {
+            coordinator.join(ERROR_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * 获取清理统计.
+     *
+     * @return 统计信息
+     */
+    public Stats stats() {
+        final Stats stats = new Stats();
+        stats.setLimit(limit);
+        stats.setWorkers(workers);
+        stats.setActiveWorkers(activeWorkers);
+        stats.setSize(size);
+        stats.setBacklog(backlog);
+        stats.setBatchCap(batchCap.get());
+        stats.setRoundBatchSize(roundBatchSize);
+        final long cleaned = cleanedTokens.sum();
+        final long batchCount = batches.sum();
+        stats.setCleanedTokens(cleaned);
+        stats.setBatches(batchCount);
+        stats.setCommands(commands.sum());
+        stats.setAvgBatchMillis(batchCount == 0 ? 0 : batchNanos.sum() / 1e6 / batchCount);
+        stats.setRounds(rounds.sum());
+        stats.setLastRoundMillis(lastRoundMillis);
+        stats.setFailures(failures.sum());
+        stats.setTokensPerSecond(tokensPerSecond);
+        stats.setAvgTokensPerSecond(cleaned * 1e9 / Math.max(1, System.nanoTime() - startNanos));
+        return stats;
+    }
+
+    /**
+     * 会话清理统计.
+     */
+    @Data
+    public static class Stats {
+        private long limit;
+        private int workers;
+        /**
+         * 最近一轮参与清理的线程数，没有积压时为0.
+         */
+        private int activeWorkers;
+        /**
+         * 最近一次统计的会话数.
+         */
+        private long size;
+        /**
+         * 最近一次统计时超出limit的会话数.
+         */
+        private long backlog;
+        /**
+         * 按批次耗时调整的批大小上限.
+         */
+        private int batchCap;
+        /**
+         * 最近一轮按积压计算的批大小，实际批大小取两者中较小的一个.
+         */
+        private int roundBatchSize;
+        private long cleanedTokens;
+        private long batches;
+        /**
+         * 发送的清理命令数.
+         */
+        private long commands;
+        /**
+         * 每批管道的平均耗时.
+         */
+        private double avgBatchMillis;
+        private long rounds;
+        private long lastRoundMillis;
+        private long failures;
+        /**
+         * 平滑后的每秒清理数.
+         */
+        private double tokensPerSecond;
+        /**
+         * 启动以来的平均每秒清理数.
+         */
+        private double avgTokensPerSecond;
+    }
+}
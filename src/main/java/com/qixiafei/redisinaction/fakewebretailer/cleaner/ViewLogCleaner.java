@@ -1,12 +1,9 @@
 package com.qixiafei.redisinaction.fakewebretailer.cleaner;
 
 import com.qixiafei.redisinaction.RedisKeyConstants;
-import com.qixiafei.redisinaction.jedis.RedisClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
-
 /**
  * <P>Description: 清除浏览记录. </P>
  * <P>CALLED BY:   齐霞飞 </P>
@@ -22,20 +19,12 @@ import javax.annotation.Resource;
 @Component
 public class ViewLogCleaner implements CustomCleaner {
 
-    @Resource
-    private RedisClient redisClient;
-
     @Override
-    public void clean(String[] tokenArr) {
-        final int tokenSize = tokenArr.length;
-        final String[] viewKeys = new String[tokenSize];
-
-        for (int i = 0; i < tokenSize; i++) {
-            viewKeys[i] = RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + tokenArr[i];
+    public void clean(String[] tokenArr, CleanPlan plan) {
+        for (String token : tokenArr) {
+            final String viewKey = RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + token;
+            plan.add(viewKey, pipeline -> pipeline.del(viewKey));
         }
-
-
-        redisClient.del(viewKeys);
     }
 
     @Override
@@ -0,0 +1,267 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <P>Description: 自动管道，把多个线程并发提交的命令攒成一批，在共享连接上以一次管道发送，再把结果分发给各自的调用方. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/15 10:12</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+final class AutoPipeliner {
+
+    private final Pool<Jedis> pool;
+
+    /**
+     * 一批最多发送的命令数.
+     */
+    private final int flushSize;
+
+    /**
+     * 攒批最长等待时间（微秒），0代表有多少发多少，不等待.
+     */
+    private final long flushIntervalMicros;
+
+    /**
+     * 调用方等待结果的最长时间（毫秒），0代表不限制.
+     */
+    private final long resultTimeoutMillis;
+
+    private final BlockingQueue<Command<?>> queue = new LinkedBlockingQueue<>();
+
+    private final List<Thread> flushers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * 构建自动管道.
+     *
+     * @param pool                连接来源，每个发送线程从中借用一个连接长期持有
+     * @param flushSize           一批最多发送的命令数
+     * @param flushIntervalMicros 攒批最长等待时间（微秒）
+     * @param connections         共享连接数（即发送线程数）
+     * @param resultTimeoutMillis {@link #execute}等待结果的最长时间（毫秒），0代表不限制
+     */
+    AutoPipeliner(final Pool<Jedis> pool, final int flushSize, final long flushIntervalMicros, final int connections,
+                  final long resultTimeoutMillis) {
+        if (flushSize <= 0 || connections <= 0 || resultTimeoutMillis < 0) {
+            throw new IllegalArgumentException("flushSize和connections必须大于0，resultTimeoutMillis不能小于0");
+        }
+        this.pool = pool;
+        this.flushSize = flushSize;
+        this.flushIntervalMicros = Math.max(0, flushIntervalMicros);
+        this.resultTimeoutMillis = resultTimeoutMillis;
+        for (int i = 0; i < connections; i++) {
+            final Thread t = new Thread(this::flushLoop);
+            t.setDaemon(true);
+            t.setName("redis auto pipeline t-" + i);
+            t.start();
+            flushers.add(t);
+        }
+    }
+
+    /**
+     * 提交一个命令，不阻塞调用线程.
+     *
+     * @param action 命令在管道上的写法
+     * @return 命令结果
+     */
+    <T> CompletableFuture<T> submit(final RedisClient.PipelineAction<T> action) {
+        final Command<T> command = new Command<>(action);
+        if (!running) {
+            command.future.completeExceptionally(closed());
+            return command.future;
+        }
+        queue.offer(command);
+        // close()可能在上面的检查之后已经清空了队列，这时命令不会再被发送；
+        // 移除失败说明命令已被发送线程或close()取走，由它们结束
+        if (!running && queue.remove(command)) {
+            command.future.completeExceptionally(closed());
+        }
+        return command.future;
+    }
+
+    /**
+     * 提交一个命令并等待结果，保持同步方法的语义.
+     *
+     * @param action 命令在管道上的写法
+     * @return 命令结果
+     */
+    <T> T execute(final RedisClient.PipelineAction<T> action) {
+        final CompletableFuture<T> future = submit(action);
+        try {
+            return resultTimeoutMillis > 0 ? future.get(resultTimeoutMillis, TimeUnit.MILLISECONDS) : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JedisException("等待auto pipeline结果时被中断", e);
+        } catch (TimeoutException e) {
+            throw new JedisConnectionException("等待auto pipeline结果超时，" + resultTimeoutMillis + "ms", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof JedisException) {
+                throw (JedisException) cause;
+            }
+            throw new JedisException(cause);
+        }
+    }
+
+    /**
+     * 停止发送线程，队列中尚未发送的命令以异常结束.
+     */
+    void close() {
+        running = false;
+        for (Thread flusher : flushers) {
+            flusher.interrupt();
+        }
+        Command<?> command;
+        while ((command = queue.poll()) != null) {
+            command.future.completeExceptionally(closed());
+        }
+    }
+
+    private void flushLoop() {
+        final List<Command<?>> batch = new ArrayList<>(flushSize);
+        Jedis jedis = null;
+        while (running) {
+            try {
+                if (!collect(batch)) {
+                    continue;
+                }
+                if (jedis == null) {
+                    jedis = pool.getResource();
+                }
+                flush(jedis, batch);
+            } catch (InterruptedException e) {
+                // 攒批时被close()中断，已取出的命令不再发送
+                fail(batch, closed());
+                Thread.currentThread().interrupt();
+                break;
+            } catch (JedisConnectionException e) {
+                log.warn("auto pipeline连接异常，本批{}个命令失败，将重新获取连接", batch.size(), e);
+                fail(batch, e);
+                closeQuietly(jedis);
+                jedis = null;
+            } catch (RuntimeException e) {
+                log.error("auto pipeline发送失败，本批{}个命令失败", batch.size(), e);
+                fail(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+        closeQuietly(jedis);
+    }
+
+    /**
+     * 攒一批命令：先阻塞拿到第一个，再在flushIntervalMicros内尽量凑满flushSize.
+     *
+     * @return 是否拿到了命令
+     */
+    private boolean collect(final List<Command<?>> batch) throws InterruptedException {
+        final Command<?> first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        queue.drainTo(batch, flushSize - batch.size());
+        if (flushIntervalMicros > 0) {
+            final long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros);
+            while (batch.size() < flushSize) {
+                final long remain = deadline - System.nanoTime();
+                if (remain <= 0) break;
+                final Command<?> next = queue.poll(remain, TimeUnit.NANOSECONDS);
+                if (next == null) break;
+                batch.add(next);
+                queue.drainTo(batch, flushSize - batch.size());
+            }
+        }
+        return true;
+    }
+
+    private void flush(final Jedis jedis, final List<Command<?>> batch) {
+        final Pipeline pipeline = jedis.pipelined();
+        for (Command<?> command : batch) {
+            command.enqueue(pipeline);
+        }
+        pipeline.sync();
+        for (Command<?> command : batch) {
+            command.complete();
+        }
+    }
+
+    private static void fail(final List<Command<?>> batch, final Throwable e) {
+        for (Command<?> command : batch) {
+            command.future.completeExceptionally(e);
+        }
+    }
+
+    private static JedisException closed() {
+        return new JedisException("auto pipeline已关闭");
+    }
+
+    private static void closeQuietly(final Jedis jedis) {
+        if (jedis == null) return;
+        try {
+            jedis.close();
+        } catch (RuntimeException e) {
+            log.warn("关闭auto pipeline连接失败", e);
+        }
+    }
+
+    private static final class Command<T> {
+
+        private final RedisClient.PipelineAction<T> action;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Response<T> response;
+
+        private RuntimeException enqueueError;
+
+        private Command(final RedisClient.PipelineAction<T> action) {
+            this.action = action;
+        }
+
+        private void enqueue(final Pipeline pipeline) {
+            try {
+                response = action.doInPipeline(pipeline);
+            } catch (RuntimeException e) {
+                // 参数错误等在入队时就抛出的异常只影响本命令
+                enqueueError = e;
+            }
+        }
+
+        private void complete() {
+            if (enqueueError != null) {
+                future.completeExceptionally(enqueueError);
+                return;
+            }
+            try {
+                future.complete(response.get());
+            } catch (RuntimeException e) {
+                // redis返回的错误（如WRONGTYPE）只影响本命令
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
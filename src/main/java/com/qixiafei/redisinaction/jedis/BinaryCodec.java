@@ -0,0 +1,279 @@
+package com.qixiafei.redisinaction.jedis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <P>Description: 紧凑二进制编解码器，字段按写入顺序依次排列，不带字段名，整数使用变长编码，字符串为变长长度加UTF-8字节.
+ * 字段的读写顺序由调用方通过{@link Writer}和{@link Reader}保证一致；新增字段只能追加在末尾，
+ * 读取旧数据时用{@link Input#hasRemaining()}判断. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/21 15:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public final class BinaryCodec<T> implements Codec<T> {
+
+    private final Writer<T> writer;
+
+    private final Reader<T> reader;
+
+    /**
+     * 上一次编码的长度，作为下一次的初始容量，避免扩容.
+     */
+    private volatile int sizeHint = 32;
+
+    private BinaryCodec(final Writer<T> writer, final Reader<T> reader) {
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    /**
+     * 构建编解码器.
+     *
+     * @param writer 按顺序写出各字段
+     * @param reader 按相同顺序读取各字段
+     * @return 编解码器
+     */
+    public static <T> BinaryCodec<T> of(final Writer<T> writer, final Reader<T> reader) {
+        return new BinaryCodec<>(writer, reader);
+    }
+
+    @Override
+    public byte[] encode(final T value) {
+        final Output out = new Output(sizeHint);
+        writer.write(out, value);
+        sizeHint = out.size;
+        return out.toByteArray();
+    }
+
+    @Override
+    public T decode(final byte[] bytes) {
+        return reader.read(new Input(bytes));
+    }
+
+    public interface Writer<T> {
+        void write(Output out, T value);
+    }
+
+    public interface Reader<T> {
+        T read(Input in);
+    }
+
+    /**
+     * 写出缓冲区.
+     */
+    public static final class Output {
+
+        private byte[] buf;
+
+        private int size = 0;
+
+        Output(final int capacity) {
+            this.buf = new byte[Math.max(capacity, 16)];
+        }
+
+        public Output writeBoolean(final boolean value) {
+            ensure(1);
+            buf[size++] = (byte) (value ? 1 : 0);
+            return this;
+        }
+
+        /**
+         * 写入无符号变长整数，小于128只占1字节.
+         */
+        public Output writeVarInt(final int value) {
+            return writeVarLong(value & 0xffffffffL);
+        }
+
+        /**
+         * 写入无符号变长整数，负数请先自行转换或使用{@link #writeLong}.
+         */
+        public Output writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                buf[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+            return this;
+        }
+
+        /**
+         * 写入有符号整数，zigzag后变长编码，绝对值小的负数也只占很少字节.
+         */
+        public Output writeLong(final long value) {
+            return writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        public Output writeDouble(final double value) {
+            ensure(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int i = 0; i < 8; i++) {
+                buf[size++] = (byte) bits;
+                bits >>>= 8;
+            }
+            return this;
+        }
+
+        /**
+         * 写入可以为null的字符串，长度前缀为UTF-8字节数加1，0代表null，字符直接编码进缓冲区.
+         * 不成对的代理字符与String.getBytes一样替换为'?'.
+         */
+        public Output writeString(final String value) {
+            if (value == null) {
+                return writeVarInt(0);
+            }
+            final int length = value.length();
+            final int bytes = utf8Length(value);
+            writeVarInt(bytes + 1);
+            ensure(bytes);
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                if (c < 0x80) {
+                    buf[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[size++] = (byte) (0xc0 | (c >> 6));
+                    buf[size++] = (byte) (0x80 | (c & 0x3f));
+                } else if (isSurrogatePair(value, i)) {
+                    final int cp = Character.toCodePoint(c, value.charAt(++i));
+                    buf[size++] = (byte) (0xf0 | (cp >> 18));
+                    buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[size++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    buf[size++] = '?';
+                } else {
+                    buf[size++] = (byte) (0xe0 | (c >> 12));
+                    buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 写入可以为null的字节数组.
+         */
+        public Output writeBytes(final byte[] value) {
+            if (value == null) {
+                return writeVarInt(0);
+            }
+            writeVarInt(value.length + 1);
+            ensure(value.length);
+            System.arraycopy(value, 0, buf, size, value.length);
+            size += value.length;
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private static int utf8Length(final String value) {
+            int bytes = 0;
+            for (int i = 0, length = value.length(); i < length; i++) {
+                final char c = value.charAt(i);
+                if (c < 0x80) {
+                    bytes += 1;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (isSurrogatePair(value, i)) {
+                    bytes += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    bytes += 1;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+
+        private static boolean isSurrogatePair(final String value, final int i) {
+            return Character.isHighSurrogate(value.charAt(i)) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1));
+        }
+
+        private void ensure(final int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * 读取缓冲区.
+     */
+    public static final class Input {
+
+        private final byte[] buf;
+
+        private int pos = 0;
+
+        Input(final byte[] buf) {
+            this.buf = buf;
+        }
+
+        public boolean hasRemaining() {
+            return pos < buf.length;
+        }
+
+        public boolean readBoolean() {
+            return buf[pos++] != 0;
+        }
+
+        public int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        public long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = buf[pos++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("变长整数格式错误");
+        }
+
+        public long readLong() {
+            final long zigzag = readVarLong();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        public double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (long) (buf[pos++] & 0xff) << (8 * i);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        public String readString() {
+            final int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            final String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        public byte[] readBytes() {
+            final int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            final byte[] value = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return value;
+        }
+    }
+}
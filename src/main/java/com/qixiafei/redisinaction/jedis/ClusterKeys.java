@@ -0,0 +1,65 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+/**
+ * <P>Description: 集群key工具. 约定：需要在同一条多key命令、管道或lua脚本里一起操作的key，用相同的hash tag包住决定分布的部分，
+ * 例如"cart:{token}"和"view:{token}"只按token计算slot，从而落在同一个节点上. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/16 14:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public final class ClusterKeys {
+
+    /**
+     * 给key中决定分布的部分加上hash tag.
+     *
+     * @param tag 决定分布的部分，例如token
+     * @return {tag}
+     */
+    public static String hashTag(final String tag) {
+        return "{" + tag + "}";
+    }
+
+    /**
+     * 拼接带hash tag的key.
+     *
+     * @param prefix key前缀，例如RedisKeyConstants.CART_HASH_KEY_PREFIX
+     * @param tag    决定分布的部分
+     * @return prefix{tag}
+     */
+    public static String tagged(final String prefix, final String tag) {
+        return prefix + hashTag(tag);
+    }
+
+    /**
+     * 计算key所属的slot，有hash tag时只按tag计算.
+     *
+     * @param key key
+     * @return 0-16383
+     */
+    public static int slot(final String key) {
+        return JedisClusterCRC16.getSlot(key);
+    }
+
+    /**
+     * 判断多个key是否处于同一slot，即能否放在同一条多key命令里.
+     *
+     * @param keys 多个key
+     * @return 是否同一slot
+     */
+    public static boolean sameSlot(final String... keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (slot(keys[i]) != slot(keys[0])) return false;
+        }
+        return true;
+    }
+
+    private ClusterKeys() {
+    }
+}
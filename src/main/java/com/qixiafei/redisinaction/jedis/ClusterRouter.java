@@ -0,0 +1,231 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisClusterMaxAttemptsException;
+import redis.clients.jedis.exceptions.JedisClusterOperationException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.Pool;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <P>Description: redis cluster路由，按key的hash slot把命令发往所属节点，自动跟随MOVED/ASK重定向，
+ * 多key命令按slot拆分后并行执行. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/16 10:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+class ClusterRouter implements JedisRouter {
+
+    private static final int SLOT_COUNT = 16384;
+
+    private static final String ADDRS_SPLITOR = ",";
+
+    private final GenericObjectPoolConfig config;
+
+    private final int connectionTimeOut;
+
+    private final int soTimeOut;
+
+    private final String password;
+
+    private final int maxRedirections;
+
+    /**
+     * 节点地址(host:port)到连接池的映射，包含种子节点.
+     */
+    private final Map<String, JedisPool> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * slot到所属master连接池的映射，整体替换保证可见性.
+     */
+    private volatile JedisPool[] slots = new JedisPool[SLOT_COUNT];
+
+    private final ReentrantLock renewLock = new ReentrantLock();
+
+    /**
+     * 多key命令拆分后并行执行的线程池.
+     */
+    private final ExecutorService groupExecutor;
+
+    ClusterRouter(final String addrs, final GenericObjectPoolConfig config, final int connectionTimeOut,
+                  final int soTimeOut, final String password, final int maxRedirections, final int parallelism) {
+        this.config = config;
+        this.connectionTimeOut = connectionTimeOut;
+        this.soTimeOut = soTimeOut;
+        this.password = password;
+        this.maxRedirections = maxRedirections;
+        this.groupExecutor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("redis cluster group t-%d").build());
+        for (String addr : addrs.split(ADDRS_SPLITOR)) {
+            nodePool(HostAndPort.parseString(addr.trim()));
+        }
+        if (!renewSlotCache()) {
+            throw new JedisClusterOperationException("无法从任何种子节点获取集群slot信息：" + addrs);
+        }
+    }
+
+    /**
+     * 获取key所属master的连接，不处理重定向，适用于getInstance这类需要直接操作连接的场景.
+     */
+    @Override
+    public Jedis getResource(final String key) {
+        return (key == null ? anyPool() : slotPool(JedisClusterCRC16.getSlot(key))).getResource();
+    }
+
+    @Override
+    public <T> T execute(final String key, final RedisClient.JedisAction<T> action) {
+        final int slot = key == null ? -1 : JedisClusterCRC16.getSlot(key);
+        JedisPool target = slot < 0 ? anyPool() : slotPool(slot);
+        boolean asking = false;
+        JedisException last = null;
+        for (int attempt = 0; attempt <= maxRedirections; attempt++) {
+            try (final Jedis resource = target.getResource()) {
+                if (asking) {
+                    resource.asking();
+                }
+                return action.doInJedis(resource);
+            } catch (JedisMovedDataException e) {
+                // slot已经永久迁移，更新本地slot表
+                last = e;
+                target = nodePool(e.getTargetNode());
+                slots[e.getSlot()] = target;
+                asking = false;
+                renewSlotCache();
+            } catch (JedisAskDataException e) {
+                // slot正在迁移，只有本次命令去目标节点
+                last = e;
+                target = nodePool(e.getTargetNode());
+                asking = true;
+            } catch (JedisConnectionException e) {
+                last = e;
+                renewSlotCache();
+                target = slot < 0 ? anyPool() : slotPool(slot);
+                asking = false;
+            }
+        }
+        throw new JedisClusterMaxAttemptsException("重定向或重试次数超过" + maxRedirections, last);
+    }
+
+    /**
+     * 按slot分组，同一组的key可以放在同一条多key命令里.
+     */
+    @Override
+    public List<String[]> partition(final String[] keys) {
+        final Map<Integer, List<String>> bySlot = new LinkedHashMap<>();
+        for (String key : keys) {
+            bySlot.computeIfAbsent(JedisClusterCRC16.getSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        final List<String[]> groups = new ArrayList<>(bySlot.size());
+        for (List<String> group : bySlot.values()) {
+            groups.add(group.toArray(new String[0]));
+        }
+        return groups;
+    }
+
+    @Override
+    public <T> List<T> executeGroups(final List<String[]> groups, final RedisClient.GroupAction<T> action) {
+        return JedisRouter.executeInParallel(groupExecutor, groups, action);
+    }
+
+    @Override
+    public Map<String, Pool<Jedis>> pools() {
+        return new TreeMap<>(nodes);
+    }
+
+    @Override
+    public void close() {
+        groupExecutor.shutdown();
+        for (JedisPool pool : nodes.values()) {
+            pool.close();
+        }
+        nodes.clear();
+    }
+
+    private JedisPool slotPool(final int slot) {
+        JedisPool pool = slots[slot];
+        if (pool == null) {
+            renewSlotCache();
+            pool = slots[slot];
+        }
+        return pool == null ? anyPool() : pool;
+    }
+
+    private JedisPool anyPool() {
+        final List<JedisPool> pools = new ArrayList<>(nodes.values());
+        if (pools.isEmpty()) {
+            throw new JedisClusterOperationException("没有可用的集群节点");
+        }
+        return pools.get(ThreadLocalRandom.current().nextInt(pools.size()));
+    }
+
+    private JedisPool nodePool(final HostAndPort node) {
+        return nodes.computeIfAbsent(node.toString(), addr -> new JedisPool(config, node.getHost(), node.getPort(),
+                connectionTimeOut, soTimeOut, password, 0, null));
+    }
+
+    /**
+     * 通过CLUSTER SLOTS刷新slot表，已经有线程在刷新时直接返回.
+     *
+     * @return 是否刷新成功
+     */
+    @SuppressWarnings("unchecked")
+    private boolean renewSlotCache() {
+        if (!renewLock.tryLock()) {
+            return false;
+        }
+        try {
+            for (JedisPool pool : new ArrayList<>(nodes.values())) {
+                try (final Jedis resource = pool.getResource()) {
+                    final JedisPool[] newSlots = new JedisPool[SLOT_COUNT];
+                    for (Object slotInfoObj : resource.clusterSlots()) {
+                        final List<Object> slotInfo = (List<Object>) slotInfoObj;
+                        final int start = ((Long) slotInfo.get(0)).intValue();
+                        final int end = ((Long) slotInfo.get(1)).intValue();
+                        final List<Object> master = (List<Object>) slotInfo.get(2);
+                        String host = SafeEncoder.encode((byte[]) master.get(0));
+                        if (host.isEmpty()) {
+                            host = resource.getClient().getHost();
+                        }
+                        final JedisPool masterPool = nodePool(new HostAndPort(host, ((Long) master.get(1)).intValue()));
+                        for (int slot = start; slot <= end; slot++) {
+                            newSlots[slot] = masterPool;
+                        }
+                    }
+                    slots = newSlots;
+                    return true;
+                } catch (JedisException e) {
+                    log.warn("从集群节点获取slot信息失败，尝试下一个节点", e);
+                }
+            }
+            return false;
+        } finally {
+            renewLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.qixiafei.redisinaction.jedis;
+
+/**
+ * <P>Description: value的编解码器，配合{@link RedisClient}的类型化接口使用，value直接以byte[]读写，省去中间String.
+ * 内置{@link BinaryCodec}（紧凑二进制）和{@link JsonCodec}（fastjson）两种实现. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/21 15:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public interface Codec<T> {
+
+    /**
+     * 编码，value不为null.
+     *
+     * @param value 对象
+     * @return 字节
+     */
+    byte[] encode(T value);
+
+    /**
+     * 解码，bytes不为null.
+     *
+     * @param bytes 字节
+     * @return 对象
+     */
+    T decode(byte[] bytes);
+}
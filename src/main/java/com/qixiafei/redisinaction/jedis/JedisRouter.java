@@ -0,0 +1,152 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <P>Description: 根据key决定命令发往哪个redis节点. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/16 10:05</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+interface JedisRouter {
+
+    /**
+     * 获取key所在节点的连接，使用完务必调用close归还资源.
+     *
+     * @param key 路由key，为null代表不关心节点
+     * @return jedis连接
+     */
+    Jedis getResource(String key);
+
+    /**
+     * 在key所在节点上执行命令.
+     *
+     * @param key    路由key，为null代表不关心节点
+     * @param action 命令
+     * @return 命令结果
+     */
+    default <T> T execute(final String key, final RedisClient.JedisAction<T> action) {
+        try (final Jedis resource = getResource(key)) {
+            return action.doInJedis(resource);
+        }
+    }
+
+    /**
+     * 是否把只读命令发往master以外的节点，为true时只读命令不参与自动管道，直接走{@link #executeRead}.
+     *
+     * @return 是否做读写分离
+     */
+    default boolean routesReads() {
+        return false;
+    }
+
+    /**
+     * 执行只读命令，默认与{@link #execute}相同.
+     *
+     * @param key    路由key，为null代表不关心节点
+     * @param action 只读命令
+     * @return 命令结果
+     */
+    default <T> T executeRead(final String key, final RedisClient.JedisAction<T> action) {
+        return execute(key, action);
+    }
+
+    /**
+     * 把多个key拆分成可以在同一条命令里执行的若干组，单节点部署只有一组.
+     *
+     * @param keys 多个key
+     * @return 分组后的key
+     */
+    default List<String[]> partition(final String[] keys) {
+        return Collections.singletonList(keys);
+    }
+
+    /**
+     * 对每组key执行命令，结果顺序与分组顺序一致.
+     *
+     * @param groups 分组后的key
+     * @param action 对一组key执行的命令
+     * @return 每组的结果
+     */
+    <T> List<T> executeGroups(List<String[]> groups, RedisClient.GroupAction<T> action);
+
+    /**
+     * 路由使用的所有连接池，用于监控.
+     *
+     * @return 连接池名称到连接池的映射
+     */
+    Map<String, Pool<Jedis>> pools();
+
+    /**
+     * 保存数据的主节点连接池，不含只读的从节点，用于统计key分布等按节点汇总数据的场景，避免副本被重复计数.
+     *
+     * @return 连接池名称到连接池的映射
+     */
+    default Map<String, Pool<Jedis>> masterPools() {
+        return pools();
+    }
+
+    /**
+     * 各节点按路由规则理论上应分到的key比例，用于对比实际分布，路由与key无关时为空.
+     *
+     * @return 连接池名称到比例的映射
+     */
+    default Map<String, Double> ownership() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * 释放所有连接.
+     */
+    void close();
+
+    /**
+     * 在线程池中并行执行每组key的命令，只有一组时直接在调用线程执行.
+     *
+     * @param executor 线程池
+     * @param groups   分组后的key
+     * @param action   对一组key执行的命令
+     * @return 每组的结果，顺序与分组顺序一致
+     */
+    static <T> List<T> executeInParallel(final ExecutorService executor, final List<String[]> groups,
+                                         final RedisClient.GroupAction<T> action) {
+        final List<T> result = new ArrayList<>(groups.size());
+        if (groups.size() == 1) {
+            result.add(action.apply(groups.get(0)));
+            return result;
+        }
+        final List<Future<T>> futures = new ArrayList<>(groups.size());
+        for (String[] group : groups) {
+            futures.add(executor.submit(() -> action.apply(group)));
+        }
+        for (Future<T> future : futures) {
+            try {
+                result.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JedisException("等待多key命令结果时被中断", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof JedisException) {
+                    throw (JedisException) e.getCause();
+                }
+                throw new JedisException(e.getCause());
+            }
+        }
+        return result;
+    }
+}
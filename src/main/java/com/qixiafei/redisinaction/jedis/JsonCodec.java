@@ -0,0 +1,46 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.alibaba.fastjson.JSON;
+
+import java.lang.reflect.Type;
+
+/**
+ * <P>Description: 基于fastjson的编解码器，直接输出UTF-8字节，与JSON.toJSONString后再由jedis编码相比少一次String拷贝，
+ * 存储格式与原来的JSON字符串完全一致，可以和String接口混用. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/21 15:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public final class JsonCodec<T> implements Codec<T> {
+
+    private final Type type;
+
+    private JsonCodec(final Type type) {
+        this.type = type;
+    }
+
+    /**
+     * 构建编解码器.
+     *
+     * @param type 对象类型，泛型类型可以传TypeReference.getType()
+     * @return 编解码器
+     */
+    public static <T> JsonCodec<T> of(final Type type) {
+        return new JsonCodec<>(type);
+    }
+
+    @Override
+    public byte[] encode(final T value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    public T decode(final byte[] bytes) {
+        return JSON.parseObject(bytes, type);
+    }
+}
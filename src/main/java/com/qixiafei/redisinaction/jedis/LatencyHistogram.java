@@ -0,0 +1,158 @@
+package com.qixiafei.redisinaction.jedis;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <P>Description: 无锁、记录时不分配内存的延迟直方图.
+ * 桶按log-linear划分：每个2的幂区间再等分为16个子桶，相对误差不超过1/16，纳秒到分钟级共约600个桶.
+ * 按线程分成若干条带各自计数，避免多线程争抢同一缓存行，读取时再合并. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/17 15:05</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 按子桶精确记录到2^41纳秒（约36分钟）以内，更大的值全部落在单独的溢出桶.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * 溢出桶，上界视为无穷大，分位数落在这里时返回最大值.
+     */
+    private static final int OVERFLOW = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final int BUCKETS = OVERFLOW + 1;
+
+    /**
+     * 每个条带在桶之后多存一个槽位，累计总耗时.
+     */
+    private static final int TOTAL_SLOT = BUCKETS;
+
+    private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+    }
+
+    /**
+     * 记录一次耗时.
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(final long nanos) {
+        final long value = nanos < 0 ? 0 : nanos;
+        final AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        stripe.incrementAndGet(index(value));
+        stripe.addAndGet(TOTAL_SLOT, value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long count() {
+        long count = 0;
+        for (long bucket : merge()) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    public long totalNanos() {
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            total += stripe.get(TOTAL_SLOT);
+        }
+        return total;
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 计算分位数，返回所在桶的上界.
+     *
+     * @param quantile 0到1之间，例如0.99
+     * @return 耗时（纳秒）
+     */
+    public long percentile(final double quantile) {
+        final long[] snapshot = merge();
+        long total = 0;
+        for (long bucket : snapshot) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i <= TOTAL_SLOT; i++) {
+                stripe.set(i, 0);
+            }
+        }
+        maxNanos.set(0);
+    }
+
+    private long[] merge() {
+        final long[] merged = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] += stripe.get(i);
+            }
+        }
+        return merged;
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return OVERFLOW;
+        }
+        final int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        if (index == OVERFLOW) {
+            return Long.MAX_VALUE;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,772 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <P>Description: 进程内近端缓存，挡在get/hget/hgetAll前面，也可以通过{@link RedisClient#createNearCache}单独创建，
+ * 由调用方传入loader加载、写入后调用{@link #put}或{@link #invalidate}.
+ * 一致性保证：本进程的写命令完成后立即失效本地条目，并通过pub/sub频道异步广播给其他实例；
+ * 订阅连接断开期间不使用缓存，重新订阅后清空整个缓存，避免漏掉断线期间的失效消息；
+ * 条目有最长存活时间，不存在的值单独设置较短的存活时间，兜底redis侧过期和不经过RedisClient的写入（getInstance、execPipeLine、异步门面）.
+ * 失效消息格式：实例id、发送时间戳（毫秒）、key和field依次拼接，每部分编码为"长度:内容"，key和field可以包含任意字符，
+ * 没有field代表整个key；无法解析的消息直接忽略. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/17 10:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class NearCache implements Closeable {
+
+    /**
+     * 淘汰策略.
+     */
+    public enum EvictionPolicy {
+        /**
+         * 淘汰最久未访问的条目.
+         */
+        LRU,
+        /**
+         * 近似LFU：从最早写入的若干条目里淘汰访问次数最少的.
+         */
+        LFU
+    }
+
+    private static final int SEGMENTS = 16;
+
+    private static final int VERSION_STRIPES = 64;
+
+    private static final int LFU_SAMPLES = 8;
+
+    private static final int PUBLISH_BATCH = 256;
+
+    /**
+     * 失效消息中每部分的长度和内容之间的分隔符.
+     */
+    private static final char LENGTH_SPLITOR = ':';
+
+    /**
+     * hgetAll结果在缓存里使用的field占位.
+     */
+    private static final String ALL_FIELDS = "\u0000*";
+
+    private static final Object NULL = new Object();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final long negativeTtlNanos;
+
+    private final String channel;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final JedisRouter router;
+
+    private final LinkedBlockingQueue<String> outbox = new LinkedBlockingQueue<>(10000);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder negativeHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder bypasses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    private final LongAdder broadcasts = new LongAdder();
+
+    private final LongAdder resets = new LongAdder();
+
+    private final LongAdder hitAgeMillis = new LongAdder();
+
+    private final LongAccumulator maxHitAgeMillis = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder messages = new LongAdder();
+
+    private final LongAdder invalidationLagMillis = new LongAdder();
+
+    private final LongAccumulator maxInvalidationLagMillis = new LongAccumulator(Math::max, 0);
+
+    private final Thread publisher;
+
+    private final Thread subscriber;
+
+    private final JedisPubSub listener = new JedisPubSub() {
+        @Override
+        public void onSubscribe(final String channel, final int subscribedChannels) {
+            if (closed) {
+                unsubscribe();
+                return;
+            }
+            // 重新订阅前可能漏掉了失效消息
+            clear();
+            subscribed = true;
+        }
+
+        @Override
+        public void onMessage(final String channel, final String message) {
+            final List<String> parts = parse(message);
+            final long sentAt = parts == null ? -1 : sentAt(parts.get(1));
+            if (sentAt < 0) {
+                log.debug("忽略无法解析的失效消息：{}", message);
+                return;
+            }
+            if (instanceId.equals(parts.get(0))) {
+                return;
+            }
+            final long lag = Math.max(0, System.currentTimeMillis() - sentAt);
+            messages.increment();
+            invalidationLagMillis.add(lag);
+            maxInvalidationLagMillis.accumulate(lag);
+            final String[] fields = parts.subList(3, parts.size()).toArray(new String[0]);
+            remoteInvalidations.add(Math.max(1, fields.length));
+            invalidateLocal(parts.get(2), fields);
+        }
+    };
+
+    private volatile boolean closed = false;
+
+    /**
+     * 订阅可用时才使用缓存，否则可能漏掉其他实例的失效消息.
+     */
+    private volatile boolean subscribed = false;
+
+    /**
+     * @param router            发布和订阅失效消息使用的连接
+     * @param maxSize           最大条目数
+     * @param policy            淘汰策略
+     * @param ttlMillis         条目最长存活时间（毫秒），0代表不限制
+     * @param negativeTtlMillis 不存在的值的最长存活时间（毫秒），0代表不缓存不存在的值
+     * @param channel           失效消息频道，所有实例需一致
+     */
+    NearCache(final JedisRouter router, final int maxSize, final EvictionPolicy policy, final long ttlMillis,
+              final long negativeTtlMillis, final String channel) {
+        if (maxSize <= 0 || ttlMillis < 0 || negativeTtlMillis < 0) {
+            throw new IllegalArgumentException("maxSize必须大于0，ttlMillis、negativeTtlMillis不能小于0");
+        }
+        this.router = router;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : Long.MAX_VALUE;
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.channel = channel;
+        final int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize, policy);
+        }
+        publisher = new Thread(this::publishLoop, "redis near cache publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+        subscriber = new Thread(this::subscribeLoop, "redis near cache subscriber");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    /**
+     * 读取string，未命中时通过loader加载.
+     *
+     * @param key    key
+     * @param loader 未命中时加载值，返回null代表不存在
+     * @return 值，不存在返回null
+     */
+    public String get(final String key, final Supplier<String> loader) {
+        return load(key, null, loader);
+    }
+
+    /**
+     * 读取hash的一个field，未命中时通过loader加载.
+     *
+     * @param key    hash的key
+     * @param field  field
+     * @param loader 未命中时加载值，返回null代表不存在
+     * @return 值，不存在返回null
+     */
+    public String hget(final String key, final String field, final Supplier<String> loader) {
+        return load(key, field, loader);
+    }
+
+    /**
+     * 读取整个hash，未命中时通过loader从redis加载，返回副本.
+     */
+    Map<String, String> hgetAll(final String key, final Supplier<Map<String, String>> loader) {
+        final Map<String, String> hash = load(key, ALL_FIELDS, loader);
+        return hash == null ? null : new HashMap<>(hash);
+    }
+
+    /**
+     * 写命令完成后调用：把写入的值放入本地缓存，同时让正在进行的加载作废.
+     * 本地没有同样的有效条目时广播失效，其他实例上可能还留着旧值或不存在的缓存.
+     *
+     * @param key   被写的key
+     * @param field 被写的hash field，string传null
+     * @param value 写入的值，不能为null，删除请用{@link #invalidate}
+     */
+    public void put(final String key, final String field, final String value) {
+        final CacheKey cacheKey = new CacheKey(key, field);
+        if (!segmentFor(cacheKey).replace(cacheKey, new Entry(value, System.nanoTime(), ttlNanos))) {
+            return;
+        }
+        if (field != null) {
+            final CacheKey all = new CacheKey(key, ALL_FIELDS);
+            segmentFor(all).invalidate(all);
+        }
+        publish(key, field == null ? new String[0] : new String[]{field});
+    }
+
+    /**
+     * 写命令完成后调用：失效本地条目并广播给其他实例.
+     *
+     * @param key    被写的key
+     * @param fields 被写的hash field，为空代表整个key
+     */
+    public void invalidate(final String key, final String... fields) {
+        invalidations.increment();
+        invalidateLocal(key, fields);
+        publish(key, fields);
+    }
+
+    /**
+     * 构造失效消息，没有开启近端缓存的实例也可以用它通知其他实例.
+     *
+     * @param instanceId 发送方实例id，接收方忽略自己发出的消息
+     * @param key        被写的key
+     * @param fields     被写的hash field，为空代表整个key
+     * @return 消息
+     */
+    public static String message(final String instanceId, final String key, final String... fields) {
+        final StringBuilder message = new StringBuilder();
+        appendPart(message, instanceId);
+        appendPart(message, Long.toString(System.currentTimeMillis()));
+        appendPart(message, key);
+        for (String field : fields) {
+            appendPart(message, field);
+        }
+        return message.toString();
+    }
+
+    private static void appendPart(final StringBuilder message, final String part) {
+        message.append(part.length()).append(LENGTH_SPLITOR).append(part);
+    }
+
+    /**
+     * 把失效消息拆成实例id、发送时间戳、key和field.
+     *
+     * @param message 失效消息
+     * @return 各部分，格式不对或不足3部分时返回null
+     */
+    static List<String> parse(final String message) {
+        final List<String> parts = new ArrayList<>();
+        int pos = 0;
+        while (pos < message.length()) {
+            final int splitor = message.indexOf(LENGTH_SPLITOR, pos);
+            if (splitor <= pos) {
+                return null;
+            }
+            int length = 0;
+            for (int i = pos; i < splitor; i++) {
+                final char c = message.charAt(i);
+                if (c < '0' || c > '9' || length > (message.length() - splitor) / 10) {
+                    return null;
+                }
+                length = length * 10 + (c - '0');
+            }
+            pos = splitor + 1 + length;
+            if (pos > message.length()) {
+                return null;
+            }
+            parts.add(message.substring(splitor + 1, pos));
+        }
+        return parts.size() < 3 ? null : parts;
+    }
+
+    /**
+     * @return 发送时间戳，不是整数时返回-1
+     */
+    private static long sentAt(final String timestamp) {
+        try {
+            return Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 清空本地缓存.
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 获取统计信息.
+     *
+     * @return 命中率、负缓存命中、陈旧程度、失效延迟等统计
+     */
+    public Stats stats() {
+        final Stats stats = new Stats();
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        stats.setSize(size);
+        stats.setMaxSize(maxSize);
+        stats.setSubscribed(subscribed);
+        stats.setHits(hits.sum());
+        stats.setNegativeHits(negativeHits.sum());
+        stats.setMisses(misses.sum());
+        stats.setBypasses(bypasses.sum());
+        final long served = stats.getHits() + stats.getNegativeHits();
+        final long total = served + stats.getMisses() + stats.getBypasses();
+        stats.setHitRate(total == 0 ? 0 : (double) served / total);
+        stats.setEvictions(evictions.sum());
+        stats.setExpirations(expirations.sum());
+        stats.setInvalidations(invalidations.sum());
+        stats.setRemoteInvalidations(remoteInvalidations.sum());
+        stats.setBroadcasts(broadcasts.sum());
+        stats.setResets(resets.sum());
+        stats.setAvgHitAgeMillis(served == 0 ? 0 : (double) hitAgeMillis.sum() / served);
+        stats.setMaxHitAgeMillis(maxHitAgeMillis.get());
+        final long received = messages.sum();
+        stats.setAvgInvalidationLagMillis(received == 0 ? 0 : (double) invalidationLagMillis.sum() / received);
+        stats.setMaxInvalidationLagMillis(maxInvalidationLagMillis.get());
+        stats.setPendingBroadcasts(outbox.size());
+        return stats;
+    }
+
+    /**
+     * 取消订阅，停止广播线程，尚未发出的失效消息同步发出.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            listener.unsubscribe();
+        } catch (Exception e) {
+            log.warn("取消近端缓存订阅失败", e);
+        }
+        subscriber.interrupt();
+        publisher.interrupt();
+        try {
+            publisher.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<String> rest = new ArrayList<>();
+        outbox.drainTo(rest);
+        if (!rest.isEmpty()) {
+            try {
+                publishAll(rest);
+            } catch (JedisException e) {
+                log.warn("关闭时发布{}条近端缓存失效消息失败", rest.size(), e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(final String key, final String field, final Supplier<T> loader) {
+        if (!subscribed) {
+            bypasses.increment();
+            return loader.get();
+        }
+        final CacheKey cacheKey = new CacheKey(key, field);
+        final Segment segment = segmentFor(cacheKey);
+        final long now = System.nanoTime();
+        final Entry entry = segment.get(cacheKey, now);
+        if (entry != null) {
+            final long age = TimeUnit.NANOSECONDS.toMillis(now - entry.createNanos);
+            hitAgeMillis.add(age);
+            maxHitAgeMillis.accumulate(age);
+            if (entry.value == NULL) {
+                negativeHits.increment();
+                return null;
+            }
+            hits.increment();
+            return (T) entry.value;
+        }
+        misses.increment();
+        final long version = segment.version(key);
+        final T value = loader.get();
+        if (value != null) {
+            segment.putIfUnchanged(cacheKey, new Entry(value, now, ttlNanos), version);
+        } else if (negativeTtlNanos > 0) {
+            segment.putIfUnchanged(cacheKey, new Entry(NULL, now, negativeTtlNanos), version);
+        }
+        return value;
+    }
+
+    private void invalidateLocal(final String key, final String... fields) {
+        if (fields.length == 0) {
+            // 同一个key的条目分散在各分段里
+            for (Segment segment : segments) {
+                segment.invalidateKey(key);
+            }
+            return;
+        }
+        for (String field : fields) {
+            final CacheKey cacheKey = new CacheKey(key, field);
+            segmentFor(cacheKey).invalidate(cacheKey);
+        }
+        // hash的任一field变化都会让hgetAll结果过期
+        final CacheKey all = new CacheKey(key, ALL_FIELDS);
+        segmentFor(all).invalidate(all);
+    }
+
+    private Segment segmentFor(final CacheKey cacheKey) {
+        return segments[(cacheKey.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    private void publish(final String key, final String... fields) {
+        final String message = message(instanceId, key, fields);
+        if (!outbox.offer(message)) {
+            // 积压过多时退化为同步发送，不能丢失失效消息
+            router.execute(null, jedis -> jedis.publish(channel, message));
+            broadcasts.increment();
+        }
+    }
+
+    private void publishAll(final List<String> batch) {
+        router.execute(null, jedis -> {
+            final Pipeline pipeline = jedis.pipelined();
+            for (String message : batch) {
+                pipeline.publish(channel, message);
+            }
+            pipeline.sync();
+            return null;
+        });
+        broadcasts.add(batch.size());
+    }
+
+    private void publishLoop() {
+        final List<String> batch = new ArrayList<>(PUBLISH_BATCH);
+        while (!closed) {
+            try {
+                if (batch.isEmpty()) {
+                    final String first = outbox.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                outbox.drainTo(batch, PUBLISH_BATCH - batch.size());
+                publishAll(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 剩余的消息由close同步发出
+                outbox.addAll(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (JedisException e) {
+                // 保留本批消息，稍后重发
+                log.warn("发布近端缓存失效消息失败，稍后重试", e);
+                if (!sleepQuietly()) {
+                    outbox.addAll(batch);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void subscribeLoop() {
+        while (!closed) {
+            try (final Jedis jedis = router.getResource(null)) {
+                jedis.subscribe(listener, channel);
+            } catch (JedisException e) {
+                if (!closed) {
+                    log.warn("近端缓存订阅连接断开，清空缓存后重新订阅", e);
+                }
+            }
+            // 断开期间不使用缓存，已缓存的条目可能错过了失效消息
+            final boolean wasSubscribed = subscribed;
+            subscribed = false;
+            clear();
+            if (wasSubscribed && !closed) {
+                resets.increment();
+            }
+            if (!closed && !sleepQuietly()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 没有被中断
+     */
+    private static boolean sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 一个分段，按key和field的hash分配，同一个hash的各个field分散在不同分段里.
+     */
+    private final class Segment {
+
+        private final int maxSize;
+
+        private final EvictionPolicy policy;
+
+        private final LinkedHashMap<CacheKey, Entry> entries;
+
+        private final Map<String, Set<CacheKey>> byKey = new HashMap<>();
+
+        /**
+         * 按key分条的失效版本号，加载前后版本号不一致说明期间有写入，加载结果不再放入缓存.
+         */
+        private final long[] versions = new long[VERSION_STRIPES];
+
+        Segment(final int maxSize, final EvictionPolicy policy) {
+            this.maxSize = maxSize;
+            this.policy = policy;
+            this.entries = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+        }
+
+        synchronized Entry get(final CacheKey cacheKey, final long now) {
+            final Entry entry = entries.get(cacheKey);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.createNanos > entry.ttlNanos) {
+                remove(cacheKey);
+                expirations.increment();
+                return null;
+            }
+            entry.frequency++;
+            return entry;
+        }
+
+        synchronized long version(final String key) {
+            return versions[stripe(key)];
+        }
+
+        synchronized void putIfUnchanged(final CacheKey cacheKey, final Entry entry, final long version) {
+            if (versions[stripe(cacheKey.key)] == version) {
+                put(cacheKey, entry);
+            }
+        }
+
+        /**
+         * 写入新值，同时让正在进行的加载作废.
+         *
+         * @return 之前没有同样的有效条目
+         */
+        synchronized boolean replace(final CacheKey cacheKey, final Entry entry) {
+            versions[stripe(cacheKey.key)]++;
+            final Entry old = entries.get(cacheKey);
+            put(cacheKey, entry);
+            return old == null || !old.value.equals(entry.value)
+                    || entry.createNanos - old.createNanos > old.ttlNanos;
+        }
+
+        synchronized void invalidate(final CacheKey cacheKey) {
+            versions[stripe(cacheKey.key)]++;
+            remove(cacheKey);
+        }
+
+        synchronized void invalidateKey(final String key) {
+            versions[stripe(key)]++;
+            final Set<CacheKey> cacheKeys = byKey.remove(key);
+            if (cacheKeys != null) {
+                for (CacheKey cacheKey : cacheKeys) {
+                    entries.remove(cacheKey);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < VERSION_STRIPES; i++) {
+                versions[i]++;
+            }
+            entries.clear();
+            byKey.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private void put(final CacheKey cacheKey, final Entry entry) {
+            entries.put(cacheKey, entry);
+            byKey.computeIfAbsent(cacheKey.key, k -> new HashSet<>()).add(cacheKey);
+            while (entries.size() > maxSize) {
+                remove(victim());
+                evictions.increment();
+            }
+        }
+
+        private CacheKey victim() {
+            final Iterator<Map.Entry<CacheKey, Entry>> it = entries.entrySet().iterator();
+            Map.Entry<CacheKey, Entry> victim = it.next();
+            if (policy == EvictionPolicy.LFU) {
+                for (int i = 1; i < LFU_SAMPLES && it.hasNext(); i++) {
+                    final Map.Entry<CacheKey, Entry> candidate = it.next();
+                    if (candidate.getValue().frequency < victim.getValue().frequency) {
+                        victim = candidate;
+                    }
+                }
+            }
+            return victim.getKey();
+        }
+
+        private void remove(final CacheKey cacheKey) {
+            if (entries.remove(cacheKey) == null) {
+                return;
+            }
+            final Set<CacheKey> cacheKeys = byKey.get(cacheKey.key);
+            if (cacheKeys != null) {
+                cacheKeys.remove(cacheKey);
+                if (cacheKeys.isEmpty()) {
+                    byKey.remove(cacheKey.key);
+                }
+            }
+        }
+
+        private int stripe(final String key) {
+            return (key.hashCode() & 0x7fffffff) % VERSION_STRIPES;
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final String key;
+
+        private final String field;
+
+        CacheKey(final String key, final String field) {
+            this.key = key;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey that = (CacheKey) o;
+            return key.equals(that.key) && Objects.equals(field, that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + Objects.hashCode(field);
+        }
+    }
+
+    private static final class Entry {
+
+        /**
+         * 缓存的值，{@link #NULL}代表不存在.
+         */
+        private final Object value;
+
+        private final long createNanos;
+
+        private final long ttlNanos;
+
+        private int frequency;
+
+        Entry(final Object value, final long createNanos, final long ttlNanos) {
+            this.value = value;
+            this.createNanos = createNanos;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    /**
+     * 近端缓存统计.
+     */
+    @Data
+    public static class Stats {
+        private long size;
+        private int maxSize;
+        /**
+         * 失效订阅是否可用，不可用时所有读取直接访问redis.
+         */
+        private boolean subscribed;
+        private long hits;
+        /**
+         * 命中不存在的值的次数.
+         */
+        private long negativeHits;
+        private long misses;
+        /**
+         * 订阅不可用时绕过缓存的次数.
+         */
+        private long bypasses;
+        private double hitRate;
+        private long evictions;
+        private long expirations;
+        /**
+         * 本实例失效的次数.
+         */
+        private long invalidations;
+        /**
+         * 收到其他实例广播失效的条目数，整个key算一条.
+         */
+        private long remoteInvalidations;
+        /**
+         * 发出的失效消息数.
+         */
+        private long broadcasts;
+        /**
+         * 订阅断开、可能漏掉失效消息而清空缓存的次数.
+         */
+        private long resets;
+        /**
+         * 命中时条目的平均存活时间（毫秒），即返回的数据平均有多旧.
+         */
+        private double avgHitAgeMillis;
+        private long maxHitAgeMillis;
+        /**
+         * 失效消息从发出到本实例收到的平均延迟（毫秒），这段时间内本实例可能返回旧值.
+         */
+        private double avgInvalidationLagMillis;
+        private long maxInvalidationLagMillis;
+        private int pendingBroadcasts;
+    }
+}
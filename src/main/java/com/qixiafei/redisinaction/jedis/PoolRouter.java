@@ -0,0 +1,59 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <P>Description: 单机和哨兵模式的路由，所有命令都发往同一个连接池. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/16 10:12</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+class PoolRouter implements JedisRouter {
+
+    private final Pool<Jedis> pool;
+
+    PoolRouter(final Pool<Jedis> pool) {
+        this.pool = pool;
+    }
+
+    Pool<Jedis> getPool() {
+        return pool;
+    }
+
+    @Override
+    public Jedis getResource(final String key) {
+        return pool.getResource();
+    }
+
+    @Override
+    public <T> List<T> executeGroups(final List<String[]> groups, final RedisClient.GroupAction<T> action) {
+        final List<T> result = new ArrayList<>(groups.size());
+        for (String[] group : groups) {
+            result.add(action.apply(group));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Pool<Jedis>> pools() {
+        final Map<String, Pool<Jedis>> pools = new LinkedHashMap<>();
+        pools.put("master", pool);
+        return pools;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
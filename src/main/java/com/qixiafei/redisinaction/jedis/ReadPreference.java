@@ -0,0 +1,30 @@
+package com.qixiafei.redisinaction.jedis;
+
+/**
+ * <P>Description: 哨兵模式下只读命令的节点选择策略. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/16 16:02</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public enum ReadPreference {
+
+    /**
+     * 读写都走master，默认策略.
+     */
+    MASTER,
+
+    /**
+     * 只读命令只走从节点，没有可用从节点时报错.
+     */
+    REPLICA,
+
+    /**
+     * 只读命令优先走从节点，没有可用从节点时回到master.
+     */
+    REPLICA_PREFERRED
+}
@@ -0,0 +1,433 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <P>Description: RedisClient的异步门面，命令被多路复用到少量共享连接上发送，调用线程从不阻塞.
+ * 划重点：future在发送线程上完成，thenApply等回调里不要做耗时操作，耗时的回调请使用thenApplyAsync并指定线程池. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/15 16:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class RedisAsyncClient {
+
+    private static final String SUCCESS_STR = "OK";
+
+    private final AutoPipeliner pipeliner;
+
+    RedisAsyncClient(final AutoPipeliner pipeliner) {
+        this.pipeliner = pipeliner;
+    }
+
+    // ==== 通用操作 start ===========================
+
+    /**
+     * 异步版本的{@link RedisClient#del(String...)}.
+     */
+    public CompletableFuture<Long> del(final String... keys) {
+        return pipeliner.submit(pipeline -> pipeline.del(keys));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#expire(String, int)}.
+     */
+    public CompletableFuture<Long> expire(final String key, final int expiredSeconds) {
+        return pipeliner.submit(pipeline -> pipeline.expire(key, expiredSeconds));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#pexpire(String, int)}.
+     */
+    public CompletableFuture<Long> pexpire(final String key, final int expiredMillis) {
+        return pipeliner.submit(pipeline -> pipeline.pexpire(key, expiredMillis));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#ttl(String)}.
+     */
+    public CompletableFuture<Long> ttl(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.ttl(key));
+    }
+
+    // ==== 通用操作 end ===========================
+
+    // ==== string 操作 start ===========================
+
+    /**
+     * 异步版本的{@link RedisClient#get(String)}.
+     */
+    public CompletableFuture<String> get(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.get(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#set(String, String)}.
+     */
+    public CompletableFuture<Boolean> set(final String key, final String value) {
+        return pipeliner.submit(pipeline -> pipeline.set(key, value)).thenApply(SUCCESS_STR::equals);
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#setExpire(String, String, int)}.
+     */
+    public CompletableFuture<Boolean> setExpire(final String key, final String value, final int expiredSeconds) {
+        return pipeliner.submit(pipeline -> pipeline.setex(key, expiredSeconds, value)).thenApply(SUCCESS_STR::equals);
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#setNotExist(String, String, int)}.
+     */
+    public CompletableFuture<Boolean> setNotExist(final String key, final String value, final int expiredSeconds) {
+        final SetParams params = new SetParams();
+        params.ex(expiredSeconds);
+        params.nx();
+        return pipeliner.submit(pipeline -> pipeline.set(key, value, params)).thenApply(SUCCESS_STR::equals);
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#setNotExist(String, String, long)}.
+     */
+    public CompletableFuture<Boolean> setNotExist(final String key, final String value, final long expiredMillis) {
+        final SetParams params = new SetParams();
+        params.px(expiredMillis);
+        params.nx();
+        return pipeliner.submit(pipeline -> pipeline.set(key, value, params)).thenApply(SUCCESS_STR::equals);
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#incr(String)}.
+     */
+    public CompletableFuture<Long> incr(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.incr(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#decr(String)}.
+     */
+    public CompletableFuture<Long> decr(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.decr(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#incrBy(String, long)}.
+     */
+    public CompletableFuture<Long> incrBy(final String key, final long increment) {
+        return pipeliner.submit(pipeline -> pipeline.incrBy(key, increment));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#decrBy(String, long)}.
+     */
+    public CompletableFuture<Long> decrBy(final String key, final long decrement) {
+        return pipeliner.submit(pipeline -> pipeline.decrBy(key, decrement));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#incrByFloat(String, double)}.
+     */
+    public CompletableFuture<Double> incrByFloat(final String key, final double increment) {
+        return pipeliner.submit(pipeline -> pipeline.incrByFloat(key, increment));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#append(String, String)}.
+     */
+    public CompletableFuture<Long> append(final String key, final String value) {
+        return pipeliner.submit(pipeline -> pipeline.append(key, value));
+    }
+
+    // =============string 操作 end =====================
+
+    // =============list 操作 start =====================
+
+    /**
+     * 异步版本的{@link RedisClient#rpush(String, String...)}.
+     */
+    public CompletableFuture<Long> rpush(final String key, final String... values) {
+        return pipeliner.submit(pipeline -> pipeline.rpush(key, values));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#lpush(String, String...)}.
+     */
+    public CompletableFuture<Long> lpush(final String key, final String... values) {
+        return pipeliner.submit(pipeline -> pipeline.lpush(key, values));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#rpop(String)}.
+     */
+    public CompletableFuture<String> rpop(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.rpop(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#lpop(String)}.
+     */
+    public CompletableFuture<String> lpop(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.lpop(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#lindex(String, long)}.
+     */
+    public CompletableFuture<String> lindex(final String key, final long offset) {
+        return pipeliner.submit(pipeline -> pipeline.lindex(key, offset));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#lrange(String, long, long)}.
+     */
+    public CompletableFuture<List<String>> lrange(final String key, final long start, final long end) {
+        return pipeliner.submit(pipeline -> pipeline.lrange(key, start, end));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#lrem(String, long, String)}.
+     */
+    public CompletableFuture<Long> lrem(final String key, final long count, final String item) {
+        return pipeliner.submit(pipeline -> pipeline.lrem(key, count, item));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#ltrim(String, long, long)}.
+     */
+    public CompletableFuture<Boolean> ltrim(final String key, final long start, final long end) {
+        return pipeliner.submit(pipeline -> pipeline.ltrim(key, start, end)).thenApply(SUCCESS_STR::equals);
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#rpopLpush(String, String)}.
+     */
+    public CompletableFuture<String> rpopLpush(final String srcKey, final String destKey) {
+        return pipeliner.submit(pipeline -> pipeline.rpoplpush(srcKey, destKey));
+    }
+
+    // =============list 操作 end =====================
+    // =============set 操作 start =====================
+
+    /**
+     * 异步版本的{@link RedisClient#sadd(String, String...)}.
+     */
+    public CompletableFuture<Long> sadd(final String key, final String... members) {
+        return pipeliner.submit(pipeline -> pipeline.sadd(key, members));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#sismember(String, String)}.
+     */
+    public CompletableFuture<Boolean> sismember(final String key, final String member) {
+        return pipeliner.submit(pipeline -> pipeline.sismember(key, member));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#srem(String, String...)}.
+     */
+    public CompletableFuture<Long> srem(final String key, final String... members) {
+        return pipeliner.submit(pipeline -> pipeline.srem(key, members));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#scard(String)}.
+     */
+    public CompletableFuture<Long> scard(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.scard(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#smembers(String)}.
+     */
+    public CompletableFuture<Set<String>> smembers(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.smembers(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#spop(String)}.
+     */
+    public CompletableFuture<String> spop(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.spop(key));
+    }
+
+    // =============set 操作 end =====================
+
+    // =============hash 操作 start =====================
+
+    /**
+     * 异步版本的{@link RedisClient#hget(String, String)}.
+     */
+    public CompletableFuture<String> hget(final String key, final String field) {
+        return pipeliner.submit(pipeline -> pipeline.hget(key, field));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hmget(String, String...)}.
+     */
+    public CompletableFuture<List<String>> hmget(final String key, final String... fields) {
+        return pipeliner.submit(pipeline -> pipeline.hmget(key, fields));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hexists(String, String)}.
+     */
+    public CompletableFuture<Boolean> hexists(final String key, final String field) {
+        return pipeliner.submit(pipeline -> pipeline.hexists(key, field));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hgetAll(String)}.
+     */
+    public CompletableFuture<Map<String, String>> hgetAll(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.hgetAll(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hincrBy(String, String, long)}.
+     */
+    public CompletableFuture<Long> hincrBy(final String key, final String field, final long increment) {
+        return pipeliner.submit(pipeline -> pipeline.hincrBy(key, field, increment));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hset(String, String, String)}.
+     */
+    public CompletableFuture<Long> hset(final String key, final String field, final String value) {
+        return pipeliner.submit(pipeline -> pipeline.hset(key, field, value));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hset(String, Map)}.
+     */
+    public CompletableFuture<Long> hset(final String key, final Map<String/* field */, String/* name */> hash) {
+        return pipeliner.submit(pipeline -> pipeline.hset(key, hash));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hdel(String, String...)}.
+     */
+    public CompletableFuture<Long> hdel(final String key, final String... fields) {
+        return pipeliner.submit(pipeline -> pipeline.hdel(key, fields));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#hlen(String)}.
+     */
+    public CompletableFuture<Long> hlen(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.hlen(key));
+    }
+
+    // =============hash 操作 end =====================
+
+    // =============zset 操作 start =====================
+
+    /**
+     * 异步版本的{@link RedisClient#zcard(String)}.
+     */
+    public CompletableFuture<Long> zcard(final String key) {
+        return pipeliner.submit(pipeline -> pipeline.zcard(key));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zscore(String, String)}.
+     */
+    public CompletableFuture<Double> zscore(final String key, final String member) {
+        return pipeliner.submit(pipeline -> pipeline.zscore(key, member));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrank(String, String)}.
+     */
+    public CompletableFuture<Long> zrank(final String key, final String member) {
+        return pipeliner.submit(pipeline -> pipeline.zrank(key, member));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrange(String, long, long)}.
+     */
+    public CompletableFuture<Set<String>> zrange(final String key, final long start, final long stop) {
+        return pipeliner.submit(pipeline -> pipeline.zrange(key, start, stop));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrevRange(String, long, long)}.
+     */
+    public CompletableFuture<Set<String>> zrevRange(final String key, final long start, final long stop) {
+        return pipeliner.submit(pipeline -> pipeline.zrevrange(key, start, stop));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrangeWithScores(String, long, long)}.
+     */
+    public CompletableFuture<Set<Tuple>> zrangeWithScores(final String key, final long start, final long stop) {
+        return pipeliner.submit(pipeline -> pipeline.zrangeWithScores(key, start, stop));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrangeByScore(String, double, double)}.
+     */
+    public CompletableFuture<Set<String>> zrangeByScore(final String key, final double fromScore, final double toScore) {
+        return pipeliner.submit(pipeline -> pipeline.zrangeByScore(key, fromScore, toScore));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrangeByLex(String, String, String, int, int)}.
+     */
+    public CompletableFuture<Set<String>> zrangeByLex(final String key, final String floor, final String ceiling,
+                                                      final int offset, final int count) {
+        return pipeliner.submit(pipeline -> pipeline.zrangeByLex(key, floor, ceiling, offset, count));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zadd(String, double, String)}.
+     */
+    public CompletableFuture<Long> zadd(final String key, final double score, final String member) {
+        return pipeliner.submit(pipeline -> pipeline.zadd(key, score, member));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zadd(String, Map)}.
+     */
+    public CompletableFuture<Long> zadd(final String key, final Map<String/* member  */, Double/* score  */> hash) {
+        return pipeliner.submit(pipeline -> pipeline.zadd(key, hash));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zincrBy(String, double, String)}.
+     */
+    public CompletableFuture<Double> zincrBy(final String key, final double increment, final String member) {
+        return pipeliner.submit(pipeline -> pipeline.zincrby(key, increment, member));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zrem(String, String...)}.
+     */
+    public CompletableFuture<Long> zrem(final String key, final String... members) {
+        return pipeliner.submit(pipeline -> pipeline.zrem(key, members));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zremRangeByRank(String, long, long)}.
+     */
+    public CompletableFuture<Long> zremRangeByRank(final String key, final long start, final long stop) {
+        return pipeliner.submit(pipeline -> pipeline.zremrangeByRank(key, start, stop));
+    }
+
+    /**
+     * 异步版本的{@link RedisClient#zremrangeByScore(String, double, double)}.
+     */
+    public CompletableFuture<Long> zremrangeByScore(final String key, final double fromScore, final double toScore) {
+        return pipeliner.submit(pipeline -> pipeline.zremrangeByScore(key, fromScore, toScore));
+    }
+
+    // =============zset 操作 end =====================
+}
@@ -1,26 +1,48 @@
 package com.qixiafei.redisinaction.jedis;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import redis.clients.jedis.BitOP;
+import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.JedisSentinelPool;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol.Command;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.SortingParams;
+import redis.clients.jedis.Transaction;
 import redis.clients.jedis.Tuple;
 import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 import redis.clients.jedis.util.Pool;
+import redis.clients.jedis.util.SafeEncoder;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * <P>Description: 封装redis方法. </P>
@@ -36,7 +58,105 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class RedisClient {
 
-    private Pool<Jedis> pool;
+    /**
+     * 单机、哨兵模式下的连接池，集群模式为null.
+     */
+    private final Pool<Jedis> pool;
+
+    /**
+     * 按key选择节点的路由.
+     */
+    private final JedisRouter router;
+
+    /**
+     * 自动管道，未开启时为null.
+     */
+    private volatile AutoPipeliner autoPipeliner;
+
+    /**
+     * 异步门面，第一次调用async()时创建.
+     */
+    private volatile RedisAsyncClient asyncClient;
+
+    /**
+     * 异步门面使用的管道，与自动管道相互独立.
+     */
+    private AutoPipeliner asyncPipeliner;
+
+    /**
+     * 近端缓存，未开启时为null.
+     */
+    private volatile NearCache nearCache;
+
+    /**
+     * 命令级监控，始终开启.
+     */
+    private final RedisMetrics metrics = new RedisMetrics();
+
+    /**
+     * SCAN迭代器后台预取使用的线程池，没有预取时不创建线程.
+     */
+    private final ExecutorService scanExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("redis scan prefetch t-%d").build());
+
+    private int asyncFlushSize = 128;
+
+    private int asyncConnections = 2;
+
+    /**
+     * 订阅管理，第一次调用subscriptions()时创建.
+     */
+    private volatile SubscriptionManager subscriptionManager;
+
+    private int subscriptionThreads = 4;
+
+    private int subscriptionQueueCapacity = 1000;
+
+    private SubscriptionManager.OverflowPolicy subscriptionPolicy = SubscriptionManager.OverflowPolicy.DROP;
+
+    private long subscriptionBlockMillis = 100;
+
+    private long subscriptionPingMillis = 30000;
+
+    /**
+     * 阻塞命令（blpop、brpop、brpopLpush）专用的路由，未开启时为null，阻塞命令与普通命令共用连接池.
+     */
+    private volatile JedisRouter blockingRouter;
+
+    /**
+     * 按连接池配置构建与主路由指向相同节点的新路由，由工厂方法设置.
+     */
+    private Function<GenericObjectPoolConfig, JedisRouter> blockingRouterFactory;
+
+    /**
+     * 阻塞命令的读超时在阻塞时间之上额外增加的余量（毫秒）.
+     */
+    private volatile int blockingTimeoutMarginMillis = DEFAULT_BLOCKING_TIMEOUT_MARGIN_MILLIS;
+
+    /**
+     * 单机、哨兵模式下连接的读超时（毫秒），0代表不限制；自动管道据此计算等待结果的超时.
+     */
+    private int soTimeout;
+
+    /**
+     * 批量接口每个分片的key数量.
+     */
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 字符串value的透明压缩，为null代表未开启.
+     */
+    private volatile ValueCompressor compressor;
+
+    /**
+     * {@link #pipelined}自动flush的命令数上限.
+     */
+    private volatile int pipelineMaxCommands = DEFAULT_PIPELINE_MAX_COMMANDS;
+
+    /**
+     * {@link #pipelined}自动flush的估算字节数上限.
+     */
+    private volatile long pipelineMaxBytes = DEFAULT_PIPELINE_MAX_BYTES;
 
     private static final String SUCCESS_STR = "OK";
 
@@ -44,8 +164,42 @@ public class RedisClient {
 
     private static final String ADDRS_SPLITOR = ",";
 
+    private static final int DEFAULT_MAX_REDIRECTIONS = 5;
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final int DEFAULT_PIPELINE_MAX_COMMANDS = 1000;
+
+    private static final long DEFAULT_PIPELINE_MAX_BYTES = 1024 * 1024;
+
+    private static final int DEFAULT_BLOCKING_TIMEOUT_MARGIN_MILLIS = 1000;
+
     private static final String UNLOCK_FAILED = "unlocked_failed";
 
+    /**
+     * 解锁脚本：KEYS[1]的值等于ARGV[1]（流水号）才删除，返回{原值, del结果或ARGV[2]}.
+     */
+    public static final RedisScript UNLOCK_SCRIPT = RedisScript.of("unlock", " " +
+            " local ret = {} \n" +
+            " local ret1 = redis.call('get',KEYS[1]) \n" +
+            " local ret2 = '' \n" +
+            "if ret1 == ARGV[1] " +
+            " then ret2 = redis.call('del',KEYS[1])" +
+            " else ret2 = ARGV[2] end \n" +
+            " ret[1] = ret1 \n" +
+            " ret[2] = ret2 \n" +
+            "return ret");
+
+    /**
+     * 已注册的脚本，sha1到脚本的映射.
+     */
+    private final Map<String, RedisScript> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * 确认已缓存在服务端的脚本sha1，管道里只对这些脚本使用EVALSHA.
+     */
+    private final Set<String> loadedShas = ConcurrentHashMap.newKeySet();
+
     /**
      * 构建单机redis连接池.
      *
@@ -66,8 +220,12 @@ public class RedisClient {
 
 
         final GenericObjectPoolConfig config = buildConfig(maxTotal, maxIdle, minIdle, testWhileIdle);
-        return new RedisClient(new JedisPool(config, host, port, connectionTimeOut, soTimeOut, password, 0,
-                "", false, null, null, null));
+        final RedisClient client = new RedisClient(new JedisPool(config, host, port, connectionTimeOut, soTimeOut,
+                password, 0, "", false, null, null, null));
+        client.blockingRouterFactory = blockingConfig -> new PoolRouter(new JedisPool(blockingConfig, host, port,
+                connectionTimeOut, soTimeOut, password, 0, "", false, null, null, null));
+        client.soTimeout = soTimeOut;
+        return client;
 
     }
 
@@ -89,11 +247,403 @@ public class RedisClient {
                                            final int connectionTimeOut, final int soTimeOut, final int maxTotal,
                                            final int maxIdle, final int minIdle, final boolean testWhileIdle) {
         final GenericObjectPoolConfig config = buildConfig(maxTotal, maxIdle, minIdle, testWhileIdle);
-        return new RedisClient(new JedisSentinelPool(masterName,
+        final RedisClient client = new RedisClient(new JedisSentinelPool(masterName,
+                new HashSet<>(Arrays.asList(nodes.split(ADDRS_SPLITOR))), config,
+                connectionTimeOut, soTimeOut, password, 0));
+        client.blockingRouterFactory = blockingConfig -> new PoolRouter(new JedisSentinelPool(masterName,
+                new HashSet<>(Arrays.asList(nodes.split(ADDRS_SPLITOR))), blockingConfig,
+                connectionTimeOut, soTimeOut, password, 0));
+        client.soTimeout = soTimeOut;
+        return client;
+
+
+    }
+
+    /**
+     * 构建读写分离的哨兵redis连接池，写命令走master，只读命令按读策略发往哨兵发现的从节点.
+     * 从节点存在复制延迟，对"写完立刻读"敏感的场景请使用{@link ReadPreference#MASTER}.
+     *
+     * @param masterName        哨兵集群名称
+     * @param nodes             哨兵地址，多个地址之间用英文逗号分隔
+     * @param connectionTimeOut 连接超时，0代表不限制
+     * @param soTimeOut         数据传输超时，0代表不限制
+     * @param password          redis服务密码，可以为null
+     * @param maxTotal          每个节点最大可用连接数
+     * @param maxIdle           每个节点最大空闲连接数
+     * @param minIdle           每个节点最小空闲连接数
+     * @param testWhileIdle     是否在空闲时检测连接可用
+     * @param readPreference    只读命令的节点选择策略
+     * @param refreshSeconds    从哨兵刷新从节点列表的间隔（秒）
+     * @return redis操作客户端
+     */
+    public static RedisClient sentinelPool(final String masterName, final String nodes, final String password,
+                                           final int connectionTimeOut, final int soTimeOut, final int maxTotal,
+                                           final int maxIdle, final int minIdle, final boolean testWhileIdle,
+                                           final ReadPreference readPreference, final int refreshSeconds) {
+        final GenericObjectPoolConfig config = buildConfig(maxTotal, maxIdle, minIdle, testWhileIdle);
+        final JedisSentinelPool masterPool = new JedisSentinelPool(masterName,
                 new HashSet<>(Arrays.asList(nodes.split(ADDRS_SPLITOR))), config,
+                connectionTimeOut, soTimeOut, password, 0);
+        final RedisClient client;
+        if (readPreference == null || readPreference == ReadPreference.MASTER) {
+            client = new RedisClient(masterPool);
+        } else {
+            client = new RedisClient(new SentinelReplicaRouter(masterPool, masterName, nodes, config,
+                    connectionTimeOut, soTimeOut, password, readPreference, refreshSeconds), masterPool);
+        }
+        client.blockingRouterFactory = blockingConfig -> new PoolRouter(new JedisSentinelPool(masterName,
+                new HashSet<>(Arrays.asList(nodes.split(ADDRS_SPLITOR))), blockingConfig,
                 connectionTimeOut, soTimeOut, password, 0));
+        client.soTimeout = soTimeOut;
+        return client;
+    }
+
+    /**
+     * 构建redis cluster客户端，命令按key的hash slot发往所属节点，自动跟随MOVED/ASK重定向.
+     * 多key命令（如sinter、zunionStore）要求所有key处于同一slot，请使用{@link ClusterKeys#hashTag(String)}约束key的分布；
+     * del会按slot拆分后并行执行.
+     *
+     * @param nodes             集群种子节点地址，多个地址之间用英文逗号分隔
+     * @param password          redis服务密码，可以为null
+     * @param connectionTimeOut 连接超时，0代表不限制
+     * @param soTimeOut         数据传输超时，0代表不限制
+     * @param maxTotal          每个节点最大可用连接数
+     * @param maxIdle           每个节点最大空闲连接数
+     * @param minIdle           每个节点最小空闲连接数
+     * @param testWhileIdle     是否在空闲时检测连接可用
+     * @param maxRedirections   单个命令最多跟随重定向的次数
+     * @param parallelism       多key命令按slot拆分后并行执行的线程数
+     * @return redis操作客户端
+     */
+    public static RedisClient clusterPool(final String nodes, final String password, final int connectionTimeOut,
+                                          final int soTimeOut, final int maxTotal, final int maxIdle,
+                                          final int minIdle, final boolean testWhileIdle,
+                                          final int maxRedirections, final int parallelism) {
+        final GenericObjectPoolConfig config = buildConfig(maxTotal, maxIdle, minIdle, testWhileIdle);
+        final int redirections = maxRedirections > 0 ? maxRedirections : DEFAULT_MAX_REDIRECTIONS;
+        final RedisClient client = new RedisClient(new ClusterRouter(nodes, config, connectionTimeOut, soTimeOut,
+                password, redirections, parallelism), null);
+        client.blockingRouterFactory = blockingConfig -> new ClusterRouter(nodes, blockingConfig, connectionTimeOut,
+                soTimeOut, password, redirections, parallelism);
+        return client;
+    }
+
+    /**
+     * 构建客户端分片的redis客户端，用一致性hash环把key分布到多个独立的redis节点上，适用于无法部署cluster的场景.
+     * 与集群一样按hash tag计算分布，多key命令（如sinter、zunionStore）要求所有key带有相同的hash tag；
+     * mget、mset、del等会按节点拆分后并行执行. 增删节点会迁移部分key的归属，原节点上的数据不会自动迁移.
+     *
+     * @param nodes             节点地址，多个地址之间用英文逗号分隔，格式为host:port或host:port:weight
+     * @param password          redis服务密码，可以为null
+     * @param connectionTimeOut 连接超时，0代表不限制
+     * @param soTimeOut         数据传输超时，0代表不限制
+     * @param maxTotal          每个节点最大可用连接数
+     * @param maxIdle           每个节点最大空闲连接数
+     * @param minIdle           每个节点最小空闲连接数
+     * @param testWhileIdle     是否在空闲时检测连接可用
+     * @param virtualNodes      权重为1的节点在hash环上的虚拟节点数
+     * @param parallelism       多key命令按节点拆分后并行执行的线程数
+     * @return redis操作客户端
+     */
+    public static RedisClient shardedPool(final String nodes, final String password, final int connectionTimeOut,
+                                          final int soTimeOut, final int maxTotal, final int maxIdle,
+                                          final int minIdle, final boolean testWhileIdle,
+                                          final int virtualNodes, final int parallelism) {
+        final GenericObjectPoolConfig config = buildConfig(maxTotal, maxIdle, minIdle, testWhileIdle);
+        final RedisClient client = new RedisClient(new ShardedRouter(nodes, config, connectionTimeOut, soTimeOut,
+                password, virtualNodes, parallelism), null);
+        client.blockingRouterFactory = blockingConfig -> new ShardedRouter(nodes, blockingConfig, connectionTimeOut,
+                soTimeOut, password, virtualNodes, parallelism);
+        return client;
+    }
+
+    /**
+     * 开启自动管道，开启后能走管道的命令会被多个线程共享的连接攒批发送，方法签名和同步语义不变.
+     * 阻塞命令、订阅以及getInstance、execPipeLine仍然直接使用连接池.
+     *
+     * @param flushSize           一批最多发送的命令数
+     * @param flushIntervalMicros 攒批最长等待时间（微秒），0代表不等待，有多少发多少
+     * @param connections         共享连接数
+     */
+    public synchronized void enableAutoPipelining(final int flushSize, final long flushIntervalMicros,
+                                                  final int connections) {
+        checkSingleNode("auto pipeline");
+        if (autoPipeliner != null) {
+            autoPipeliner.close();
+        }
+        autoPipeliner = new AutoPipeliner(pool, flushSize, flushIntervalMicros, connections,
+                pipelineResultTimeoutMillis(flushIntervalMicros));
+        log.info("auto pipeline开启，flushSize={}，flushIntervalMicros={}，connections={}",
+                flushSize, flushIntervalMicros, connections);
+    }
+
+    /**
+     * 自动管道中一个命令最长的等待时间：排队等待前面一批发送，再加上自己这一批，每批最多耗时一个读超时，
+     * 再加上攒批的等待时间. 读超时为0（不限制）时同样不限制.
+     */
+    private long pipelineResultTimeoutMillis(final long flushIntervalMicros) {
+        if (soTimeout <= 0) {
+            return 0;
+        }
+        return 2L * soTimeout + TimeUnit.MICROSECONDS.toMillis(flushIntervalMicros) + 1;
+    }
+
+    /**
+     * 开启阻塞命令专用连接池，blpop、brpop、brpopLpush改为在独立的连接池上执行，
+     * 等待队列的消费者再多也不会占满普通命令的连接池；集群模式下每个节点各有一个专用连接池.
+     * 划重点：maxTotal决定同时阻塞的消费者上限，超出的消费者会等待借连接.
+     *
+     * @param maxTotal            每个节点最大连接数
+     * @param maxIdle             每个节点最大空闲连接数
+     * @param timeoutMarginMillis 读超时在阻塞时间之上额外增加的余量（毫秒）
+     */
+    public synchronized void enableBlockingPool(final int maxTotal, final int maxIdle,
+                                                final int timeoutMarginMillis) {
+        if (timeoutMarginMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMarginMillis必须大于0");
+        }
+        final JedisRouter previous = blockingRouter;
+        blockingRouter = blockingRouterFactory.apply(buildConfig(maxTotal, maxIdle, 0, false));
+        blockingTimeoutMarginMillis = timeoutMarginMillis;
+        if (previous != null) {
+            previous.close();
+        }
+        log.info("阻塞命令连接池开启，maxTotal={}，maxIdle={}，timeoutMarginMillis={}",
+                maxTotal, maxIdle, timeoutMarginMillis);
+    }
+
+    /**
+     * 配置异步门面，需在第一次调用async()之前调用.
+     *
+     * @param flushSize   一批最多发送的命令数
+     * @param connections 异步命令多路复用的共享连接数
+     */
+    public synchronized void configureAsync(final int flushSize, final int connections) {
+        if (asyncClient != null) {
+            throw new IllegalStateException("异步门面已创建，无法修改配置");
+        }
+        this.asyncFlushSize = flushSize;
+        this.asyncConnections = connections;
+    }
+
+    /**
+     * 配置批量接口（mget、mset、批量hgetAll等）默认的分片大小.
+     *
+     * @param batchSize 每个分片的key数量
+     */
+    public void configureBatch(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize必须大于0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 配置{@link #pipelined}默认的自动flush阈值，任一达到即sync.
+     *
+     * @param maxCommands 命令数上限
+     * @param maxBytes    估算的请求字节数上限
+     */
+    public void configurePipeline(final int maxCommands, final long maxBytes) {
+        if (maxCommands <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("maxCommands和maxBytes必须大于0");
+        }
+        this.pipelineMaxCommands = maxCommands;
+        this.pipelineMaxBytes = maxBytes;
+    }
+
+    /**
+     * 获取异步门面，所有命令返回CompletableFuture，调用线程不阻塞，可以并发发出互不依赖的命令再组合结果.
+     *
+     * @return 异步门面
+     */
+    public RedisAsyncClient async() {
+        RedisAsyncClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncClient;
+                if (client == null) {
+                    checkSingleNode("异步门面");
+                    asyncPipeliner = new AutoPipeliner(pool, asyncFlushSize, 0, asyncConnections,
+                            pipelineResultTimeoutMillis(0));
+                    client = new RedisAsyncClient(asyncPipeliner);
+                    asyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 配置订阅管理，需在第一次调用subscriptions()之前调用.
+     *
+     * @param threads            处理器线程数
+     * @param queueCapacity      每个订阅的消息队列长度
+     * @param policy             队列满时的策略
+     * @param blockMillis        BLOCK策略下读取线程最长等待时间（毫秒）
+     * @param pingIntervalMillis 订阅连接心跳间隔（毫秒），0代表不检测
+     */
+    public synchronized void configureSubscriptions(final int threads, final int queueCapacity,
+                                                    final SubscriptionManager.OverflowPolicy policy,
+                                                    final long blockMillis, final long pingIntervalMillis) {
+        if (subscriptionManager != null) {
+            throw new IllegalStateException("订阅管理已创建，无法修改配置");
+        }
+        this.subscriptionThreads = threads;
+        this.subscriptionQueueCapacity = queueCapacity;
+        this.subscriptionPolicy = policy;
+        this.subscriptionBlockMillis = blockMillis;
+        this.subscriptionPingMillis = pingIntervalMillis;
+    }
+
+    /**
+     * 订阅管理，所有订阅共用一个连接，消息在独立的线程池上处理，不占用调用线程.
+     *
+     * @return 订阅管理
+     */
+    public SubscriptionManager subscriptions() {
+        SubscriptionManager manager = subscriptionManager;
+        if (manager == null) {
+            synchronized (this) {
+                manager = subscriptionManager;
+                if (manager == null) {
+                    manager = new SubscriptionManager(router, subscriptionThreads, subscriptionQueueCapacity,
+                            subscriptionPolicy, subscriptionBlockMillis, subscriptionPingMillis);
+                    subscriptionManager = manager;
+                }
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * 开启近端缓存，get、hget、hgetAll优先读取进程内缓存.
+     * 通过本客户端写命令修改的key会立即在本地失效，并通过pub/sub频道通知其他实例；
+     * getInstance、execPipeLine、pipelined和异步门面的写入不会触发失效，只能依赖最长存活时间兜底.
+     *
+     * @param maxSize   最大条目数
+     * @param policy    淘汰策略
+     * @param ttlMillis 条目最长存活时间（毫秒），0代表不限制，有redis过期时间的key务必设置
+     * @param channel   失效消息频道，所有实例需一致
+     */
+    public synchronized void enableNearCache(final int maxSize, final NearCache.EvictionPolicy policy,
+                                             final long ttlMillis, final String channel) {
+        if (nearCache != null) {
+            nearCache.close();
+        }
+        // 不存在的key和其他条目一样缓存ttlMillis，不限制时也不限制
+        nearCache = new NearCache(router, maxSize, policy, ttlMillis, ttlMillis > 0 ? ttlMillis : Long.MAX_VALUE,
+                channel);
+        log.info("近端缓存开启，maxSize={}，policy={}，ttlMillis={}，channel={}", maxSize, policy, ttlMillis, channel);
+    }
+
+    /**
+     * 创建一个独立的近端缓存，不挡在本客户端的读命令前面，由调用方通过loader读取、写入后调用put或invalidate.
+     * 失效消息通过本客户端发布和订阅，不再使用时务必close.
+     *
+     * @param maxSize           最大条目数
+     * @param policy            淘汰策略
+     * @param ttlMillis         条目最长存活时间（毫秒），0代表不限制
+     * @param negativeTtlMillis 不存在的值的最长存活时间（毫秒），0代表不缓存不存在的值
+     * @param channel           失效消息频道，所有实例需一致，不要与{@link #enableNearCache}的频道相同
+     * @return 近端缓存
+     */
+    public NearCache createNearCache(final int maxSize, final NearCache.EvictionPolicy policy, final long ttlMillis,
+                                     final long negativeTtlMillis, final String channel) {
+        return new NearCache(router, maxSize, policy, ttlMillis, negativeTtlMillis, channel);
+    }
+
+    /**
+     * 获取近端缓存统计.
+     *
+     * @return 统计信息，未开启近端缓存时返回null
+     */
+    public NearCache.Stats nearCacheStats() {
+        final NearCache cache = nearCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * 开启字符串value的透明压缩，只对指定前缀的key生效.
+     * 覆盖get、set、setExpire、mget、mset及其byte[]和Codec版本；hash、list等其他结构以及getInstance、管道的写入不压缩.
+     * 划重点：开启后这些前缀的key只能通过上述接口读取，直接读取拿到的是压缩后的字节.
+     *
+     * @param thresholdBytes value的UTF-8字节数达到该值才压缩
+     * @param level          Deflate压缩级别，1最快，9压缩率最高
+     * @param prefixes       开启压缩的key前缀
+     */
+    public void enableCompression(final int thresholdBytes, final int level, final String... prefixes) {
+        compressor = new ValueCompressor(thresholdBytes, level, prefixes);
+        log.info("value压缩开启，thresholdBytes={}，level={}，prefixes={}", thresholdBytes, level,
+                Arrays.toString(prefixes));
+    }
+
+    /**
+     * 获取压缩统计.
+     *
+     * @return 统计信息，未开启压缩时返回null
+     */
+    public ValueCompressor.Stats compressionStats() {
+        final ValueCompressor current = compressor;
+        return current == null ? null : current.stats();
+    }
+
+    /**
+     * 获取命令延迟分布、错误超时计数和连接池状态的快照，阻塞命令专用连接池以"blocking-"为前缀.
+     *
+     * @return 监控快照
+     */
+    public RedisMetrics.Snapshot metricsSnapshot() {
+        final JedisRouter blocking = blockingRouter;
+        if (blocking == null) {
+            return metrics.snapshot(router.pools());
+        }
+        final Map<String, Pool<Jedis>> pools = new LinkedHashMap<>(router.pools());
+        for (Map.Entry<String, Pool<Jedis>> entry : blocking.pools().entrySet()) {
+            pools.put("blocking-" + entry.getKey(), entry.getValue());
+        }
+        return metrics.snapshot(pools);
+    }
+
+    /**
+     * 清空命令监控统计.
+     */
+    public void resetMetrics() {
+        metrics.reset();
+    }
 
+    /**
+     * 关闭客户端，释放自动管道、异步门面和连接池.
+     */
+    public synchronized void close() {
+        if (subscriptionManager != null) {
+            subscriptionManager.close();
+            subscriptionManager = null;
+        }
+        if (nearCache != null) {
+            nearCache.close();
+            nearCache = null;
+        }
+        if (autoPipeliner != null) {
+            autoPipeliner.close();
+            autoPipeliner = null;
+        }
+        if (asyncPipeliner != null) {
+            asyncPipeliner.close();
+            asyncPipeliner = null;
+        }
+        scanExecutor.shutdownNow();
+        if (blockingRouter != null) {
+            blockingRouter.close();
+            blockingRouter = null;
+        }
+        router.close();
+    }
 
+    private void checkSingleNode(final String feature) {
+        if (pool == null) {
+            throw new UnsupportedOperationException("集群和分片模式暂不支持" + feature);
+        }
     }
 
     public static void main(String[] args) {
@@ -130,16 +680,8 @@ public class RedisClient {
      * @param serialNo 流水号
      */
     public void tryUnlock(final String lockKey, final String serialNo) {
-        final Object eval = eval(" " +
-                " local ret = {} \n" +
-                " local ret1 = redis.call('get',KEYS[1]) \n" +
-                " local ret2 = '' \n" +
-                "if ret1 == KEYS[2] " +
-                " then ret2 = redis.call('del',KEYS[1])" +
-                " else ret2 = KEYS[3] end \n" +
-                " ret[1] = ret1 \n" +
-                " ret[2] = ret2 \n" +
-                "return ret", lockKey, serialNo, UNLOCK_FAILED);
+        final Object eval = evalsha(UNLOCK_SCRIPT, Collections.singletonList(lockKey),
+                Arrays.asList(serialNo, UNLOCK_FAILED));
         final List<Object> result = (List<Object>) eval;
         if (UNLOCK_FAILED.equals(result.get(1))) {
             log.warn("redis解锁失败，已被其他锁占领，当前占领锁的serialNo={}", result.get(0));
@@ -157,9 +699,7 @@ public class RedisClient {
      * @return 排序结果
      */
     public List<String> sort(final String key) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.sort(key);
-        }
+        return execute(Command.SORT, key, jedis -> jedis.sort(key), pipeline -> pipeline.sort(key));
     }
 
     /**
@@ -170,9 +710,8 @@ public class RedisClient {
      * @return 影响的key数量
      */
     public List<String> sort(final String key, final SortingParams sortingParams) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.sort(key, sortingParams);
-        }
+        return execute(Command.SORT, key, jedis -> jedis.sort(key, sortingParams),
+                pipeline -> pipeline.sort(key, sortingParams));
     }
 
     /**
@@ -184,9 +723,8 @@ public class RedisClient {
      * @return key总数
      */
     public Long sort(final String key, final SortingParams sortingParams, final String destKey) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.sort(key, sortingParams, destKey);
-        }
+        return afterWrite(execute(Command.SORT, key, jedis -> jedis.sort(key, sortingParams, destKey),
+                pipeline -> pipeline.sort(key, sortingParams, destKey)), destKey);
     }
 
     /**
@@ -196,9 +734,7 @@ public class RedisClient {
      * @return 影响的key个数，key不存在0，否则1
      */
     public Long persist(final String key) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.persist(key);
-        }
+        return execute(Command.PERSIST, key, jedis -> jedis.persist(key), pipeline -> pipeline.persist(key));
     }
 
     /**
@@ -209,9 +745,8 @@ public class RedisClient {
      * @return 影响的key数量，key不存在0，否则1
      */
     public Long expire(final String key, final int expiredSeconds) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.expire(key, expiredSeconds);
-        }
+        return afterWrite(execute(Command.EXPIRE, key, jedis -> jedis.expire(key, expiredSeconds),
+                pipeline -> pipeline.expire(key, expiredSeconds)), key);
     }
 
     /**
@@ -222,9 +757,8 @@ public class RedisClient {
      * @return 影响的key数量，key不存在0，否则1
      */
     public Long expireAt(final String key, final long unixTime) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.expireAt(key, unixTime);
-        }
+        return afterWrite(execute(Command.EXPIREAT, key, jedis -> jedis.expireAt(key, unixTime),
+                pipeline -> pipeline.expireAt(key, unixTime)), key);
     }
 
     /**
@@ -234,9 +768,7 @@ public class RedisClient {
      * @return 永久对象返回-1，不存在对象返回-2，否则返回距离过期秒数
      */
     public Long ttl(final String key) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.ttl(key);
-        }
+        return executeRead(Command.TTL, key, jedis -> jedis.ttl(key), pipeline -> pipeline.ttl(key));
     }
 
     /**
@@ -247,9 +779,8 @@ public class RedisClient {
      * @return 影响的key数量，key不存在0，否则1
      */
     public Long pexpire(final String key, final int expiredMillis) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.pexpire(key, expiredMillis);
-        }
+        return afterWrite(execute(Command.PEXPIRE, key, jedis -> jedis.pexpire(key, expiredMillis),
+                pipeline -> pipeline.pexpire(key, expiredMillis)), key);
     }
 
     /**
@@ -260,9 +791,8 @@ public class RedisClient {
      * @return 影响的key数量，key不存在0，否则1
      */
     public Long pexpireAt(final String key, final long unixTime) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.pexpireAt(key, unixTime);
-        }
+        return afterWrite(execute(Command.PEXPIREAT, key, jedis -> jedis.pexpireAt(key, unixTime),
+                pipeline -> pipeline.pexpireAt(key, unixTime)), key);
     }
 
     /**
@@ -272,9 +802,7 @@ public class RedisClient {
      * @return 永久对象返回-1，不存在对象返回-2，否则返回距离过期秒数
      */
     public Long pttl(final String key) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.pttl(key);
-        }
+        return executeRead(Command.PTTL, key, jedis -> jedis.pttl(key), pipeline -> pipeline.pttl(key));
     }
 
     /**
@@ -284,9 +812,12 @@ public class RedisClient {
      * @return 删除的key数量
      */
     public Long del(String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.del(keys);
+        long deleted = 0;
+        for (Long count : executeGroups(keys, group -> execute(Command.DEL, group[0], jedis -> jedis.del(group),
+                pipeline -> pipeline.del(group)))) {
+            deleted += count;
         }
+        return afterWrite(deleted, keys);
     }
 
     /**
@@ -296,10 +827,8 @@ public class RedisClient {
      * @return
      */
     public KeyType type(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            final String type = resource.type(key);
-            return KeyType.instance(type);
-        }
+        final String type = executeRead(Command.TYPE, key, jedis -> jedis.type(key), pipeline -> pipeline.type(key));
+        return KeyType.instance(type);
     }
 
     /**
@@ -310,55 +839,512 @@ public class RedisClient {
      * @return 修改成功
      */
     public boolean rename(final String oldKey, final String newKey) {
-        try (final Jedis resource = pool.getResource()) {
-            return SUCCESS_STR.equals(resource.rename(oldKey, newKey));
-        }
+        return afterWrite(SUCCESS_STR.equals(execute(Command.RENAME, oldKey, jedis -> jedis.rename(oldKey, newKey),
+                pipeline -> pipeline.rename(oldKey, newKey))), oldKey, newKey);
     }
 
     /**
-     * 查询redis运行情况.
+     * 用SCAN惰性遍历整个keyspace，在调用线程上按需逐页拉取，不阻塞redis、内存占用与key总数无关.
+     * 集群模式暂不支持.
      *
-     * @return 运行情况
+     * @param match 匹配模式，例如"login:*"，为null代表不过滤
+     * @param count 每页建议数量，redis按此值控制单次遍历的工作量
+     * @return key的迭代器，用完务必close
      */
-    public String info() {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.info();
-        }
+    public ScanIterator<String> scan(final String match, final int count) {
+        return scan(match, count, 0);
     }
 
     /**
-     * 查询redis运行情况.
+     * 用SCAN惰性遍历整个keyspace，集群模式暂不支持.
      *
-     * @param section 过滤条件
-     * @return 运行情况
+     * @param match    匹配模式，为null代表不过滤
+     * @param count    每页建议数量
+     * @param prefetch 后台最多预取的页数，0代表不预取
+     * @return key的迭代器，用完务必close
      */
-    public String info(final String section) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.info(section);
-        }
+    public ScanIterator<String> scan(final String match, final int count, final int prefetch) {
+        checkSingleNode("scan");
+        return scanIterator(Command.SCAN, null, match, count, prefetch,
+                (jedis, cursor, params) -> jedis.scan(cursor, params));
     }
 
     /**
-     * 获取jedis实例，使用完务必调用close归还资源.
+     * 统计key在各节点上的分布，与路由规则的期望比例对比得出倾斜程度.
+     * 不指定match时用DBSIZE，指定时在每个节点上SCAN计数，key多时较慢，请勿在高峰期调用.
+     * 只统计主节点，哨兵模式下的从节点是主节点的副本，不参与统计.
+     *
+     * @param match 匹配模式，例如"cart:*"，为null代表全部key
+     * @param count 每页建议数量
+     * @return 分布统计
      */
-    public Jedis getInstance() {
-        return pool.getResource();
+    public ShardDistribution keyDistribution(final String match, final int count) {
+        final Map<String, Pool<Jedis>> pools = router.masterPools();
+        final Map<String, Double> ownership = router.ownership();
+        final ShardDistribution distribution = new ShardDistribution();
+        distribution.setMatch(match);
+        for (Map.Entry<String, Pool<Jedis>> entry : pools.entrySet()) {
+            long keys = 0;
+            try (final Jedis jedis = entry.getValue().getResource()) {
+                if (match == null) {
+                    keys = jedis.dbSize();
+                } else {
+                    final ScanParams params = new ScanParams().match(match).count(count);
+                    String cursor = ScanParams.SCAN_POINTER_START;
+                    do {
+                        final ScanResult<String> page = jedis.scan(cursor, params);
+                        keys += page.getResult().size();
+                        cursor = page.getCursor();
+                    } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+                }
+            }
+            final ShardDistribution.Node node = new ShardDistribution.Node();
+            node.setName(entry.getKey());
+            node.setKeys(keys);
+            node.setExpectedShare(ownership.getOrDefault(entry.getKey(), 1D / pools.size()));
+            distribution.getNodes().add(node);
+            distribution.setTotal(distribution.getTotal() + keys);
+        }
+        for (ShardDistribution.Node node : distribution.getNodes()) {
+            if (distribution.getTotal() > 0) {
+                node.setShare((double) node.getKeys() / distribution.getTotal());
+                node.setSkew(node.getShare() / node.getExpectedShare());
+            }
+            distribution.setMaxSkew(Math.max(distribution.getMaxSkew(), node.getSkew()));
+        }
+        return distribution;
     }
 
     /**
-     * 以管道形式执行若干操作.
-     * 划重点：若使用了事务，watch的key在multi和exec 之间变化了，exec结果会是null
+     * 在每个主节点上SCAN出匹配的key并删除，用于清理压测等生成的临时数据.
+     * 删除不经过本地缓存的失效通知，key多时较慢，请勿在高峰期调用.
+     *
+     * @param match 匹配模式，例如"pressure:1:*"
+     * @param count 每页建议数量
+     * @return 删除的key数量
      */
-    public void execPipeLine(PipelineTask task) {
-        try (final Jedis resource = pool.getResource()) {
-            task.exec(resource.pipelined());
+    public long deleteMatching(final String match, final int count) {
+        if (match == null || match.isEmpty()) {
+            throw new IllegalArgumentException("match不能为空");
+        }
+        final ScanParams params = new ScanParams().match(match).count(count);
+        long deleted = 0;
+        for (Pool<Jedis> pool : router.masterPools().values()) {
+            try (final Jedis jedis = pool.getResource()) {
+                String cursor = ScanParams.SCAN_POINTER_START;
+                do {
+                    final ScanResult<String> page = jedis.scan(cursor, params);
+                    if (!page.getResult().isEmpty()) {
+                        // 集群模式下同一页的key可能属于不同slot，逐个删除
+                        final Pipeline pipeline = jedis.pipelined();
+                        final List<Response<Long>> responses = new ArrayList<>(page.getResult().size());
+                        for (String key : page.getResult()) {
+                            responses.add(pipeline.del(key));
+                        }
+                        pipeline.sync();
+                        for (Response<Long> response : responses) {
+                            deleted += response.get();
+                        }
+                    }
+                    cursor = page.getCursor();
+                } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+            }
         }
+        return deleted;
+    }
+
+    /**
+     * 查询redis运行情况.
+     *
+     * @return 运行情况
+     */
+    public String info() {
+        return execute(Command.INFO, null, jedis -> jedis.info(), pipeline -> pipeline.info());
+    }
+
+    /**
+     * 查询redis运行情况.
+     *
+     * @param section 过滤条件
+     * @return 运行情况
+     */
+    public String info(final String section) {
+        return execute(Command.INFO, null, jedis -> jedis.info(section), pipeline -> pipeline.info(section));
+    }
+
+    /**
+     * 查询配置项，集群和分片模式下查询任意一个节点.
+     *
+     * @param name 配置名
+     * @return 配置值，不存在返回null
+     */
+    public String configGet(final String name) {
+        final List<String> pair = execute(Command.CONFIG, null, jedis -> jedis.configGet(name),
+                pipeline -> pipeline.configGet(name));
+        return pair == null || pair.size() < 2 ? null : pair.get(1);
+    }
+
+    /**
+     * 查询key的内部编码，如ziplist、hashtable.
+     *
+     * @param key key
+     * @return 编码，key不存在返回null
+     */
+    public String objectEncoding(final String key) {
+        return execute(Command.OBJECT, key, jedis -> jedis.objectEncoding(key),
+                pipeline -> pipeline.objectEncoding(key));
+    }
+
+    /**
+     * MEMORY USAGE，查询key及其值占用的字节数，需要redis 4.0以上. 嵌套类型按redis默认的抽样估算.
+     *
+     * @param key key
+     * @return 字节数，key不存在返回null
+     */
+    public Long memoryUsage(final String key) {
+        return execute(ServerCommand.MEMORY, key, jedis -> {
+            jedis.getClient().sendCommand(ServerCommand.MEMORY, "USAGE", key);
+            return jedis.getClient().getIntegerReply();
+        }, null);
+    }
+
+    /**
+     * 获取jedis实例，使用完务必调用close归还资源.
+     * 集群模式下返回任意节点的连接，操作具体key请使用{@link #getInstance(String)}.
+     */
+    public Jedis getInstance() {
+        return router.getResource(null);
+    }
+
+    /**
+     * 获取key所在节点的jedis实例，使用完务必调用close归还资源.
+     * 集群模式下不会自动跟随重定向，slot迁移期间可能抛出JedisMovedDataException.
+     *
+     * @param key 要操作的key
+     */
+    public Jedis getInstance(final String key) {
+        return router.getResource(key);
+    }
+
+    /**
+     * 以管道形式执行若干操作.
+     * 划重点：若使用了事务，watch的key在multi和exec 之间变化了，exec结果会是null
+     */
+    public void execPipeLine(PipelineTask task) {
+        execPipeLine(null, task);
+    }
+
+    /**
+     * 在key所在节点上以管道形式执行若干操作，集群模式下管道内的key必须处于同一slot.
+     * 划重点：若使用了事务，watch的key在multi和exec 之间变化了，exec结果会是null
+     *
+     * @param key  路由key
+     * @param task 管道操作
+     */
+    public void execPipeLine(final String key, final PipelineTask task) {
+        try (final Jedis resource = router.getResource(key)) {
+            task.exec(resource.pipelined());
+        } catch (JedisNoScriptException e) {
+            // 服务端脚本缓存丢失，之后管道里的脚本先用EVAL重新缓存
+            loadedShas.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * 在key所在节点上以自动flush的管道执行若干操作，按添加顺序返回所有命令的结果，出错的命令对应位置是JedisDataException.
+     * 与{@link #execPipeLine}不同，调用方不需要自己sync，命令数或估算字节数达到阈值时自动发送，内存占用有上限.
+     * 划重点：自动flush意味着管道内的命令分多批发送，不具备原子性，需要原子性请用{@link #transaction}.
+     *
+     * @param key  路由key，集群模式下管道内的key必须处于同一slot
+     * @param task 管道操作
+     * @return 所有命令的结果
+     */
+    public List<Object> pipelined(final String key, final BatchTask task) {
+        return pipelined(key, true, task);
+    }
+
+    /**
+     * 在key所在节点上以自动flush的管道执行若干操作，flush阈值使用{@link #configurePipeline}配置的值.
+     *
+     * @param key            路由key，集群模式下管道内的key必须处于同一slot
+     * @param collectResults 是否收集结果，大批量只写不读时传false，已发送批次的结果可以及时回收
+     * @param task           管道操作
+     * @return 所有命令的结果，collectResults为false时为空列表
+     */
+    public List<Object> pipelined(final String key, final boolean collectResults, final BatchTask task) {
+        return pipelined(key, pipelineMaxCommands, pipelineMaxBytes, collectResults, task);
+    }
+
+    /**
+     * 在key所在节点上以自动flush的管道执行若干操作.
+     *
+     * @param key            路由key，集群模式下管道内的key必须处于同一slot
+     * @param maxCommands    每批最多命令数
+     * @param maxBytes       每批最多估算字节数
+     * @param collectResults 是否收集结果，大批量只写不读时传false，已发送批次的结果可以及时回收
+     * @param task           管道操作
+     * @return 所有命令的结果，collectResults为false时为空列表
+     */
+    public List<Object> pipelined(final String key, final int maxCommands, final long maxBytes,
+                                  final boolean collectResults, final BatchTask task) {
+        try (final Jedis resource = router.getResource(key)) {
+            final RedisPipeline pipeline = new RedisPipeline(resource.pipelined(), maxCommands, maxBytes, collectResults);
+            task.exec(pipeline);
+            return pipeline.results();
+        } catch (JedisNoScriptException e) {
+            loadedShas.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * 把涉及多个key的一批命令按节点拆分，每组key一个自动flush的管道，多组时并行执行.
+     * 单机和哨兵模式只有一组，一次往返；集群模式按slot分组，分片模式按节点分组.
+     *
+     * @param keys 这批命令涉及的所有key，可以重复
+     * @param task 在管道上只对传入的这组key添加命令
+     * @return 每组管道的结果，顺序与分组顺序一致，出错的命令对应位置是JedisDataException
+     */
+    public List<List<Object>> pipelined(final Collection<String> keys, final GroupBatchTask task) {
+        final String[] keyArr = new LinkedHashSet<>(keys).toArray(new String[0]);
+        if (keyArr.length == 0) {
+            return Collections.emptyList();
+        }
+        return executeGroups(keyArr, group -> pipelined(group[0], pipeline -> task.exec(pipeline, group)));
+    }
+
+    /**
+     * 以WATCH + MULTI/EXEC执行乐观锁事务，watch的key被其他客户端修改导致EXEC放弃时按重试策略重新执行整个task.
+     * task里先读取数据，再调用jedis.multi()开启事务并在返回的Transaction上添加命令，最后返回该Transaction；
+     * 读取后发现不需要写入时返回null即可，会自动UNWATCH.
+     *
+     * @param watchKeys 需要watch的key，第一个key同时作为路由key，集群模式下必须处于同一slot
+     * @param policy    重试策略
+     * @param task      事务操作，每次重试都会重新执行
+     * @return EXEC的结果；task返回null或重试次数用完仍被放弃时返回null
+     */
+    public List<Object> transaction(final String[] watchKeys, final WatchRetryPolicy policy,
+                                    final TransactionTask task) {
+        for (int attempt = 1; ; attempt++) {
+            try (final Jedis resource = router.getResource(watchKeys[0])) {
+                resource.watch(watchKeys);
+                final Transaction transaction = task.exec(resource);
+                if (transaction == null) {
+                    resource.unwatch();
+                    return null;
+                }
+                final List<Object> result = transaction.exec();
+                if (result != null) {
+                    return afterWrite(result, watchKeys);
+                }
+            }
+            if (!policy.retry(attempt)) {
+                log.info("事务在{}次尝试后仍被放弃，watchKeys={}", attempt, Arrays.toString(watchKeys));
+                return null;
+            }
+        }
+    }
+
+    public interface PipelineTask {
+        void exec(Pipeline pipeline);
+    }
+
+    /**
+     * 在自动flush的管道上执行若干操作.
+     */
+    public interface BatchTask {
+        void exec(RedisPipeline pipeline);
+    }
+
+    /**
+     * 在自动flush的管道上对一组处于同一节点的key执行若干操作.
+     */
+    public interface GroupBatchTask {
+        void exec(RedisPipeline pipeline, String[] keys);
+    }
+
+    /**
+     * 在已watch的连接上读取数据并开启事务.
+     */
+    public interface TransactionTask {
+        Transaction exec(Jedis jedis);
+    }
+
+    /**
+     * 在一个jedis连接上执行命令.
+     */
+    public interface JedisAction<T> {
+        T doInJedis(Jedis jedis);
+    }
+
+    /**
+     * 在管道上执行同一个命令，返回管道的Response.
+     */
+    public interface PipelineAction<T> {
+        Response<T> doInPipeline(Pipeline pipeline);
+    }
+
+    /**
+     * 对一组可以放在同一条命令里的key执行命令.
+     */
+    public interface GroupAction<T> {
+        T apply(String[] keys);
+    }
+
+    /**
+     * 执行一个命令，开启自动管道且命令能走管道时交给自动管道，否则由路由选择节点执行.
+     *
+     * @param command        命令类型，用于监控
+     * @param key            路由key，为null代表不关心节点
+     * @param action         直接在连接上执行的写法
+     * @param pipelineAction 在管道上执行的写法，为null代表该命令不能走管道（如阻塞命令）
+     * @return 命令结果
+     */
+    private <T> T execute(final ProtocolCommand command, final String key, final JedisAction<T> action,
+                          final PipelineAction<T> pipelineAction) {
+        final long start = System.nanoTime();
+        try {
+            final AutoPipeliner pipeliner = autoPipeliner;
+            if (pipeliner != null && pipelineAction != null) {
+                return pipeliner.execute(pipelineAction);
+            }
+            return router.execute(key, action);
+        } catch (RuntimeException e) {
+            metrics.recordError(command, e);
+            throw e;
+        } finally {
+            metrics.record(command, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 执行一个阻塞命令，开启了阻塞命令连接池时在专用连接池上执行.
+     * jedis执行阻塞命令时会把读超时改为无限，服务端异常断开时调用线程会一直挂起；
+     * 这里直接在Client上发送命令，读超时设为阻塞时间加余量，阻塞时间为0（永久阻塞）时仍不限制.
+     *
+     * @param command       命令类型，用于监控
+     * @param key           路由key
+     * @param timeoutMillis 阻塞时间（毫秒），0代表一直阻塞
+     * @param action        在Client上发送命令并读取回复
+     * @return 命令结果
+     */
+    private <T> T executeBlocking(final ProtocolCommand command, final String key, final long timeoutMillis,
+                                  final Function<Client, T> action) {
+        final JedisRouter target = blockingRouter == null ? router : blockingRouter;
+        final int readTimeout = timeoutMillis <= 0 ? 0
+                : (int) Math.min(Integer.MAX_VALUE, timeoutMillis + blockingTimeoutMarginMillis);
+        final long start = System.nanoTime();
+        try {
+            return target.execute(key, jedis -> {
+                final Client client = jedis.getClient();
+                final int soTimeout = client.getSoTimeout();
+                client.connect();
+                client.setSoTimeout(readTimeout);
+                client.rollbackTimeout();
+                try {
+                    return action.apply(client);
+                } finally {
+                    client.setSoTimeout(soTimeout);
+                    if (!client.isBroken()) {
+                        client.rollbackTimeout();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            metrics.recordError(command, e);
+            throw e;
+        } finally {
+            metrics.record(command, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 执行一个只读命令，路由做读写分离时交给路由选择从节点，否则与{@link #execute}相同.
+     *
+     * @param command        命令类型，用于监控
+     * @param key            路由key，为null代表不关心节点
+     * @param action         直接在连接上执行的写法
+     * @param pipelineAction 在管道上执行的写法
+     * @return 命令结果
+     */
+    private <T> T executeRead(final ProtocolCommand command, final String key, final JedisAction<T> action,
+                              final PipelineAction<T> pipelineAction) {
+        if (!router.routesReads()) {
+            return execute(command, key, action, pipelineAction);
+        }
+        final long start = System.nanoTime();
+        try {
+            return router.executeRead(key, action);
+        } catch (RuntimeException e) {
+            metrics.recordError(command, e);
+            throw e;
+        } finally {
+            metrics.record(command, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 写命令完成后失效近端缓存中的整个key.
+     *
+     * @param result 写命令结果
+     * @param keys   被写的key
+     * @return 原样返回写命令结果
+     */
+    private <T> T afterWrite(final T result, final String... keys) {
+        final NearCache cache = nearCache;
+        if (cache != null) {
+            for (String key : keys) {
+                cache.invalidate(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写hash命令完成后失效近端缓存中对应的field.
+     *
+     * @param result 写命令结果
+     * @param key    hash的key
+     * @param fields 被写的field
+     * @return 原样返回写命令结果
+     */
+    private <T> T afterHashWrite(final T result, final String key, final String... fields) {
+        final NearCache cache = nearCache;
+        if (cache != null) {
+            cache.invalidate(key, fields);
+        }
+        return result;
+    }
+
+    /**
+     * 构建SCAN系列命令的迭代器，每一页都是一次独立的命令，游标在调用方保存.
+     */
+    private <T> ScanIterator<T> scanIterator(final Command command, final String key, final String match,
+                                             final int count, final int prefetch, final ScanAction<T> action) {
+        final ScanParams params = new ScanParams().count(count);
+        if (match != null) {
+            params.match(match);
+        }
+        return new ScanIterator<>(cursor -> execute(command, key, jedis -> action.scan(jedis, cursor, params), null),
+                prefetch, scanExecutor);
+    }
+
+    private interface ScanAction<T> {
+        ScanResult<T> scan(Jedis jedis, String cursor, ScanParams params);
+    }
+
+    /**
+     * 多key命令按节点拆分执行，单节点部署只有一组，集群模式按slot拆分后并行执行.
+     *
+     * @param keys   多个key
+     * @param action 对一组key执行的命令
+     * @return 每组的结果
+     */
+    private <T> List<T> executeGroups(final String[] keys, final GroupAction<T> action) {
+        return router.executeGroups(router.partition(keys), action);
     }
 
-    public interface PipelineTask {
-        void exec(Pipeline pipeline);
-    }
-
     // ==== 通用操作 end ===========================
 
     // ==== string 操作 start ===========================
@@ -370,9 +1356,16 @@ public class RedisClient {
      * @return 字符串的值，不存在返回null
      */
     public String get(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.get(key);
+        if (compresses(key)) {
+            final NearCache cache = nearCache;
+            return cache != null ? cache.get(key, () -> utf8(getBytes(key))) : utf8(getBytes(key));
         }
+        final NearCache cache = nearCache;
+        if (cache != null) {
+            return cache.get(key, () -> executeRead(Command.GET, key, jedis -> jedis.get(key),
+                    pipeline -> pipeline.get(key)));
+        }
+        return executeRead(Command.GET, key, jedis -> jedis.get(key), pipeline -> pipeline.get(key));
     }
 
     /**
@@ -383,9 +1376,11 @@ public class RedisClient {
      * @return 是否设置成功，只有在内存空间不足的时候才可能失败
      */
     public boolean set(final String key, final String value) {
-        try (Jedis resource = pool.getResource()) {
-            return SUCCESS_STR.equals(resource.set(key, value));
+        if (compresses(key)) {
+            return setBytes(key, SafeEncoder.encode(value));
         }
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(key, value),
+                pipeline -> pipeline.set(key, value))), key);
     }
 
     /**
@@ -396,9 +1391,12 @@ public class RedisClient {
      * @return 是否设置成功，只有在内存空间不足的时候才可能失败
      */
     public boolean setExpire(final String key, final String value, final int expiredSeconds) {
-        try (Jedis resource = pool.getResource()) {
-            return SUCCESS_STR.equals(resource.setex(key, expiredSeconds, value));
+        if (compresses(key)) {
+            return setExpireBytes(key, SafeEncoder.encode(value), expiredSeconds);
         }
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SETEX, key,
+                jedis -> jedis.setex(key, expiredSeconds, value),
+                pipeline -> pipeline.setex(key, expiredSeconds, value))), key);
     }
 
     /**
@@ -409,11 +1407,10 @@ public class RedisClient {
      * @return 只有在不存在key的时候返回true
      */
     public boolean setNotExist(final String key, final String value) {
-        try (Jedis resource = pool.getResource()) {
-            final SetParams params = new SetParams();
-            params.nx();
-            return SUCCESS_STR.equals(resource.set(key, value, params));
-        }
+        final SetParams params = new SetParams();
+        params.nx();
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(key, value, params),
+                pipeline -> pipeline.set(key, value, params))), key);
     }
 
     /**
@@ -425,12 +1422,11 @@ public class RedisClient {
      * @return 只有在不存在key的时候返回true
      */
     public boolean setNotExist(final String key, final String value, final int expiredSeconds) {
-        try (Jedis resource = pool.getResource()) {
-            final SetParams params = new SetParams();
-            params.ex(expiredSeconds);
-            params.nx();
-            return SUCCESS_STR.equals(resource.set(key, value, params));
-        }
+        final SetParams params = new SetParams();
+        params.ex(expiredSeconds);
+        params.nx();
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(key, value, params),
+                pipeline -> pipeline.set(key, value, params))), key);
     }
 
     /**
@@ -442,12 +1438,11 @@ public class RedisClient {
      * @return 只有在不存在key的时候返回true
      */
     public boolean setNotExist(final String key, final String value, final long expiredMillis) {
-        try (Jedis resource = pool.getResource()) {
-            final SetParams params = new SetParams();
-            params.px(expiredMillis);
-            params.nx();
-            return SUCCESS_STR.equals(resource.set(key, value, params));
-        }
+        final SetParams params = new SetParams();
+        params.px(expiredMillis);
+        params.nx();
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(key, value, params),
+                pipeline -> pipeline.set(key, value, params))), key);
     }
 
     /**
@@ -458,11 +1453,10 @@ public class RedisClient {
      * @return 只有在key已存在的时候返回true
      */
     public boolean setExist(final String key, final String value) {
-        try (Jedis resource = pool.getResource()) {
-            final SetParams params = new SetParams();
-            params.xx();
-            return SUCCESS_STR.equals(resource.set(key, value, params));
-        }
+        final SetParams params = new SetParams();
+        params.xx();
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(key, value, params),
+                pipeline -> pipeline.set(key, value, params))), key);
     }
 
 
@@ -475,12 +1469,11 @@ public class RedisClient {
      * @return 只有在key已存在的时候返回true
      */
     public boolean setExist(final String key, final String value, final int expiredSeconds) {
-        try (Jedis resource = pool.getResource()) {
-            final SetParams params = new SetParams();
-            params.ex(expiredSeconds);
-            params.xx();
-            return SUCCESS_STR.equals(resource.set(key, value, params));
-        }
+        final SetParams params = new SetParams();
+        params.ex(expiredSeconds);
+        params.xx();
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(key, value, params),
+                pipeline -> pipeline.set(key, value, params))), key);
     }
 
     /**
@@ -490,9 +1483,7 @@ public class RedisClient {
      * @return 若key不存在，返回1，若key存在返回key的value+1，若key不是合法整数 throws JedisDataException
      */
     public Long incr(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.incr(key);
-        }
+        return afterWrite(execute(Command.INCR, key, jedis -> jedis.incr(key), pipeline -> pipeline.incr(key)), key);
     }
 
     /**
@@ -502,9 +1493,7 @@ public class RedisClient {
      * @return 若key不存在，返回-1，若key存在返回key的value-1，若key不是合法整数 throws JedisDataException
      */
     public Long decr(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.decr(key);
-        }
+        return afterWrite(execute(Command.DECR, key, jedis -> jedis.decr(key), pipeline -> pipeline.decr(key)), key);
     }
 
     /**
@@ -515,9 +1504,8 @@ public class RedisClient {
      * @return 自增后的value，若key不存在，返回increment相等数值，若key不是合法整数 throws JedisDataException
      */
     public Long incrBy(final String key, final long increment) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.incrBy(key, increment);
-        }
+        return afterWrite(execute(Command.INCRBY, key, jedis -> jedis.incrBy(key, increment),
+                pipeline -> pipeline.incrBy(key, increment)), key);
     }
 
     /**
@@ -528,9 +1516,8 @@ public class RedisClient {
      * @return 自减后的value，若key不存在，返回-decrement相等数值，若key不是合法整数 throws JedisDataException
      */
     public Long decrBy(final String key, final long decrement) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.decrBy(key, decrement);
-        }
+        return afterWrite(execute(Command.DECRBY, key, jedis -> jedis.decrBy(key, decrement),
+                pipeline -> pipeline.decrBy(key, decrement)), key);
     }
 
     /**
@@ -541,9 +1528,8 @@ public class RedisClient {
      * @return 自增后的value，若key不存在，返回increment相等数值
      */
     public Double incrByFloat(final String key, final double increment) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.incrByFloat(key, increment);
-        }
+        return afterWrite(execute(Command.INCRBYFLOAT, key, jedis -> jedis.incrByFloat(key, increment),
+                pipeline -> pipeline.incrByFloat(key, increment)), key);
     }
 
     /**
@@ -554,9 +1540,8 @@ public class RedisClient {
      * @return 追加后字符串长度
      */
     public Long append(final String key, final String value) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.append(key, value);
-        }
+        return afterWrite(execute(Command.APPEND, key, jedis -> jedis.append(key, value),
+                pipeline -> pipeline.append(key, value)), key);
     }
 
     /**
@@ -569,9 +1554,8 @@ public class RedisClient {
      * @return 索引区间内的子串
      */
     public String getRange(final String key, final long start, final long end) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.getrange(key, start, end);
-        }
+        return executeRead(Command.GETRANGE, key, jedis -> jedis.getrange(key, start, end),
+                pipeline -> pipeline.getrange(key, start, end));
     }
 
     /**
@@ -583,9 +1567,8 @@ public class RedisClient {
      * @return 设置之后字符串长度
      */
     public Long setRange(final String key, final long offset, final String value) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.setrange(key, offset, value);
-        }
+        return afterWrite(execute(Command.SETRANGE, key, jedis -> jedis.setrange(key, offset, value),
+                pipeline -> pipeline.setrange(key, offset, value)), key);
     }
 
     /**
@@ -596,9 +1579,8 @@ public class RedisClient {
      * @return true-1，false-0，未初始化过的位置都会是0
      */
     public boolean getBit(final String key, final long bitIndex) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.getbit(key, bitIndex);
-        }
+        return executeRead(Command.GETBIT, key, jedis -> jedis.getbit(key, bitIndex),
+                pipeline -> pipeline.getbit(key, bitIndex));
     }
 
     /**
@@ -610,9 +1592,8 @@ public class RedisClient {
      * @return 该bit位设置之前的值
      */
     public Boolean setBit(final String key, final long bitIndex, final boolean value) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.setbit(key, bitIndex, value);
-        }
+        return afterWrite(execute(Command.SETBIT, key, jedis -> jedis.setbit(key, bitIndex, value),
+                pipeline -> pipeline.setbit(key, bitIndex, value)), key);
     }
 
     /**
@@ -622,9 +1603,7 @@ public class RedisClient {
      * @return bit位为1的数量
      */
     public long bitCount(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.bitcount(key);
-        }
+        return executeRead(Command.BITCOUNT, key, jedis -> jedis.bitcount(key), pipeline -> pipeline.bitcount(key));
     }
 
     /**
@@ -636,9 +1615,8 @@ public class RedisClient {
      * @return bit位为1的数量
      */
     public long bitCount(final String key, final long start, final long end) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.bitcount(key, start, end);
-        }
+        return executeRead(Command.BITCOUNT, key, jedis -> jedis.bitcount(key, start, end),
+                pipeline -> pipeline.bitcount(key, start, end));
     }
 
     /**
@@ -650,9 +1628,8 @@ public class RedisClient {
      * @return 计算结果字符串字符数
      */
     public long bitOp(final BitOP op, final String destKey, final String... srcKeys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.bitop(op, destKey, srcKeys);
-        }
+        return afterWrite(execute(Command.BITOP, destKey, jedis -> jedis.bitop(op, destKey, srcKeys),
+                pipeline -> pipeline.bitop(op, destKey, srcKeys)), destKey);
     }
     // =============string 操作 end =====================
 
@@ -667,9 +1644,7 @@ public class RedisClient {
      * @return 推入后列表长度
      */
     public Long rpush(final String key, final String... values) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.rpush(key, values);
-        }
+        return execute(Command.RPUSH, key, jedis -> jedis.rpush(key, values), pipeline -> pipeline.rpush(key, values));
     }
 
     /**
@@ -680,9 +1655,8 @@ public class RedisClient {
      * @return 推入后列表长度，若key不存在，返回0
      */
     public Long rpushx(final String key, final String... values) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.rpushx(key, values);
-        }
+        return execute(Command.RPUSHX, key, jedis -> jedis.rpushx(key, values),
+                pipeline -> pipeline.rpushx(key, values));
     }
 
     /**
@@ -693,9 +1667,7 @@ public class RedisClient {
      * @return 推入后列表长度
      */
     public Long lpush(final String key, final String... values) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.lpush(key, values);
-        }
+        return execute(Command.LPUSH, key, jedis -> jedis.lpush(key, values), pipeline -> pipeline.lpush(key, values));
     }
 
     /**
@@ -706,9 +1678,8 @@ public class RedisClient {
      * @return 推入后列表长度，若key不存在，返回0
      */
     public Long lpushx(final String key, final String... values) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.lpushx(key, values);
-        }
+        return execute(Command.LPUSHX, key, jedis -> jedis.lpushx(key, values),
+                pipeline -> pipeline.lpushx(key, values));
     }
 
     /**
@@ -718,9 +1689,7 @@ public class RedisClient {
      * @return 若列表空了，返回null，否则返回列表最右侧弹出元素
      */
     public String rpop(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.rpop(key);
-        }
+        return execute(Command.RPOP, key, jedis -> jedis.rpop(key), pipeline -> pipeline.rpop(key));
     }
 
     /**
@@ -730,9 +1699,7 @@ public class RedisClient {
      * @return 若列表空了，返回null，否则返回列表最左侧弹出元素
      */
     public String lpop(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.lpop(key);
-        }
+        return execute(Command.LPOP, key, jedis -> jedis.lpop(key), pipeline -> pipeline.lpop(key));
     }
 
     /**
@@ -743,9 +1710,8 @@ public class RedisClient {
      * @return offset位置元素，不存在返回null
      */
     public String lindex(final String key, final long offset) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.lindex(key, offset);
-        }
+        return executeRead(Command.LINDEX, key, jedis -> jedis.lindex(key, offset),
+                pipeline -> pipeline.lindex(key, offset));
     }
 
     /**
@@ -757,9 +1723,18 @@ public class RedisClient {
      * @return 列表指定范围内的元素，包含start,end
      */
     public List<String> lrange(final String key, final long start, final long end) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.lrange(key, start, end);
-        }
+        return executeRead(Command.LRANGE, key, jedis -> jedis.lrange(key, start, end),
+                pipeline -> pipeline.lrange(key, start, end));
+    }
+
+    /**
+     * 获取列表长度.
+     *
+     * @param key key
+     * @return 列表长度，key不存在时返回0
+     */
+    public Long llen(final String key) {
+        return executeRead(Command.LLEN, key, jedis -> jedis.llen(key), pipeline -> pipeline.llen(key));
     }
 
     /**
@@ -771,9 +1746,8 @@ public class RedisClient {
      * @return 实际删除个数
      */
     public Long lrem(final String key, final long count, final String item) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.lrem(key, count, item);
-        }
+        return execute(Command.LREM, key, jedis -> jedis.lrem(key, count, item),
+                pipeline -> pipeline.lrem(key, count, item));
     }
 
     /**
@@ -785,9 +1759,8 @@ public class RedisClient {
      * @return true执行成功
      */
     public boolean ltrim(final String key, final long start, final long end) {
-        try (final Jedis resource = pool.getResource()) {
-            return SUCCESS_STR.equals(resource.ltrim(key, start, end));
-        }
+        return SUCCESS_STR.equals(execute(Command.LTRIM, key, jedis -> jedis.ltrim(key, start, end),
+                pipeline -> pipeline.ltrim(key, start, end)));
     }
 
     /**
@@ -798,10 +1771,11 @@ public class RedisClient {
      * @return 若达到超时时间，返回null
      */
     public PopResult blpop(final int timeout, final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            final List<String> result = resource.blpop(timeout, keys);
-            return getPopResult(result);
-        }
+        final List<String> result = executeBlocking(Command.BLPOP, keys[0], timeout * 1000L, client -> {
+            client.blpop(timeout, keys);
+            return client.getMultiBulkReply();
+        });
+        return getPopResult(result);
     }
 
     /**
@@ -812,10 +1786,11 @@ public class RedisClient {
      * @return 从左到由第一个非空list弹出第一个元素后返回，若达到超时时间，返回null
      */
     public PopResult brpop(final int timeout, final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            final List<String> result = resource.brpop(timeout, keys);
-            return getPopResult(result);
-        }
+        final List<String> result = executeBlocking(Command.BRPOP, keys[0], timeout * 1000L, client -> {
+            client.brpop(timeout, keys);
+            return client.getMultiBulkReply();
+        });
+        return getPopResult(result);
     }
 
     /**
@@ -855,9 +1830,8 @@ public class RedisClient {
      * @return 若srcKey不为空，返回移动的元素
      */
     public String rpopLpush(final String srcKey, final String destKey) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.rpoplpush(srcKey, destKey);
-        }
+        return execute(Command.RPOPLPUSH, srcKey, jedis -> jedis.rpoplpush(srcKey, destKey),
+                pipeline -> pipeline.rpoplpush(srcKey, destKey));
     }
 
     /**
@@ -869,9 +1843,10 @@ public class RedisClient {
      * @return 返回移动的元素，若超时，返回null
      */
     public String brpopLpush(final String srcKey, final String destKey, final int timeout) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.brpoplpush(srcKey, destKey, timeout);
-        }
+        return executeBlocking(Command.BRPOPLPUSH, srcKey, timeout * 1000L, client -> {
+            client.brpoplpush(srcKey, destKey, timeout);
+            return client.getBulkReply();
+        });
     }
 
     // =============list 操作 end =====================
@@ -885,9 +1860,7 @@ public class RedisClient {
      * @return 新添加member数量
      */
     public Long sadd(final String key, final String... members) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sadd(key, members);
-        }
+        return execute(Command.SADD, key, jedis -> jedis.sadd(key, members), pipeline -> pipeline.sadd(key, members));
     }
 
     /**
@@ -898,9 +1871,8 @@ public class RedisClient {
      * @return true-存在，false-不存在
      */
     public boolean sismember(final String key, final String member) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sismember(key, member);
-        }
+        return executeRead(Command.SISMEMBER, key, jedis -> jedis.sismember(key, member),
+                pipeline -> pipeline.sismember(key, member));
     }
 
     /**
@@ -911,9 +1883,7 @@ public class RedisClient {
      * @return 删除的数量
      */
     public Long srem(final String key, final String... members) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.srem(key, members);
-        }
+        return execute(Command.SREM, key, jedis -> jedis.srem(key, members), pipeline -> pipeline.srem(key, members));
     }
 
     /**
@@ -923,9 +1893,7 @@ public class RedisClient {
      * @return 元素个数, 计算不存在也是返回0
      */
     public Long scard(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.scard(key);
-        }
+        return executeRead(Command.SCARD, key, jedis -> jedis.scard(key), pipeline -> pipeline.scard(key));
     }
 
     /**
@@ -935,9 +1903,7 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.所有元素，不存在返回空set
      */
     public Set<String /* member */> smembers(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.smembers(key);
-        }
+        return executeRead(Command.SMEMBERS, key, jedis -> jedis.smembers(key), pipeline -> pipeline.smembers(key));
     }
 
     /**
@@ -949,9 +1915,8 @@ public class RedisClient {
      * @return 若key不存在，返回空set,若unique==false，返回元素个数等于count，若unique==true，返回最多count个不重复的set元素
      */
     public List<String /* member */> srandMember(final String key, final int count, final boolean unique) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.srandmember(key, unique ? count : -count);
-        }
+        return executeRead(Command.SRANDMEMBER, key, jedis -> jedis.srandmember(key, unique ? count : -count),
+                pipeline -> pipeline.srandmember(key, unique ? count : -count));
     }
 
     /**
@@ -961,9 +1926,7 @@ public class RedisClient {
      * @return 1个set中的元素，若果没有返回null
      */
     public String spop(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.spop(key);
-        }
+        return execute(Command.SPOP, key, jedis -> jedis.spop(key), pipeline -> pipeline.spop(key));
     }
 
     /**
@@ -974,9 +1937,7 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.不大于count个set中的元素，若果没有返回空set
      */
     public Set<String /* member */> spop(final String key, final long count) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.spop(key, count);
-        }
+        return execute(Command.SPOP, key, jedis -> jedis.spop(key, count), pipeline -> pipeline.spop(key, count));
     }
 
     /**
@@ -988,9 +1949,8 @@ public class RedisClient {
      * @return 1-srcKey中有member，0-没有
      */
     public Long smove(final String member, final String srcKey, final String destKey) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.smove(member, srcKey, destKey);
-        }
+        return execute(Command.SMOVE, srcKey, jedis -> jedis.smove(srcKey, destKey, member),
+                pipeline -> pipeline.smove(srcKey, destKey, member));
     }
 
     /**
@@ -1000,9 +1960,7 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.第一个key中有，后面Keys中没有的元素.
      */
     public Set<String> sdiff(final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sdiff(keys);
-        }
+        return executeRead(Command.SDIFF, keys[0], jedis -> jedis.sdiff(keys), pipeline -> pipeline.sdiff(keys));
     }
 
     /**
@@ -1013,9 +1971,8 @@ public class RedisClient {
      * @return 第一个key中有，后面Keys中没有的元素个数.
      */
     public Long sdiffStore(final String destKey, final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sdiffstore(destKey, keys);
-        }
+        return afterWrite(execute(Command.SDIFFSTORE, destKey, jedis -> jedis.sdiffstore(destKey, keys),
+                pipeline -> pipeline.sdiffstore(destKey, keys)), destKey);
     }
 
     /**
@@ -1025,9 +1982,7 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.交集
      */
     public Set<String> sinter(final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sinter(keys);
-        }
+        return executeRead(Command.SINTER, keys[0], jedis -> jedis.sinter(keys), pipeline -> pipeline.sinter(keys));
     }
 
     /**
@@ -1038,9 +1993,8 @@ public class RedisClient {
      * @return 交集个数
      */
     public Long sinterStore(final String destKey, final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sinterstore(destKey, keys);
-        }
+        return afterWrite(execute(Command.SINTERSTORE, destKey, jedis -> jedis.sinterstore(destKey, keys),
+                pipeline -> pipeline.sinterstore(destKey, keys)), destKey);
     }
 
     /**
@@ -1050,9 +2004,7 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.并集
      */
     public Set<String> sunion(final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sunion(keys);
-        }
+        return executeRead(Command.SUNION, keys[0], jedis -> jedis.sunion(keys), pipeline -> pipeline.sunion(keys));
     }
 
     /**
@@ -1063,9 +2015,35 @@ public class RedisClient {
      * @return 并集个数
      */
     public Long sunionStore(final String destKey, final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.sunionstore(destKey, keys);
-        }
+        return afterWrite(execute(Command.SUNIONSTORE, destKey, jedis -> jedis.sunionstore(destKey, keys),
+                pipeline -> pipeline.sunionstore(destKey, keys)), destKey);
+    }
+
+    /**
+     * 用SSCAN惰性遍历set的成员，替代大set上的smembers，在调用线程上按需逐页拉取.
+     *
+     * @param key   set的key
+     * @param match 匹配模式，例如"login:*"，为null代表不过滤
+     * @param count 每页建议数量，redis按此值控制单次遍历的工作量
+     * @return member的迭代器，用完务必close
+     */
+    public ScanIterator<String /* member */> sscan(final String key, final String match, final int count) {
+        return sscan(key, match, count, 0);
+    }
+
+    /**
+     * 用SSCAN惰性遍历set的成员.
+     *
+     * @param key      set的key
+     * @param match    匹配模式，为null代表不过滤
+     * @param count    每页建议数量
+     * @param prefetch 后台最多预取的页数，0代表不预取
+     * @return member的迭代器，用完务必close
+     */
+    public ScanIterator<String /* member */> sscan(final String key, final String match, final int count,
+                                                 final int prefetch) {
+        return scanIterator(Command.SSCAN, key, match, count, prefetch,
+                (jedis, cursor, params) -> jedis.sscan(key, cursor, params));
     }
 
     // =============set 操作 end =====================
@@ -1080,9 +2058,12 @@ public class RedisClient {
      * @return value
      */
     public String hget(final String key, final String field) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.hget(key, field);
+        final NearCache cache = nearCache;
+        if (cache != null) {
+            return cache.hget(key, field, () -> executeRead(Command.HGET, key, jedis -> jedis.hget(key, field),
+                    pipeline -> pipeline.hget(key, field)));
         }
+        return executeRead(Command.HGET, key, jedis -> jedis.hget(key, field), pipeline -> pipeline.hget(key, field));
     }
 
     /**
@@ -1093,9 +2074,8 @@ public class RedisClient {
      * @return value列表
      */
     public List<String> hmget(final String key, final String... fields) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.hmget(key, fields);
-        }
+        return executeRead(Command.HMGET, key, jedis -> jedis.hmget(key, fields),
+                pipeline -> pipeline.hmget(key, fields));
     }
 
     /**
@@ -1106,9 +2086,8 @@ public class RedisClient {
      * @return true-存在，false-不存在
      */
     public boolean hexists(final String key, final String field) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hexists(key, field);
-        }
+        return executeRead(Command.HEXISTS, key, jedis -> jedis.hexists(key, field),
+                pipeline -> pipeline.hexists(key, field));
     }
 
     /**
@@ -1118,9 +2097,7 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.field set
      */
     public Set<String> hkeys(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hkeys(key);
-        }
+        return executeRead(Command.HKEYS, key, jedis -> jedis.hkeys(key), pipeline -> pipeline.hkeys(key));
     }
 
     /**
@@ -1130,9 +2107,7 @@ public class RedisClient {
      * @return value set
      */
     public List<String> hvals(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hvals(key);
-        }
+        return executeRead(Command.HVALS, key, jedis -> jedis.hvals(key), pipeline -> pipeline.hvals(key));
     }
 
     /**
@@ -1142,9 +2117,12 @@ public class RedisClient {
      * @return hash中的所有键值对
      */
     public Map<String /* field */, String /* value */> hgetAll(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hgetAll(key);
+        final NearCache cache = nearCache;
+        if (cache != null) {
+            return cache.hgetAll(key, () -> executeRead(Command.HGETALL, key, jedis -> jedis.hgetAll(key),
+                    pipeline -> pipeline.hgetAll(key)));
         }
+        return executeRead(Command.HGETALL, key, jedis -> jedis.hgetAll(key), pipeline -> pipeline.hgetAll(key));
     }
 
     /**
@@ -1156,9 +2134,8 @@ public class RedisClient {
      * @return 自增后的value
      */
     public Long hincrBy(final String key, final String field, final long increment) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hincrBy(key, field, increment);
-        }
+        return afterHashWrite(execute(Command.HINCRBY, key, jedis -> jedis.hincrBy(key, field, increment),
+                pipeline -> pipeline.hincrBy(key, field, increment)), key, field);
     }
 
     /**
@@ -1170,9 +2147,8 @@ public class RedisClient {
      * @return 自增后的value
      */
     public Double hincrByFloat(final String key, final String field, final double increment) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hincrByFloat(key, field, increment);
-        }
+        return afterHashWrite(execute(Command.HINCRBYFLOAT, key, jedis -> jedis.hincrByFloat(key, field, increment),
+                pipeline -> pipeline.hincrByFloat(key, field, increment)), key, field);
     }
 
     /**
@@ -1184,9 +2160,8 @@ public class RedisClient {
      * @return 新增field返回1，否则0
      */
     public Long hset(final String key, final String field, final String value) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.hset(key, field, value);
-        }
+        return afterHashWrite(execute(Command.HSET, key, jedis -> jedis.hset(key, field, value),
+                pipeline -> pipeline.hset(key, field, value)), key, field);
     }
 
     /**
@@ -1197,9 +2172,8 @@ public class RedisClient {
      * @return 新增field的数量
      */
     public Long hset(final String key, final Map<String/* field */, String/* name */> hash) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.hset(key, hash);
-        }
+        return afterHashWrite(execute(Command.HSET, key, jedis -> jedis.hset(key, hash),
+                pipeline -> pipeline.hset(key, hash)), key, hash.keySet().toArray(new String[0]));
     }
 
     /**
@@ -1210,9 +2184,8 @@ public class RedisClient {
      * @return 新增成功
      */
     public boolean hmset(final String key, final Map<String/* field */, String/* name */> hash) {
-        try (Jedis resource = pool.getResource()) {
-            return SUCCESS_STR.equals(resource.hmset(key, hash));
-        }
+        return afterHashWrite(SUCCESS_STR.equals(execute(Command.HMSET, key, jedis -> jedis.hmset(key, hash),
+                pipeline -> pipeline.hmset(key, hash))), key, hash.keySet().toArray(new String[0]));
     }
 
     /**
@@ -1223,9 +2196,8 @@ public class RedisClient {
      * @return 删除的field数量
      */
     public Long hdel(final String key, final String... fields) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.hdel(key, fields);
-        }
+        return afterHashWrite(execute(Command.HDEL, key, jedis -> jedis.hdel(key, fields),
+                pipeline -> pipeline.hdel(key, fields)), key, fields);
     }
 
     /**
@@ -1235,11 +2207,37 @@ public class RedisClient {
      * @return 元素总个数，key不存在返回0
      */
     public Long hlen(final String key) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.hlen(key);
-        }
+        return executeRead(Command.HLEN, key, jedis -> jedis.hlen(key), pipeline -> pipeline.hlen(key));
+    }
+
+
+    /**
+     * 用HSCAN惰性遍历hash的field和value，替代大hash上的hgetAll、hkeys，在调用线程上按需逐页拉取.
+     *
+     * @param key   hash的key
+     * @param match 匹配模式，例如"login:*"，为null代表不过滤
+     * @param count 每页建议数量，redis按此值控制单次遍历的工作量
+     * @return field-value的迭代器，用完务必close
+     */
+    public ScanIterator<Map.Entry<String /* field */, String /* value */>> hscan(final String key, final String match,
+                                                                             final int count) {
+        return hscan(key, match, count, 0);
     }
 
+    /**
+     * 用HSCAN惰性遍历hash的field和value.
+     *
+     * @param key      hash的key
+     * @param match    匹配模式，为null代表不过滤
+     * @param count    每页建议数量
+     * @param prefetch 后台最多预取的页数，0代表不预取
+     * @return field-value的迭代器，用完务必close
+     */
+    public ScanIterator<Map.Entry<String /* field */, String /* value */>> hscan(final String key, final String match,
+                                                                             final int count, final int prefetch) {
+        return scanIterator(Command.HSCAN, key, match, count, prefetch,
+                (jedis, cursor, params) -> jedis.hscan(key, cursor, params));
+    }
 
     // =============hash 操作 end =====================
 
@@ -1252,9 +2250,7 @@ public class RedisClient {
      * @return member个数，不存在key返回0o
      */
     public Long zcard(final String key) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zcard(key);
-        }
+        return executeRead(Command.ZCARD, key, jedis -> jedis.zcard(key), pipeline -> pipeline.zcard(key));
     }
 
     /**
@@ -1265,9 +2261,33 @@ public class RedisClient {
      * @return 不存在返回null，其他情况返回member的score
      */
     public Double zscore(final String key, final String member) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zscore(key, member);
+        return executeRead(Command.ZSCORE, key, jedis -> jedis.zscore(key, member),
+                pipeline -> pipeline.zscore(key, member));
+    }
+
+    /**
+     * 批量返回zset中多个member的分数，按默认分片大小分批管道发送ZSCORE.
+     *
+     * @param key     key
+     * @param members 多个member，可以重复
+     * @return 与members顺序一致的score，member不存在的位置为null
+     */
+    public List<Double> zscore(final String key, final Collection<String> members) {
+        final String[] memberArr = members.toArray(new String[0]);
+        final Map<String, Double> scores = new HashMap<>(memberArr.length * 2);
+        final int chunkSize = batchSize;
+        for (int from = 0; from < memberArr.length; from += chunkSize) {
+            final String[] chunk = Arrays.copyOfRange(memberArr, from, Math.min(memberArr.length, from + chunkSize));
+            scores.putAll(executeRead(Command.ZSCORE, key,
+                    jedis -> RedisClient.<Double, Double>inChunks(jedis, chunk, 1,
+                            (pipeline, one) -> pipeline.zscore(key, one[0]),
+                            (one, score, result) -> result.put(one[0], score)), null));
         }
+        final List<Double> result = new ArrayList<>(memberArr.length);
+        for (String member : memberArr) {
+            result.add(scores.get(member));
+        }
+        return result;
     }
 
     /**
@@ -1278,9 +2298,8 @@ public class RedisClient {
      * @return member排名，从0开始，分数相等则按照字典序，所以rank也不会相同
      */
     public Long zrank(final String key, final String member) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrank(key, member);
-        }
+        return executeRead(Command.ZRANK, key, jedis -> jedis.zrank(key, member),
+                pipeline -> pipeline.zrank(key, member));
     }
 
     /**
@@ -1291,9 +2310,8 @@ public class RedisClient {
      * @return member排名，从zcard - 1开始，分数相等则按照字典序，所以rank也不会相同
      */
     public Long zrevRank(final String key, final String member) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrevrank(key, member);
-        }
+        return executeRead(Command.ZREVRANK, key, jedis -> jedis.zrevrank(key, member),
+                pipeline -> pipeline.zrevrank(key, member));
     }
 
     /**
@@ -1305,9 +2323,8 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.member set
      */
     public Set<String> zrange(final String key, final long start, final long stop) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zrange(key, start, stop);
-        }
+        return executeRead(Command.ZRANGE, key, jedis -> jedis.zrange(key, start, stop),
+                pipeline -> pipeline.zrange(key, start, stop));
     }
 
     /**
@@ -1319,9 +2336,8 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.member set
      */
     public Set<String> zrevRange(final String key, final long start, final long stop) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zrevrange(key, start, stop);
-        }
+        return executeRead(Command.ZREVRANGE, key, jedis -> jedis.zrevrange(key, start, stop),
+                pipeline -> pipeline.zrevrange(key, start, stop));
     }
 
     /**
@@ -1333,9 +2349,8 @@ public class RedisClient {
      * @return member set
      */
     public Set<Tuple> zrangeWithScores(final String key, final long start, final long stop) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrangeWithScores(key, start, stop);
-        }
+        return executeRead(Command.ZRANGE, key, jedis -> jedis.zrangeWithScores(key, start, stop),
+                pipeline -> pipeline.zrangeWithScores(key, start, stop));
     }
 
     /**
@@ -1347,9 +2362,8 @@ public class RedisClient {
      * @return member set
      */
     public Set<Tuple> zrevRangeWithScores(final String key, final long start, final long stop) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrevrangeWithScores(key, start, stop);
-        }
+        return executeRead(Command.ZREVRANGE, key, jedis -> jedis.zrevrangeWithScores(key, start, stop),
+                pipeline -> pipeline.zrevrangeWithScores(key, start, stop));
     }
 
     /**
@@ -1361,9 +2375,26 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.member set.
      */
     public Set<String> zrangeByScore(final String key, final double fromScore, final double toScore) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrangeByScore(key, fromScore, toScore);
-        }
+        return executeRead(Command.ZRANGEBYSCORE, key, jedis -> jedis.zrangeByScore(key, fromScore, toScore),
+                pipeline -> pipeline.zrangeByScore(key, fromScore, toScore));
+    }
+
+    /**
+     * 分页获取zset处于min到max分数之间的member和score. 始终在master上执行，不会读到落后的从节点，
+     * 结果可以用来驱动清理等删除操作.
+     *
+     * @param key    key
+     * @param min    最小分数，"("开头代表开区间，"-inf"代表不限
+     * @param max    最大分数，"("开头代表开区间，"+inf"代表不限
+     * @param offset 从哪个位置开始返回（包含）
+     * @param count  最多返回多少个member
+     * @return 有序set，按分数正序
+     */
+    public Set<Tuple> zrangeByScoreWithScores(final String key, final String min, final String max,
+                                              final int offset, final int count) {
+        return execute(Command.ZRANGEBYSCORE, key,
+                jedis -> jedis.zrangeByScoreWithScores(key, min, max, offset, count),
+                pipeline -> pipeline.zrangeByScoreWithScores(key, min, max, offset, count));
     }
 
     /**
@@ -1375,9 +2406,8 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.member set.
      */
     public Set<String> zrevRangeByScore(final String key, final double fromScore, final double toScore) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrevrangeByScore(key, fromScore, toScore);
-        }
+        return executeRead(Command.ZREVRANGEBYSCORE, key, jedis -> jedis.zrevrangeByScore(key, fromScore, toScore),
+                pipeline -> pipeline.zrevrangeByScore(key, fromScore, toScore));
     }
 
     /**
@@ -1389,9 +2419,8 @@ public class RedisClient {
      * @return 元素 set.
      */
     public Set<Tuple> zrangeByScoreWithScore(final String key, final double fromScore, final double toScore) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrangeByScoreWithScores(key, fromScore, toScore);
-        }
+        return executeRead(Command.ZRANGEBYSCORE, key, jedis -> jedis.zrangeByScoreWithScores(key, fromScore, toScore),
+                pipeline -> pipeline.zrangeByScoreWithScores(key, fromScore, toScore));
     }
 
     /**
@@ -1403,9 +2432,9 @@ public class RedisClient {
      * @return 元素 set.
      */
     public Set<Tuple> zrevRangeByScoreWithScore(final String key, final double fromScore, final double toScore) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrevrangeByScoreWithScores(key, fromScore, toScore);
-        }
+        return executeRead(Command.ZREVRANGEBYSCORE, key,
+                jedis -> jedis.zrevrangeByScoreWithScores(key, fromScore, toScore),
+                pipeline -> pipeline.zrevrangeByScoreWithScores(key, fromScore, toScore));
     }
 
     /**
@@ -1417,9 +2446,8 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.区间内的member，正序.
      */
     public Set<String> zrangeByLex(final String key, final String floor, final String ceiling) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrangeByLex(key, floor, ceiling);
-        }
+        return executeRead(Command.ZRANGEBYLEX, key, jedis -> jedis.zrangeByLex(key, floor, ceiling),
+                pipeline -> pipeline.zrangeByLex(key, floor, ceiling));
     }
 
 
@@ -1435,9 +2463,8 @@ public class RedisClient {
      */
     public Set<String> zrangeByLex(final String key, final String ceiling, final String floor,
                                    final int offset, final int count) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrangeByLex(key, ceiling, floor, offset, count);
-        }
+        return executeRead(Command.ZRANGEBYLEX, key, jedis -> jedis.zrangeByLex(key, ceiling, floor, offset, count),
+                pipeline -> pipeline.zrangeByLex(key, ceiling, floor, offset, count));
     }
 
     /**
@@ -1449,9 +2476,8 @@ public class RedisClient {
      * @return 有序set，redis在list外部封装了一层，可以认为无法随机访问的list.区间内的member，逆序.
      */
     public Set<String> zrevRangeByLex(final String key, final String ceiling, final String floor) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrevrangeByLex(key, ceiling, floor);
-        }
+        return executeRead(Command.ZREVRANGEBYLEX, key, jedis -> jedis.zrevrangeByLex(key, ceiling, floor),
+                pipeline -> pipeline.zrevrangeByLex(key, ceiling, floor));
     }
 
     /**
@@ -1466,9 +2492,9 @@ public class RedisClient {
      */
     public Set<String> zrevRangeByLex(final String key, final String ceiling, final String floor,
                                       final int offset, final int count) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zrevrangeByLex(key, ceiling, floor, offset, count);
-        }
+        return executeRead(Command.ZREVRANGEBYLEX, key,
+                jedis -> jedis.zrevrangeByLex(key, ceiling, floor, offset, count),
+                pipeline -> pipeline.zrevrangeByLex(key, ceiling, floor, offset, count));
     }
 
     /**
@@ -1480,9 +2506,8 @@ public class RedisClient {
      * @return 从 fromScore到toScore分数之间的member数量
      */
     public Long zcount(final String key, final double fromScore, final double toScore) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.zcount(key, fromScore, toScore);
-        }
+        return executeRead(Command.ZCOUNT, key, jedis -> jedis.zcount(key, fromScore, toScore),
+                pipeline -> pipeline.zcount(key, fromScore, toScore));
     }
 
     /**
@@ -1494,9 +2519,8 @@ public class RedisClient {
      * @return 若member是新增，返回1，若只是更新值，返回0
      */
     public Long zadd(final String key, final double score, final String member) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zadd(key, score, member);
-        }
+        return execute(Command.ZADD, key, jedis -> jedis.zadd(key, score, member),
+                pipeline -> pipeline.zadd(key, score, member));
     }
 
     /**
@@ -1507,9 +2531,7 @@ public class RedisClient {
      * @return 新增member数量
      */
     public Long zadd(final String key, final Map<String/* member  */, Double/* score  */> hash) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zadd(key, hash);
-        }
+        return execute(Command.ZADD, key, jedis -> jedis.zadd(key, hash), pipeline -> pipeline.zadd(key, hash));
     }
 
     /**
@@ -1521,9 +2543,8 @@ public class RedisClient {
      * @return 自增后的分数
      */
     public Double zincrBy(final String key, final double increment, final String member) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zincrby(key, increment, member);
-        }
+        return execute(Command.ZINCRBY, key, jedis -> jedis.zincrby(key, increment, member),
+                pipeline -> pipeline.zincrby(key, increment, member));
     }
 
     /**
@@ -1534,9 +2555,7 @@ public class RedisClient {
      * @return 成功删除的个数
      */
     public Long zrem(final String key, final String... members) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zrem(key, members);
-        }
+        return execute(Command.ZREM, key, jedis -> jedis.zrem(key, members), pipeline -> pipeline.zrem(key, members));
     }
 
     /**
@@ -1548,9 +2567,8 @@ public class RedisClient {
      * @return 删除个数
      */
     public Long zremRangeByRank(final String key, final long start, final long stop) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zremrangeByRank(key, start, stop);
-        }
+        return execute(Command.ZREMRANGEBYRANK, key, jedis -> jedis.zremrangeByRank(key, start, stop),
+                pipeline -> pipeline.zremrangeByRank(key, start, stop));
     }
 
     /**
@@ -1562,9 +2580,8 @@ public class RedisClient {
      * @return 删除个数
      */
     public Long zremrangeByScore(final String key, final double fromScore, final double toScore) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zremrangeByScore(key, fromScore, toScore);
-        }
+        return execute(Command.ZREMRANGEBYSCORE, key, jedis -> jedis.zremrangeByScore(key, fromScore, toScore),
+                pipeline -> pipeline.zremrangeByScore(key, fromScore, toScore));
     }
 
     /**
@@ -1576,9 +2593,8 @@ public class RedisClient {
      * @return 交集个数
      */
     public Long zinterStore(final String destKey, final String... keys) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zinterstore(destKey, keys);
-        }
+        return afterWrite(execute(Command.ZINTERSTORE, destKey, jedis -> jedis.zinterstore(destKey, keys),
+                pipeline -> pipeline.zinterstore(destKey, keys)), destKey);
     }
 
     /**
@@ -1590,35 +2606,63 @@ public class RedisClient {
      * @return 并集个数
      */
     public Long zunionStore(final String destKey, final String... keys) {
-        try (Jedis resource = pool.getResource()) {
-            return resource.zunionstore(destKey, keys);
-        }
+        return afterWrite(execute(Command.ZUNIONSTORE, destKey, jedis -> jedis.zunionstore(destKey, keys),
+                pipeline -> pipeline.zunionstore(destKey, keys)), destKey);
     }
 
 
+    /**
+     * 用ZSCAN惰性遍历zset的member和score，在调用线程上按需逐页拉取，替代大zset上的zrange(0,-1)，
+     * 返回顺序与score无关.
+     *
+     * @param key   zset的key
+     * @param match 匹配模式，例如"login:*"，为null代表不过滤
+     * @param count 每页建议数量，redis按此值控制单次遍历的工作量
+     * @return member-score的迭代器，用完务必close
+     */
+    public ScanIterator<Tuple> zscan(final String key, final String match, final int count) {
+        return zscan(key, match, count, 0);
+    }
+
+    /**
+     * 用ZSCAN惰性遍历zset的member和score，返回顺序与score无关.
+     *
+     * @param key      zset的key
+     * @param match    匹配模式，为null代表不过滤
+     * @param count    每页建议数量
+     * @param prefetch 后台最多预取的页数，0代表不预取
+     * @return member-score的迭代器，用完务必close
+     */
+    public ScanIterator<Tuple> zscan(final String key, final String match, final int count, final int prefetch) {
+        return scanIterator(Command.ZSCAN, key, match, count, prefetch,
+                (jedis, cursor, params) -> jedis.zscan(key, cursor, params));
+    }
+
     // =============zset 操作 end =====================
     // =============发布订阅 操作 end =====================
 
     /**
      * 订阅若干个channel，请注意，此方法将阻塞线程，使用时请使用守护线程订阅，保存pubSubImpl对象，进行停止订阅操作.
+     * 每次调用都会长期占用一个连接，推荐使用{@link #subscriptions()}.
      *
      * @param pubSubImpl jedis发布订阅类的实现
      * @param channels   订阅的频道
      */
     public void subscribe(final JedisPubSub pubSubImpl, final String... channels) {
-        try (final Jedis resource = pool.getResource()) {
+        try (final Jedis resource = router.getResource(null)) {
             resource.subscribe(pubSubImpl, channels);
         }
     }
 
     /**
      * 指定若干个正则表达式，订阅所有匹配的channel，请注意，此方法将阻塞线程，使用时请使用守护线程订阅，保存pubSubImpl对象，进行停止订阅操作.
+     * 每次调用都会长期占用一个连接，推荐使用{@link #subscriptions()}.
      *
      * @param pubSubImpl jedis发布订阅类的实现
      * @param patterns   正则表达式
      */
     public void psubscribe(final JedisPubSub pubSubImpl, final String... patterns) {
-        try (final Jedis resource = pool.getResource()) {
+        try (final Jedis resource = router.getResource(null)) {
             resource.psubscribe(pubSubImpl, patterns);
         }
     }
@@ -1630,30 +2674,862 @@ public class RedisClient {
      * @param message 消息
      */
     public void publish(final String channel, final String message) {
-        try (final Jedis resource = pool.getResource()) {
-            resource.publish(channel, message);
-        }
+        execute(Command.PUBLISH, null, jedis -> jedis.publish(channel, message),
+                pipeline -> pipeline.publish(channel, message));
     }
 
 
     public Object eval(final String script, final String... keys) {
-        try (final Jedis resource = pool.getResource()) {
-            if (keys == null) {
-                return resource.eval(script);
-            } else {
-                return resource.eval(script, keys.length, keys);
-            }
+        if (keys == null) {
+            return execute(Command.EVAL, null, jedis -> jedis.eval(script), pipeline -> pipeline.eval(script));
+        } else {
+            final String routeKey = keys.length == 0 ? null : keys[0];
+            return afterWrite(execute(Command.EVAL, routeKey, jedis -> jedis.eval(script, keys.length, keys),
+                    pipeline -> pipeline.eval(script, keys.length, keys)), keys);
         }
     }
 
     public Object eval(final String script, final List<String> keys, final List<String> args) {
-        try (final Jedis resource = pool.getResource()) {
-            return resource.eval(script, keys, args);
-        }
+        return afterWrite(execute(Command.EVAL, keys.isEmpty() ? null : keys.get(0),
+                jedis -> jedis.eval(script, keys, args),
+                pipeline -> pipeline.eval(script, keys, args)), keys.toArray(new String[0]));
     }
 
     // =============发布订阅 操作 end =====================
 
+    // ==== stream 操作 start ===========================
+
+    /**
+     * 追加一条消息，id由服务端生成.
+     *
+     * @param key    stream key
+     * @param maxLen 大于0时以MAXLEN ~近似裁剪，服务端按整个宏节点删除旧消息，实际长度会略大于maxLen
+     * @param fields 字段，不能为空
+     * @return 消息id
+     */
+    public String xadd(final String key, final long maxLen, final Map<String, String> fields) {
+        final List<String> args = new ArrayList<>(fields.size() * 2 + 5);
+        args.add(key);
+        if (maxLen > 0) {
+            args.add("MAXLEN");
+            args.add("~");
+            args.add(Long.toString(maxLen));
+        }
+        args.add("*");
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            args.add(field.getKey());
+            args.add(field.getValue());
+        }
+        return execute(StreamCommand.XADD, key,
+                jedis -> sendStream(jedis, StreamCommand.XADD, args).getBulkReply(), null);
+    }
+
+    /**
+     * 获取stream长度.
+     *
+     * @param key stream key
+     * @return 消息数，key不存在时返回0
+     */
+    public Long xlen(final String key) {
+        return execute(StreamCommand.XLEN, key,
+                jedis -> sendStream(jedis, StreamCommand.XLEN, Collections.singletonList(key)).getIntegerReply(),
+                null);
+    }
+
+    /**
+     * 按id范围读取消息.
+     *
+     * @param key   stream key
+     * @param start 起始id（包含），"-"代表最小
+     * @param end   结束id（包含），"+"代表最大
+     * @param count 最多返回条数
+     * @return 消息，按id升序
+     */
+    public List<StreamEntry> xrange(final String key, final String start, final String end, final int count) {
+        final List<String> args = Arrays.asList(key, start, end, "COUNT", Integer.toString(count));
+        return execute(StreamCommand.XRANGE, key, jedis -> toStreamEntries(
+                sendStream(jedis, StreamCommand.XRANGE, args).getObjectMultiBulkReply()), null);
+    }
+
+    /**
+     * 删除消息.
+     *
+     * @param key stream key
+     * @param ids 消息id
+     * @return 实际删除条数
+     */
+    public Long xdel(final String key, final String... ids) {
+        final List<String> args = new ArrayList<>(ids.length + 1);
+        args.add(key);
+        args.addAll(Arrays.asList(ids));
+        return execute(StreamCommand.XDEL, key,
+                jedis -> sendStream(jedis, StreamCommand.XDEL, args).getIntegerReply(), null);
+    }
+
+    /**
+     * 以MAXLEN ~近似裁剪stream.
+     *
+     * @param key    stream key
+     * @param maxLen 保留的大致长度
+     * @return 删除的条数
+     */
+    public Long xtrim(final String key, final long maxLen) {
+        final List<String> args = Arrays.asList(key, "MAXLEN", "~", Long.toString(maxLen));
+        return execute(StreamCommand.XTRIM, key,
+                jedis -> sendStream(jedis, StreamCommand.XTRIM, args).getIntegerReply(), null);
+    }
+
+    /**
+     * 创建消费组，消费组已存在时不做任何事，便于多个实例启动时重复调用.
+     *
+     * @param key      stream key
+     * @param group    消费组
+     * @param id       从哪条消息之后开始投递，"0"代表全部历史消息，"$"代表只投递之后的新消息
+     * @param mkStream stream不存在时是否创建
+     * @return 是否新建了消费组
+     */
+    public boolean xgroupCreate(final String key, final String group, final String id, final boolean mkStream) {
+        final List<String> args = new ArrayList<>(Arrays.asList("CREATE", key, group, id));
+        if (mkStream) {
+            args.add("MKSTREAM");
+        }
+        return execute(StreamCommand.XGROUP, key, jedis -> {
+            final Client client = sendStream(jedis, StreamCommand.XGROUP, args);
+            try {
+                return SUCCESS_STR.equals(client.getStatusCodeReply());
+            } catch (JedisDataException e) {
+                if (e.getMessage() != null && e.getMessage().startsWith("BUSYGROUP")) {
+                    return false;
+                }
+                throw e;
+            }
+        }, null);
+    }
+
+    /**
+     * 以消费组的身份读取消息，读到的消息进入消费组的待确认列表，处理完后需要{@link #xack}.
+     * 阻塞读取与blpop一样在阻塞命令连接池上执行.
+     *
+     * @param group       消费组
+     * @param consumer    消费者名称，重启后沿用同一名称才能通过">"以外的id取回自己未确认的消息
+     * @param count       每个stream最多返回条数
+     * @param blockMillis 没有消息时阻塞的毫秒数，0代表一直阻塞，小于0代表不阻塞
+     * @param noAck       为true时不进入待确认列表，读到即视为确认
+     * @param streams     stream key到起始id的映射，">"代表从未投递过的新消息，其他id代表本消费者未确认的历史消息；集群模式下所有key必须处于同一slot
+     * @return stream key到消息的映射，没有消息时为空
+     */
+    public Map<String, List<StreamEntry>> xreadGroup(final String group, final String consumer, final int count,
+                                                     final long blockMillis, final boolean noAck,
+                                                     final Map<String, String> streams) {
+        final List<String> args = new ArrayList<>(streams.size() * 2 + 9);
+        args.add("GROUP");
+        args.add(group);
+        args.add(consumer);
+        args.add("COUNT");
+        args.add(Integer.toString(count));
+        if (blockMillis >= 0) {
+            args.add("BLOCK");
+            args.add(Long.toString(blockMillis));
+        }
+        if (noAck) {
+            args.add("NOACK");
+        }
+        args.add("STREAMS");
+        args.addAll(streams.keySet());
+        args.addAll(streams.values());
+        final String key = streams.keySet().iterator().next();
+        final List<Object> reply;
+        if (blockMillis >= 0) {
+            reply = executeBlocking(StreamCommand.XREADGROUP, key, blockMillis,
+                    client -> sendStream(client, StreamCommand.XREADGROUP, args).getObjectMultiBulkReply());
+        } else {
+            reply = execute(StreamCommand.XREADGROUP, key,
+                    jedis -> sendStream(jedis, StreamCommand.XREADGROUP, args).getObjectMultiBulkReply(), null);
+        }
+        if (reply == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, List<StreamEntry>> result = new LinkedHashMap<>(reply.size());
+        for (Object item : reply) {
+            final List<?> stream = (List<?>) item;
+            result.put(SafeEncoder.encode((byte[]) stream.get(0)), toStreamEntries(stream.get(1)));
+        }
+        return result;
+    }
+
+    /**
+     * 确认消息，从消费组的待确认列表中移除.
+     *
+     * @param key   stream key
+     * @param group 消费组
+     * @param ids   消息id
+     * @return 实际确认的条数
+     */
+    public Long xack(final String key, final String group, final String... ids) {
+        final List<String> args = new ArrayList<>(ids.length + 2);
+        args.add(key);
+        args.add(group);
+        args.addAll(Arrays.asList(ids));
+        return execute(StreamCommand.XACK, key,
+                jedis -> sendStream(jedis, StreamCommand.XACK, args).getIntegerReply(), null);
+    }
+
+    /**
+     * 查询消费组中已投递未确认的消息.
+     *
+     * @param key      stream key
+     * @param group    消费组
+     * @param start    起始id（包含），"-"代表最小
+     * @param end      结束id（包含），"+"代表最大
+     * @param count    最多返回条数
+     * @param consumer 只查询该消费者的消息，为null代表全部消费者
+     * @return 待确认消息，按id升序
+     */
+    public List<StreamPending> xpending(final String key, final String group, final String start, final String end,
+                                        final int count, final String consumer) {
+        final List<String> args = new ArrayList<>(Arrays.asList(key, group, start, end, Integer.toString(count)));
+        if (consumer != null) {
+            args.add(consumer);
+        }
+        final List<Object> reply = execute(StreamCommand.XPENDING, key,
+                jedis -> sendStream(jedis, StreamCommand.XPENDING, args).getObjectMultiBulkReply(), null);
+        final List<StreamPending> pending = new ArrayList<>(reply.size());
+        for (Object item : reply) {
+            final List<?> fields = (List<?>) item;
+            final StreamPending entry = new StreamPending();
+            entry.setId(SafeEncoder.encode((byte[]) fields.get(0)));
+            entry.setConsumer(SafeEncoder.encode((byte[]) fields.get(1)));
+            entry.setIdleMillis((Long) fields.get(2));
+            entry.setDeliveries((Long) fields.get(3));
+            pending.add(entry);
+        }
+        return pending;
+    }
+
+    /**
+     * 把空闲超过minIdleMillis的待确认消息转给consumer，投递次数加1，用于接管宕机消费者的消息.
+     * 多个消费者同时转移同一条消息时只有一个成功；消息已被删除时不会返回.
+     *
+     * @param key           stream key
+     * @param group         消费组
+     * @param consumer      接管的消费者
+     * @param minIdleMillis 最小空闲毫秒数
+     * @param ids           消息id
+     * @return 成功转移的消息
+     */
+    public List<StreamEntry> xclaim(final String key, final String group, final String consumer,
+                                    final long minIdleMillis, final String... ids) {
+        final List<String> args = new ArrayList<>(ids.length + 4);
+        args.add(key);
+        args.add(group);
+        args.add(consumer);
+        args.add(Long.toString(minIdleMillis));
+        args.addAll(Arrays.asList(ids));
+        return execute(StreamCommand.XCLAIM, key, jedis -> toStreamEntries(
+                sendStream(jedis, StreamCommand.XCLAIM, args).getObjectMultiBulkReply()), null);
+    }
+
+    private static Client sendStream(final Jedis jedis, final StreamCommand command, final List<String> args) {
+        return sendStream(jedis.getClient(), command, args);
+    }
+
+    private static Client sendStream(final Client client, final StreamCommand command, final List<String> args) {
+        client.sendCommand(command, args.toArray(new String[0]));
+        return client;
+    }
+
+    /**
+     * 把[[id, [field, value, ...]], ...]形式的回复转为消息，跳过已被删除的消息.
+     */
+    private static List<StreamEntry> toStreamEntries(final Object reply) {
+        if (reply == null) {
+            return Collections.emptyList();
+        }
+        final List<?> items = (List<?>) reply;
+        final List<StreamEntry> entries = new ArrayList<>(items.size());
+        for (Object item : items) {
+            if (item == null) {
+                continue;
+            }
+            final List<?> pair = (List<?>) item;
+            final StreamEntry entry = new StreamEntry();
+            entry.setId(SafeEncoder.encode((byte[]) pair.get(0)));
+            final List<?> raw = (List<?>) pair.get(1);
+            if (raw != null) {
+                final Map<String, String> fields = new LinkedHashMap<>(raw.size());
+                for (int i = 0; i + 1 < raw.size(); i += 2) {
+                    fields.put(SafeEncoder.encode((byte[]) raw.get(i)), SafeEncoder.encode((byte[]) raw.get(i + 1)));
+                }
+                entry.setFields(fields);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    // ==== stream 操作 end ===========================
+
+    // ==== 脚本 操作 start ===========================
+
+    /**
+     * 注册脚本，已注册的脚本会在{@link #loadScripts()}时预加载.
+     *
+     * @param script 脚本
+     * @return 同一个脚本，便于声明时直接赋值
+     */
+    public RedisScript registerScript(final RedisScript script) {
+        scripts.putIfAbsent(script.getSha1(), script);
+        return script;
+    }
+
+    /**
+     * 用SCRIPT LOAD把已注册的脚本加载到所有节点，失败只打日志，首次执行时会自动加载.
+     */
+    public void loadScripts() {
+        for (Map.Entry<String, Pool<Jedis>> node : router.pools().entrySet()) {
+            try (final Jedis jedis = node.getValue().getResource()) {
+                for (RedisScript script : scripts.values()) {
+                    jedis.scriptLoad(script.getSource());
+                    loadedShas.add(script.getSha1());
+                }
+            } catch (JedisException e) {
+                log.warn("向{}预加载脚本失败，首次执行时再加载", node.getKey(), e);
+            }
+        }
+        log.info("预加载脚本{}", scripts.values());
+    }
+
+    /**
+     * 用EVALSHA执行脚本，服务端没有缓存该脚本时（NOSCRIPT）自动改用EVAL执行，EVAL会顺带把脚本缓存到服务端.
+     *
+     * @param script 脚本
+     * @param keys   KEYS，集群模式下必须处于同一slot，分片模式下必须在同一节点
+     * @param args   ARGV
+     * @return 脚本返回值
+     */
+    public Object evalsha(final RedisScript script, final List<String> keys, final List<String> args) {
+        if (keys.size() > 1 && router.partition(keys.toArray(new String[0])).size() > 1) {
+            throw new IllegalArgumentException("脚本" + script + "的所有key必须处于同一slot");
+        }
+        registerScript(script);
+        final String routeKey = keys.isEmpty() ? null : keys.get(0);
+        Object result;
+        try {
+            result = execute(Command.EVALSHA, routeKey, jedis -> jedis.evalsha(script.getSha1(), keys, args),
+                    pipeline -> pipeline.evalsha(script.getSha1(), keys, args));
+        } catch (JedisNoScriptException e) {
+            // 节点重启、主从切换或SCRIPT FLUSH后服务端脚本缓存会丢失
+            log.info("脚本{}不在服务端缓存中，改用EVAL执行", script);
+            loadedShas.remove(script.getSha1());
+            result = execute(Command.EVAL, routeKey, jedis -> jedis.eval(script.getSource(), keys, args),
+                    pipeline -> pipeline.eval(script.getSource(), keys, args));
+        }
+        loadedShas.add(script.getSha1());
+        return afterWrite(result, keys.toArray(new String[0]));
+    }
+
+    /**
+     * 在管道里执行脚本，确认服务端已缓存时发送EVALSHA，否则发送EVAL.
+     * 管道里的NOSCRIPT要到读取Response时才能发现，经{@link #execPipeLine}执行时会清空已缓存标记，下次改用EVAL.
+     *
+     * @param pipeline 管道
+     * @param script   脚本
+     * @param keys     KEYS
+     * @param args     ARGV
+     * @return 脚本返回值，sync之后可用
+     */
+    public Response<Object> evalsha(final Pipeline pipeline, final RedisScript script, final List<String> keys,
+                                    final List<String> args) {
+        registerScript(script);
+        if (loadedShas.contains(script.getSha1())) {
+            return pipeline.evalsha(script.getSha1(), keys, args);
+        }
+        return pipeline.eval(script.getSource(), keys, args);
+    }
+
+    // ==== 脚本 操作 end ===========================
+
+    // ==== 批量 操作 start ===========================
+
+    /**
+     * 批量获取字符串，按默认分片大小拆成多条MGET，同一节点的分片放在一个管道里发送.
+     *
+     * @param keys 多个key，可以重复
+     * @return 与keys顺序一致的值，key不存在的位置为null
+     */
+    public List<String> mget(final Collection<String> keys) {
+        return mget(keys, batchSize);
+    }
+
+    /**
+     * 批量获取字符串，集群模式下先按slot分组再分片，各组并行执行.
+     *
+     * @param keys      多个key，可以重复
+     * @param chunkSize 每条MGET最多包含的key数量，必须大于0
+     * @return 与keys顺序一致的值，key不存在的位置为null
+     */
+    public List<String> mget(final Collection<String> keys, final int chunkSize) {
+        checkChunkSize(chunkSize);
+        if (keys.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        if (compressesAny(keys)) {
+            final List<byte[]> values = mgetBytes(keys, chunkSize);
+            final List<String> result = new ArrayList<>(values.size());
+            for (byte[] value : values) {
+                result.add(utf8(value));
+            }
+            return result;
+        }
+        final String[] keyArr = keys.toArray(new String[0]);
+        final Map<String, String> values = new HashMap<>(keyArr.length * 2);
+        for (Map<String, String> part : executeGroups(keyArr, group -> executeRead(Command.MGET, group[0],
+                jedis -> RedisClient.<List<String>, String>inChunks(jedis, group, chunkSize,
+                        (pipeline, chunk) -> pipeline.mget(chunk),
+                        (chunk, reply, result) -> {
+                            for (int i = 0; i < chunk.length; i++) {
+                                result.put(chunk[i], reply.get(i));
+                            }
+                        }), null))) {
+            values.putAll(part);
+        }
+        final List<String> result = new ArrayList<>(keyArr.length);
+        for (String key : keyArr) {
+            result.add(values.get(key));
+        }
+        return result;
+    }
+
+    /**
+     * 批量设置字符串，按默认分片大小拆成多条MSET.
+     * 划重点：分片之间、集群模式下slot之间不是原子的.
+     *
+     * @param hash key到value的映射
+     * @return 是否全部成功
+     */
+    public boolean mset(final Map<String, String> hash) {
+        return mset(hash, batchSize);
+    }
+
+    /**
+     * 批量设置字符串.
+     * 划重点：分片之间、集群模式下slot之间不是原子的.
+     *
+     * @param hash      key到value的映射
+     * @param chunkSize 每条MSET最多包含的key数量，必须大于0
+     * @return 是否全部成功，hash为空时返回true
+     */
+    public boolean mset(final Map<String, String> hash, final int chunkSize) {
+        checkChunkSize(chunkSize);
+        if (hash.isEmpty()) {
+            return true;
+        }
+        if (compressesAny(hash.keySet())) {
+            final Map<String, byte[]> encoded = new HashMap<>(hash.size() * 2);
+            for (Map.Entry<String, String> entry : hash.entrySet()) {
+                encoded.put(entry.getKey(), SafeEncoder.encode(entry.getValue()));
+            }
+            return msetBytes(encoded, chunkSize);
+        }
+        final String[] keyArr = hash.keySet().toArray(new String[0]);
+        boolean success = true;
+        for (Map<String, String> replies : executeGroups(keyArr, group -> execute(Command.MSET, group[0],
+                jedis -> RedisClient.<String, String>inChunks(jedis, group, chunkSize,
+                        (pipeline, chunk) -> pipeline.mset(keysAndValues(chunk, hash)),
+                        // 每个分片一条MSET，以分片的第一个key记录其回复
+                        (chunk, reply, result) -> result.put(chunk[0], reply)), null))) {
+            for (String reply : replies.values()) {
+                success &= SUCCESS_STR.equals(reply);
+            }
+        }
+        return afterWrite(success, keyArr);
+    }
+
+    /**
+     * 所有key都不存在时才全部设置，原子操作，因此不分片.
+     *
+     * @param hash key到value的映射，集群模式下所有key必须处于同一slot
+     * @return 是否设置成功
+     */
+    public boolean msetnx(final Map<String, String> hash) {
+        final String[] keyArr = hash.keySet().toArray(new String[0]);
+        if (keyArr.length == 0) {
+            return false;
+        }
+        if (router.partition(keyArr).size() > 1) {
+            throw new IllegalArgumentException("msetnx的所有key必须处于同一slot");
+        }
+        final String[] keysAndValues = keysAndValues(keyArr, hash);
+        return afterWrite(execute(Command.MSETNX, keyArr[0], jedis -> jedis.msetnx(keysAndValues),
+                pipeline -> pipeline.msetnx(keysAndValues)) == 1, keyArr);
+    }
+
+    /**
+     * 批量获取多个hash的全部field，按默认分片大小分批管道发送HGETALL.
+     *
+     * @param keys 多个hash的key，可以重复
+     * @return 与keys顺序一致的hash，key不存在的位置为null
+     */
+    public List<Map<String /* field */, String /* value */>> hgetAll(final Collection<String> keys) {
+        return hgetAll(keys, batchSize);
+    }
+
+    /**
+     * 批量获取多个hash的全部field，每个分片一次往返，避免一次性缓冲全部结果.
+     *
+     * @param keys      多个hash的key，可以重复
+     * @param chunkSize 每次往返最多包含的HGETALL数量，必须大于0
+     * @return 与keys顺序一致的hash，key不存在的位置为null
+     */
+    public List<Map<String /* field */, String /* value */>> hgetAll(final Collection<String> keys,
+                                                                    final int chunkSize) {
+        checkChunkSize(chunkSize);
+        if (keys.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        final String[] keyArr = keys.toArray(new String[0]);
+        final Map<String, Map<String, String>> values = new HashMap<>(keyArr.length * 2);
+        for (Map<String, Map<String, String>> part : executeGroups(keyArr, group -> {
+            final Map<String, Map<String, String>> groupValues = new HashMap<>(group.length * 2);
+            for (int from = 0; from < group.length; from += chunkSize) {
+                final String[] chunk = Arrays.copyOfRange(group, from, Math.min(group.length, from + chunkSize));
+                groupValues.putAll(executeRead(Command.HGETALL, chunk[0],
+                        jedis -> RedisClient.<Map<String, String>, Map<String, String>>inChunks(jedis, chunk, 1,
+                                (pipeline, one) -> pipeline.hgetAll(one[0]),
+                                (one, hash, result) -> result.put(one[0], hash.isEmpty() ? null : hash)), null));
+            }
+            return groupValues;
+        })) {
+            values.putAll(part);
+        }
+        final List<Map<String, String>> result = new ArrayList<>(keyArr.length);
+        for (String key : keyArr) {
+            result.add(values.get(key));
+        }
+        return result;
+    }
+
+    private static void checkChunkSize(final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize必须大于0");
+        }
+    }
+
+    /**
+     * 把keys按chunkSize分片，每个分片在同一管道里发出一条命令，sync后把结果收集到一个map里.
+     */
+    private static <R, V> Map<String, V> inChunks(final Jedis jedis, final String[] keys, final int chunkSize,
+                                                  final ChunkCommand<R> command,
+                                                  final ChunkCollector<R, V> collector) {
+        final Pipeline pipeline = jedis.pipelined();
+        final List<String[]> chunks = new ArrayList<>();
+        final List<Response<R>> responses = new ArrayList<>();
+        for (int from = 0; from < keys.length; from += chunkSize) {
+            final String[] chunk = Arrays.copyOfRange(keys, from, Math.min(keys.length, from + chunkSize));
+            chunks.add(chunk);
+            responses.add(command.send(pipeline, chunk));
+        }
+        pipeline.sync();
+        final Map<String, V> result = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < chunks.size(); i++) {
+            collector.collect(chunks.get(i), responses.get(i).get(), result);
+        }
+        return result;
+    }
+
+    private static String[] keysAndValues(final String[] keys, final Map<String, String> hash) {
+        final String[] keysAndValues = new String[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keysAndValues[2 * i] = keys[i];
+            keysAndValues[2 * i + 1] = hash.get(keys[i]);
+        }
+        return keysAndValues;
+    }
+
+    private interface ChunkCommand<R> {
+        Response<R> send(Pipeline pipeline, String[] chunk);
+    }
+
+    private interface ChunkCollector<R, V> {
+        void collect(String[] chunk, R reply, Map<String, V> result);
+    }
+
+    // ==== 批量 操作 end ===========================
+
+    // ==== 二进制 操作 start ===========================
+
+    /**
+     * 以字节形式获取字符串的值，不经过近端缓存.
+     *
+     * @param key key
+     * @return 值，不存在返回null
+     */
+    public byte[] getBytes(final String key) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        return decompress(key, executeRead(Command.GET, key, jedis -> jedis.get(rawKey),
+                pipeline -> pipeline.get(rawKey)));
+    }
+
+    /**
+     * 以字节形式设置字符串的值，没有过期时间.
+     *
+     * @param key key
+     * @param raw value
+     * @return 是否设置成功
+     */
+    public boolean setBytes(final String key, final byte[] raw) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        final byte[] value = compress(key, raw);
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SET, key, jedis -> jedis.set(rawKey, value),
+                pipeline -> pipeline.set(rawKey, value))), key);
+    }
+
+    /**
+     * 以字节形式设置字符串的值，同时设置过期时间.
+     *
+     * @param key            key
+     * @param raw            value
+     * @param expiredSeconds 过期秒数
+     * @return 是否设置成功
+     */
+    public boolean setExpireBytes(final String key, final byte[] raw, final int expiredSeconds) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        final byte[] value = compress(key, raw);
+        return afterWrite(SUCCESS_STR.equals(execute(Command.SETEX, key,
+                jedis -> jedis.setex(rawKey, expiredSeconds, value),
+                pipeline -> pipeline.setex(rawKey, expiredSeconds, value))), key);
+    }
+
+    /**
+     * 以字节形式获取hash的field，不经过近端缓存.
+     *
+     * @param key   key
+     * @param field field
+     * @return value，不存在返回null
+     */
+    public byte[] hgetBytes(final String key, final String field) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        final byte[] rawField = SafeEncoder.encode(field);
+        return executeRead(Command.HGET, key, jedis -> jedis.hget(rawKey, rawField),
+                pipeline -> pipeline.hget(rawKey, rawField));
+    }
+
+    /**
+     * 以字节形式设置hash的field.
+     *
+     * @param key   key
+     * @param field field
+     * @param value value
+     * @return 新增field返回1，否则0
+     */
+    public Long hsetBytes(final String key, final String field, final byte[] value) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        final byte[] rawField = SafeEncoder.encode(field);
+        return afterHashWrite(execute(Command.HSET, key, jedis -> jedis.hset(rawKey, rawField, value),
+                pipeline -> pipeline.hset(rawKey, rawField, value)), key, field);
+    }
+
+    /**
+     * 以字节形式批量获取字符串，分片方式与{@link #mget(Collection, int)}相同.
+     *
+     * @param keys 多个key，可以重复
+     * @return 与keys顺序一致的值，key不存在的位置为null
+     */
+    public List<byte[]> mgetBytes(final Collection<String> keys) {
+        return mgetBytes(keys, batchSize);
+    }
+
+    private List<byte[]> mgetBytes(final Collection<String> keys, final int chunkSize) {
+        final String[] keyArr = keys.toArray(new String[0]);
+        final Map<String, byte[]> values = new HashMap<>(keyArr.length * 2);
+        for (Map<String, byte[]> part : executeGroups(keyArr, group -> executeRead(Command.MGET, group[0],
+                jedis -> RedisClient.<List<byte[]>, byte[]>inChunks(jedis, group, chunkSize,
+                        (pipeline, chunk) -> pipeline.mget(encode(chunk)),
+                        (chunk, reply, result) -> {
+                            for (int i = 0; i < chunk.length; i++) {
+                                result.put(chunk[i], decompress(chunk[i], reply.get(i)));
+                            }
+                        }), null))) {
+            values.putAll(part);
+        }
+        final List<byte[]> result = new ArrayList<>(keyArr.length);
+        for (String key : keyArr) {
+            result.add(values.get(key));
+        }
+        return result;
+    }
+
+    /**
+     * 以字节形式批量设置字符串，分片方式与{@link #mset(Map, int)}相同.
+     * 划重点：分片之间、集群模式下slot之间不是原子的.
+     *
+     * @param hash key到value的映射
+     * @return 是否全部成功
+     */
+    public boolean msetBytes(final Map<String, byte[]> hash) {
+        return msetBytes(hash, batchSize);
+    }
+
+    private boolean msetBytes(final Map<String, byte[]> hash, final int chunkSize) {
+        final String[] keyArr = hash.keySet().toArray(new String[0]);
+        boolean success = true;
+        for (Map<String, String> replies : executeGroups(keyArr, group -> execute(Command.MSET, group[0],
+                jedis -> RedisClient.<String, String>inChunks(jedis, group, chunkSize,
+                        (pipeline, chunk) -> {
+                            final byte[][] keysAndValues = new byte[chunk.length * 2][];
+                            for (int i = 0; i < chunk.length; i++) {
+                                keysAndValues[2 * i] = SafeEncoder.encode(chunk[i]);
+                                keysAndValues[2 * i + 1] = compress(chunk[i], hash.get(chunk[i]));
+                            }
+                            return pipeline.mset(keysAndValues);
+                        },
+                        (chunk, reply, result) -> result.put(chunk[0], reply)), null))) {
+            for (String reply : replies.values()) {
+                success &= SUCCESS_STR.equals(reply);
+            }
+        }
+        return afterWrite(success, keyArr);
+    }
+
+    /**
+     * 获取字符串并用codec解码.
+     *
+     * @param key   key
+     * @param codec 编解码器
+     * @return 对象，不存在返回null
+     */
+    public <T> T get(final String key, final Codec<T> codec) {
+        return decode(getBytes(key), codec);
+    }
+
+    /**
+     * 用codec编码后设置字符串，没有过期时间.
+     *
+     * @param key   key
+     * @param value 对象，不能为null
+     * @param codec 编解码器
+     * @return 是否设置成功
+     */
+    public <T> boolean set(final String key, final T value, final Codec<T> codec) {
+        return setBytes(key, codec.encode(value));
+    }
+
+    /**
+     * 用codec编码后设置字符串，同时设置过期时间.
+     *
+     * @param key            key
+     * @param value          对象，不能为null
+     * @param expiredSeconds 过期秒数
+     * @param codec          编解码器
+     * @return 是否设置成功
+     */
+    public <T> boolean setExpire(final String key, final T value, final int expiredSeconds, final Codec<T> codec) {
+        return setExpireBytes(key, codec.encode(value), expiredSeconds);
+    }
+
+    /**
+     * 获取hash的field并用codec解码.
+     *
+     * @param key   key
+     * @param field field
+     * @param codec 编解码器
+     * @return 对象，不存在返回null
+     */
+    public <T> T hget(final String key, final String field, final Codec<T> codec) {
+        return decode(hgetBytes(key, field), codec);
+    }
+
+    /**
+     * 用codec编码后设置hash的field.
+     *
+     * @param key   key
+     * @param field field
+     * @param value 对象，不能为null
+     * @param codec 编解码器
+     * @return 新增field返回1，否则0
+     */
+    public <T> Long hset(final String key, final String field, final T value, final Codec<T> codec) {
+        return hsetBytes(key, field, codec.encode(value));
+    }
+
+    /**
+     * 批量获取字符串并用codec解码.
+     *
+     * @param keys  多个key，可以重复
+     * @param codec 编解码器
+     * @return 与keys顺序一致的对象，key不存在的位置为null
+     */
+    public <T> List<T> mget(final Collection<String> keys, final Codec<T> codec) {
+        final List<byte[]> values = mgetBytes(keys);
+        final List<T> result = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            result.add(decode(value, codec));
+        }
+        return result;
+    }
+
+    /**
+     * 用codec编码后批量设置字符串.
+     * 划重点：分片之间、集群模式下slot之间不是原子的.
+     *
+     * @param hash  key到对象的映射，对象不能为null
+     * @param codec 编解码器
+     * @return 是否全部成功
+     */
+    public <T> boolean mset(final Map<String, T> hash, final Codec<T> codec) {
+        final Map<String, byte[]> encoded = new HashMap<>(hash.size() * 2);
+        for (Map.Entry<String, T> entry : hash.entrySet()) {
+            encoded.put(entry.getKey(), codec.encode(entry.getValue()));
+        }
+        return msetBytes(encoded);
+    }
+
+    private static <T> T decode(final byte[] value, final Codec<T> codec) {
+        return value == null ? null : codec.decode(value);
+    }
+
+    private static String utf8(final byte[] value) {
+        return value == null ? null : SafeEncoder.encode(value);
+    }
+
+    private boolean compresses(final String key) {
+        final ValueCompressor current = compressor;
+        return current != null && current.enabledFor(key);
+    }
+
+    private boolean compressesAny(final Collection<String> keys) {
+        final ValueCompressor current = compressor;
+        if (current == null) {
+            return false;
+        }
+        for (String key : keys) {
+            if (current.enabledFor(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] compress(final String key, final byte[] value) {
+        final ValueCompressor current = compressor;
+        return current != null && current.enabledFor(key) ? current.compress(value) : value;
+    }
+
+    private byte[] decompress(final String key, final byte[] value) {
+        final ValueCompressor current = compressor;
+        return value != null && current != null && current.enabledFor(key) ? current.decompress(value) : value;
+    }
+
+    private static byte[][] encode(final String[] keys) {
+        final byte[][] rawKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            rawKeys[i] = SafeEncoder.encode(keys[i]);
+        }
+        return rawKeys;
+    }
+
+    // ==== 二进制 操作 end ===========================
+
     public enum KeyType {
         STRING("string"),
         LIST("list"),
@@ -1710,7 +3586,13 @@ public class RedisClient {
     }
 
     private RedisClient(final Pool<Jedis> pool) {
+        this(new PoolRouter(pool), pool);
+    }
+
+    private RedisClient(final JedisRouter router, final Pool<Jedis> pool) {
+        this.router = router;
         this.pool = pool;
+        registerScript(UNLOCK_SCRIPT);
     }
 
 }
@@ -32,18 +32,87 @@ public class RedisClientConfiguration {
     @ConditionalOnProperty(prefix = "redis.standalone", name = "host")
     @ConditionalOnMissingBean(value = RedisClient.class)
     public RedisClient standaloneClient() {
-        return RedisClient.standAlonePool(prop.getStandalone().getHost(), prop.getStandalone().getPort(),
+        return customize(RedisClient.standAlonePool(prop.getStandalone().getHost(), prop.getStandalone().getPort(),
                 prop.getConnectionTimeOut(), prop.getSoTimeOut(), prop.getPassword(), prop.getMaxTotal(),
-                prop.getMaxIdle(), prop.getMinIdle(), prop.isTestWhileIdle());
+                prop.getMaxIdle(), prop.getMinIdle(), prop.isTestWhileIdle()));
     }
 
     @Bean
     @ConditionalOnProperty(prefix = "redis.sentinel", name = "nodes")
     @ConditionalOnMissingBean(value = RedisClient.class)
     public RedisClient sentinelClient() {
-        return RedisClient.sentinelPool(prop.getSentinel().getMasterName(), prop.getSentinel().getNodes(),
+        final RedisPoolProperties.SentinelConfig sentinel = prop.getSentinel();
+        return customize(RedisClient.sentinelPool(sentinel.getMasterName(), sentinel.getNodes(),
                 prop.getPassword(), prop.getConnectionTimeOut(), prop.getSoTimeOut(), prop.getMaxTotal(),
-                prop.getMaxIdle(), prop.getMinIdle(), prop.isTestWhileIdle());
+                prop.getMaxIdle(), prop.getMinIdle(), prop.isTestWhileIdle(), sentinel.getReadPreference(),
+                sentinel.getReplicaRefreshSeconds()));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.cluster", name = "nodes")
+    @ConditionalOnMissingBean(value = RedisClient.class)
+    public RedisClient clusterClient() {
+        final RedisPoolProperties.ClusterConfig cluster = prop.getCluster();
+        return customize(RedisClient.clusterPool(cluster.getNodes(), prop.getPassword(), prop.getConnectionTimeOut(),
+                prop.getSoTimeOut(), prop.getMaxTotal(), prop.getMaxIdle(), prop.getMinIdle(), prop.isTestWhileIdle(),
+                cluster.getMaxRedirections(), cluster.getParallelism()));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.sharded", name = "nodes")
+    @ConditionalOnMissingBean(value = RedisClient.class)
+    public RedisClient shardedClient() {
+        final RedisPoolProperties.ShardedConfig sharded = prop.getSharded();
+        return customize(RedisClient.shardedPool(sharded.getNodes(), prop.getPassword(), prop.getConnectionTimeOut(),
+                prop.getSoTimeOut(), prop.getMaxTotal(), prop.getMaxIdle(), prop.getMinIdle(), prop.isTestWhileIdle(),
+                sharded.getVirtualNodes(), sharded.getParallelism()));
+    }
+
+    /**
+     * 按配置开启客户端的可选特性.
+     *
+     * @param client 刚构建的客户端
+     * @return 同一个客户端
+     */
+    private RedisClient customize(final RedisClient client) {
+        // 自动管道和异步门面只支持单机、哨兵模式
+        final boolean singleNode = prop.getCluster() == null && prop.getSharded() == null;
+        final RedisPoolProperties.AutoPipeliningConfig autoPipelining = prop.getAutoPipelining();
+        if (autoPipelining.isEnabled()) {
+            if (singleNode) {
+                client.enableAutoPipelining(autoPipelining.getFlushSize(), autoPipelining.getFlushIntervalMicros(),
+                        autoPipelining.getConnections());
+            } else {
+                log.warn("集群和分片模式不支持auto pipeline，忽略redis.auto-pipelining配置");
+            }
+        }
+        final RedisPoolProperties.NearCacheConfig nearCache = prop.getNearCache();
+        if (nearCache.isEnabled()) {
+            client.enableNearCache(nearCache.getMaxSize(), nearCache.getPolicy(), nearCache.getTtlMillis(),
+                    nearCache.getChannel());
+        }
+        final RedisPoolProperties.CompressionConfig compression = prop.getCompression();
+        if (compression.isEnabled()) {
+            client.enableCompression(compression.getThresholdBytes(), compression.getLevel(),
+                    compression.getPrefixes());
+        }
+        final RedisPoolProperties.BlockingConfig blocking = prop.getBlocking();
+        if (blocking.isEnabled()) {
+            client.enableBlockingPool(blocking.getMaxTotal(), blocking.getMaxIdle(),
+                    blocking.getTimeoutMarginMillis());
+        }
+        client.configureBatch(prop.getBatchSize());
+        client.configurePipeline(prop.getPipelineMaxCommands(), prop.getPipelineMaxBytes());
+        final RedisPoolProperties.SubscriptionConfig subscription = prop.getSubscription();
+        client.configureSubscriptions(subscription.getThreads(), subscription.getQueueCapacity(),
+                subscription.getOverflowPolicy(), subscription.getBlockMillis(), subscription.getPingIntervalMillis());
+        if (prop.isPreloadScripts()) {
+            client.loadScripts();
+        }
+        if (singleNode) {
+            client.configureAsync(prop.getAsync().getFlushSize(), prop.getAsync().getConnections());
+        }
+        return client;
     }
 
 }
@@ -0,0 +1,221 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Data;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol.Command;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.util.SafeEncoder;
+import redis.clients.jedis.util.Pool;
+
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: RedisClient命令级监控：每种命令一个延迟直方图，外加错误、超时计数和连接池状态.
+ * 直方图按命令枚举序号存放在数组里，第一次用到时创建，之后记录一次只有两次nanoTime和几次原子累加，不分配内存. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/17 15:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class RedisMetrics {
+
+    private static final Command[] COMMANDS = Command.values();
+
+    private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(COMMANDS.length);
+
+    private final AtomicLongArray errors = new AtomicLongArray(COMMANDS.length);
+
+    private final AtomicLongArray timeouts = new AtomicLongArray(COMMANDS.length);
+
+    /**
+     * Protocol.Command以外的命令（如jedis尚未支持、通过sendCommand发送的stream命令），按命令实例存放.
+     * 这些命令都是枚举常量，equals和hashCode就是按实例比较，记录时不需要解码命令名，命令名在生成快照时才解析.
+     */
+    private final Map<ProtocolCommand, Counters> others = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次命令耗时.
+     *
+     * @param command 命令
+     * @param nanos   耗时（纳秒）
+     */
+    void record(final ProtocolCommand command, final long nanos) {
+        if (command instanceof Command) {
+            histogram((Command) command).record(nanos);
+        } else {
+            counters(command).histogram.record(nanos);
+        }
+    }
+
+    /**
+     * 记录一次命令失败，读超时单独计数.
+     *
+     * @param command 命令
+     * @param e       异常
+     */
+    void recordError(final ProtocolCommand command, final Throwable e) {
+        boolean timeout = false;
+        for (Throwable cause = e; cause != null && !timeout; cause = cause.getCause()) {
+            timeout = cause instanceof SocketTimeoutException;
+        }
+        if (command instanceof Command) {
+            (timeout ? timeouts : errors).incrementAndGet(((Command) command).ordinal());
+        } else {
+            final Counters counters = counters(command);
+            (timeout ? counters.timeouts : counters.errors).increment();
+        }
+    }
+
+    /**
+     * 清空所有统计，便于按时间段观察.
+     */
+    public void reset() {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            final LatencyHistogram histogram = histograms.get(i);
+            if (histogram != null) {
+                histogram.reset();
+            }
+            errors.set(i, 0);
+            timeouts.set(i, 0);
+        }
+        for (Counters counters : others.values()) {
+            counters.histogram.reset();
+            counters.errors.reset();
+            counters.timeouts.reset();
+        }
+    }
+
+    /**
+     * 生成统计快照.
+     *
+     * @param pools 需要展示状态的连接池
+     * @return 快照
+     */
+    Snapshot snapshot(final Map<String, Pool<Jedis>> pools) {
+        final Snapshot snapshot = new Snapshot();
+        for (int i = 0; i < COMMANDS.length; i++) {
+            final LatencyHistogram histogram = histograms.get(i);
+            if (histogram == null && errors.get(i) == 0 && timeouts.get(i) == 0) {
+                continue;
+            }
+            snapshot.getCommands().put(COMMANDS[i].name(), commandStats(histogram, errors.get(i), timeouts.get(i)));
+        }
+        for (Map.Entry<ProtocolCommand, Counters> entry : others.entrySet()) {
+            final Counters counters = entry.getValue();
+            snapshot.getCommands().put(SafeEncoder.encode(entry.getKey().getRaw()),
+                    commandStats(counters.histogram, counters.errors.sum(), counters.timeouts.sum()));
+        }
+        for (Map.Entry<String, Pool<Jedis>> entry : pools.entrySet()) {
+            final Pool<Jedis> pool = entry.getValue();
+            final PoolStats stats = new PoolStats();
+            stats.setActive(pool.getNumActive());
+            stats.setIdle(pool.getNumIdle());
+            stats.setWaiters(pool.getNumWaiters());
+            stats.setMeanBorrowWaitMillis(pool.getMeanBorrowWaitTimeMillis());
+            stats.setMaxBorrowWaitMillis(pool.getMaxBorrowWaitTimeMillis());
+            snapshot.getPools().put(entry.getKey(), stats);
+        }
+        return snapshot;
+    }
+
+    private static CommandStats commandStats(final LatencyHistogram histogram, final long errors,
+                                             final long timeouts) {
+        final CommandStats stats = new CommandStats();
+        stats.setErrors(errors);
+        stats.setTimeouts(timeouts);
+        if (histogram != null && histogram.count() > 0) {
+            stats.setCount(histogram.count());
+            stats.setMeanMicros(histogram.totalNanos() / histogram.count() / 1000.0);
+            stats.setP50Micros(toMicros(histogram.percentile(0.5)));
+            stats.setP99Micros(toMicros(histogram.percentile(0.99)));
+            stats.setP999Micros(toMicros(histogram.percentile(0.999)));
+            stats.setMaxMicros(toMicros(histogram.maxNanos()));
+        }
+        return stats;
+    }
+
+    private Counters counters(final ProtocolCommand command) {
+        final Counters counters = others.get(command);
+        return counters != null ? counters : others.computeIfAbsent(command, c -> new Counters());
+    }
+
+    private LatencyHistogram histogram(final Command command) {
+        final int ordinal = command.ordinal();
+        LatencyHistogram histogram = histograms.get(ordinal);
+        if (histogram == null) {
+            histograms.compareAndSet(ordinal, null, new LatencyHistogram());
+            histogram = histograms.get(ordinal);
+        }
+        return histogram;
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Protocol.Command以外的命令的计数.
+     */
+    private static final class Counters {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder timeouts = new LongAdder();
+    }
+
+    /**
+     * 统计快照.
+     */
+    @Data
+    public static class Snapshot {
+        /**
+         * 命令名到统计的映射，按命令名排序.
+         */
+        private Map<String, CommandStats> commands = new TreeMap<>();
+        /**
+         * 连接池名称到状态的映射.
+         */
+        private Map<String, PoolStats> pools = new LinkedHashMap<>();
+    }
+
+    /**
+     * 单个命令的统计，耗时单位微秒，包含等待连接和自动管道攒批的时间.
+     */
+    @Data
+    public static class CommandStats {
+        private long count;
+        private long errors;
+        private long timeouts;
+        private double meanMicros;
+        private long p50Micros;
+        private long p99Micros;
+        private long p999Micros;
+        private long maxMicros;
+    }
+
+    /**
+     * 连接池状态，借连接等待时间由commons-pool统计.
+     */
+    @Data
+    public static class PoolStats {
+        private int active;
+        private int idle;
+        private int waiters;
+        private long meanBorrowWaitMillis;
+        private long maxBorrowWaitMillis;
+    }
+}
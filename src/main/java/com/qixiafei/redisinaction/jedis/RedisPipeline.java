@@ -0,0 +1,249 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <P>Description: 带自动flush的管道，由{@link RedisClient#pipelined}创建.
+ * 累计命令数或估算的请求字节数达到上限时自动sync，避免一个管道在客户端和服务端缓冲过多命令与回复；
+ * 所有命令的结果按添加顺序收集，执行结束后统一返回. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/21 10:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class RedisPipeline {
+
+    /**
+     * 通过{@link #add(RedisClient.PipelineAction)}添加的命令无法得知参数大小，按这个值估算.
+     */
+    private static final long DEFAULT_COMMAND_BYTES = 64;
+
+    /**
+     * RESP协议中每个参数的额外开销（长度前缀和换行）.
+     */
+    private static final int ARG_OVERHEAD = 8;
+
+    private final Pipeline pipeline;
+
+    private final int maxCommands;
+
+    private final long maxBytes;
+
+    private final boolean collectResults;
+
+    private final List<Response<?>> responses = new ArrayList<>();
+
+    private int pendingCommands = 0;
+
+    private long pendingBytes = 0;
+
+    RedisPipeline(final Pipeline pipeline, final int maxCommands, final long maxBytes, final boolean collectResults) {
+        this.pipeline = pipeline;
+        this.maxCommands = maxCommands;
+        this.maxBytes = maxBytes;
+        this.collectResults = collectResults;
+    }
+
+    /**
+     * 添加任意管道命令，按{@value #DEFAULT_COMMAND_BYTES}字节估算大小.
+     *
+     * @param action 管道命令，例如pipeline -> pipeline.pfadd(key, element)
+     * @return 命令结果，所在批次sync之后可用
+     */
+    public <T> Response<T> add(final RedisClient.PipelineAction<T> action) {
+        return add(action, DEFAULT_COMMAND_BYTES);
+    }
+
+    /**
+     * 添加任意管道命令.
+     *
+     * @param action 管道命令
+     * @param bytes  估算的请求字节数
+     * @return 命令结果，所在批次sync之后可用
+     */
+    public <T> Response<T> add(final RedisClient.PipelineAction<T> action, final long bytes) {
+        final Response<T> response = action.doInPipeline(pipeline);
+        if (collectResults) {
+            responses.add(response);
+        }
+        pendingCommands++;
+        pendingBytes += bytes;
+        if (pendingCommands >= maxCommands || pendingBytes >= maxBytes) {
+            flush();
+        }
+        return response;
+    }
+
+    // ==== 常用命令 start ===========================
+
+    public Response<String> get(final String key) {
+        return add(p -> p.get(key), size(key));
+    }
+
+    public Response<String> set(final String key, final String value) {
+        return add(p -> p.set(key, value), size(key, value));
+    }
+
+    public Response<String> setExpire(final String key, final String value, final int expiredSeconds) {
+        return add(p -> p.setex(key, expiredSeconds, value), size(key, value) + ARG_OVERHEAD);
+    }
+
+    public Response<Long> incr(final String key) {
+        return add(p -> p.incr(key), size(key));
+    }
+
+    public Response<Long> del(final String... keys) {
+        return add(p -> p.del(keys), size(keys));
+    }
+
+    public Response<Long> expire(final String key, final int expiredSeconds) {
+        return add(p -> p.expire(key, expiredSeconds), size(key) + ARG_OVERHEAD);
+    }
+
+    public Response<String> hget(final String key, final String field) {
+        return add(p -> p.hget(key, field), size(key, field));
+    }
+
+    public Response<Map<String, String>> hgetAll(final String key) {
+        return add(p -> p.hgetAll(key), size(key));
+    }
+
+    public Response<Long> hset(final String key, final String field, final String value) {
+        return add(p -> p.hset(key, field, value), size(key, field, value));
+    }
+
+    /**
+     * 一条HSET设置多个field，需要redis 4.0以上.
+     */
+    public Response<Long> hset(final String key, final Map<String, String> hash) {
+        long bytes = size(key);
+        for (Map.Entry<String, String> entry : hash.entrySet()) {
+            bytes += size(entry.getKey(), entry.getValue());
+        }
+        return add(p -> p.hset(key, hash), bytes);
+    }
+
+    public Response<Long> hdel(final String key, final String... fields) {
+        return add(p -> p.hdel(key, fields), size(key) + size(fields));
+    }
+
+    public Response<Long> hsetnx(final String key, final String field, final String value) {
+        return add(p -> p.hsetnx(key, field, value), size(key, field, value));
+    }
+
+    public Response<Long> hlen(final String key) {
+        return add(p -> p.hlen(key), size(key));
+    }
+
+    public Response<Long> lpush(final String key, final String... values) {
+        return add(p -> p.lpush(key, values), size(key) + size(values));
+    }
+
+    public Response<Long> rpush(final String key, final String... values) {
+        return add(p -> p.rpush(key, values), size(key) + size(values));
+    }
+
+    public Response<Long> lrem(final String key, final long count, final String value) {
+        return add(p -> p.lrem(key, count, value), size(key, value) + ARG_OVERHEAD);
+    }
+
+    public Response<String> ltrim(final String key, final long start, final long end) {
+        return add(p -> p.ltrim(key, start, end), size(key) + 2 * ARG_OVERHEAD);
+    }
+
+    public Response<List<String>> lrange(final String key, final long start, final long end) {
+        return add(p -> p.lrange(key, start, end), size(key) + 2 * ARG_OVERHEAD);
+    }
+
+    public Response<Long> llen(final String key) {
+        return add(p -> p.llen(key), size(key));
+    }
+
+    public Response<String> rpoplpush(final String srcKey, final String destKey) {
+        return add(p -> p.rpoplpush(srcKey, destKey), size(srcKey, destKey));
+    }
+
+    public Response<Long> sadd(final String key, final String... members) {
+        return add(p -> p.sadd(key, members), size(key) + size(members));
+    }
+
+    public Response<Long> srem(final String key, final String... members) {
+        return add(p -> p.srem(key, members), size(key) + size(members));
+    }
+
+    public Response<Long> zadd(final String key, final double score, final String member) {
+        return add(p -> p.zadd(key, score, member), size(key, member) + ARG_OVERHEAD);
+    }
+
+    /**
+     * 一条ZADD添加多个member.
+     */
+    public Response<Long> zadd(final String key, final Map<String, Double> scoreMembers) {
+        long bytes = size(key);
+        for (String member : scoreMembers.keySet()) {
+            bytes += size(member) + ARG_OVERHEAD;
+        }
+        return add(p -> p.zadd(key, scoreMembers), bytes);
+    }
+
+    public Response<Long> zrem(final String key, final String... members) {
+        return add(p -> p.zrem(key, members), size(key) + size(members));
+    }
+
+    public Response<Long> zremRangeByRank(final String key, final long start, final long stop) {
+        return add(p -> p.zremrangeByRank(key, start, stop), size(key) + 2 * ARG_OVERHEAD);
+    }
+
+    public Response<Set<String>> zrange(final String key, final long start, final long stop) {
+        return add(p -> p.zrange(key, start, stop), size(key) + 2 * ARG_OVERHEAD);
+    }
+
+    // ==== 常用命令 end ===========================
+
+    /**
+     * 立即发送已缓冲的命令并读取回复.
+     */
+    public void flush() {
+        if (pendingCommands == 0) {
+            return;
+        }
+        pipeline.sync();
+        pendingCommands = 0;
+        pendingBytes = 0;
+    }
+
+    /**
+     * flush剩余命令，按添加顺序返回结果，出错的命令对应位置是JedisDataException.
+     */
+    List<Object> results() {
+        flush();
+        final List<Object> results = new ArrayList<>(responses.size());
+        for (Response<?> response : responses) {
+            try {
+                results.add(response.get());
+            } catch (JedisDataException e) {
+                results.add(e);
+            }
+        }
+        return results;
+    }
+
+    private static long size(final String... args) {
+        long bytes = 0;
+        for (String arg : args) {
+            bytes += (arg == null ? 0 : arg.length()) + ARG_OVERHEAD;
+        }
+        return bytes;
+    }
+}
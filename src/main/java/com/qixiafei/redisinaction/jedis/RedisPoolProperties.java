@@ -63,6 +63,66 @@ public class RedisPoolProperties {
      */
     private SentinelConfig sentinel;
 
+    /**
+     * 集群配置.
+     */
+    private ClusterConfig cluster;
+
+    /**
+     * 客户端分片配置.
+     */
+    private ShardedConfig sharded;
+
+    /**
+     * 自动管道配置.
+     */
+    private AutoPipeliningConfig autoPipelining = new AutoPipeliningConfig();
+
+    /**
+     * 异步门面配置.
+     */
+    private AsyncConfig async = new AsyncConfig();
+
+    /**
+     * 近端缓存配置.
+     */
+    private NearCacheConfig nearCache = new NearCacheConfig();
+
+    /**
+     * 字符串value透明压缩配置.
+     */
+    private CompressionConfig compression = new CompressionConfig();
+
+    /**
+     * 订阅管理配置.
+     */
+    private SubscriptionConfig subscription = new SubscriptionConfig();
+
+    /**
+     * 阻塞命令专用连接池配置.
+     */
+    private BlockingConfig blocking = new BlockingConfig();
+
+    /**
+     * 启动时是否用SCRIPT LOAD预加载已注册的lua脚本，关闭时首次执行才加载.
+     */
+    private boolean preloadScripts = true;
+
+    /**
+     * 批量接口（mget、mset、批量hgetAll等）每个分片的key数量.
+     */
+    private int batchSize = 500;
+
+    /**
+     * 自动flush管道每批最多命令数.
+     */
+    private int pipelineMaxCommands = 1000;
+
+    /**
+     * 自动flush管道每批最多估算字节数.
+     */
+    private long pipelineMaxBytes = 1024 * 1024;
+
     @Data
     public static class StandaloneConfig {
         /**
@@ -88,6 +148,198 @@ public class RedisPoolProperties {
          * 哨兵地址,用英文逗号分隔，例：127.0.0.1:7501,127.0.0.1:7502.
          */
         private String nodes;
+
+        /**
+         * 只读命令的节点选择策略：master、replica、replica-preferred.
+         */
+        private ReadPreference readPreference = ReadPreference.MASTER;
+
+        /**
+         * 从哨兵刷新从节点列表的间隔（秒）.
+         */
+        private int replicaRefreshSeconds = 10;
+    }
+
+    @Data
+    public static class ClusterConfig {
+
+        /**
+         * 集群种子节点地址,用英文逗号分隔，例：127.0.0.1:7001,127.0.0.1:7002.
+         */
+        private String nodes;
+
+        /**
+         * 单个命令最多跟随MOVED/ASK重定向的次数.
+         */
+        private int maxRedirections = 5;
+
+        /**
+         * 多key命令按slot拆分后并行执行的线程数.
+         */
+        private int parallelism = 8;
+    }
+
+    @Data
+    public static class ShardedConfig {
+
+        /**
+         * 分片节点地址,用英文逗号分隔，可以带权重，例：127.0.0.1:6379,127.0.0.1:6380:2.
+         */
+        private String nodes;
+
+        /**
+         * 权重为1的节点在一致性hash环上的虚拟节点数.
+         */
+        private int virtualNodes = 160;
+
+        /**
+         * 多key命令按节点拆分后并行执行的线程数.
+         */
+        private int parallelism = 8;
+    }
+
+    @Data
+    public static class AutoPipeliningConfig {
+
+        /**
+         * 是否开启自动管道，开启后并发的命令会攒批在共享连接上发送.
+         */
+        private boolean enabled = false;
+
+        /**
+         * 一批最多发送的命令数.
+         */
+        private int flushSize = 128;
+
+        /**
+         * 攒批最长等待时间（微秒），0代表不等待，有多少发多少.
+         */
+        private long flushIntervalMicros = 0;
+
+        /**
+         * 共享连接数.
+         */
+        private int connections = 1;
+    }
+
+    @Data
+    public static class AsyncConfig {
+
+        /**
+         * 一批最多发送的命令数.
+         */
+        private int flushSize = 128;
+
+        /**
+         * 异步命令多路复用的共享连接数.
+         */
+        private int connections = 2;
+    }
+
+    @Data
+    public static class NearCacheConfig {
+
+        /**
+         * 是否开启近端缓存.
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最大条目数.
+         */
+        private int maxSize = 10000;
+
+        /**
+         * 淘汰策略：lru、lfu.
+         */
+        private NearCache.EvictionPolicy policy = NearCache.EvictionPolicy.LRU;
+
+        /**
+         * 条目最长存活时间（毫秒），0代表不限制.
+         */
+        private long ttlMillis = 10000;
+
+        /**
+         * 失效消息频道.
+         */
+        private String channel = "__near_cache_invalidate__";
+    }
+
+    @Data
+    public static class CompressionConfig {
+
+        /**
+         * 是否开启压缩.
+         */
+        private boolean enabled = false;
+
+        /**
+         * value的UTF-8字节数达到该值才压缩.
+         */
+        private int thresholdBytes = 1024;
+
+        /**
+         * Deflate压缩级别，1最快，9压缩率最高.
+         */
+        private int level = 1;
+
+        /**
+         * 开启压缩的key前缀.
+         */
+        private String[] prefixes = {"cache:", "inv:"};
+    }
+
+    @Data
+    public static class SubscriptionConfig {
+
+        /**
+         * 消息处理器线程数.
+         */
+        private int threads = 4;
+
+        /**
+         * 每个订阅的消息队列长度.
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 队列满时的策略：drop、block.
+         */
+        private SubscriptionManager.OverflowPolicy overflowPolicy = SubscriptionManager.OverflowPolicy.DROP;
+
+        /**
+         * block策略下读取线程最长等待时间（毫秒），超时后丢弃.
+         */
+        private long blockMillis = 100;
+
+        /**
+         * 订阅连接心跳间隔（毫秒），0代表不检测.
+         */
+        private long pingIntervalMillis = 30000;
+    }
+
+    @Data
+    public static class BlockingConfig {
+
+        /**
+         * 是否为blpop、brpop、brpopLpush使用独立的连接池.
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大连接数，即同时阻塞等待的消费者上限.
+         */
+        private int maxTotal = 8;
+
+        /**
+         * 最大空闲连接数.
+         */
+        private int maxIdle = 8;
+
+        /**
+         * 读超时在阻塞时间之上额外增加的余量（毫秒）.
+         */
+        private int timeoutMarginMillis = 1000;
     }
 
 
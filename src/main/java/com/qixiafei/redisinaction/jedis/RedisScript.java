@@ -0,0 +1,67 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <P>Description: 一段lua脚本，sha1在本地计算，与SCRIPT LOAD的返回值一致.
+ * 脚本声明为常量后通过{@link RedisClient#registerScript(RedisScript)}注册，再用{@link RedisClient#evalsha}执行. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/20 10:15</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Getter
+public final class RedisScript {
+
+    /**
+     * 脚本名称，仅用于日志.
+     */
+    private final String name;
+
+    private final String source;
+
+    private final String sha1;
+
+    private RedisScript(final String name, final String source) {
+        this.name = name;
+        this.source = source;
+        this.sha1 = sha1Hex(source);
+    }
+
+    /**
+     * 声明一段脚本.
+     *
+     * @param name   脚本名称
+     * @param source lua源码
+     * @return 脚本
+     */
+    public static RedisScript of(final String name, final String source) {
+        return new RedisScript(name, source);
+    }
+
+    private static String sha1Hex(final String source) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JVM不支持SHA-1", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + sha1 + ")";
+    }
+}
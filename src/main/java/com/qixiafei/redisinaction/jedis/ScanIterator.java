@@ -0,0 +1,172 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <P>Description: 基于SCAN系列命令游标的惰性迭代器，每次只向redis取一页，内存占用与总量无关.
+ * prefetch大于0时由后台线程提前拉取最多prefetch页，消费慢时后台线程阻塞等待，不会无限堆积.
+ * 划重点：SCAN只保证遍历开始前就存在且一直存在的元素至少返回一次，元素可能重复返回，调用方需自行去重或保证处理幂等.
+ * 用完务必close，推荐try-with-resources. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/20 14:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class ScanIterator<T> implements Iterator<T>, Closeable {
+
+    /**
+     * 后台线程拉取完毕的标记.
+     */
+    private static final Object END = new Object();
+
+    private final Function<String, ScanResult<T>> fetcher;
+
+    /**
+     * 预取的页，同步模式为null.
+     */
+    private final BlockingQueue<Object> pages;
+
+    private final Future<?> producer;
+
+    private String cursor = ScanParams.SCAN_POINTER_START;
+
+    private boolean finished = false;
+
+    private Iterator<T> current = Collections.emptyIterator();
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param fetcher  根据游标取一页
+     * @param prefetch 后台最多预取的页数，0代表不预取，在调用线程上按需拉取
+     * @param executor 预取使用的线程池
+     */
+    ScanIterator(final Function<String, ScanResult<T>> fetcher, final int prefetch, final ExecutorService executor) {
+        this.fetcher = fetcher;
+        if (prefetch > 0) {
+            this.pages = new ArrayBlockingQueue<>(prefetch);
+            this.producer = executor.submit(this::prefetch);
+        } else {
+            this.pages = null;
+            this.producer = null;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        // 关闭后当前页剩余的元素也不再返回
+        if (closed) {
+            return false;
+        }
+        while (!current.hasNext()) {
+            if (!nextPage()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * 转为顺序流，流关闭时同时关闭迭代器.
+     *
+     * @return 流
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        current = Collections.emptyIterator();
+        if (producer != null) {
+            producer.cancel(true);
+            pages.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean nextPage() {
+        if (closed) {
+            return false;
+        }
+        if (pages == null) {
+            if (finished) {
+                return false;
+            }
+            final ScanResult<T> page = fetcher.apply(cursor);
+            cursor = page.getCursor();
+            finished = page.isCompleteIteration();
+            current = page.getResult().iterator();
+            return true;
+        }
+        final Object page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JedisException("等待SCAN结果时被中断", e);
+        }
+        if (page == END) {
+            closed = true;
+            return false;
+        }
+        if (page instanceof RuntimeException) {
+            closed = true;
+            throw (RuntimeException) page;
+        }
+        current = ((List<T>) page).iterator();
+        return true;
+    }
+
+    private void prefetch() {
+        try {
+            String next = ScanParams.SCAN_POINTER_START;
+            ScanResult<T> page;
+            do {
+                page = fetcher.apply(next);
+                pages.put(page.getResult());
+                next = page.getCursor();
+            } while (!page.isCompleteIteration() && !closed);
+            pages.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            try {
+                pages.put(e);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
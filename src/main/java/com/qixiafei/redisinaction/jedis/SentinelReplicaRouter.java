@@ -0,0 +1,212 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <P>Description: 哨兵模式的读写分离路由，写命令走master，只读命令按ReadPreference轮询发往从节点.
+ * 从节点列表通过哨兵定时发现，每个从节点单独维护一个连接池.
+ * 划重点：从节点存在复制延迟，刚写入的数据立即读取可能读不到. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/16 16:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+class SentinelReplicaRouter extends PoolRouter {
+
+    private static final String ADDRS_SPLITOR = ",";
+
+    private final String masterName;
+
+    private final List<HostAndPort> sentinels = new ArrayList<>();
+
+    private final GenericObjectPoolConfig config;
+
+    private final int connectionTimeOut;
+
+    private final int soTimeOut;
+
+    private final String password;
+
+    private final ReadPreference readPreference;
+
+    /**
+     * 从节点地址(host:port)到连接池的映射，只在刷新线程里修改.
+     */
+    private final Map<String, JedisPool> replicaPools = new HashMap<>();
+
+    /**
+     * 当前可用的从节点连接池，整体替换保证可见性.
+     */
+    private volatile List<JedisPool> replicas = Collections.emptyList();
+
+    /**
+     * 上一次刷新时下线的从节点连接池. 读线程可能还拿着旧的从节点列表，不能立即关闭，留到下一次刷新时再关.
+     */
+    private final List<JedisPool> retired = new ArrayList<>();
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    private final ScheduledExecutorService refresher;
+
+    SentinelReplicaRouter(final Pool<Jedis> masterPool, final String masterName, final String sentinelAddrs,
+                          final GenericObjectPoolConfig config, final int connectionTimeOut, final int soTimeOut,
+                          final String password, final ReadPreference readPreference, final int refreshSeconds) {
+        super(masterPool);
+        this.masterName = masterName;
+        for (String addr : sentinelAddrs.split(ADDRS_SPLITOR)) {
+            sentinels.add(HostAndPort.parseString(addr.trim()));
+        }
+        this.config = config;
+        this.connectionTimeOut = connectionTimeOut;
+        this.soTimeOut = soTimeOut;
+        this.password = password;
+        this.readPreference = readPreference;
+        refreshReplicas();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("redis replica refresh t").build());
+        refresher.scheduleWithFixedDelay(this::refreshReplicas, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean routesReads() {
+        return readPreference != ReadPreference.MASTER;
+    }
+
+    @Override
+    public <T> T executeRead(final String key, final RedisClient.JedisAction<T> action) {
+        if (readPreference == ReadPreference.MASTER) {
+            return execute(key, action);
+        }
+        final List<JedisPool> current = replicas;
+        JedisException last = null;
+        // 最多把每个从节点都试一遍；连接异常、连接池耗尽或已关闭都换下一个节点，命令本身的错误直接抛出
+        for (int i = 0, size = current.size(); i < size; i++) {
+            final JedisPool replica = current.get(Math.abs(roundRobin.getAndIncrement() % size));
+            try (final Jedis resource = replica.getResource()) {
+                return action.doInJedis(resource);
+            } catch (JedisDataException e) {
+                throw e;
+            } catch (JedisException e) {
+                log.warn("从节点不可用，尝试下一个节点", e);
+                last = e;
+            }
+        }
+        if (readPreference == ReadPreference.REPLICA_PREFERRED) {
+            return execute(key, action);
+        }
+        throw new JedisException("没有可用的从节点", last);
+    }
+
+    @Override
+    public Map<String, Pool<Jedis>> pools() {
+        final Map<String, Pool<Jedis>> pools = super.pools();
+        synchronized (replicaPools) {
+            for (Map.Entry<String, JedisPool> entry : replicaPools.entrySet()) {
+                pools.put("replica " + entry.getKey(), entry.getValue());
+            }
+        }
+        return pools;
+    }
+
+    @Override
+    public Map<String, Pool<Jedis>> masterPools() {
+        return super.pools();
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        synchronized (replicaPools) {
+            for (JedisPool pool : replicaPools.values()) {
+                pool.close();
+            }
+            replicaPools.clear();
+            replicas = Collections.emptyList();
+            retired.forEach(JedisPool::close);
+            retired.clear();
+        }
+        super.close();
+    }
+
+    /**
+     * 询问哨兵当前健康的从节点，新增的建池，下线的池先移出列表，下一次刷新时再关闭.
+     */
+    private void refreshReplicas() {
+        synchronized (replicaPools) {
+            // 距离移出已经过了一个刷新周期，读线程早已换用新的列表
+            retired.forEach(JedisPool::close);
+            retired.clear();
+        }
+        final List<HostAndPort> found = discover();
+        if (found == null) {
+            return;
+        }
+        synchronized (replicaPools) {
+            final Map<String, JedisPool> alive = new HashMap<>();
+            for (HostAndPort node : found) {
+                JedisPool pool = replicaPools.remove(node.toString());
+                if (pool == null) {
+                    log.info("发现从节点{}", node);
+                    pool = new JedisPool(config, node.getHost(), node.getPort(), connectionTimeOut, soTimeOut,
+                            password, 0, null);
+                }
+                alive.put(node.toString(), pool);
+            }
+            for (Map.Entry<String, JedisPool> gone : replicaPools.entrySet()) {
+                log.info("从节点{}已下线", gone.getKey());
+                retired.add(gone.getValue());
+            }
+            replicaPools.clear();
+            replicaPools.putAll(alive);
+            replicas = Collections.unmodifiableList(new ArrayList<>(alive.values()));
+        }
+    }
+
+    /**
+     * 依次询问哨兵，返回第一个应答的哨兵给出的健康从节点.
+     *
+     * @return 从节点地址，所有哨兵都无法访问时返回null
+     */
+    private List<HostAndPort> discover() {
+        for (HostAndPort sentinel : sentinels) {
+            try (final Jedis jedis = new Jedis(sentinel.getHost(), sentinel.getPort(), connectionTimeOut, soTimeOut)) {
+                final List<HostAndPort> result = new ArrayList<>();
+                for (Map<String, String> replica : jedis.sentinelSlaves(masterName)) {
+                    final String flags = replica.getOrDefault("flags", "");
+                    if (flags.contains("s_down") || flags.contains("o_down") || flags.contains("disconnected")
+                            || !"ok".equals(replica.get("master-link-status"))) {
+                        continue;
+                    }
+                    result.add(new HostAndPort(replica.get("ip"), Integer.parseInt(replica.get("port"))));
+                }
+                return result;
+            } catch (JedisException e) {
+                log.warn("从哨兵{}获取从节点失败，尝试下一个哨兵", sentinel, e);
+            }
+        }
+        return null;
+    }
+}
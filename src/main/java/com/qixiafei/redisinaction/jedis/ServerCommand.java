@@ -0,0 +1,31 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * <P>Description: jedis 3.0还不支持的服务器命令，通过Client.sendCommand直接发送. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/26 15:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+enum ServerCommand implements ProtocolCommand {
+
+    MEMORY;
+
+    private final byte[] raw;
+
+    ServerCommand() {
+        this.raw = SafeEncoder.encode(name());
+    }
+
+    @Override
+    public byte[] getRaw() {
+        return raw;
+    }
+}
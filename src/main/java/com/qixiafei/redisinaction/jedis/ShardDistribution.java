@@ -0,0 +1,64 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Description: key在各节点上的分布，由{@link RedisClient#keyDistribution}生成，用于发现分片倾斜. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/25 11:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class ShardDistribution {
+
+    /**
+     * 统计的key匹配模式，为null代表全部key.
+     */
+    private String match;
+
+    private long total;
+
+    /**
+     * 各节点中实际比例与期望比例之比的最大值，1代表完全均匀.
+     */
+    private double maxSkew;
+
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * 单个节点的分布.
+     */
+    @Data
+    public static class Node {
+
+        /**
+         * 节点名称(host:port).
+         */
+        private String name;
+
+        private long keys;
+
+        /**
+         * 实际比例.
+         */
+        private double share;
+
+        /**
+         * 期望比例，分片模式下为hash环上的理论比例，其他模式按节点数平分.
+         */
+        private double expectedShare;
+
+        /**
+         * share / expectedShare.
+         */
+        private double skew;
+    }
+}
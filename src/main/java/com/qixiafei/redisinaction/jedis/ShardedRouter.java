@@ -0,0 +1,168 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.Hashing;
+import redis.clients.jedis.util.JedisClusterHashTagUtil;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <P>Description: 多个独立redis节点的客户端分片路由，用一致性hash环决定key所属节点.
+ * 每个节点按权重在环上放virtualNodes*weight个虚拟节点，增删节点时只有相邻区间的key迁移.
+ * 与集群一样只按hash tag计算分布，例如"cart:{token}"和"view:{token}"落在同一个节点上；
+ * 多key命令按节点拆分后并行执行，与key无关的命令（info、发布订阅等）固定发往第一个节点. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/25 10:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+class ShardedRouter implements JedisRouter {
+
+    private static final String ADDRS_SPLITOR = ",";
+
+    private static final String PART_SPLITOR = ":";
+
+    /**
+     * 节点名称(host:port)到连接池的映射，按配置顺序.
+     */
+    private final Map<String, JedisPool> nodes = new LinkedHashMap<>();
+
+    /**
+     * hash环，虚拟节点的hash值到节点名称的映射.
+     */
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    private final String firstNode;
+
+    /**
+     * 多key命令按节点拆分后并行执行的线程池.
+     */
+    private final ExecutorService groupExecutor;
+
+    /**
+     * @param addrs        节点地址，多个地址之间用英文逗号分隔，格式为host:port或host:port:weight，权重默认为1
+     * @param virtualNodes 权重为1的节点在环上的虚拟节点数
+     * @param parallelism  多key命令按节点拆分后并行执行的线程数
+     */
+    ShardedRouter(final String addrs, final GenericObjectPoolConfig config, final int connectionTimeOut,
+                  final int soTimeOut, final String password, final int virtualNodes, final int parallelism) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes必须大于0");
+        }
+        for (String addr : addrs.split(ADDRS_SPLITOR)) {
+            final String[] parts = addr.trim().split(PART_SPLITOR);
+            if (parts.length != 2 && parts.length != 3) {
+                throw new IllegalArgumentException("分片节点格式应为host:port或host:port:weight：" + addr);
+            }
+            final String name = parts[0] + PART_SPLITOR + parts[1];
+            final int weight = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+            if (weight <= 0) {
+                throw new IllegalArgumentException("分片节点权重必须大于0：" + addr);
+            }
+            if (nodes.containsKey(name)) {
+                throw new IllegalArgumentException("分片节点重复：" + name);
+            }
+            nodes.put(name, new JedisPool(config, parts[0], Integer.parseInt(parts[1]), connectionTimeOut,
+                    soTimeOut, password, 0, null));
+            for (int i = 0; i < virtualNodes * weight; i++) {
+                ring.put(Hashing.MURMUR_HASH.hash("SHARD-" + name + "-NODE-" + i), name);
+            }
+        }
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个分片节点");
+        }
+        this.firstNode = nodes.keySet().iterator().next();
+        this.groupExecutor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("redis shard group t-%d").build());
+    }
+
+    /**
+     * 计算key所属节点，有hash tag时只按tag计算.
+     *
+     * @param key key，为null时返回第一个节点
+     * @return 节点名称(host:port)
+     */
+    String nodeOf(final String key) {
+        if (key == null) {
+            return firstNode;
+        }
+        final Map.Entry<Long, String> entry = ring.ceilingEntry(
+                Hashing.MURMUR_HASH.hash(JedisClusterHashTagUtil.getHashTag(key)));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    @Override
+    public Jedis getResource(final String key) {
+        return nodes.get(nodeOf(key)).getResource();
+    }
+
+    /**
+     * 按节点分组，同一组的key可以放在同一条多key命令或同一个管道里.
+     */
+    @Override
+    public List<String[]> partition(final String[] keys) {
+        if (nodes.size() == 1) {
+            return Collections.singletonList(keys);
+        }
+        final Map<String, List<String>> byNode = new LinkedHashMap<>();
+        for (String key : keys) {
+            byNode.computeIfAbsent(nodeOf(key), node -> new ArrayList<>()).add(key);
+        }
+        final List<String[]> groups = new ArrayList<>(byNode.size());
+        for (List<String> group : byNode.values()) {
+            groups.add(group.toArray(new String[0]));
+        }
+        return groups;
+    }
+
+    @Override
+    public <T> List<T> executeGroups(final List<String[]> groups, final RedisClient.GroupAction<T> action) {
+        return JedisRouter.executeInParallel(groupExecutor, groups, action);
+    }
+
+    @Override
+    public Map<String, Pool<Jedis>> pools() {
+        return new LinkedHashMap<>(nodes);
+    }
+
+    /**
+     * 按每个虚拟节点负责的环上区间长度累加出各节点的理论比例.
+     */
+    @Override
+    public Map<String, Double> ownership() {
+        final Map<String, Double> owned = new LinkedHashMap<>();
+        for (String node : nodes.keySet()) {
+            owned.put(node, 0D);
+        }
+        // 第一个虚拟节点负责从最后一个虚拟节点绕回来的区间
+        double previous = (double) ring.lastKey() - Math.pow(2, 64);
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            owned.merge(point.getValue(), (point.getKey() - previous) / Math.pow(2, 64), Double::sum);
+            previous = point.getKey();
+        }
+        return owned;
+    }
+
+    @Override
+    public void close() {
+        groupExecutor.shutdown();
+        for (JedisPool pool : nodes.values()) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.qixiafei.redisinaction.jedis;
+
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * <P>Description: jedis 3.0还不支持的stream命令，通过Client.sendCommand直接发送. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 15:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+enum StreamCommand implements ProtocolCommand {
+
+    XADD, XLEN, XRANGE, XDEL, XTRIM, XGROUP, XREADGROUP, XACK, XPENDING, XCLAIM;
+
+    private final byte[] raw;
+
+    StreamCommand() {
+        this.raw = SafeEncoder.encode(name());
+    }
+
+    @Override
+    public byte[] getRaw() {
+        return raw;
+    }
+}
@@ -0,0 +1,30 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * <P>Description: stream中的一条消息. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 15:15</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class StreamEntry {
+
+    /**
+     * 消息id，形如1558684800000-0.
+     */
+    private String id;
+
+    /**
+     * 字段，保持写入顺序；XCLAIM或读取历史消息时消息已被删除则为null.
+     */
+    private Map<String, String> fields;
+}
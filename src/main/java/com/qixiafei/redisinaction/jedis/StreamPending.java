@@ -0,0 +1,35 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Data;
+
+/**
+ * <P>Description: 消费组中已投递未确认的一条消息，由XPENDING返回. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 15:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class StreamPending {
+
+    private String id;
+
+    /**
+     * 当前持有该消息的消费者.
+     */
+    private String consumer;
+
+    /**
+     * 距上次投递的毫秒数.
+     */
+    private long idleMillis;
+
+    /**
+     * 投递次数.
+     */
+    private long deliveries;
+}
@@ -0,0 +1,567 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: 订阅管理，所有channel和pattern的订阅共用一个长期持有的连接，可以在运行时增删.
+ * 读取线程只负责把消息放进各订阅自己的有界队列，处理器在共享线程池上执行，同一个订阅的消息按到达顺序串行处理；
+ * 队列满时按{@link OverflowPolicy}丢弃或有限等待，慢处理器只会积压或丢弃自己的消息.
+ * 连接断开或心跳超时后自动重连并重新订阅全部channel和pattern，断开期间发布的消息会丢失，这是redis发布订阅本身的语义. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 16:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class SubscriptionManager implements Closeable {
+
+    /**
+     * 一个订阅一次最多连续处理的消息数，处理完让出线程，避免繁忙的订阅饿死其他订阅.
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    private static final long RECONNECT_BACKOFF_MILLIS = 1000;
+
+    private final JedisRouter router;
+
+    private final int queueCapacity;
+
+    private final OverflowPolicy policy;
+
+    private final long blockMillis;
+
+    private final long pingIntervalMillis;
+
+    /**
+     * channel到订阅的映射.
+     */
+    private final Map<String, List<Subscription>> channels = new ConcurrentHashMap<>();
+
+    /**
+     * pattern到订阅的映射.
+     */
+    private final Map<String, List<Subscription>> patterns = new ConcurrentHashMap<>();
+
+    private final ExecutorService handlers;
+
+    private final ScheduledExecutorService watchdog;
+
+    private final Thread reader;
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder handlerErrors = new LongAdder();
+
+    private final LongAdder reconnects = new LongAdder();
+
+    /**
+     * 当前连接上的监听器，未连接时为null；对它的所有写操作都在this锁内进行.
+     */
+    private Listener listener;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param router             连接来源，读取线程从中借用一个连接长期持有
+     * @param threads            处理器线程数
+     * @param queueCapacity      每个订阅的消息队列长度
+     * @param policy             队列满时的策略
+     * @param blockMillis        BLOCK策略下最长等待时间（毫秒），超时后丢弃
+     * @param pingIntervalMillis 心跳间隔（毫秒），超过3个间隔没有任何回复视为连接失效，0代表不检测
+     */
+    SubscriptionManager(final JedisRouter router, final int threads, final int queueCapacity,
+                        final OverflowPolicy policy, final long blockMillis, final long pingIntervalMillis) {
+        this.router = router;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.blockMillis = blockMillis;
+        this.pingIntervalMillis = pingIntervalMillis;
+        this.handlers = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("redis pubsub handler t-%d").build());
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("redis pubsub watchdog").build());
+        if (pingIntervalMillis > 0) {
+            watchdog.scheduleWithFixedDelay(this::heartbeat, pingIntervalMillis, pingIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        this.reader = new Thread(this::readLoop, "redis pubsub reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * 订阅channel，同一个channel可以有多个处理器.
+     *
+     * @param channel channel
+     * @param handler 消息处理器
+     * @return 订阅，close即取消
+     */
+    public Subscription subscribe(final String channel, final MessageHandler handler) {
+        return add(channels, channel, false, handler);
+    }
+
+    /**
+     * 订阅所有匹配pattern的channel，pattern为redis的glob语法，如news.*.
+     *
+     * @param pattern pattern
+     * @param handler 消息处理器，参数中的channel为实际的channel
+     * @return 订阅，close即取消
+     */
+    public Subscription psubscribe(final String pattern, final MessageHandler handler) {
+        return add(patterns, pattern, true, handler);
+    }
+
+    /**
+     * 统计快照.
+     *
+     * @return 快照
+     */
+    public Stats stats() {
+        final Stats stats = new Stats();
+        long subscriptions = 0;
+        long backlog = 0;
+        for (Map<String, List<Subscription>> targets : Arrays.asList(channels, patterns)) {
+            for (List<Subscription> list : targets.values()) {
+                for (Subscription subscription : list) {
+                    subscriptions++;
+                    backlog += subscription.mailbox.size();
+                }
+            }
+        }
+        stats.setChannels(channels.size());
+        stats.setPatterns(patterns.size());
+        stats.setSubscriptions(subscriptions);
+        stats.setBacklog(backlog);
+        stats.setReceived(received.sum());
+        stats.setDropped(dropped.sum());
+        stats.setHandlerErrors(handlerErrors.sum());
+        stats.setReconnects(reconnects.sum());
+        synchronized (this) {
+            stats.setConnected(listener != null && listener.ready);
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            notifyAll();
+            if (listener != null) {
+                listener.disconnect();
+            }
+        }
+        reader.interrupt();
+        watchdog.shutdownNow();
+        handlers.shutdown();
+    }
+
+    private Subscription add(final Map<String, List<Subscription>> targets, final String target,
+                             final boolean pattern, final MessageHandler handler) {
+        if (closed) {
+            throw new IllegalStateException("订阅管理已关闭");
+        }
+        final Subscription subscription = new Subscription(target, pattern, handler);
+        // 在compute里添加，不会加到remove刚从map中移除的空列表里
+        targets.compute(target, (t, list) -> {
+            final List<Subscription> subscriptions = list == null ? new CopyOnWriteArrayList<>() : list;
+            subscriptions.add(subscription);
+            return subscriptions;
+        });
+        synchronized (this) {
+            // 唤醒等待订阅的读取线程
+            notifyAll();
+            reconcile();
+        }
+        return subscription;
+    }
+
+    private void remove(final Subscription subscription) {
+        final Map<String, List<Subscription>> targets = subscription.pattern ? patterns : channels;
+        targets.computeIfPresent(subscription.target, (t, list) -> {
+            list.remove(subscription);
+            return list.isEmpty() ? null : list;
+        });
+        synchronized (this) {
+            reconcile();
+        }
+    }
+
+    /**
+     * 让连接上实际订阅的channel和pattern与期望一致，先订阅新增的再取消多余的，尽量不让订阅数归零.
+     */
+    private void reconcile() {
+        final Listener current = listener;
+        if (current == null || !current.ready) {
+            return;
+        }
+        try {
+            final List<String> newChannels = missing(channels.keySet(), current.channels);
+            final List<String> newPatterns = missing(patterns.keySet(), current.patterns);
+            final List<String> oldChannels = missing(current.channels, channels.keySet());
+            final List<String> oldPatterns = missing(current.patterns, patterns.keySet());
+            if (!newChannels.isEmpty()) {
+                current.channels.addAll(newChannels);
+                current.subscribe(newChannels.toArray(new String[0]));
+            }
+            if (!newPatterns.isEmpty()) {
+                current.patterns.addAll(newPatterns);
+                current.psubscribe(newPatterns.toArray(new String[0]));
+            }
+            if (!oldChannels.isEmpty()) {
+                current.channels.removeAll(oldChannels);
+                current.unsubscribe(oldChannels.toArray(new String[0]));
+            }
+            if (!oldPatterns.isEmpty()) {
+                current.patterns.removeAll(oldPatterns);
+                current.punsubscribe(oldPatterns.toArray(new String[0]));
+            }
+        } catch (JedisException e) {
+            // 读取线程会收到同样的异常并重连
+            log.warn("更新订阅失败，等待重连后重新订阅", e);
+            current.disconnect();
+        }
+    }
+
+    private static List<String> missing(final Set<String> expected, final Set<String> actual) {
+        final List<String> missing = new ArrayList<>();
+        for (String target : expected) {
+            if (!actual.contains(target)) {
+                missing.add(target);
+            }
+        }
+        return missing;
+    }
+
+    private void readLoop() {
+        while (!closed) {
+            final String[] initialChannels;
+            final String[] initialPatterns;
+            synchronized (this) {
+                while (!closed && channels.isEmpty() && patterns.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                initialChannels = channels.keySet().toArray(new String[0]);
+                initialPatterns = patterns.keySet().toArray(new String[0]);
+            }
+            Jedis jedis = null;
+            try {
+                jedis = router.getResource(null);
+                final Listener current = new Listener(jedis, initialChannels, initialPatterns);
+                synchronized (this) {
+                    listener = current;
+                }
+                if (initialChannels.length > 0) {
+                    jedis.subscribe(current, initialChannels);
+                } else {
+                    jedis.psubscribe(current, initialPatterns);
+                }
+            } catch (JedisException e) {
+                if (closed) {
+                    return;
+                }
+                reconnects.increment();
+                log.warn("订阅连接断开，{}毫秒后重连", RECONNECT_BACKOFF_MILLIS, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_BACKOFF_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            } finally {
+                synchronized (this) {
+                    listener = null;
+                }
+                if (jedis != null) {
+                    // 订阅数归零退出时连接上可能还有未读的回复，断开后再归还，下次借出时会重新建立连接
+                    try {
+                        jedis.getClient().disconnect();
+                    } catch (JedisException e) {
+                        log.debug("断开订阅连接失败", e);
+                    }
+                    jedis.close();
+                }
+            }
+        }
+    }
+
+    private void heartbeat() {
+        synchronized (this) {
+            final Listener current = listener;
+            if (current == null || !current.ready) {
+                return;
+            }
+            if (System.currentTimeMillis() - current.lastActivity > pingIntervalMillis * 3) {
+                log.warn("订阅连接超过{}毫秒没有回复，断开重连", pingIntervalMillis * 3);
+                current.disconnect();
+                return;
+            }
+            try {
+                current.ping();
+            } catch (JedisException e) {
+                current.disconnect();
+            }
+        }
+    }
+
+    private void dispatch(final List<Subscription> subscriptions, final String channel, final String message) {
+        received.increment();
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(channel, message);
+        }
+    }
+
+    /**
+     * 一个连接上的监听器，回调都在读取线程执行.
+     */
+    private final class Listener extends JedisPubSub {
+
+        private final Jedis jedis;
+
+        /**
+         * 已经在这个连接上发出订阅的channel和pattern.
+         */
+        private final Set<String> channels;
+
+        private final Set<String> patterns;
+
+        /**
+         * 收到第一个订阅确认之后才能在其他线程上发送命令.
+         */
+        private volatile boolean ready = false;
+
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private Listener(final Jedis jedis, final String[] channels, final String[] patterns) {
+            this.jedis = jedis;
+            this.channels = new HashSet<>(Arrays.asList(channels));
+            // 只有pattern时由psubscribe一次订阅，否则pattern在第一个确认之后补订
+            this.patterns = channels.length == 0 ? new HashSet<>(Arrays.asList(patterns)) : new HashSet<>();
+        }
+
+        @Override
+        public void onSubscribe(final String channel, final int subscribedChannels) {
+            confirmed();
+        }
+
+        @Override
+        public void onPSubscribe(final String pattern, final int subscribedChannels) {
+            confirmed();
+        }
+
+        @Override
+        public void onPong(final String pattern) {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        @Override
+        public void onMessage(final String channel, final String message) {
+            lastActivity = System.currentTimeMillis();
+            dispatch(SubscriptionManager.this.channels.get(channel), channel, message);
+        }
+
+        @Override
+        public void onPMessage(final String pattern, final String channel, final String message) {
+            lastActivity = System.currentTimeMillis();
+            dispatch(SubscriptionManager.this.patterns.get(pattern), channel, message);
+        }
+
+        private void confirmed() {
+            lastActivity = System.currentTimeMillis();
+            if (!ready) {
+                ready = true;
+                synchronized (SubscriptionManager.this) {
+                    reconcile();
+                }
+            }
+        }
+
+        private void disconnect() {
+            try {
+                jedis.getClient().getSocket().close();
+            } catch (Exception e) {
+                log.debug("关闭订阅连接失败", e);
+            }
+        }
+    }
+
+    /**
+     * 一个处理器的订阅，持有自己的消息队列.
+     */
+    public final class Subscription implements Closeable {
+
+        private final String target;
+
+        private final boolean pattern;
+
+        private final MessageHandler handler;
+
+        private final ArrayBlockingQueue<String[]> mailbox = new ArrayBlockingQueue<>(queueCapacity);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private Subscription(final String target, final boolean pattern, final MessageHandler handler) {
+            this.target = target;
+            this.pattern = pattern;
+            this.handler = handler;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public boolean isPattern() {
+            return pattern;
+        }
+
+        /**
+         * 等待处理的消息数.
+         *
+         * @return 消息数
+         */
+        public int backlog() {
+            return mailbox.size();
+        }
+
+        /**
+         * 取消订阅，已经排队的消息仍会处理完.
+         */
+        @Override
+        public void close() {
+            remove(this);
+        }
+
+        private void offer(final String channel, final String message) {
+            final String[] item = {channel, message};
+            boolean accepted;
+            if (policy == OverflowPolicy.BLOCK) {
+                try {
+                    accepted = mailbox.offer(item, blockMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    accepted = false;
+                }
+            } else {
+                accepted = mailbox.offer(item);
+            }
+            if (!accepted) {
+                dropped.increment();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    handlers.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // 已关闭
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                final String[] item = mailbox.poll();
+                if (item == null) {
+                    break;
+                }
+                try {
+                    handler.onMessage(item[0], item[1]);
+                } catch (RuntimeException e) {
+                    handlerErrors.increment();
+                    log.warn("处理订阅消息出错，target={}，channel={}", target, item[0], e);
+                }
+            }
+            scheduled.set(false);
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * 消息处理器.
+     */
+    @FunctionalInterface
+    public interface MessageHandler {
+
+        /**
+         * 处理一条消息.
+         *
+         * @param channel 消息所在的channel
+         * @param message 消息
+         */
+        void onMessage(String channel, String message);
+    }
+
+    /**
+     * 订阅的消息队列满时的策略.
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃新消息，读取线程不会被阻塞.
+         */
+        DROP,
+        /**
+         * 读取线程最多等待blockMillis，超时后丢弃. 等待期间所有订阅的消息读取都会暂停，消息积压在redis的客户端输出缓冲区.
+         */
+        BLOCK
+    }
+
+    @Data
+    public static class Stats {
+        private long channels;
+        private long patterns;
+        private long subscriptions;
+        /**
+         * 所有订阅排队等待处理的消息数.
+         */
+        private long backlog;
+        private long received;
+        private long dropped;
+        private long handlerErrors;
+        private long reconnects;
+        private boolean connected;
+    }
+}
@@ -0,0 +1,208 @@
+package com.qixiafei.redisinaction.jedis;
+
+import lombok.Data;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <P>Description: 字符串类型value的透明压缩，只对配置的key前缀生效.
+ * 超过阈值的value用Deflate压缩，格式为：头字节0xFF + 原始长度（变长整数）+ 压缩数据；
+ * 0xFF不会出现在合法UTF-8的首字节，因此读取时可以与未压缩的文本区分.
+ * 二进制value恰好以0xFF开头时无论大小都会压缩，保证本层写入的数据没有歧义；
+ * 开启压缩之前已经存在、且以0xFF开头的二进制value会被误判，开启前需确认. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/22 10:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class ValueCompressor {
+
+    static final byte HEADER = (byte) 0xFF;
+
+    private final String[] prefixes;
+
+    private final int threshold;
+
+    private final ThreadLocal<Deflater> deflaters;
+
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final LongAdder compressed = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder decompressed = new LongAdder();
+
+    private final LongAdder bytesBefore = new LongAdder();
+
+    private final LongAdder bytesAfter = new LongAdder();
+
+    private final LongAdder compressNanos = new LongAdder();
+
+    private final LongAdder decompressNanos = new LongAdder();
+
+    /**
+     * @param threshold 原始字节数达到该值才压缩
+     * @param level     Deflate压缩级别，1最快，9压缩率最高
+     * @param prefixes  开启压缩的key前缀
+     */
+    ValueCompressor(final int threshold, final int level, final String... prefixes) {
+        this.threshold = threshold;
+        this.prefixes = prefixes.clone();
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    boolean enabledFor(final String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 压缩value，未达到阈值或压缩后没有变小时原样返回.
+     */
+    byte[] compress(final byte[] raw) {
+        final boolean ambiguous = raw.length > 0 && raw[0] == HEADER;
+        if (raw.length < threshold && !ambiguous) {
+            return raw;
+        }
+        final long begin = System.nanoTime();
+        final Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] out = new byte[6 + raw.length / 2 + 16];
+        out[0] = HEADER;
+        int size = writeVarInt(out, 1, raw.length);
+        while (!deflater.finished()) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            size += deflater.deflate(out, size, out.length - size);
+        }
+        compressNanos.add(System.nanoTime() - begin);
+        if (size >= raw.length && !ambiguous) {
+            skipped.increment();
+            return raw;
+        }
+        compressed.increment();
+        bytesBefore.add(raw.length);
+        bytesAfter.add(size);
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * 解压value，没有压缩头时原样返回.
+     */
+    byte[] decompress(final byte[] stored) {
+        if (stored == null || stored.length == 0 || stored[0] != HEADER) {
+            return stored;
+        }
+        final long begin = System.nanoTime();
+        int pos = 1;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = stored[pos++];
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        final Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(stored, pos, stored.length - pos);
+        final byte[] raw = new byte[length];
+        try {
+            int size = 0;
+            while (size < length && !inflater.finished()) {
+                final int n = inflater.inflate(raw, size, length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+            if (size != length) {
+                throw new JedisDataException("压缩数据长度不符，期望" + length + "实际" + size);
+            }
+        } catch (DataFormatException e) {
+            throw new JedisDataException("压缩数据格式错误", e);
+        }
+        decompressed.increment();
+        decompressNanos.add(System.nanoTime() - begin);
+        return raw;
+    }
+
+    Stats stats() {
+        final Stats stats = new Stats();
+        stats.setCompressed(compressed.sum());
+        stats.setSkipped(skipped.sum());
+        stats.setDecompressed(decompressed.sum());
+        stats.setBytesBefore(bytesBefore.sum());
+        stats.setBytesAfter(bytesAfter.sum());
+        stats.setRatio(stats.getBytesBefore() == 0 ? 1 : (double) stats.getBytesAfter() / stats.getBytesBefore());
+        final long attempts = stats.getCompressed() + stats.getSkipped();
+        stats.setCompressMicros(attempts == 0 ? 0 : compressNanos.sum() / 1000.0 / attempts);
+        stats.setDecompressMicros(stats.getDecompressed() == 0 ? 0
+                : decompressNanos.sum() / 1000.0 / stats.getDecompressed());
+        return stats;
+    }
+
+    private static int writeVarInt(final byte[] out, int pos, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * 压缩统计.
+     */
+    @Data
+    public static class Stats {
+
+        /**
+         * 压缩后写入的value数.
+         */
+        private long compressed;
+
+        /**
+         * 超过阈值但压缩后没有变小、原样写入的value数.
+         */
+        private long skipped;
+
+        /**
+         * 读取时解压的value数.
+         */
+        private long decompressed;
+
+        private long bytesBefore;
+
+        private long bytesAfter;
+
+        /**
+         * 压缩后与压缩前的字节数之比，越小越好.
+         */
+        private double ratio;
+
+        /**
+         * 每次压缩（含放弃的）平均耗时.
+         */
+        private double compressMicros;
+
+        private double decompressMicros;
+    }
+}
@@ -0,0 +1,80 @@
+package com.qixiafei.redisinaction.jedis;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: WATCH的key被其他客户端修改导致EXEC放弃时的重试策略，退避时间指数增长并带随机抖动，
+ * 避免多个客户端同时重试再次冲突. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/21 11:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public final class WatchRetryPolicy {
+
+    /**
+     * 不重试，EXEC放弃后直接返回null.
+     */
+    public static final WatchRetryPolicy NONE = new WatchRetryPolicy(1, 0);
+
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final int maxAttempts;
+
+    private final long backoffMillis;
+
+    private WatchRetryPolicy(final int maxAttempts, final long backoffMillis) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * 构建重试策略.
+     *
+     * @param maxAttempts   最多执行次数，包含第一次
+     * @param backoffMillis 第一次重试前的退避时间，之后每次翻倍，最长1秒
+     * @return 重试策略
+     */
+    public static WatchRetryPolicy of(final int maxAttempts, final long backoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts至少为1");
+        }
+        return new WatchRetryPolicy(maxAttempts, backoffMillis);
+    }
+
+    /**
+     * 第attempt次执行被放弃后调用，需要重试时先退避再返回true.
+     *
+     * @param attempt 已经执行的次数，从1开始
+     * @return 是否继续重试
+     */
+    boolean retry(final int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        if (backoffMillis > 0) {
+            final long backoff = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt - 1, 20));
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "WatchRetryPolicy(maxAttempts=" + maxAttempts + ", backoffMillis=" + backoffMillis + ")";
+    }
+}
@@ -1,11 +1,10 @@
 package com.qixiafei.redisinaction.lock;
 
 import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.WatchRetryPolicy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Pipeline;
-import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
 
 import javax.annotation.Resource;
 
@@ -39,21 +38,16 @@ public class DefaultLock extends AbstractSharedLock {
 
     @Override
     protected void release0(final String lockName, final String id) {
-        try (final Jedis instance = redisClient.getInstance()) {
-            final Pipeline pipe = instance.pipelined();
-            final String key = getLockKey(lockName);
-            pipe.watch(key);
-            final Response<String> lockId = pipe.get(key);
-            pipe.sync();
-            if (id.equals(lockId.get())) {
-                pipe.multi();
-                pipe.del(key);
-                pipe.exec();
-                pipe.sync();
-            } else {
-                instance.unwatch();
+        final String key = getLockKey(lockName);
+        // 锁被他人修改说明已经不属于自己，不需要重试
+        redisClient.transaction(new String[]{key}, WatchRetryPolicy.NONE, jedis -> {
+            if (!id.equals(jedis.get(key))) {
+                return null;
             }
-        }
+            final Transaction transaction = jedis.multi();
+            transaction.del(key);
+            return transaction;
+        });
     }
 
     @Override
@@ -85,7 +85,7 @@ public class SemaphoreLock {
         final long now = System.currentTimeMillis();
         final String key = getLockKey(lockName);
 
-        try (final Jedis instance = redisClient.getInstance()) {
+        try (final Jedis instance = redisClient.getInstance(key)) {
 
             final Pipeline pipelined = instance.pipelined();
             pipelined.zremrangeByScore(key, 0, now - expired);
@@ -1,12 +1,16 @@
 package com.qixiafei.redisinaction.logger;
 
+import com.qixiafei.redisinaction.RedisKeyConstants;
 import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.queue.EventStream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 
 import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * <P>Description: 5.1日志. </P>
@@ -26,6 +30,11 @@ public class RedisLogger {
     @Resource
     private RedisClient redisClient;
 
+    /**
+     * 日志事件流，未开启时为null.
+     */
+    private volatile EventStream events;
+
     /**
      * 记录日志.
      *
@@ -34,15 +43,39 @@ public class RedisLogger {
      * @param message 日志消息
      */
     public void logRecent(final String name, final Level level, final String message) {
-        try (Jedis instance = redisClient.getInstance()) {
+        final String key = getKey(name, level);
+        try (Jedis instance = redisClient.getInstance(key)) {
             final Pipeline pipelined = instance.pipelined();
-            log0(name, level, message, pipelined);
+            log0(key, message, pipelined);
         }
+        final EventStream current = events;
+        if (current != null) {
+            final Map<String, String> fields = new LinkedHashMap<>(4);
+            fields.put("name", name);
+            fields.put("level", level.name());
+            fields.put("message", message);
+            current.publish(fields);
+        }
+    }
+
+    /**
+     * 开启日志事件，每条日志写入最近日志列表后再向{@link RedisKeyConstants#LOG_EVENT_STREAM_KEY}追加一个事件，
+     * 字段为name、level和message. 最近日志列表只保留100条，需要完整日志时由{@link EventStream#startWorker}启动的消费者持久化.
+     *
+     * @param maxLen stream近似保留的最大长度，0代表不裁剪
+     * @return 日志事件流
+     */
+    public synchronized EventStream enableEventStream(final long maxLen) {
+        events = new EventStream(redisClient, RedisKeyConstants.LOG_EVENT_STREAM_KEY, maxLen);
+        log.info("开启日志事件，maxLen={}", maxLen);
+        return events;
+    }
 
+    private String getKey(final String name, final Level level) {
+        return String.format("recent:%s:" + name, level.key);
     }
 
-    private void log0(final String name, final Level level, final String message, final Pipeline pipeline) {
-        final String key = String.format("recent:%s:" + name, level.key);
+    private void log0(final String key, final String message, final Pipeline pipeline) {
         pipeline.lpush(key, message);
         pipeline.ltrim(key, 0, 99);
         pipeline.sync();
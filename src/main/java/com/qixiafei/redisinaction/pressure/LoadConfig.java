@@ -0,0 +1,64 @@
+package com.qixiafei.redisinaction.pressure;
+
+import lombok.Data;
+
+/**
+ * <P>Description: 一次压测的配置，可以直接由请求参数绑定. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 14:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class LoadConfig {
+
+    /**
+     * 压测线程数.
+     */
+    private int threads = 4;
+
+    /**
+     * 目标总吞吐（次/秒），0代表不限速，每个线程做完一次立刻做下一次.
+     * 限速时按计划时间计算延迟，服务端卡顿导致的排队时间也计入，避免coordinated omission.
+     */
+    private int rate = 0;
+
+    /**
+     * 预热秒数，预热期间的结果不计入统计.
+     */
+    private int warmupSeconds = 5;
+
+    /**
+     * 正式压测秒数，0代表一直运行到调用stop.
+     */
+    private int durationSeconds = 0;
+
+    /**
+     * 操作配比，格式为 操作:权重，逗号分隔，操作名见{@link Operation}.
+     */
+    private String mix = "get:50,set:30,hset:5,zadd:5,pipeline:5,lua:5";
+
+    /**
+     * key空间大小.
+     */
+    private int keys = 10000;
+
+    /**
+     * 写入的value字节数.
+     */
+    private int valueSize = 64;
+
+    /**
+     * PIPELINE操作每次写入的key数.
+     */
+    private int pipelineSize = 10;
+
+    /**
+     * 压测结束后是否删除本次压测生成的key.
+     */
+    private boolean cleanup = true;
+}
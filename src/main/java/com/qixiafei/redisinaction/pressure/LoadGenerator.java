@@ -0,0 +1,386 @@
+package com.qixiafei.redisinaction.pressure;
+
+import com.qixiafei.redisinaction.jedis.LatencyHistogram;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <P>Description: 多线程压测. 按配比随机执行操作，可以限定总吞吐；限速时每个线程按固定间隔排好计划时间，
+ * 延迟从计划时间算起，一次慢请求拖后的所有请求都会计入排队时间，不会因为等待而少发请求（coordinated omission）.
+ * 同一时间只运行一次压测，统计通过{@link #stats()}随时查看. 结束时默认删除本次压测写入的key，清理完成前不能开始下一次压测. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 14:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+@Component
+public class LoadGenerator {
+
+    /**
+     * 每秒统计最多保留的秒数.
+     */
+    private static final int TIMELINE_SECONDS = 300;
+
+    /**
+     * 清理前等待压测线程退出的最长秒数.
+     */
+    private static final int CLEANUP_WAIT_SECONDS = 10;
+
+    /**
+     * 清理时SCAN每页的建议数量.
+     */
+    private static final int CLEANUP_SCAN_COUNT = 1000;
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private static final AtomicInteger RUN_IDS = new AtomicInteger();
+
+    @Resource
+    private RedisClient redisClient;
+
+    private volatile Run current;
+
+    /**
+     * 启动压测，立即返回.
+     *
+     * @param config 压测配置
+     * @return 启动时的统计
+     */
+    public synchronized LoadStats start(final LoadConfig config) {
+        if (current != null && current.phase != LoadStats.Phase.STOPPED) {
+            throw new IllegalStateException("已有压测在运行，请先stop");
+        }
+        if (config.getThreads() < 1 || config.getKeys() < 1 || config.getRate() < 0 || config.getValueSize() < 0) {
+            throw new IllegalArgumentException("压测配置不合法：" + config);
+        }
+        final Run run = new Run(config, WorkloadMix.parse(config.getMix()));
+        current = run;
+        run.start();
+        log.info("压测开始，config={}", config);
+        return run.stats();
+    }
+
+    /**
+     * 停止压测.
+     *
+     * @return 最终统计，没有运行过压测返回null
+     */
+    public LoadStats stop() {
+        final Run run = current;
+        if (run == null) {
+            return null;
+        }
+        run.stop();
+        return run.stats();
+    }
+
+    /**
+     * 当前或最近一次压测的统计.
+     *
+     * @return 统计，没有运行过压测返回null
+     */
+    public LoadStats stats() {
+        final Run run = current;
+        return run == null ? null : run.stats();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        final Run run = current;
+        if (run != null) {
+            run.stop();
+        }
+    }
+
+    /**
+     * 一次压测.
+     */
+    private final class Run {
+
+        private final LoadConfig config;
+
+        private final WorkloadMix mix;
+
+        private final String keyPrefix = "pressure:" + RUN_IDS.incrementAndGet() + ":";
+
+        private final ExecutorService workers;
+
+        private final ScheduledExecutorService ticker;
+
+        private final Recorder total = new Recorder();
+
+        private final Recorder[] recorders = new Recorder[OPERATIONS.length];
+
+        /**
+         * 当前这一秒的延迟，每秒换一个新的.
+         */
+        private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+
+        private final Deque<LoadStats.Second> timeline = new ArrayDeque<>();
+
+        private volatile LoadStats.Phase phase = LoadStats.Phase.WARMUP;
+
+        private final long warmupEndNanos;
+
+        private volatile long measureStartNanos;
+
+        private volatile long endNanos;
+
+        private volatile long cleanedKeys;
+
+        private Run(final LoadConfig config, final WorkloadMix mix) {
+            this.config = config;
+            this.mix = mix;
+            for (int i = 0; i < recorders.length; i++) {
+                recorders[i] = new Recorder();
+            }
+            final AtomicInteger threadIds = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(config.getThreads(), r -> {
+                final Thread t = new Thread(r, "pressure-" + threadIds.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread t = new Thread(r, "pressure-ticker");
+                t.setDaemon(true);
+                return t;
+            });
+            this.warmupEndNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        }
+
+        private void start() {
+            if (config.getWarmupSeconds() <= 0) {
+                beginMeasure(System.nanoTime());
+            }
+            for (int i = 0; i < config.getThreads(); i++) {
+                final int index = i;
+                workers.execute(() -> work(index));
+            }
+            ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+        }
+
+        private synchronized void stop() {
+            if (!active()) {
+                return;
+            }
+            endNanos = System.nanoTime();
+            phase = config.isCleanup() ? LoadStats.Phase.CLEANUP : LoadStats.Phase.STOPPED;
+            workers.shutdown();
+            ticker.shutdown();
+            log.info("压测结束，共{}次，错误{}次", total.latency.count(), total.errors.sum());
+            if (config.isCleanup()) {
+                cleanup();
+                phase = LoadStats.Phase.STOPPED;
+            }
+        }
+
+        /**
+         * 等压测线程全部退出后删除本次压测的key，它们都以keyPrefix开头.
+         */
+        private void cleanup() {
+            try {
+                if (!workers.awaitTermination(CLEANUP_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("压测线程{}秒内没有全部退出，清理后可能仍有残留的key", CLEANUP_WAIT_SECONDS);
+                }
+                cleanedKeys = redisClient.deleteMatching(keyPrefix + "*", CLEANUP_SCAN_COUNT);
+                log.info("压测数据清理完成，删除{}*共{}个key", keyPrefix, cleanedKeys);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("等待压测线程退出时被中断，没有清理{}*", keyPrefix);
+            } catch (RuntimeException e) {
+                log.warn("清理压测数据{}*失败", keyPrefix, e);
+            }
+        }
+
+        /**
+         * 是否还在发压.
+         */
+        private boolean active() {
+            return phase == LoadStats.Phase.WARMUP || phase == LoadStats.Phase.RUNNING;
+        }
+
+        private void work(final int index) {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final String value = StringUtils.repeat('x', config.getValueSize());
+            final long intervalNanos = config.getRate() > 0
+                    ? TimeUnit.SECONDS.toNanos(config.getThreads()) / config.getRate() : 0;
+            // 各线程的计划时间错开，避免同时发出
+            long intended = System.nanoTime() + intervalNanos * index / config.getThreads();
+            while (active()) {
+                if (intervalNanos > 0 && !waitUntil(intended)) {
+                    return;
+                }
+                final long start = System.nanoTime();
+                final Operation operation = mix.pick(random);
+                boolean failed = false;
+                try {
+                    operation.execute(redisClient, keyPrefix + "{" + random.nextInt(config.getKeys()) + "}", value,
+                            config);
+                } catch (RuntimeException e) {
+                    failed = true;
+                    log.debug("压测操作{}失败", operation, e);
+                }
+                final long end = System.nanoTime();
+                if (phase == LoadStats.Phase.RUNNING) {
+                    final long latency = end - (intervalNanos > 0 ? intended : start);
+                    recorders[operation.ordinal()].record(latency, end - start, failed);
+                    total.record(latency, end - start, failed);
+                    interval.get().record(latency);
+                }
+                intended += intervalNanos;
+            }
+        }
+
+        /**
+         * 等到计划时间，已经落后时立即返回.
+         *
+         * @return 压测停止时返回false
+         */
+        private boolean waitUntil(final long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (!active()) {
+                    return false;
+                }
+                LockSupport.parkNanos(remaining);
+            }
+            return true;
+        }
+
+        private void tick() {
+            try {
+                final long now = System.nanoTime();
+                if (phase == LoadStats.Phase.WARMUP) {
+                    if (now >= warmupEndNanos) {
+                        beginMeasure(now);
+                    }
+                    return;
+                }
+                if (phase != LoadStats.Phase.RUNNING) {
+                    return;
+                }
+                final LatencyHistogram last = interval.getAndSet(new LatencyHistogram());
+                final LoadStats.Second second = new LoadStats.Second();
+                second.setSecond(TimeUnit.NANOSECONDS.toSeconds(now - measureStartNanos));
+                second.setOperations(last.count());
+                second.setP50Micros(micros(last.percentile(0.5)));
+                second.setP99Micros(micros(last.percentile(0.99)));
+                second.setMaxMicros(micros(last.maxNanos()));
+                synchronized (timeline) {
+                    timeline.addLast(second);
+                    if (timeline.size() > TIMELINE_SECONDS) {
+                        timeline.removeFirst();
+                    }
+                }
+                if (config.getDurationSeconds() > 0
+                        && now - measureStartNanos >= TimeUnit.SECONDS.toNanos(config.getDurationSeconds())) {
+                    stop();
+                }
+            } catch (RuntimeException e) {
+                // 异常会让定时任务不再执行
+                log.warn("压测统计出错", e);
+            }
+        }
+
+        private void beginMeasure(final long now) {
+            measureStartNanos = now;
+            interval.set(new LatencyHistogram());
+            phase = LoadStats.Phase.RUNNING;
+        }
+
+        private LoadStats stats() {
+            final LoadStats stats = new LoadStats();
+            stats.setPhase(phase);
+            stats.setConfig(config);
+            final long start = measureStartNanos;
+            final long end = active() ? System.nanoTime() : endNanos;
+            final double elapsed = start == 0 ? 0 : (end - start) / 1e9;
+            stats.setElapsedSeconds(elapsed);
+            stats.setOperations(total.latency.count());
+            stats.setErrors(total.errors.sum());
+            stats.setThroughput(throughput(total.latency.count(), elapsed));
+            stats.setLatency(summary(total.latency));
+            stats.setServiceTime(summary(total.service));
+            for (Operation operation : OPERATIONS) {
+                final Recorder recorder = recorders[operation.ordinal()];
+                final long count = recorder.latency.count();
+                if (count == 0 && recorder.errors.sum() == 0) {
+                    continue;
+                }
+                final LoadStats.OperationStats operationStats = new LoadStats.OperationStats();
+                operationStats.setCount(count);
+                operationStats.setErrors(recorder.errors.sum());
+                operationStats.setThroughput(throughput(count, elapsed));
+                operationStats.setLatency(summary(recorder.latency));
+                operationStats.setServiceTime(summary(recorder.service));
+                stats.getPerOperation().put(operation.name(), operationStats);
+            }
+            synchronized (timeline) {
+                stats.setTimeline(new ArrayList<>(timeline));
+            }
+            stats.setCleanedKeys(cleanedKeys);
+            return stats;
+        }
+    }
+
+    /**
+     * 一种操作的延迟和错误计数.
+     */
+    private static final class Recorder {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LatencyHistogram service = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        private void record(final long latencyNanos, final long serviceNanos, final boolean failed) {
+            latency.record(latencyNanos);
+            service.record(serviceNanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+
+    private static LoadStats.LatencySummary summary(final LatencyHistogram histogram) {
+        final LoadStats.LatencySummary summary = new LoadStats.LatencySummary();
+        summary.setP50Micros(micros(histogram.percentile(0.5)));
+        summary.setP90Micros(micros(histogram.percentile(0.9)));
+        summary.setP99Micros(micros(histogram.percentile(0.99)));
+        summary.setP999Micros(micros(histogram.percentile(0.999)));
+        summary.setP9999Micros(micros(histogram.percentile(0.9999)));
+        summary.setMaxMicros(micros(histogram.maxNanos()));
+        return summary;
+    }
+
+    private static double throughput(final long count, final double seconds) {
+        return seconds <= 0 ? 0 : count / seconds;
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
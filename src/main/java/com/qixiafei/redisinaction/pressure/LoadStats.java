@@ -0,0 +1,105 @@
+package com.qixiafei.redisinaction.pressure;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <P>Description: 压测统计快照. latency是从计划开始时间算起的延迟（限速时包含排队），
+ * serviceTime是从实际发出请求算起的耗时，两者差距越大说明客户端或服务端跟不上目标吞吐. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 14:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class LoadStats {
+
+    private Phase phase;
+
+    private LoadConfig config;
+
+    /**
+     * 正式压测已进行的秒数，不含预热.
+     */
+    private double elapsedSeconds;
+
+    private long operations;
+
+    private long errors;
+
+    /**
+     * 正式压测期间的平均吞吐（次/秒）.
+     */
+    private double throughput;
+
+    private LatencySummary latency;
+
+    private LatencySummary serviceTime;
+
+    /**
+     * 操作名到统计的映射.
+     */
+    private Map<String, OperationStats> perOperation = new TreeMap<>();
+
+    /**
+     * 最近若干秒每秒的吞吐和延迟，按时间先后排列.
+     */
+    private List<Second> timeline = new ArrayList<>();
+
+    /**
+     * 压测结束后删除的key数量.
+     */
+    private long cleanedKeys;
+
+    /**
+     * CLEANUP代表已停止发压，正在删除本次压测生成的key.
+     */
+    public enum Phase {
+        WARMUP, RUNNING, CLEANUP, STOPPED
+    }
+
+    @Data
+    public static class OperationStats {
+        private long count;
+        private long errors;
+        private double throughput;
+        private LatencySummary latency;
+        private LatencySummary serviceTime;
+    }
+
+    /**
+     * 延迟分布，单位微秒.
+     */
+    @Data
+    public static class LatencySummary {
+        private long p50Micros;
+        private long p90Micros;
+        private long p99Micros;
+        private long p999Micros;
+        private long p9999Micros;
+        private long maxMicros;
+    }
+
+    /**
+     * 一秒内的统计.
+     */
+    @Data
+    public static class Second {
+        /**
+         * 从正式压测开始算起的第几秒.
+         */
+        private long second;
+        private long operations;
+        private long p50Micros;
+        private long p99Micros;
+        private long maxMicros;
+    }
+}
@@ -0,0 +1,86 @@
+package com.qixiafei.redisinaction.pressure;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <P>Description: 压测可选的操作. key由压测线程从固定大小的key空间里随机选取，同一种操作的key互不冲突.
+ * key带有hash tag，由它派生的key与它落在同一个slot. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 14:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public enum Operation {
+
+    GET {
+        @Override
+        void execute(final RedisClient client, final String key, final String value, final LoadConfig config) {
+            client.get(key);
+        }
+    },
+
+    SET {
+        @Override
+        void execute(final RedisClient client, final String key, final String value, final LoadConfig config) {
+            client.set(key, value);
+        }
+    },
+
+    HSET {
+        @Override
+        void execute(final RedisClient client, final String key, final String value, final LoadConfig config) {
+            client.hset(key + ":hash", Integer.toString(ThreadLocalRandom.current().nextInt(100)), value);
+        }
+    },
+
+    ZADD {
+        @Override
+        void execute(final RedisClient client, final String key, final String value, final LoadConfig config) {
+            client.zadd(key + ":zset", System.currentTimeMillis(), Integer.toString(ThreadLocalRandom.current().nextInt(100)));
+        }
+    },
+
+    /**
+     * 一个管道里连续写pipelineSize个key，计一次操作. 这些key沿用key的hash tag，集群和分片模式下都在同一个节点上.
+     */
+    PIPELINE {
+        @Override
+        void execute(final RedisClient client, final String key, final String value, final LoadConfig config) {
+            client.pipelined(key, pipeline -> {
+                for (int i = 0; i < config.getPipelineSize(); i++) {
+                    pipeline.set(key + ":p" + i, value);
+                }
+            });
+        }
+    },
+
+    /**
+     * 执行自带的解锁脚本，key不存在时脚本只做一次GET.
+     */
+    LUA {
+        @Override
+        void execute(final RedisClient client, final String key, final String value, final LoadConfig config) {
+            final List<String> keys = Collections.singletonList(key + ":lock");
+            client.evalsha(RedisClient.UNLOCK_SCRIPT, keys, Arrays.asList(value, "0"));
+        }
+    };
+
+    /**
+     * 执行一次操作.
+     *
+     * @param client redis客户端
+     * @param key    本次随机到的key
+     * @param value  写入的值
+     * @param config 压测配置
+     */
+    abstract void execute(RedisClient client, String key, String value, LoadConfig config);
+}
@@ -0,0 +1,80 @@
+package com.qixiafei.redisinaction.pressure;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <P>Description: 按权重随机选择操作. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/23 14:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+final class WorkloadMix {
+
+    private final Operation[] operations;
+
+    /**
+     * 累计权重，与operations一一对应.
+     */
+    private final int[] cumulative;
+
+    private WorkloadMix(final Operation[] operations, final int[] cumulative) {
+        this.operations = operations;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * 解析配比，例如"get:80,set:20".
+     *
+     * @param mix 配比
+     * @return 配比
+     */
+    static WorkloadMix parse(final String mix) {
+        final List<Operation> operations = new ArrayList<>();
+        final List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (String part : StringUtils.split(mix, ',')) {
+            final String[] pair = StringUtils.split(part.trim(), ':');
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("操作配比格式错误：" + part);
+            }
+            final Operation operation = Operation.valueOf(pair[0].trim().toUpperCase());
+            final int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("操作权重不能为负：" + part);
+            }
+            if (weight == 0) {
+                continue;
+            }
+            total += weight;
+            operations.add(operation);
+            cumulative.add(total);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("操作配比为空：" + mix);
+        }
+        final int[] bounds = new int[cumulative.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = cumulative.get(i);
+        }
+        return new WorkloadMix(operations.toArray(new Operation[0]), bounds);
+    }
+
+    Operation pick(final ThreadLocalRandom random) {
+        final int point = random.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (point < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+}
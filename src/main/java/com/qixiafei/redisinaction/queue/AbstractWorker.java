@@ -0,0 +1,222 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: 消费者骨架：一个取任务线程负责与redis交互，取到的任务交给concurrency个处理线程执行，
+ * 处理结果放进确认队列，由取任务线程在下一轮交互时批量确认；已取出未确认的任务不超过prefetch.
+ * 子类实现一轮交互{@link #fetchOnce}和任务处理{@link #handle}. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 17:00</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+abstract class AbstractWorker<J> implements Closeable {
+
+    static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    /**
+     * close时除pollSeconds以外额外等待处理中任务完成的时间.
+     */
+    private static final long CLOSE_GRACE_MILLIS = 10000;
+
+    /**
+     * 日志和线程名中使用的名称.
+     */
+    final String name;
+
+    final WorkerConfig config;
+
+    final LongAdder fetched = new LongAdder();
+
+    final LongAdder acked = new LongAdder();
+
+    final LongAdder failed = new LongAdder();
+
+    volatile boolean running = true;
+
+    private final ExecutorService handlers;
+
+    private final Thread fetcher;
+
+    /**
+     * 处理完成待确认的任务，处理线程放入后同时唤醒等待中的取任务线程.
+     */
+    private final BlockingQueue<Ack<J>> acks = new LinkedBlockingQueue<>();
+
+    /**
+     * 已取出但未确认的任务数.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * close等待超时后置为true，取任务线程放弃未确认的任务直接退出，这些任务之后会被回收.
+     */
+    private volatile boolean abandoned = false;
+
+    AbstractWorker(final String name, final WorkerConfig config) {
+        if (config.getConcurrency() <= 0 || config.getPrefetch() <= 0 || config.getPollSeconds() <= 0) {
+            throw new IllegalArgumentException("concurrency、prefetch、pollSeconds必须大于0");
+        }
+        this.name = name;
+        this.config = config;
+        this.handlers = Executors.newFixedThreadPool(config.getConcurrency(), new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat(name + " handler t-%d").build());
+        this.fetcher = new Thread(this::run, name + " fetcher");
+        this.fetcher.setDaemon(true);
+    }
+
+    /**
+     * 启动取任务线程，子类在构造方法最后调用.
+     */
+    void start() {
+        fetcher.start();
+    }
+
+    private void run() {
+        final List<Ack<J>> unsent = new ArrayList<>();
+        while (!abandoned && (running || inFlight.get() > 0 || !acks.isEmpty() || !unsent.isEmpty())) {
+            try {
+                acks.drainTo(unsent);
+                fetchOnce(unsent);
+            } catch (JedisException e) {
+                log.warn("{}访问redis失败，{}ms后重试", name, ERROR_BACKOFF_MILLIS, e);
+                sleep(ERROR_BACKOFF_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!abandoned) {
+            onExit();
+        }
+    }
+
+    /**
+     * 一轮与redis的交互：发送unsent中的确认并清空，再按{@link #wanted()}取任务并{@link #dispatch}.
+     * 抛出JedisException时退避后重试，unsent保留到下一轮.
+     *
+     * @param unsent 还没发送成功的确认
+     */
+    abstract void fetchOnce(List<Ack<J>> unsent) throws InterruptedException;
+
+    /**
+     * 在处理线程上处理一个任务，正常返回即成功.
+     */
+    abstract void handle(J job) throws Exception;
+
+    /**
+     * 所有任务都已确认后，取任务线程退出前调用.
+     */
+    abstract void onExit();
+
+    /**
+     * 本轮最多还能取出的任务数，关闭中为0.
+     */
+    int wanted() {
+        return running ? config.getPrefetch() - inFlight.get() : 0;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 已取出的任务都已处理完且确认已经发送成功.
+     *
+     * @param unsent 还没发送成功的确认
+     */
+    boolean allAcked(final List<Ack<J>> unsent) {
+        // 处理线程先放入确认再减计数，所以先读计数再看确认队列
+        return inFlight.get() == 0 && acks.isEmpty() && unsent.isEmpty();
+    }
+
+    /**
+     * 等待处理线程完成任务，最长不超过心跳间隔和pollSeconds.
+     */
+    void awaitAck(final List<Ack<J>> unsent) throws InterruptedException {
+        final Ack<J> ack = acks.poll(Math.min(config.getHeartbeatMillis(), config.getPollSeconds() * 1000L),
+                TimeUnit.MILLISECONDS);
+        if (ack != null) {
+            unsent.add(ack);
+        }
+    }
+
+    void dispatch(final J job) {
+        fetched.increment();
+        inFlight.incrementAndGet();
+        handlers.execute(() -> {
+            boolean success = false;
+            try {
+                handle(job);
+                success = true;
+            } catch (Exception e) {
+                log.warn("{}任务处理失败：{}", name, job, e);
+            } finally {
+                // 先放入确认再减计数，取任务线程看到inFlight为0时确认一定已经在队列里
+                acks.add(new Ack<>(job, success));
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 停止取任务，等待已取出的任务处理完并确认.
+     * 最多等待pollSeconds加10秒，超时未确认的任务留在redis，由其他消费者回收.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            fetcher.join(config.getPollSeconds() * 1000L + CLOSE_GRACE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fetcher.isAlive()) {
+            abandoned = true;
+            log.warn("{}关闭超时，还有{}个任务未确认", name, inFlight.get());
+        }
+        handlers.shutdownNow();
+    }
+
+    static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 一个任务的处理结果.
+     */
+    static final class Ack<J> {
+
+        final J job;
+
+        final boolean success;
+
+        private Ack(final J job, final boolean success) {
+            this.job = job;
+            this.success = success;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.StreamEntry;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: 基于redis stream的事件流.
+ * 生产者XADD追加事件，超过maxLen时近似裁剪最旧的事件；消费者以消费组的方式读取，
+ * 同组内每个事件只投递给一个消费者，确认前留在待确认列表中，消费者宕机后由同组其他消费者XCLAIM接管，
+ * 事件至少被处理一次，处理器需保证幂等. 处理失败的事件追加到{@code key + ":failed"}. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 17:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class EventStream {
+
+    private static final long DEFAULT_MAX_LEN = 100000;
+
+    private final RedisClient redisClient;
+
+    private final String key;
+
+    private final String failedKey;
+
+    /**
+     * stream近似保留的最大长度，0代表不裁剪.
+     */
+    private final long maxLen;
+
+    private final LongAdder published = new LongAdder();
+
+    public EventStream(final RedisClient redisClient, final String key) {
+        this(redisClient, key, DEFAULT_MAX_LEN);
+    }
+
+    /**
+     * @param redisClient redis客户端
+     * @param key         stream key
+     * @param maxLen      stream近似保留的最大长度，0代表不裁剪；未被消费的事件被裁剪后会丢失，需按消费能力留足余量
+     */
+    public EventStream(final RedisClient redisClient, final String key, final long maxLen) {
+        if (maxLen < 0) {
+            throw new IllegalArgumentException("maxLen不能小于0");
+        }
+        this.redisClient = redisClient;
+        this.key = key;
+        this.failedKey = key + ":failed";
+        this.maxLen = maxLen;
+    }
+
+    /**
+     * 追加一个事件.
+     *
+     * @param fields 事件字段，不能为空
+     * @return 事件id
+     */
+    public String publish(final Map<String, String> fields) {
+        final String id = redisClient.xadd(key, maxLen, fields);
+        published.increment();
+        return id;
+    }
+
+    /**
+     * 启动一个消费者，消费组不存在时从stream开头创建.
+     *
+     * @param group    消费组
+     * @param consumer 消费者名称，同组内唯一；重启后沿用同一名称可以先取回自己未确认的事件
+     * @param handler  事件处理器
+     * @param config   消费者配置
+     * @return 消费者，不再使用时务必close
+     */
+    public StreamWorker startWorker(final String group, final String consumer, final EventHandler handler,
+                                    final WorkerConfig config) {
+        return new StreamWorker(this, group, consumer, handler, config);
+    }
+
+    /**
+     * stream中的事件数，包括已消费的.
+     *
+     * @return stream长度
+     */
+    public long size() {
+        return redisClient.xlen(key);
+    }
+
+    /**
+     * 处理失败的事件数.
+     *
+     * @return failed stream长度
+     */
+    public long failedSize() {
+        return redisClient.xlen(failedKey);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    RedisClient getRedisClient() {
+        return redisClient;
+    }
+
+    String getFailedKey() {
+        return failedKey;
+    }
+
+    long getMaxLen() {
+        return maxLen;
+    }
+
+    /**
+     * 事件处理器.
+     */
+    @FunctionalInterface
+    public interface EventHandler {
+
+        /**
+         * 处理一个事件，正常返回即确认，抛出异常则移入failed stream后确认.
+         *
+         * @param entry 事件
+         * @throws Exception 处理失败
+         */
+        void handle(StreamEntry entry) throws Exception;
+    }
+}
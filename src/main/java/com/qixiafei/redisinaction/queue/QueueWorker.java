@@ -0,0 +1,211 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <P>Description: 可靠队列的消费者，由{@link ReliableQueue#startWorker}创建.
+ * 上一轮处理完的任务的LREM确认、心跳和最多prefetch个rpoplpush放在同一个管道里一次往返发送，
+ * 完全空闲且待处理list为空时用brpoplpush阻塞等待；处理失败的任务移入failed list.
+ * 处理中list只属于这个消费者，宕机后由其他消费者按心跳回收；取任务时访问redis失败，
+ * 已经执行的rpoplpush拿不到结果，等已取出的任务都确认后把处理中list残留的任务放回待处理list. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 10:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class QueueWorker extends AbstractWorker<String> {
+
+    private final ReliableQueue queue;
+
+    private final RedisClient redisClient;
+
+    private final ReliableQueue.JobHandler handler;
+
+    private final String id;
+
+    private final String processingKey;
+
+    private long lastHeartbeat = 0;
+
+    private long lastReap = System.currentTimeMillis();
+
+    /**
+     * 上一次取任务失败，处理中list里可能有没有拿到的任务，恢复之前不再取新任务.
+     */
+    private boolean recovering = false;
+
+    QueueWorker(final ReliableQueue queue, final ReliableQueue.JobHandler handler, final WorkerConfig config) {
+        this(queue, handler, config, UUID.randomUUID().toString());
+    }
+
+    private QueueWorker(final ReliableQueue queue, final ReliableQueue.JobHandler handler, final WorkerConfig config,
+                        final String id) {
+        super("队列" + queue.getName() + "消费者" + id, config);
+        this.queue = queue;
+        this.redisClient = queue.getRedisClient();
+        this.handler = handler;
+        this.id = id;
+        this.processingKey = queue.processingKey(id);
+        redisClient.zadd(queue.getWorkersKey(), System.currentTimeMillis(), id);
+        start();
+    }
+
+    /**
+     * 一轮交互：确认、心跳、批量取任务在一个管道里发送，没有取到任务时阻塞等待.
+     */
+    @Override
+    void fetchOnce(final List<Ack<String>> unsent) throws InterruptedException {
+        if (recovering && allAcked(unsent)) {
+            requeueProcessing();
+            recovering = false;
+        }
+        final long now = System.currentTimeMillis();
+        final int want = recovering ? 0 : wanted();
+        final boolean heartbeat = now - lastHeartbeat >= config.getHeartbeatMillis();
+        if (unsent.isEmpty() && want <= 0 && !heartbeat) {
+            awaitAck(unsent);
+            return;
+        }
+        final List<Response<String>> jobs = new ArrayList<>(Math.max(want, 0));
+        try {
+            fetch(unsent, now, want, heartbeat, jobs);
+        } catch (JedisException e) {
+            // 管道或brpoplpush中途失败时任务可能已经移入处理中list
+            if (want > 0) {
+                recovering = true;
+            }
+            throw e;
+        }
+        if (config.getReapIntervalMillis() > 0 && now - lastReap >= config.getReapIntervalMillis()) {
+            lastReap = now;
+            queue.reap(config.getDeadAfterMillis());
+        }
+    }
+
+    /**
+     * 发送确认和心跳，取出最多want个任务放入jobs并分发.
+     */
+    private void fetch(final List<Ack<String>> unsent, final long now, final int want, final boolean heartbeat,
+                       final List<Response<String>> jobs) throws InterruptedException {
+        redisClient.pipelined(processingKey, Integer.MAX_VALUE, Long.MAX_VALUE, false, pipeline -> {
+            for (Ack<String> ack : unsent) {
+                pipeline.lrem(processingKey, 1, ack.job);
+                if (!ack.success) {
+                    pipeline.lpush(queue.getFailedKey(), ack.job);
+                }
+            }
+            if (heartbeat) {
+                pipeline.zadd(queue.getWorkersKey(), now, id);
+            }
+            for (int i = 0; i < want; i++) {
+                jobs.add(pipeline.rpoplpush(queue.getPendingKey(), processingKey));
+            }
+        });
+        for (Ack<String> ack : unsent) {
+            (ack.success ? acked : failed).increment();
+        }
+        unsent.clear();
+        if (heartbeat) {
+            lastHeartbeat = now;
+        }
+        int got = 0;
+        for (Response<String> response : jobs) {
+            final String job = response.get();
+            if (job != null) {
+                dispatch(job);
+                got++;
+            }
+        }
+        if (want > 0 && got == 0 && running) {
+            if (inFlight() > 0) {
+                // 还有任务在处理，等它们完成后尽快确认，不阻塞在brpoplpush上
+                awaitAck(unsent);
+            } else {
+                final String job = redisClient.brpopLpush(queue.getPendingKey(), processingKey,
+                        config.getPollSeconds());
+                if (job != null) {
+                    dispatch(job);
+                }
+            }
+        }
+    }
+
+    /**
+     * 此时已取出的任务都已确认，处理中list里剩下的都是没有拿到的任务，放回待处理list.
+     */
+    private void requeueProcessing() {
+        int moved = 0;
+        while (redisClient.rpopLpush(processingKey, queue.getPendingKey()) != null) {
+            moved++;
+        }
+        if (moved > 0) {
+            log.warn("{}取任务失败后放回{}个未拿到的任务", name, moved);
+        }
+    }
+
+    @Override
+    void handle(final String job) throws Exception {
+        handler.handle(job);
+    }
+
+    /**
+     * 注销消费者.
+     */
+    @Override
+    void onExit() {
+        try {
+            // 正常退出时处理中list应为空，保险起见把残留的任务放回待处理list
+            requeueProcessing();
+            redisClient.zrem(queue.getWorkersKey(), id);
+        } catch (JedisException e) {
+            log.warn("{}注销失败，任务将由其他消费者回收", name, e);
+        }
+    }
+
+    /**
+     * 获取消费者统计.
+     *
+     * @return 统计信息
+     */
+    public Stats stats() {
+        final Stats stats = new Stats();
+        stats.setId(id);
+        stats.setInFlight(inFlight());
+        stats.setFetched(fetched.sum());
+        stats.setAcked(acked.sum());
+        stats.setFailed(failed.sum());
+        return stats;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 消费者统计.
+     */
+    @Data
+    public static class Stats {
+        private String id;
+        /**
+         * 已取出但未确认的任务数.
+         */
+        private int inFlight;
+        private long fetched;
+        private long acked;
+        private long failed;
+    }
+}
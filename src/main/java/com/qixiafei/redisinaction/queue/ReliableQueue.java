@@ -0,0 +1,195 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.qixiafei.redisinaction.jedis.ClusterKeys;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: 基于rpoplpush的可靠队列.
+ * 生产者lpush进待处理list，消费者用rpoplpush把任务原子地移进自己的处理中list，处理成功后LREM确认；
+ * 消费者宕机时处理中list里的任务由其他消费者的回收逻辑放回待处理list，任务至少被处理一次，处理器需保证幂等.
+ * 所有key带同一个hash tag，集群模式下落在同一slot. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 10:10</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class ReliableQueue {
+
+    private static final String KEY_PREFIX = "queue:";
+
+    private static final int DEFAULT_PUSH_BATCH_SIZE = 100;
+
+    private final RedisClient redisClient;
+
+    private final String name;
+
+    /**
+     * 批量推入时一条lpush携带的任务数.
+     */
+    private final int pushBatchSize;
+
+    private final String pendingKey;
+
+    private final String failedKey;
+
+    private final String workersKey;
+
+    private final LongAdder pushed = new LongAdder();
+
+    private final LongAdder reaped = new LongAdder();
+
+    public ReliableQueue(final RedisClient redisClient, final String name) {
+        this(redisClient, name, DEFAULT_PUSH_BATCH_SIZE);
+    }
+
+    /**
+     * @param redisClient   redis客户端
+     * @param name          队列名称
+     * @param pushBatchSize 批量推入时一条lpush携带的任务数
+     */
+    public ReliableQueue(final RedisClient redisClient, final String name, final int pushBatchSize) {
+        if (pushBatchSize <= 0) {
+            throw new IllegalArgumentException("pushBatchSize必须大于0");
+        }
+        this.redisClient = redisClient;
+        this.name = name;
+        this.pushBatchSize = pushBatchSize;
+        final String prefix = ClusterKeys.tagged(KEY_PREFIX, name);
+        this.pendingKey = prefix + ":pending";
+        this.failedKey = prefix + ":failed";
+        this.workersKey = prefix + ":workers";
+    }
+
+    /**
+     * 推入一个任务，开启自动管道时并发的推入会自动攒批.
+     *
+     * @param job 任务
+     */
+    public void push(final String job) {
+        redisClient.lpush(pendingKey, job);
+        pushed.increment();
+    }
+
+    /**
+     * 批量推入任务，每pushBatchSize个任务一条lpush，所有lpush在一个自动flush的管道里发送，
+     * flush阈值使用{@link RedisClient#configurePipeline}配置的值，不收集结果.
+     *
+     * @param jobs 任务
+     */
+    public void pushAll(final Collection<String> jobs) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        final String[] all = jobs.toArray(new String[0]);
+        redisClient.pipelined(pendingKey, false, pipeline -> {
+            for (int from = 0; from < all.length; from += pushBatchSize) {
+                final String[] batch = new String[Math.min(pushBatchSize, all.length - from)];
+                System.arraycopy(all, from, batch, 0, batch.length);
+                pipeline.lpush(pendingKey, batch);
+            }
+        });
+        pushed.add(all.length);
+    }
+
+    /**
+     * 启动一个消费者.
+     *
+     * @param handler 任务处理器
+     * @param config  消费者配置
+     * @return 消费者，不再使用时务必close
+     */
+    public QueueWorker startWorker(final JobHandler handler, final WorkerConfig config) {
+        return new QueueWorker(this, handler, config);
+    }
+
+    /**
+     * 待处理的任务数.
+     *
+     * @return 待处理list长度
+     */
+    public long size() {
+        return redisClient.llen(pendingKey);
+    }
+
+    /**
+     * 处理失败的任务数，失败任务保存在failed list里，不会自动重试.
+     *
+     * @return 失败list长度
+     */
+    public long failedSize() {
+        return redisClient.llen(failedKey);
+    }
+
+    /**
+     * 把心跳超时的消费者处理中的任务放回待处理list，并移除这些消费者.
+     * 放回的任务排在待处理list的生产端，会在已有任务之后被消费；多个消费者同时回收同一个消费者是安全的，每个任务只会被移动一次.
+     *
+     * @param deadAfterMillis 心跳超过这个时间（毫秒）视为宕机
+     * @return 放回的任务数
+     */
+    public int reap(final long deadAfterMillis) {
+        final Set<String> dead = redisClient.zrangeByScore(workersKey, 0,
+                System.currentTimeMillis() - deadAfterMillis);
+        int moved = 0;
+        for (String workerId : dead) {
+            final String processing = processingKey(workerId);
+            while (redisClient.rpopLpush(processing, pendingKey) != null) {
+                moved++;
+            }
+            redisClient.zrem(workersKey, workerId);
+            log.warn("队列{}回收宕机消费者{}的任务", name, workerId);
+        }
+        reaped.add(moved);
+        return moved;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPushed() {
+        return pushed.sum();
+    }
+
+    public long getReaped() {
+        return reaped.sum();
+    }
+
+    RedisClient getRedisClient() {
+        return redisClient;
+    }
+
+    String getPendingKey() {
+        return pendingKey;
+    }
+
+    String getFailedKey() {
+        return failedKey;
+    }
+
+    String getWorkersKey() {
+        return workersKey;
+    }
+
+    String processingKey(final String workerId) {
+        return ClusterKeys.tagged(KEY_PREFIX, name) + ":processing:" + workerId;
+    }
+
+    /**
+     * 任务处理器，正常返回即确认，抛出异常时任务移入failed list.
+     */
+    @FunctionalInterface
+    public interface JobHandler {
+        void handle(String job) throws Exception;
+    }
+}
@@ -0,0 +1,237 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.StreamEntry;
+import com.qixiafei.redisinaction.jedis.StreamPending;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <P>Description: 事件流的消费组消费者，由{@link EventStream#startWorker}创建.
+ * 启动时先用id 0取回自己上次未确认的事件，之后用XREADGROUP >每次最多读取prefetch条新事件，
+ * 处理完的事件在下一轮用一条XACK批量确认；完全空闲时阻塞读取pollSeconds秒.
+ * 每reapIntervalMillis扫描一次待确认列表，把其他消费者空闲超过deadAfterMillis的事件XCLAIM过来处理. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 17:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Slf4j
+public class StreamWorker extends AbstractWorker<StreamEntry> {
+
+    /**
+     * 读取新事件的起始id.
+     */
+    private static final String NEW_ENTRIES = ">";
+
+    /**
+     * 一次扫描待确认列表的最大条数.
+     */
+    private static final int CLAIM_SCAN_COUNT = 1000;
+
+    private final EventStream stream;
+
+    private final RedisClient redisClient;
+
+    private final String key;
+
+    private final String group;
+
+    private final String consumer;
+
+    private final EventStream.EventHandler handler;
+
+    private final LongAdder claimed = new LongAdder();
+
+    /**
+     * 取回自己未确认事件时的起始id，取完后为null.
+     */
+    private String recoverFrom = "0";
+
+    private long lastClaim = System.currentTimeMillis();
+
+    StreamWorker(final EventStream stream, final String group, final String consumer,
+                 final EventStream.EventHandler handler, final WorkerConfig config) {
+        super("事件流" + stream.getKey() + "消费组" + group + "消费者" + consumer, config);
+        this.stream = stream;
+        this.redisClient = stream.getRedisClient();
+        this.key = stream.getKey();
+        this.group = group;
+        this.consumer = consumer;
+        this.handler = handler;
+        redisClient.xgroupCreate(key, group, "0", true);
+        start();
+    }
+
+    /**
+     * 一轮交互：批量确认，再按优先级取回自己的历史事件、接管宕机消费者的事件或读取新事件.
+     */
+    @Override
+    void fetchOnce(final List<Ack<StreamEntry>> unsent) throws InterruptedException {
+        if (!unsent.isEmpty()) {
+            ack(unsent);
+        }
+        final int want = wanted();
+        if (want <= 0) {
+            awaitAck(unsent);
+            return;
+        }
+        if (recoverFrom != null) {
+            final List<StreamEntry> history = read(want, -1, recoverFrom);
+            if (history.isEmpty()) {
+                recoverFrom = null;
+            } else {
+                recoverFrom = history.get(history.size() - 1).getId();
+                history.forEach(this::dispatch);
+            }
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (config.getReapIntervalMillis() > 0 && now - lastClaim >= config.getReapIntervalMillis()) {
+            lastClaim = now;
+            if (claim(want) > 0) {
+                return;
+            }
+        }
+        if (inFlight() > 0) {
+            // 还有事件在处理，不阻塞读取，没有新事件时等它们完成后尽快确认
+            final List<StreamEntry> entries = read(want, -1, NEW_ENTRIES);
+            if (entries.isEmpty()) {
+                awaitAck(unsent);
+            } else {
+                entries.forEach(this::dispatch);
+            }
+        } else {
+            read(want, config.getPollSeconds() * 1000L, NEW_ENTRIES).forEach(this::dispatch);
+        }
+    }
+
+    /**
+     * 失败的事件先追加到failed stream，再与成功的事件一起用一条XACK确认.
+     * 中途失败时整批保留到下一轮重试，failed stream中可能出现重复.
+     */
+    private void ack(final List<Ack<StreamEntry>> unsent) {
+        final String[] ids = new String[unsent.size()];
+        for (int i = 0; i < ids.length; i++) {
+            final Ack<StreamEntry> ack = unsent.get(i);
+            ids[i] = ack.job.getId();
+            if (!ack.success) {
+                redisClient.xadd(stream.getFailedKey(), stream.getMaxLen(), ack.job.getFields());
+            }
+        }
+        redisClient.xack(key, group, ids);
+        for (Ack<StreamEntry> ack : unsent) {
+            (ack.success ? acked : failed).increment();
+        }
+        unsent.clear();
+    }
+
+    private List<StreamEntry> read(final int count, final long blockMillis, final String id) {
+        final Map<String, List<StreamEntry>> result = redisClient.xreadGroup(group, consumer, count, blockMillis,
+                false, Collections.singletonMap(key, id));
+        final List<StreamEntry> entries = result.get(key);
+        return entries == null ? Collections.emptyList() : entries;
+    }
+
+    /**
+     * 接管其他消费者空闲超过deadAfterMillis的事件. 空闲时间从最后一次投递算起，
+     * 处理时间超过deadAfterMillis的事件也会被接管，deadAfterMillis需明显大于单个事件的处理时间.
+     *
+     * @param max 最多接管的条数
+     * @return 接管的条数
+     */
+    private int claim(final int max) {
+        final List<String> ids = new ArrayList<>();
+        for (StreamPending pending : redisClient.xpending(key, group, "-", "+", CLAIM_SCAN_COUNT, null)) {
+            if (ids.size() >= max) {
+                break;
+            }
+            // 自己的待确认事件要么在处理中，要么已在启动时取回，不重复接管
+            if (!consumer.equals(pending.getConsumer()) && pending.getIdleMillis() >= config.getDeadAfterMillis()) {
+                ids.add(pending.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        final List<StreamEntry> entries = redisClient.xclaim(key, group, consumer, config.getDeadAfterMillis(),
+                ids.toArray(new String[0]));
+        if (!entries.isEmpty()) {
+            log.info("{}接管了{}条事件", name, entries.size());
+        }
+        claimed.add(entries.size());
+        entries.forEach(this::dispatch);
+        return entries.size();
+    }
+
+    @Override
+    void handle(final StreamEntry entry) throws Exception {
+        // 取回历史事件时已被裁剪或删除的事件没有字段，直接确认
+        if (entry.getFields() != null) {
+            handler.handle(entry);
+        }
+    }
+
+    /**
+     * 消费者名称保留在消费组中，便于重启后取回未确认的事件.
+     */
+    @Override
+    void onExit() {
+        log.info("{}已停止", name);
+    }
+
+    /**
+     * 获取消费者统计.
+     *
+     * @return 统计信息
+     */
+    public Stats stats() {
+        final Stats stats = new Stats();
+        stats.setGroup(group);
+        stats.setConsumer(consumer);
+        stats.setInFlight(inFlight());
+        stats.setFetched(fetched.sum());
+        stats.setAcked(acked.sum());
+        stats.setFailed(failed.sum());
+        stats.setClaimed(claimed.sum());
+        return stats;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * 消费者统计.
+     */
+    @Data
+    public static class Stats {
+        private String group;
+        private String consumer;
+        /**
+         * 已取出但未确认的事件数.
+         */
+        private int inFlight;
+        private long fetched;
+        private long acked;
+        private long failed;
+        /**
+         * 从其他消费者接管的事件数，包含在fetched中.
+         */
+        private long claimed;
+    }
+}
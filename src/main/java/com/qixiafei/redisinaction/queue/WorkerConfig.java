@@ -0,0 +1,49 @@
+package com.qixiafei.redisinaction.queue;
+
+import lombok.Data;
+
+/**
+ * <P>Description: 可靠队列和事件流消费者配置. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 10:15</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+@Data
+public class WorkerConfig {
+
+    /**
+     * 处理任务的线程数.
+     */
+    private int concurrency = 8;
+
+    /**
+     * 已取出但未确认的任务上限，也是一次往返最多取出的任务数.
+     */
+    private int prefetch = 100;
+
+    /**
+     * 没有任务时brpoplpush或XREADGROUP阻塞的时间（秒），也决定了关闭消费者最多等待多久.
+     */
+    private int pollSeconds = 1;
+
+    /**
+     * 心跳间隔（毫秒），事件流以投递时间判断空闲，不使用心跳.
+     */
+    private long heartbeatMillis = 1000;
+
+    /**
+     * 其他消费者心跳超过这个时间（毫秒）视为宕机，其任务会被回收，必须明显大于heartbeatMillis和pollSeconds；
+     * 事件流中是待确认事件被其他消费者接管前的最小空闲时间，必须明显大于单个事件的处理时间.
+     */
+    private long deadAfterMillis = 30000;
+
+    /**
+     * 回收宕机消费者任务或扫描待确认列表的间隔（毫秒），0代表不回收.
+     */
+    private long reapIntervalMillis = 10000;
+}
@@ -0,0 +1,12 @@
+/**
+ * <P>Description: 基于list的可靠队列. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/24 10:05</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+package com.qixiafei.redisinaction.queue;
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.qixiafei.redisinaction;
 
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -9,6 +13,21 @@ import org.springframework.test.context.junit4.SpringRunner;
 @SpringBootTest
 public class RedisInActionApplicationTests {
 
+    @ClassRule
+    public static final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    @BeforeClass
+    public static void startRedis() {
+        System.setProperty("redis.standalone.host", "127.0.0.1");
+        System.setProperty("redis.standalone.port", Integer.toString(redis.port()));
+    }
+
+    @AfterClass
+    public static void stopRedis() {
+        System.clearProperty("redis.standalone.host");
+        System.clearProperty("redis.standalone.port");
+    }
+
     @Test
     public void contextLoads() {
     }
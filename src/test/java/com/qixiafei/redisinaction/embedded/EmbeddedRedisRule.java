@@ -0,0 +1,132 @@
+package com.qixiafei.redisinaction.embedded;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import org.junit.rules.ExternalResource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <P>Description: 测试用的内嵌redis：每个测试（作为@ClassRule时每个测试类）启动若干个内嵌服务器和指向它们的客户端，结束后全部关闭.
+ * 单节点时客户端是standAlonePool，多节点时是一致性hash分片的shardedPool. </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/27 15:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class EmbeddedRedisRule extends ExternalResource {
+
+    private final int[] weights;
+
+    private final int maxTotal;
+
+    private final List<EmbeddedRedisServer> servers = new ArrayList<>();
+
+    private RedisClient client;
+
+    private EmbeddedRedisRule(final int[] weights, final int maxTotal) {
+        this.weights = weights;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * 单节点，连接池最多8个连接.
+     */
+    public static EmbeddedRedisRule standalone() {
+        return standalone(8);
+    }
+
+    /**
+     * 单节点.
+     *
+     * @param maxTotal 连接池最大连接数
+     */
+    public static EmbeddedRedisRule standalone(final int maxTotal) {
+        return new EmbeddedRedisRule(new int[]{1}, maxTotal);
+    }
+
+    /**
+     * 多个节点，客户端按一致性hash分片.
+     *
+     * @param weights 每个节点的权重，节点数即数组长度
+     */
+    public static EmbeddedRedisRule sharded(final int... weights) {
+        if (weights.length < 2) {
+            throw new IllegalArgumentException("分片至少需要2个节点");
+        }
+        return new EmbeddedRedisRule(weights.clone(), 8);
+    }
+
+    @Override
+    protected void before() throws Exception {
+        for (int i = 0; i < weights.length; i++) {
+            servers.add(new EmbeddedRedisServer(0).start());
+        }
+        client = weights.length == 1
+                ? RedisClient.standAlonePool("127.0.0.1", port(), 1000, 1000, null, maxTotal, maxTotal, 0, false)
+                : RedisClient.shardedPool(nodes(), null, 1000, 1000, maxTotal, maxTotal, 0, false, 160, 4);
+    }
+
+    @Override
+    protected void after() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        servers.forEach(EmbeddedRedisServer::close);
+        servers.clear();
+    }
+
+    public RedisClient client() {
+        return client;
+    }
+
+    /**
+     * 第一个节点.
+     */
+    public EmbeddedRedisServer server() {
+        return servers.get(0);
+    }
+
+    public List<EmbeddedRedisServer> servers() {
+        return Collections.unmodifiableList(servers);
+    }
+
+    /**
+     * 第一个节点的端口.
+     */
+    public int port() {
+        return server().getPort();
+    }
+
+    /**
+     * shardedPool格式的节点列表，权重不为1的节点带上权重.
+     */
+    public String nodes() {
+        final StringBuilder nodes = new StringBuilder();
+        for (int i = 0; i < servers.size(); i++) {
+            nodes.append(i == 0 ? "" : ",").append("127.0.0.1:").append(servers.get(i).getPort());
+            if (weights[i] != 1) {
+                nodes.append(':').append(weights[i]);
+            }
+        }
+        return nodes.toString();
+    }
+
+    /**
+     * 关闭一个节点并在原端口重新启动，数据全部丢失，用于测试断线重连.
+     *
+     * @param index 节点下标
+     */
+    public void restart(final int index) throws Exception {
+        final EmbeddedRedisServer server = servers.get(index);
+        final int port = server.getPort();
+        server.close();
+        servers.set(index, new EmbeddedRedisServer(port).start());
+    }
+}
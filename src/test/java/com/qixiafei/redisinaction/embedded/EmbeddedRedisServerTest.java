@@ -0,0 +1,273 @@
+package com.qixiafei.redisinaction.embedded;
+
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.ZParams;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmbeddedRedisServerTest {
+
+    @ClassRule
+    public static final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone(4);
+
+    private final Jedis jedis = new Jedis("127.0.0.1", redis.port());
+
+    @After
+    public void cleanUp() {
+        jedis.flushDB();
+        jedis.close();
+    }
+
+    @Test
+    public void strings() throws Exception {
+        assertEquals("OK", jedis.set("k", "v"));
+        assertEquals("v", jedis.get("k"));
+        assertEquals(Long.valueOf(0), jedis.setnx("k", "other"));
+        assertEquals(Long.valueOf(3), jedis.incrBy("n", 3));
+        assertEquals(Arrays.asList("v", "3", null), jedis.mget("k", "n", "missing"));
+        jedis.psetex("short", 50L, "x");
+        assertTrue(jedis.pttl("short") > 0);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertNull(jedis.get("short"));
+        assertEquals(Long.valueOf(-2), jedis.ttl("short"));
+        try {
+            jedis.incr("k");
+            fail();
+        } catch (JedisDataException e) {
+            assertTrue(e.getMessage().startsWith("ERR"));
+        }
+    }
+
+    @Test
+    public void wrongType() {
+        jedis.lpush("list", "a");
+        try {
+            jedis.get("list");
+            fail();
+        } catch (JedisDataException e) {
+            assertTrue(e.getMessage().startsWith("WRONGTYPE"));
+        }
+    }
+
+    @Test
+    public void hashes() {
+        jedis.hset("h", "a", "1");
+        jedis.hmset("h", Collections.singletonMap("b", "2"));
+        assertEquals(Long.valueOf(12), jedis.hincrBy("h", "b", 10));
+        assertEquals("12", jedis.hget("h", "b"));
+        assertEquals(2, jedis.hgetAll("h").size());
+        assertEquals(Long.valueOf(2), jedis.hdel("h", "a", "b"));
+        assertFalse(jedis.exists("h"));
+    }
+
+    @Test
+    public void lists() {
+        jedis.rpush("l", "a", "b", "c");
+        jedis.lpush("l", "z");
+        assertEquals(Arrays.asList("z", "a", "b", "c"), jedis.lrange("l", 0, -1));
+        jedis.ltrim("l", 1, 2);
+        assertEquals(Arrays.asList("a", "b"), jedis.lrange("l", 0, -1));
+        assertEquals("b", jedis.rpoplpush("l", "other"));
+        assertEquals(Long.valueOf(1), jedis.lrem("l", 0, "a"));
+        assertFalse(jedis.exists("l"));
+    }
+
+    @Test
+    public void blockingPopIsWokenByPush() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Jedis blocked = new Jedis("127.0.0.1", redis.port())) {
+            final Future<List<String>> popped = executor.submit(() -> blocked.blpop(5, "queue"));
+            TimeUnit.MILLISECONDS.sleep(100);
+            jedis.rpush("queue", "job");
+            assertEquals(Arrays.asList("queue", "job"), popped.get(2, TimeUnit.SECONDS));
+            assertNull(blocked.blpop(1, "queue"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sets() {
+        jedis.sadd("s1", "a", "b", "c");
+        jedis.sadd("s2", "b", "c", "d");
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), jedis.sinter("s1", "s2"));
+        assertEquals(Long.valueOf(1), jedis.sdiffstore("d", "s1", "s2"));
+        assertEquals(Collections.singleton("a"), jedis.smembers("d"));
+        assertTrue(jedis.sismember("s2", "d"));
+    }
+
+    @Test
+    public void sortedSets() {
+        jedis.zadd("z", 2, "b");
+        jedis.zadd("z", 1, "a");
+        jedis.zadd("z", 3, "c");
+        assertEquals(new LinkedHashSet<>(Arrays.asList("c", "b", "a")), jedis.zrevrange("z", 0, -1));
+        assertEquals(Long.valueOf(1), jedis.zrank("z", "b"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("b", "c")), jedis.zrangeByScore("z", "(1", "+inf"));
+        assertEquals(Double.valueOf(4.5), jedis.zincrby("z", 2.5, "b"));
+        assertEquals(Long.valueOf(2), jedis.zremrangeByRank("z", 0, 1));
+        jedis.zadd("s", 0, "x");
+        jedis.zunionstore("u", new ZParams().weights(2, 1), "z", "s");
+        assertEquals(Double.valueOf(9), jedis.zscore("u", "b"));
+    }
+
+    @Test
+    public void zrangeByLex() {
+        for (String member : Arrays.asList("abc", "abd", "abe", "b", "ab")) {
+            jedis.zadd("lex", 0, member);
+        }
+        assertEquals(new LinkedHashSet<>(Arrays.asList("abc", "abd", "abe")),
+                jedis.zrangeByLex("lex", "(ab", "(ab{"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("abd", "abc")),
+                jedis.zrevrangeByLex("lex", "[abd", "(ab", 0, 2));
+        assertEquals(Long.valueOf(5), jedis.zlexcount("lex", "-", "+"));
+        assertEquals(Collections.singleton("ab"), jedis.zrangeByLex("lex", "-", "[ab"));
+        assertTrue(jedis.zrangeByLex("lex", "[b", "[a").isEmpty());
+    }
+
+    @Test
+    public void scanVisitsEveryKeyOnce() {
+        final Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            jedis.set("scan:" + i, "v");
+            expected.add("scan:" + i);
+        }
+        jedis.set("other", "v");
+        final List<String> seen = new ArrayList<>();
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            final ScanResult<String> page = jedis.scan(cursor, new ScanParams().match("scan:*").count(7));
+            seen.addAll(page.getResult());
+            cursor = page.getCursor();
+        } while (!page(cursor));
+        assertEquals(expected.size(), seen.size());
+        assertEquals(expected, new HashSet<>(seen));
+    }
+
+    private static boolean page(final String cursor) {
+        return ScanParams.SCAN_POINTER_START.equals(cursor);
+    }
+
+    @Test
+    public void watchAbortsWhenKeyChanges() {
+        jedis.set("w", "1");
+        jedis.watch("w");
+        try (Jedis other = new Jedis("127.0.0.1", redis.port())) {
+            other.set("w", "2");
+        }
+        final Transaction tx = jedis.multi();
+        tx.set("w", "3");
+        assertNull(tx.exec());
+        assertEquals("2", jedis.get("w"));
+
+        jedis.watch("w");
+        final Transaction ok = jedis.multi();
+        ok.incr("w");
+        ok.get("w");
+        assertEquals(Arrays.asList(3L, "3"), ok.exec());
+    }
+
+    @Test
+    public void pipelining() {
+        final Pipeline pipeline = jedis.pipelined();
+        final List<Response<Long>> responses = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            responses.add(pipeline.incr("counter"));
+        }
+        pipeline.sync();
+        assertEquals(Long.valueOf(10000), responses.get(9999).get());
+        assertEquals("10000", jedis.get("counter"));
+    }
+
+    @Test
+    public void publishSubscribe() throws Exception {
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final JedisPubSub listener = new JedisPubSub() {
+            @Override
+            public void onPSubscribe(final String pattern, final int subscribedChannels) {
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onPMessage(final String pattern, final String channel, final String message) {
+                received.add(channel + "=" + message);
+                punsubscribe();
+            }
+        };
+        final Thread subscriber = new Thread(() -> {
+            try (Jedis sub = new Jedis("127.0.0.1", redis.port())) {
+                sub.psubscribe(listener, "news.*");
+            }
+        });
+        subscriber.start();
+        assertTrue(subscribed.await(2, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(1), jedis.publish("news.tech", "hello"));
+        assertEquals(Long.valueOf(0), jedis.publish("sports", "ignored"));
+        subscriber.join(2000);
+        assertEquals(Collections.singletonList("news.tech=hello"), received);
+    }
+
+    @Test
+    public void unlockScript() {
+        final RedisClient client = redis.client();
+        jedis.set("lock", "1");
+        client.tryUnlock("lock", "2");
+        assertEquals("1", jedis.get("lock"));
+        client.tryUnlock("lock", "1");
+        assertFalse(jedis.exists("lock"));
+    }
+
+    @Test
+    public void objectEncodingAndMemoryUsage() {
+        final RedisClient client = redis.client();
+        try {
+            for (int i = 0; i < 8; i++) {
+                jedis.hset("small", "f" + i, "v" + i);
+                jedis.hset("big", "f" + i, "v" + i);
+            }
+            jedis.configSet("hash-max-ziplist-entries", "4");
+            assertEquals("4", client.configGet("hash-max-ziplist-entries"));
+            assertEquals("hashtable", client.objectEncoding("big"));
+            jedis.configSet("hash-max-ziplist-entries", "512");
+            assertEquals("ziplist", client.objectEncoding("small"));
+            jedis.hset("big", "long", String.join("", Collections.nCopies(65, "v")));
+            assertEquals("hashtable", client.objectEncoding("big"));
+            assertTrue(client.memoryUsage("big") > client.memoryUsage("small"));
+            assertNull(client.memoryUsage("missing"));
+            assertNull(client.objectEncoding("missing"));
+            jedis.set("n", "12345");
+            assertEquals("int", client.objectEncoding("n"));
+        } finally {
+            jedis.configSet("hash-max-ziplist-entries", "512");
+        }
+    }
+}
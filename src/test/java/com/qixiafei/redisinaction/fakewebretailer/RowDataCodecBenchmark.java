@@ -0,0 +1,91 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import com.alibaba.fastjson.JSON;
+import com.qixiafei.redisinaction.fakewebretailer.RowCacheService.RowData;
+import com.qixiafei.redisinaction.jedis.Codec;
+import com.qixiafei.redisinaction.jedis.JsonCodec;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * <P>Description: 比较RowData几种存储方式的字节数和编解码耗时，不需要redis.
+ * fastjson-string是原来的写法：JSON.toJSONString后由jedis按UTF-8编码，读取时反过来；
+ * 另外两种通过Codec直接读写byte[].
+ * 用法：java RowDataCodecBenchmark [iterations] </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/21 16:30</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class RowDataCodecBenchmark {
+
+    private static final Codec<RowData> FASTJSON_STRING = new Codec<RowData>() {
+        @Override
+        public byte[] encode(final RowData value) {
+            return SafeEncoder.encode(JSON.toJSONString(value));
+        }
+
+        @Override
+        public RowData decode(final byte[] bytes) {
+            return JSON.parseObject(SafeEncoder.encode(bytes), RowData.class);
+        }
+    };
+
+    public static void main(String[] args) {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final RowData[] rows = new RowData[1024];
+        for (int i = 0; i < rows.length; i++) {
+            final RowData row = new RowData();
+            row.setId(String.valueOf(100000 + i));
+            row.setName("商品-" + i);
+            row.setSex(i % 2 == 0 ? "male" : "female");
+            rows[i] = row;
+        }
+        final Codec<RowData> json = JsonCodec.of(RowData.class);
+        for (int round = 0; round < 2; round++) {
+            // 第一轮为预热
+            final boolean print = round == 1;
+            run("fastjson-string", FASTJSON_STRING, rows, iterations, print);
+            run("json-codec", json, rows, iterations, print);
+            run("binary-codec", RowData.CODEC, rows, iterations, print);
+        }
+    }
+
+    private static void run(final String name, final Codec<RowData> codec, final RowData[] rows,
+                            final int iterations, final boolean print) {
+        final byte[][] encoded = new byte[rows.length][];
+        long bytes = 0;
+        for (int i = 0; i < rows.length; i++) {
+            encoded[i] = codec.encode(rows[i]);
+            bytes += encoded[i].length;
+            if (!rows[i].equals(codec.decode(encoded[i]))) {
+                throw new IllegalStateException(name + "编解码结果不一致");
+            }
+        }
+        final double encodeNanos = time(iterations, i -> codec.encode(rows[i & 1023]).length);
+        final double decodeNanos = time(iterations, i -> codec.decode(encoded[i & 1023]).getId().length());
+        if (print) {
+            System.out.printf("%-16s bytes/row=%.1f encode=%.1fns decode=%.1fns%n",
+                    name, (double) bytes / rows.length, encodeNanos, decodeNanos);
+        }
+    }
+
+    private static double time(final int iterations, final ToIntFunction<Integer> op) {
+        long sink = 0;
+        final long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += op.applyAsInt(i);
+        }
+        final double nanos = (double) (System.nanoTime() - begin) / iterations;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return nanos;
+    }
+}
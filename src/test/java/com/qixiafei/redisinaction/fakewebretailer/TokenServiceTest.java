@@ -0,0 +1,252 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.jedis.NearCache;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.StreamEntry;
+import com.qixiafei.redisinaction.queue.EventStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TokenServiceTest {
+
+    /**
+     * 分片模式下登录hash和浏览记录zset分布在不同节点上，覆盖多个管道并行的情况.
+     */
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.sharded(1, 1);
+
+    private RedisClient client;
+
+    private TokenService tokenService;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        tokenService = new TokenService();
+        ReflectionTestUtils.setField(tokenService, "redisClient", client);
+    }
+
+    @After
+    public void tearDown() {
+        tokenService.shutdown();
+    }
+
+    @Test
+    public void updateTokenWritesLoginRecentAndCappedViews() {
+        for (int i = 0; i < 30; i++) {
+            tokenService.updateToken("t1", "u1", "item" + i);
+        }
+        tokenService.updateToken("t2", "u2", null);
+
+        assertEquals("u1", tokenService.checkToken("t1"));
+        assertEquals("u2", tokenService.checkToken("t2"));
+        assertEquals(2L, client.zcard(RedisKeyConstants.RECENT_ZSET_KEY).longValue());
+        assertEquals(25L, client.zcard(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + "t1").longValue());
+        assertNotNull(client.zscore(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + "t1", "item29"));
+        assertEquals(0L, client.zcard(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + "t2").longValue());
+    }
+
+    @Test
+    public void updateTokensMergesPerToken() {
+        final List<TokenUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            updates.add(new TokenUpdate("t" + (i % 50), "u" + i, "item" + (i % 3), 1000 + i));
+        }
+        // 排在最后但时间戳更小，用户id仍取时间戳最大的一次，与延迟写一致
+        updates.add(new TokenUpdate("t0", "late", "", 10));
+        updates.add(new TokenUpdate("t1", "tie", "", 1151));
+        tokenService.updateTokens(updates);
+
+        assertEquals("u150", tokenService.checkToken("t0"));
+        assertEquals("tie", tokenService.checkToken("t1"));
+        assertEquals("u199", tokenService.checkToken("t49"));
+        assertEquals(50L, client.zcard(RedisKeyConstants.RECENT_ZSET_KEY).longValue());
+        assertEquals(1150D, client.zscore(RedisKeyConstants.RECENT_ZSET_KEY, "t0"), 0);
+        assertEquals(Arrays.asList(1150D, 1100D),
+                client.zscore(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + "t0", Arrays.asList("item0", "item1")));
+    }
+
+    @Test
+    public void viewEventsArePublishedOnlyWhenEnabled() {
+        tokenService.updateToken("t0", "u0", "before");
+        final EventStream events = tokenService.enableViewEvents(1000);
+        tokenService.updateTokens(Arrays.asList(new TokenUpdate("t1", "u1", "a", 1000),
+                new TokenUpdate("t2", "u2", null, 1001), new TokenUpdate("t1", "u1", "a", 1002)));
+
+        // 同一令牌的多次浏览不合并，没有浏览商品的访问不产生事件
+        final List<StreamEntry> entries = client.xrange(RedisKeyConstants.VIEW_EVENT_STREAM_KEY, "-", "+", 10);
+        assertEquals(2, entries.size());
+        assertEquals(2, events.getPublished());
+        final Map<String, String> first = entries.get(0).getFields();
+        assertEquals("t1", first.get("token"));
+        assertEquals("u1", first.get("userId"));
+        assertEquals("a", first.get("item"));
+        assertEquals("1000", first.get("timestamp"));
+        assertEquals("1002", entries.get(1).getFields().get("timestamp"));
+    }
+
+    @Test
+    public void writeBehindMergesInMemoryAndFlushesOnShutdown() {
+        tokenService.enableWriteBehind(2, TimeUnit.MINUTES.toMillis(1), 1000);
+        for (int i = 0; i < 30; i++) {
+            tokenService.updateToken("t1", "u" + i, "item" + i);
+        }
+        tokenService.updateToken("t2", "u2", null);
+        // 缓冲已满，新令牌同步写入
+        tokenService.updateToken("t3", "u3", "item");
+
+        assertEquals("u29", tokenService.checkToken("t1"));
+        assertNull(client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t1"));
+        assertEquals("u3", client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t3"));
+        assertEquals(29, tokenService.writeBehindStats().getMerged());
+        assertEquals(1, tokenService.writeBehindStats().getOverflow());
+
+        tokenService.shutdown();
+        assertEquals("u29", client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t1"));
+        assertEquals("u2", client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t2"));
+        assertEquals(3L, client.zcard(RedisKeyConstants.RECENT_ZSET_KEY).longValue());
+        assertEquals(25L, client.zcard(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + "t1").longValue());
+        assertNotNull(client.zscore(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + "t1", "item29"));
+    }
+
+    @Test(timeout = 10000)
+    public void writeBehindFlushesInBackground() throws Exception {
+        tokenService.enableWriteBehind(1000, 20, 100);
+        for (int i = 0; i < 500; i++) {
+            tokenService.updateToken("t" + i, "u" + i, "item");
+        }
+        while (tokenService.writeBehindStats().getFlushedTokens() < 500) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(500L, client.zcard(RedisKeyConstants.RECENT_ZSET_KEY).longValue());
+        assertEquals("u499", client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t499"));
+        assertEquals(0, tokenService.writeBehindStats().getBuffered());
+    }
+
+    @Test(timeout = 10000)
+    public void tokenCacheServesHitsAndNegativeHits() throws Exception {
+        tokenService.enableTokenCache(1000, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1));
+        awaitSubscribed(tokenService);
+        assertNull(tokenService.checkToken("t1"));
+        // 绕过TokenService直接写入，负缓存仍然生效
+        client.hset(RedisKeyConstants.LOGIN_HASH_KEY, "t1", "u1");
+        assertNull(tokenService.checkToken("t1"));
+
+        tokenService.updateToken("t1", "u1", null);
+        client.hdel(RedisKeyConstants.LOGIN_HASH_KEY, "t1");
+        assertEquals("u1", tokenService.checkToken("t1"));
+
+        final NearCache.Stats stats = tokenService.tokenCacheStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getNegativeHits());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getSize());
+        assertEquals(2D / 3, stats.getHitRate(), 1e-9);
+    }
+
+    @Test(timeout = 10000)
+    public void invalidationIsBroadcastToOtherInstances() throws Exception {
+        final TokenService other = new TokenService();
+        ReflectionTestUtils.setField(other, "redisClient", client);
+        try {
+            tokenService.enableTokenCache(1000, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1));
+            other.enableTokenCache(1000, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1));
+            awaitSubscribed(tokenService);
+            awaitSubscribed(other);
+            tokenService.updateToken("t1", "u1", null);
+            assertEquals("u1", other.checkToken("t1"));
+            assertNull(other.checkToken("t2"));
+
+            // 其他实例登录t2后，本实例的负缓存被广播清除
+            tokenService.updateToken("t2", "u2", null);
+            while (!"u2".equals(other.checkToken("t2"))) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+
+            client.hdel(RedisKeyConstants.LOGIN_HASH_KEY, "t1");
+            tokenService.invalidateTokens("t1");
+            assertNull(tokenService.checkToken("t1"));
+            while (other.checkToken("t1") != null) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            final NearCache.Stats stats = other.tokenCacheStats();
+            assertTrue(stats.getRemoteInvalidations() >= 2);
+            assertEquals(0, stats.getResets());
+            assertTrue(stats.getMaxInvalidationLagMillis() < 5000);
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void loginsMigrateToBucketsWithoutDowntime() {
+        assertEquals(24351, LoginStore.bucketsFor(10000000, 512));
+        final List<TokenUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            updates.add(new TokenUpdate("t" + i, "u" + i, null, i));
+        }
+        tokenService.updateTokens(updates);
+
+        // 第1步：双写，旧hash中的令牌仍然可读
+        tokenService.useLoginStore(LoginStore.Mode.MIGRATING, 16);
+        assertEquals("u7", tokenService.checkToken("t7"));
+        tokenService.updateToken("t2000", "u2000", null);
+        assertEquals("u2000", client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t2000"));
+        // 还没切换的SINGLE实例清理令牌时只删旧hash，桶里的副本要在第2步删除
+        tokenService.updateToken("t2001", "u2001", null);
+        new LoginStore(client, LoginStore.Mode.SINGLE, 1).remove("t2001");
+        assertEquals("u2001", tokenService.checkToken("t2001"));
+
+        // 第2步：复制到桶里，之后两边保存着同样的令牌
+        final LoginStore.MigrationResult copy = tokenService.migrateLogins(300);
+        assertEquals(2001, copy.getScanned());
+        assertEquals(2000, copy.getCopied());
+        assertEquals(1, copy.getSkipped());
+        assertEquals(1, copy.getOrphaned());
+        assertNull(tokenService.checkToken("t2001"));
+        assertEquals(2001, copy.getLegacyRemaining());
+        final LoginStore.MemoryReport report = tokenService.loginMemoryReport(4, 2001);
+        assertEquals(2001, report.getLegacyFields());
+        assertEquals("hashtable", report.getLegacyEncoding());
+        assertEquals(2001, report.getBucketFields());
+        assertEquals(16, report.getNonEmptyBuckets());
+        assertEquals(0, report.getOversizedBuckets());
+        assertEquals(4, report.getCompactSampledBuckets());
+        assertTrue(report.getSaving() > 0.3);
+
+        tokenService.removeTokens("t1", "t2");
+        assertNull(tokenService.checkToken("t1"));
+        assertNull(client.hget(RedisKeyConstants.LOGIN_HASH_KEY, "t2"));
+
+        // 第3步：只用桶，旧hash分批删除
+        tokenService.useLoginStore(LoginStore.Mode.BUCKETED, 16);
+        final LoginStore.MigrationResult move = tokenService.migrateLogins(300);
+        assertEquals(1999, move.getDeleted());
+        assertEquals(0, move.getLegacyRemaining());
+        assertEquals("u1999", tokenService.checkToken("t1999"));
+        assertEquals("u2000", tokenService.checkToken("t2000"));
+        assertNull(tokenService.checkToken("t2"));
+    }
+
+    private static void awaitSubscribed(final TokenService service) throws InterruptedException {
+        while (!service.tokenCacheStats().isSubscribed()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.qixiafei.redisinaction.fakewebretailer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TokenWriteBehindTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void tokensStayReadableWhileBeingWritten() {
+        final AtomicReference<TokenWriteBehind> self = new AtomicReference<>();
+        final List<String> seen = new ArrayList<>();
+        final TokenWriteBehind writeBehind = new TokenWriteBehind(updates -> updates.forEach(
+                update -> seen.add(self.get().bufferedUser(update.getToken()))), 25, 100, NEVER, 1000);
+        self.set(writeBehind);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(writeBehind.offer(new TokenUpdate("t" + i, "u" + i, null, i)));
+            }
+            writeBehind.flush();
+            assertEquals(10, seen.size());
+            seen.forEach(Assert::assertNotNull);
+            assertNull(writeBehind.bufferedUser("t0"));
+        } finally {
+            writeBehind.close();
+        }
+    }
+
+    @Test
+    public void connectionErrorsRequeueAndDataErrorsDrop() {
+        final AtomicInteger calls = new AtomicInteger();
+        final List<TokenUpdate> written = new ArrayList<>();
+        final Consumer<List<TokenUpdate>> writer = updates -> {
+            switch (calls.incrementAndGet()) {
+                case 1:
+                    throw new JedisConnectionException("down");
+                case 2:
+                    written.addAll(updates);
+                    return;
+                default:
+                    throw new JedisDataException("WRONGTYPE Operation against a key holding the wrong kind of value");
+            }
+        };
+        final TokenWriteBehind writeBehind = new TokenWriteBehind(writer, 25, 100, NEVER, 1000);
+        try {
+            writeBehind.offer(new TokenUpdate("t1", "u1", null, 1));
+            try {
+                writeBehind.flush();
+                fail();
+            } catch (JedisConnectionException e) {
+                assertEquals("u1", writeBehind.bufferedUser("t1"));
+            }
+            writeBehind.flush();
+            assertEquals(1, written.size());
+
+            writeBehind.offer(new TokenUpdate("t2", "u2", null, 2));
+            writeBehind.flush();
+            assertNull(writeBehind.bufferedUser("t2"));
+            final TokenWriteBehind.Stats stats = writeBehind.stats();
+            assertEquals(0, stats.getBuffered());
+            assertEquals(2, stats.getFailures());
+            assertEquals(1, stats.getDroppedTokens());
+            assertEquals(1, stats.getFlushedTokens());
+        } finally {
+            writeBehind.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.qixiafei.redisinaction.fakewebretailer.cleaner;
+
+import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.fakewebretailer.TokenService;
+import com.qixiafei.redisinaction.fakewebretailer.TokenUpdate;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionCleanerTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.sharded(1, 1);
+
+    private RedisClient client;
+
+    private TokenService tokenService;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        tokenService = new TokenService();
+        ReflectionTestUtils.setField(tokenService, "redisClient", client);
+    }
+
+    @After
+    public void tearDown() {
+        tokenService.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void cleansOldestSessionsInParallelPipelines() throws Exception {
+        final List<TokenUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            updates.add(new TokenUpdate("t" + i, "u" + i, "item", i));
+            client.hset(RedisKeyConstants.CART_HASH_KEY_PREFIX + "t" + i, "item", "1");
+        }
+        tokenService.updateTokens(updates);
+        final LoginCleaner loginCleaner = new LoginCleaner();
+        ReflectionTestUtils.setField(loginCleaner, "tokenService", tokenService);
+
+        final SessionCleaner cleaner = new SessionCleaner(client, Arrays.asList(loginCleaner, new CartCleaner(),
+                new ViewLogCleaner(), new RecentCleaner()), 1000, 4, 50, 400, 1000);
+        try {
+            while (cleaner.stats().getCleanedTokens() < 2000) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            final SessionCleaner.Stats stats = cleaner.stats();
+            assertEquals(2000, stats.getCleanedTokens());
+            assertEquals(0, stats.getFailures());
+            // 每个令牌的购物车、浏览记录各一条del，每个登录hash一条hdel，recent一条zrem
+            assertTrue(stats.getCommands() >= 4000 + 2 * stats.getBatches());
+            assertTrue(stats.getBatches() <= 2000 / 50);
+            assertTrue(stats.getBatchCap() > 50);
+        } finally {
+            cleaner.close();
+        }
+
+        assertEquals(1000L, client.zcard(RedisKeyConstants.RECENT_ZSET_KEY).longValue());
+        for (int i = 0; i < 3000; i += 7) {
+            final String token = "t" + i;
+            final boolean cleaned = i < 2000;
+            assertEquals(cleaned ? null : "u" + i, client.hget(RedisKeyConstants.LOGIN_HASH_KEY, token));
+            assertEquals(cleaned ? null : "1", client.hget(RedisKeyConstants.CART_HASH_KEY_PREFIX + token, "item"));
+            assertEquals(cleaned ? 0L : 1L,
+                    client.zcard(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + token).longValue());
+        }
+        assertNull(tokenService.checkToken("t1999"));
+        assertEquals("u2000", tokenService.checkToken("t2000"));
+    }
+
+    @Test(timeout = 10000)
+    public void failedBatchStaysInRecentUntilRetried() throws Exception {
+        final List<TokenUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            updates.add(new TokenUpdate("t" + i, "u" + i, null, i));
+        }
+        tokenService.updateTokens(updates);
+        client.set("bad", "string");
+        // t7所在的一批第一阶段出现WRONGTYPE
+        final CustomCleaner failing = new CustomCleaner() {
+            @Override
+            public void clean(final String[] tokenArr, final CleanPlan plan) {
+                if (Arrays.asList(tokenArr).contains("t7")) {
+                    plan.add("bad", pipeline -> pipeline.hdel("bad", "t7"));
+                }
+            }
+
+            @Override
+            public void regLog() {
+            }
+        };
+
+        final SessionCleaner cleaner = new SessionCleaner(client, Arrays.asList(failing, new RecentCleaner()),
+                50, 1, 10, 10, 1000);
+        try {
+            while (cleaner.stats().getFailures() == 0) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(7D, client.zscore(RedisKeyConstants.RECENT_ZSET_KEY, "t7"), 0);
+            client.del("bad");
+            while (client.zcard(RedisKeyConstants.RECENT_ZSET_KEY) > 50) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertNull(client.zscore(RedisKeyConstants.RECENT_ZSET_KEY, "t7"));
+        } finally {
+            cleaner.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.RedisKeyConstants;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Description: 对比阻塞调用和异步门面的延迟，模拟TokenService.updateToken的四次写入，阻塞方式顺序执行，异步方式并发发出后统一等待.
+ * 用法：java AsyncLatencyComparison [host] [port] [threads] [iterations] </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/15 17:20</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class AsyncLatencyComparison {
+
+    public static void main(String[] args) throws InterruptedException {
+        final String host = args.length > 0 ? args[0] : "127.0.0.1";
+        final int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        final int threads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        final int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+
+        final RedisClient client = RedisClient.standAlonePool(host, port, 2000, 2000, null,
+                threads, threads, 1, false);
+        try {
+            // 预热
+            run("warmup-blocking", threads, iterations / 10, token -> blocking(client, token));
+            run("warmup-async", threads, iterations / 10, token -> async(client, token));
+
+            run("blocking", threads, iterations, token -> blocking(client, token));
+            run("async", threads, iterations, token -> async(client, token));
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void blocking(final RedisClient client, final String token) {
+        final long now = System.currentTimeMillis();
+        final String viewKey = RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + token;
+        client.hset(RedisKeyConstants.LOGIN_HASH_KEY, token, "user");
+        client.zadd(RedisKeyConstants.RECENT_ZSET_KEY, now, token);
+        client.zadd(viewKey, now, "item");
+        client.zremRangeByRank(viewKey, 0, -26);
+    }
+
+    private static void async(final RedisClient client, final String token) {
+        final long now = System.currentTimeMillis();
+        final String viewKey = RedisKeyConstants.VIEW_ZSET_KEY_PREFIX + token;
+        final RedisAsyncClient async = client.async();
+        CompletableFuture.allOf(
+                async.hset(RedisKeyConstants.LOGIN_HASH_KEY, token, "user"),
+                async.zadd(RedisKeyConstants.RECENT_ZSET_KEY, now, token),
+                async.zadd(viewKey, now, "item"),
+                async.zremRangeByRank(viewKey, 0, -26)).join();
+    }
+
+    private static void run(final String name, final int threads, final int iterations, final Op op)
+            throws InterruptedException {
+        final long[][] latencies = new long[threads][iterations];
+        final CountDownLatch done = new CountDownLatch(threads);
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final long[] own = latencies[t];
+            final Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        final String token = UUID.randomUUID().toString();
+                        final long begin = System.nanoTime();
+                        op.run(token);
+                        own[i] = System.nanoTime() - begin;
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+        final long elapsed = System.nanoTime() - start;
+
+        final long[] all = new long[threads * iterations];
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, t * iterations, iterations);
+        }
+        Arrays.sort(all);
+        final long sum = Arrays.stream(all).sum();
+        System.out.printf("%-16s ops=%d throughput=%.0f/s avg=%dus p50=%dus p99=%dus p999=%dus%n",
+                name, all.length, all.length / (elapsed / 1e9),
+                TimeUnit.NANOSECONDS.toMicros(sum / all.length),
+                TimeUnit.NANOSECONDS.toMicros(percentile(all, 0.5)),
+                TimeUnit.NANOSECONDS.toMicros(percentile(all, 0.99)),
+                TimeUnit.NANOSECONDS.toMicros(percentile(all, 0.999)));
+    }
+
+    private static long percentile(final long[] sorted, final double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    private interface Op {
+        void run(String token);
+    }
+}
@@ -0,0 +1,166 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AutoPipelinerTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    private JedisPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new JedisPool(new GenericObjectPoolConfig(), "127.0.0.1", redis.port(), 2000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentCommandsShareOnePipeline() throws Exception {
+        final AutoPipeliner pipeliner = new AutoPipeliner(pool, 16, TimeUnit.MILLISECONDS.toMicros(200), 1, 0);
+        try {
+            // 只有一个发送线程调用action，同一批命令拿到的是同一个Pipeline
+            final Map<Pipeline, Integer> batches = Collections.synchronizedMap(new IdentityHashMap<>());
+            final List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(pipeliner.submit(pipeline -> {
+                    batches.merge(pipeline, 1, Integer::sum);
+                    return pipeline.incr("n");
+                }));
+            }
+            final Set<Long> values = new HashSet<>();
+            for (CompletableFuture<Long> future : futures) {
+                values.add(future.get());
+            }
+            assertEquals(40, values.size());
+            assertEquals(3, batches.size());
+            batches.values().forEach(size -> assertTrue(size <= 16));
+            assertEquals("40", pipeliner.execute(pipeline -> pipeline.get("n")));
+        } finally {
+            pipeliner.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void errorsOnlyFailTheirOwnCommand() throws Exception {
+        final AutoPipeliner pipeliner = new AutoPipeliner(pool, 16, TimeUnit.MILLISECONDS.toMicros(100), 1, 0);
+        try {
+            pipeliner.execute(pipeline -> pipeline.set("s", "v"));
+            final CompletableFuture<Long> wrongType = pipeliner.submit(pipeline -> pipeline.lpush("s", "x"));
+            final CompletableFuture<Object> badArgument = pipeliner.submit(pipeline -> {
+                throw new IllegalArgumentException("bad");
+            });
+            final CompletableFuture<String> ok = pipeliner.submit(pipeline -> pipeline.get("s"));
+
+            assertEquals("v", ok.get());
+            assertCause(wrongType, JedisDataException.class);
+            assertCause(badArgument, IllegalArgumentException.class);
+            try {
+                pipeliner.execute(pipeline -> pipeline.lpush("s", "x"));
+                fail();
+            } catch (JedisDataException e) {
+                assertTrue(e.getMessage().startsWith("WRONGTYPE"));
+            }
+            assertNull(pipeliner.execute(pipeline -> pipeline.get("missing")));
+        } finally {
+            pipeliner.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void closeCompletesEveryCommandInFlight() throws Exception {
+        final AutoPipeliner pipeliner = new AutoPipeliner(pool, 32, 0, 2, 0);
+        final List<CompletableFuture<Long>> futures = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch started = new CountDownLatch(4);
+        final List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Thread submitter = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 5000; i++) {
+                    futures.add(pipeliner.submit(pipeline -> pipeline.incr("n")));
+                }
+            });
+            submitter.start();
+            submitters.add(submitter);
+        }
+        started.await();
+        TimeUnit.MILLISECONDS.sleep(5);
+        pipeliner.close();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        // 每个命令要么成功，要么以关闭异常结束，不会一直挂起
+        assertEquals(20000, futures.size());
+        for (CompletableFuture<Long> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof JedisException);
+            }
+        }
+        try {
+            pipeliner.execute(pipeline -> pipeline.get("n"));
+            fail();
+        } catch (JedisException e) {
+            assertEquals("auto pipeline已关闭", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void executeGivesUpAfterResultTimeout() {
+        final AutoPipeliner pipeliner = new AutoPipeliner(pool, 1, 0, 1, 100);
+        try {
+            final long start = System.nanoTime();
+            try {
+                // 阻塞1秒的命令占住唯一的共享连接
+                pipeliner.execute(pipeline -> pipeline.blpop(1, "empty"));
+                fail();
+            } catch (JedisConnectionException e) {
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+            }
+        } finally {
+            pipeliner.close();
+        }
+    }
+
+    private static void assertCause(final CompletableFuture<?> future, final Class<?> type) throws Exception {
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchCommandsTest {
+
+    @Rule
+    public final EmbeddedRedisRule standalone = EmbeddedRedisRule.standalone();
+
+    @Rule
+    public final EmbeddedRedisRule sharded = EmbeddedRedisRule.sharded(1, 1);
+
+    @Test
+    public void chunkBoundaries() {
+        for (RedisClient client : new RedisClient[]{standalone.client(), sharded.client()}) {
+            // 比分片大小少1、相等、多1，以及正好两个分片
+            for (int size : new int[]{1, 9, 10, 11, 20}) {
+                final String prefix = "k" + size + ":";
+                final Map<String, String> hash = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    hash.put(prefix + i, "v" + i);
+                }
+                assertTrue(client.mset(hash, 10));
+
+                final List<String> keys = new ArrayList<>(hash.keySet());
+                keys.add(prefix + "missing");
+                keys.add(prefix + 0);
+                final List<String> values = client.mget(keys, 10);
+                assertEquals(size + 2, values.size());
+                for (int i = 0; i < size; i++) {
+                    assertEquals("v" + i, values.get(i));
+                }
+                assertNull(values.get(size));
+                assertEquals("v0", values.get(size + 1));
+
+                final List<String> hashKeys = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    client.hset(prefix + "h" + i, "f", "v" + i);
+                    hashKeys.add(prefix + "h" + i);
+                }
+                hashKeys.add(prefix + "hmissing");
+                final List<Map<String, String>> hashes = client.hgetAll(hashKeys, 10);
+                assertEquals(size + 1, hashes.size());
+                for (int i = 0; i < size; i++) {
+                    assertEquals(Collections.singletonMap("f", "v" + i), hashes.get(i));
+                }
+                assertNull(hashes.get(size));
+            }
+        }
+    }
+
+    @Test
+    public void emptyInput() {
+        for (RedisClient client : new RedisClient[]{standalone.client(), sharded.client()}) {
+            assertEquals(Collections.emptyList(), client.mget(Collections.emptyList(), 10));
+            assertEquals(Collections.emptyList(), client.hgetAll(Collections.emptyList(), 10));
+            assertTrue(client.mset(new HashMap<>(), 10));
+            assertEquals(Collections.emptyList(), client.mget(Collections.emptyList()));
+        }
+    }
+
+    @Test
+    public void compressedKeysUseTheSameChunking() {
+        final RedisClient client = standalone.client();
+        client.enableCompression(16, 1, "z:");
+        final Map<String, String> hash = new LinkedHashMap<>();
+        for (int i = 0; i < 25; i++) {
+            hash.put("z:" + i, String.join("", Collections.nCopies(50, Integer.toString(i))));
+        }
+        assertTrue(client.mset(hash, 10));
+        assertEquals(new ArrayList<>(hash.values()), client.mget(new ArrayList<>(hash.keySet()), 10));
+    }
+
+    @Test
+    public void chunkSizeMustBePositive() {
+        final RedisClient client = standalone.client();
+        for (int chunkSize : new int[]{0, -1}) {
+            try {
+                client.mget(Collections.singletonList("k"), chunkSize);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // 不会陷入死循环
+            }
+            try {
+                client.mset(Collections.singletonMap("k", "v"), chunkSize);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // 同上
+            }
+            try {
+                client.hgetAll(Collections.singletonList("k"), chunkSize);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // 同上
+            }
+        }
+    }
+}
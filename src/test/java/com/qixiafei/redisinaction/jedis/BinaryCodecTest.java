@@ -0,0 +1,57 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class BinaryCodecTest {
+
+    private static final BinaryCodec<Object[]> CODEC = BinaryCodec.of((out, values) -> out
+                    .writeString((String) values[0])
+                    .writeLong((Long) values[1])
+                    .writeVarInt((Integer) values[2])
+                    .writeDouble((Double) values[3])
+                    .writeBoolean((Boolean) values[4])
+                    .writeBytes((byte[]) values[5]),
+            in -> new Object[]{in.readString(), in.readLong(), in.readVarInt(), in.readDouble(), in.readBoolean(),
+                    in.readBytes()});
+
+    @Test
+    public void roundTrip() {
+        final Object[] values = {"齐霞飞😀abc", -123456789L, 300, 3.25, true, new byte[]{1, 2, 3}};
+        final Object[] decoded = CODEC.decode(CODEC.encode(values));
+        Assert.assertEquals(values[0], decoded[0]);
+        Assert.assertEquals(values[1], decoded[1]);
+        Assert.assertEquals(values[2], decoded[2]);
+        Assert.assertEquals(values[3], decoded[3]);
+        Assert.assertEquals(values[4], decoded[4]);
+        Assert.assertArrayEquals((byte[]) values[5], (byte[]) decoded[5]);
+    }
+
+    @Test
+    public void nullsRoundTrip() {
+        final Object[] decoded = CODEC.decode(CODEC.encode(new Object[]{null, 0L, 0, 0.0, false, null}));
+        Assert.assertNull(decoded[0]);
+        Assert.assertNull(decoded[5]);
+    }
+
+    @Test
+    public void stringMatchesJdkUtf8() {
+        final String value = "aé中😀\ud800z";
+        final BinaryCodec<String> codec = BinaryCodec.of(BinaryCodec.Output::writeString, BinaryCodec.Input::readString);
+        final byte[] encoded = codec.encode(value);
+        final byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(expected.length + 1, encoded[0]);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], encoded[i + 1]);
+        }
+    }
+
+    @Test
+    public void smallNumbersAreCompact() {
+        final BinaryCodec<Long> codec = BinaryCodec.of(BinaryCodec.Output::writeLong, BinaryCodec.Input::readLong);
+        Assert.assertEquals(1, codec.encode(-1L).length);
+        Assert.assertEquals(Long.MIN_VALUE, (long) codec.decode(codec.encode(Long.MIN_VALUE)));
+    }
+}
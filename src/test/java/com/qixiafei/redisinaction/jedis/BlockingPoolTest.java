@@ -0,0 +1,67 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingPoolTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone(2);
+
+    private RedisClient client;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        client.enableBlockingPool(8, 8, 500);
+    }
+
+    @Test(timeout = 10000)
+    public void parkedConsumersDoNotStarveFastCommands() throws Exception {
+        final ExecutorService consumers = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<RedisClient.PopResult>> pops = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                pops.add(consumers.submit(() -> client.blpop(5, "queue")));
+            }
+            while (client.metricsSnapshot().getPools().get("blocking-master").getActive() < 4) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+
+            client.set("k", "v");
+            assertEquals("v", client.get("k"));
+            assertEquals(0, client.metricsSnapshot().getPools().get("master").getWaiters());
+
+            for (int i = 0; i < 4; i++) {
+                client.rpush("queue", Integer.toString(i));
+            }
+            for (Future<RedisClient.PopResult> pop : pops) {
+                assertEquals("queue", pop.get().getKey());
+            }
+        } finally {
+            consumers.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void blockingCommandTimesOutAndRestoresSocketTimeout() {
+        assertNull(client.brpopLpush("empty", "dest", 1));
+        assertNull(client.brpop(1, "empty"));
+        client.rpush("empty", "x");
+        assertEquals("x", client.brpopLpush("empty", "dest", 1));
+        assertTrue(client.metricsSnapshot().getCommands().containsKey("BRPOPLPUSH"));
+    }
+}
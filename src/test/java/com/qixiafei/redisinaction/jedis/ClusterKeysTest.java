@@ -0,0 +1,25 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.RedisKeyConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClusterKeysTest {
+
+    @Test
+    public void taggedKeysShareSlot() {
+        final String token = "6f1c8a4e-2b7d-4f0e-9a53-1d2c3b4a5e6f";
+        final String cart = ClusterKeys.tagged(RedisKeyConstants.CART_HASH_KEY_PREFIX, token);
+        final String view = ClusterKeys.tagged(RedisKeyConstants.VIEW_ZSET_KEY_PREFIX, token);
+        Assert.assertEquals("cart:{" + token + "}", cart);
+        Assert.assertTrue(ClusterKeys.sameSlot(cart, view));
+        Assert.assertEquals(ClusterKeys.slot(token), ClusterKeys.slot(cart));
+    }
+
+    @Test
+    public void slotMatchesRedisSpec() {
+        // CLUSTER KEYSLOT foo => 12182
+        Assert.assertEquals(12182, ClusterKeys.slot("foo"));
+        Assert.assertFalse(ClusterKeys.sameSlot("cart:a", "cart:b", "cart:c", "cart:d"));
+    }
+}
@@ -0,0 +1,335 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisClusterMaxAttemptsException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClusterRouterTest {
+
+    private static final int MAX_REDIRECTIONS = 3;
+
+    private final List<StubNode> stubs = new ArrayList<>();
+
+    /**
+     * CLUSTER SLOTS里所有slot的所属节点，所有节点回答一致.
+     */
+    private volatile StubNode owner;
+
+    private ClusterRouter router;
+
+    @After
+    public void tearDown() throws IOException {
+        if (router != null) {
+            router.close();
+        }
+        for (StubNode stub : stubs) {
+            stub.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void movedFollowsTheRedirectAndUpdatesTheSlotTable() {
+        final StubNode a = node("a");
+        final StubNode b = node("b");
+        owner = a;
+        a.handler = (asking, args) -> moved(args.get(1), b);
+        router = router(a);
+        // slot迁移完成后，a回复MOVED，CLUSTER SLOTS也已经指向b
+        owner = b;
+        assertEquals("b", router.execute("k", jedis -> jedis.get("k")));
+        assertEquals(1, a.count("get"));
+        assertTrue(a.count("cluster") + b.count("cluster") >= 2);
+        assertEquals(b.getPort(), port(router, "k"));
+
+        // 之后直接发往b
+        assertEquals("b", router.execute("k", jedis -> jedis.get("k")));
+        assertEquals(1, a.count("get"));
+        assertEquals(2, b.count("get"));
+    }
+
+    @Test(timeout = 10000)
+    public void askSendsAskingAndKeepsTheSlotTable() {
+        final StubNode a = node("a");
+        final StubNode b = node("b");
+        owner = a;
+        a.handler = (asking, args) -> ask(args.get(1), b);
+        // 与redis一致，没有ASKING时迁入节点回复MOVED
+        b.handler = (asking, args) -> asking ? bulk("b") : moved(args.get(1), a);
+        router = router(a);
+        final int refreshes = a.count("cluster");
+
+        assertEquals("b", router.execute("k", jedis -> jedis.get("k")));
+        assertEquals(Arrays.asList("asking", "get k"), b.received);
+        // ASK只影响本次命令，不刷新也不修改slot表
+        assertEquals(a.getPort(), port(router, "k"));
+        assertEquals(refreshes, a.count("cluster"));
+        assertEquals(0, b.count("cluster"));
+
+        assertEquals("b", router.execute("k", jedis -> jedis.get("k")));
+        assertEquals(2, a.count("get"));
+        assertEquals(2, b.count("asking"));
+    }
+
+    @Test(timeout = 10000)
+    public void connectionFailureRefreshesTheSlotTableAndRetries() throws IOException {
+        final StubNode a = node("a");
+        final StubNode b = node("b");
+        owner = a;
+        router = router(a, b);
+        assertEquals(a.getPort(), port(router, "k"));
+
+        // a宕机，b接管了所有slot
+        a.close();
+        owner = b;
+        assertEquals("b", router.execute("k", jedis -> jedis.get("k")));
+        assertEquals(b.getPort(), port(router, "k"));
+    }
+
+    @Test(timeout = 10000)
+    public void redirectLoopGivesUpAfterMaxRedirections() {
+        final StubNode a = node("a");
+        final StubNode b = node("b");
+        owner = a;
+        a.handler = (asking, args) -> moved(args.get(1), b);
+        b.handler = (asking, args) -> moved(args.get(1), a);
+        router = router(a);
+        try {
+            router.execute("k", jedis -> jedis.get("k"));
+            fail();
+        } catch (JedisClusterMaxAttemptsException e) {
+            assertTrue(e.getCause().getMessage().startsWith("MOVED"));
+        }
+        assertEquals(MAX_REDIRECTIONS + 1, a.count("get") + b.count("get"));
+    }
+
+    @Test(timeout = 10000)
+    public void refreshInProgressDoesNotBlockOtherRedirects() throws Exception {
+        final StubNode a = node("a");
+        final StubNode b = node("b");
+        owner = a;
+        a.handler = (asking, args) -> moved(args.get(1), b);
+        router = router(a);
+        assertNotEquals(JedisClusterCRC16.getSlot("k"), JedisClusterCRC16.getSlot("x"));
+
+        // 第一个MOVED触发的刷新卡在CLUSTER SLOTS上
+        final CountDownLatch gate = new CountDownLatch(1);
+        a.slotsGate = gate;
+        b.slotsGate = gate;
+        final int refreshes = a.count("cluster") + b.count("cluster");
+        final CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                () -> router.execute("k", jedis -> jedis.get("k")));
+        await(() -> a.count("cluster") + b.count("cluster") > refreshes);
+
+        // 其他slot的MOVED拿不到刷新锁，直接按MOVED的目标重试，不等待正在进行的刷新
+        assertEquals("b", router.execute("x", jedis -> jedis.get("x")));
+        assertEquals(refreshes + 1, a.count("cluster") + b.count("cluster"));
+        assertFalse(first.isDone());
+
+        gate.countDown();
+        assertEquals("b", first.get(5, TimeUnit.SECONDS));
+    }
+
+    private StubNode node(final String value) {
+        final StubNode stub;
+        try {
+            stub = new StubNode(value).start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        stubs.add(stub);
+        return stub;
+    }
+
+    private ClusterRouter router(final StubNode... seeds) {
+        final StringBuilder addrs = new StringBuilder();
+        for (StubNode seed : seeds) {
+            addrs.append(addrs.length() == 0 ? "" : ",").append("127.0.0.1:").append(seed.getPort());
+        }
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        return new ClusterRouter(addrs.toString(), config, 1000, 1000, null, MAX_REDIRECTIONS, 2);
+    }
+
+    /**
+     * slot表中key所属节点的端口.
+     */
+    private static int port(final ClusterRouter router, final String key) {
+        try (Jedis jedis = router.getResource(key)) {
+            return jedis.getClient().getPort();
+        }
+    }
+
+    private static String moved(final String key, final StubNode target) {
+        return "-MOVED " + JedisClusterCRC16.getSlot(key) + " 127.0.0.1:" + target.getPort() + "\r\n";
+    }
+
+    private static String ask(final String key, final StubNode target) {
+        return "-ASK " + JedisClusterCRC16.getSlot(key) + " 127.0.0.1:" + target.getPort() + "\r\n";
+    }
+
+    private static String bulk(final String value) {
+        return "$" + value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + value + "\r\n";
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    /**
+     * 命令的应答，返回编码好的RESP.
+     */
+    private interface Handler {
+        String reply(boolean asking, List<String> args);
+    }
+
+    /**
+     * 冒充集群节点：CLUSTER SLOTS按{@link #owner}回答，ASKING只对下一条命令生效，其他命令交给handler.
+     */
+    private final class StubNode implements Closeable {
+
+        private final ServerSocket server;
+
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+        /**
+         * 收到的命令，小写命令名和参数用空格连接.
+         */
+        private final List<String> received = new CopyOnWriteArrayList<>();
+
+        private volatile Handler handler;
+
+        /**
+         * 不为null时，CLUSTER SLOTS等它放行后才回答.
+         */
+        private volatile CountDownLatch slotsGate;
+
+        private StubNode(final String value) throws IOException {
+            server = new ServerSocket(0);
+            handler = (asking, args) -> bulk(value);
+        }
+
+        StubNode start() {
+            final Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        sockets.add(socket);
+                        final Thread worker = new Thread(() -> serve(socket), "stub-node-" + getPort());
+                        worker.setDaemon(true);
+                        worker.start();
+                    } catch (IOException e) {
+                        // 节点关闭
+                    }
+                }
+            }, "stub-node-" + getPort());
+            acceptor.setDaemon(true);
+            acceptor.start();
+            return this;
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        int count(final String command) {
+            int count = 0;
+            for (String line : received) {
+                if (line.equals(command) || line.startsWith(command + " ")) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        private void serve(final Socket socket) {
+            try (Socket s = socket) {
+                final InputStream in = new BufferedInputStream(s.getInputStream());
+                final OutputStream out = s.getOutputStream();
+                boolean asking = false;
+                String line;
+                while ((line = readLine(in)) != null) {
+                    final List<String> args = new ArrayList<>();
+                    for (int i = Integer.parseInt(line.substring(1)); i > 0; i--) {
+                        readLine(in);
+                        args.add(readLine(in));
+                    }
+                    args.set(0, args.get(0).toLowerCase());
+                    received.add(String.join(" ", args));
+                    final String reply;
+                    if ("asking".equals(args.get(0))) {
+                        asking = true;
+                        reply = "+OK\r\n";
+                    } else if ("cluster".equals(args.get(0))) {
+                        final CountDownLatch gate = slotsGate;
+                        if (gate != null) {
+                            gate.await();
+                        }
+                        reply = slots(owner);
+                    } else {
+                        reply = handler.reply(asking, args);
+                        asking = false;
+                    }
+                    out.write(reply.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // 连接断开或节点关闭
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private String slots(final StubNode master) {
+            return "*1\r\n*3\r\n:0\r\n:16383\r\n*2\r\n" + bulk("127.0.0.1") + ":" + master.getPort() + "\r\n";
+        }
+
+        private String readLine(final InputStream in) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    return null;
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
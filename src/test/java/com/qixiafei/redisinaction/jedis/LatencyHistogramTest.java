@@ -0,0 +1,55 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketUpperBoundCoversValue() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            final long upper = LatencyHistogram.upperBound(LatencyHistogram.index(value));
+            Assert.assertTrue(upper >= value);
+            // 相对误差不超过1/16
+            Assert.assertTrue(upper - value <= value / 16 + 1);
+        }
+    }
+
+    @Test
+    public void valuesBeyondTheLastExponentGoToTheOverflowBucket() {
+        final long limit = 1L << 41;
+        Assert.assertEquals(limit - 1, LatencyHistogram.upperBound(LatencyHistogram.index(limit - 1)));
+        final int overflow = LatencyHistogram.index(limit);
+        Assert.assertEquals(overflow, LatencyHistogram.index(limit + (limit >> 1)));
+        Assert.assertEquals(overflow, LatencyHistogram.index(Long.MAX_VALUE));
+        Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(overflow));
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(limit * 3);
+        Assert.assertEquals(2, histogram.count());
+        Assert.assertEquals(limit * 3, histogram.percentile(0.99));
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(1000, histogram.count());
+        Assert.assertEquals(1_000_000, histogram.maxNanos());
+        assertClose(500_000, histogram.percentile(0.5));
+        assertClose(990_000, histogram.percentile(0.99));
+        Assert.assertEquals(1_000_000, histogram.percentile(0.999));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.count());
+        Assert.assertEquals(0, histogram.percentile(0.5));
+    }
+
+    private static void assertClose(final long expected, final long actual) {
+        Assert.assertTrue("expected≈" + expected + " actual=" + actual,
+                actual >= expected && actual <= expected + expected / 16);
+    }
+}
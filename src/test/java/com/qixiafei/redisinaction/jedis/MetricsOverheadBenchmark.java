@@ -0,0 +1,84 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.sun.management.ThreadMXBean;
+import redis.clients.jedis.Protocol.Command;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <P>Description: 测量RedisClient命令监控每次调用的额外开销（两次nanoTime加一次直方图记录），不需要redis.
+ * 与只调用两次nanoTime的对照组比较，差值即为直方图记录的开销；同时统计线程内存分配，
+ * 只有每种命令第一次记录时创建直方图的分配，之后不再分配.
+ * 用法：java MetricsOverheadBenchmark [threads] [iterations] </P>
+ * <P>CALLED BY:   齐霞飞 </P>
+ * <P>UPDATE BY:    </P>
+ * <P>CREATE DATE: 2019/5/17 16:40</P>
+ * <P>UPDATE DATE: </P>
+ *
+ * @author qixiafei
+ * @version 1.0
+ * @since java 1.8.0
+ */
+public class MetricsOverheadBenchmark {
+
+    private static final Command[] MIX = {Command.GET, Command.HGET, Command.HSET, Command.ZADD, Command.INCR};
+
+    public static void main(String[] args) throws InterruptedException {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        // 预热，让JIT编译记录路径
+        run("warmup", 1, iterations / 10, true);
+        run("warmup", threads, iterations / 10, true);
+
+        run("baseline", 1, iterations, false);
+        run("metrics", 1, iterations, true);
+        run("baseline", threads, iterations, false);
+        run("metrics", threads, iterations, true);
+    }
+
+    /**
+     * 每个线程循环调用，统计线程CPU时间，避免线程数超过CPU核数时把调度等待算进开销.
+     *
+     * @param record 为false时只调用两次nanoTime，作为对照
+     */
+    private static void run(final String name, final int threads, final int iterations, final boolean record)
+            throws InterruptedException {
+        final RedisMetrics metrics = new RedisMetrics();
+        final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final AtomicLong cpuNanos = new AtomicLong();
+        final AtomicLong allocated = new AtomicLong();
+        final AtomicLong sink = new AtomicLong();
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                final long id = Thread.currentThread().getId();
+                final long allocatedBefore = threadBean.getThreadAllocatedBytes(id);
+                final long cpuBefore = threadBean.getCurrentThreadCpuTime();
+                long blackhole = 0;
+                for (int i = 0; i < iterations; i++) {
+                    final Command command = MIX[i % MIX.length];
+                    final long begin = System.nanoTime();
+                    // 模拟一次很快的命令
+                    blackhole += i;
+                    final long elapsed = System.nanoTime() - begin;
+                    if (record) {
+                        metrics.record(command, elapsed);
+                    } else {
+                        blackhole += elapsed;
+                    }
+                }
+                cpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpuBefore);
+                allocated.addAndGet(threadBean.getThreadAllocatedBytes(id) - allocatedBefore);
+                sink.addAndGet(blackhole);
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        final long total = (long) threads * iterations;
+        System.out.printf("%s threads=%d calls=%d cpu/call=%.1fns allocated=%dB (%d)%n",
+                name, threads, total, (double) cpuNanos.get() / total, allocated.get(), sink.get() & 1);
+    }
+}
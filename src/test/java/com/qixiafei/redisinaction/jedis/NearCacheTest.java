@@ -0,0 +1,224 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NearCacheTest {
+
+    private static final String CHANNEL = "channel:near";
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    private RedisClient client;
+
+    private RedisClient other;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        other = RedisClient.standAlonePool("127.0.0.1", redis.port(), 1000, 1000, null, 8, 8, 0, false);
+    }
+
+    @After
+    public void tearDown() {
+        other.close();
+    }
+
+    @Test(timeout = 10000)
+    public void writesInvalidateLocallyAndOnOtherInstances() throws Exception {
+        client.enableNearCache(100, NearCache.EvictionPolicy.LRU, TimeUnit.MINUTES.toMillis(1), CHANNEL);
+        other.enableNearCache(100, NearCache.EvictionPolicy.LRU, TimeUnit.MINUTES.toMillis(1), CHANNEL);
+        await(() -> client.nearCacheStats().isSubscribed() && other.nearCacheStats().isSubscribed());
+
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            jedis.set("k", "v1");
+            jedis.hset("h", "f", "1");
+        }
+        assertEquals("v1", client.get("k"));
+        assertEquals("1", client.hget("h", "f"));
+        assertEquals(Collections.singletonMap("f", "1"), client.hgetAll("h"));
+        assertNull(client.get("missing"));
+
+        // 绕过客户端直接写入不会失效，仍然命中本地缓存
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            jedis.set("k", "raw");
+            jedis.set("missing", "raw");
+        }
+        assertEquals("v1", client.get("k"));
+        assertNull(client.get("missing"));
+
+        // 本实例的写入立即失效
+        client.set("k", "v2");
+        assertEquals("v2", client.get("k"));
+
+        // 其他实例的写入通过广播失效，hset同时让hgetAll的结果失效
+        other.set("k", "v3");
+        other.hset("h", "f", "2");
+        await(() -> "v3".equals(client.get("k")));
+        await(() -> "2".equals(client.hget("h", "f")));
+        assertEquals(Collections.singletonMap("f", "2"), client.hgetAll("h"));
+
+        final NearCache.Stats stats = client.nearCacheStats();
+        assertTrue(stats.getHits() >= 1);
+        assertEquals(1, stats.getNegativeHits());
+        assertTrue(stats.getRemoteInvalidations() >= 2);
+        assertEquals(0, stats.getResets());
+    }
+
+    @Test
+    public void messagePartsMayContainAnyCharacter() {
+        final List<String> parts = NearCache.parse(NearCache.message("id", "a\nb", "f:1", "", "中文\n"));
+        assertEquals("id", parts.get(0));
+        assertEquals(Arrays.asList("a\nb", "f:1", "", "中文\n"), parts.subList(2, parts.size()));
+
+        assertNull(NearCache.parse("id\n1558684800000\nk"));
+        assertNull(NearCache.parse("2:id13:1558684800000"));
+        assertNull(NearCache.parse("2:id1:13:k"));
+        assertNull(NearCache.parse("99999999999999999999:x"));
+        assertNull(NearCache.parse(""));
+    }
+
+    @Test(timeout = 10000)
+    public void keysWithNewlinesAreInvalidatedAndForeignMessagesIgnored() throws Exception {
+        client.enableNearCache(100, NearCache.EvictionPolicy.LRU, TimeUnit.MINUTES.toMillis(1), CHANNEL);
+        other.enableNearCache(100, NearCache.EvictionPolicy.LRU, TimeUnit.MINUTES.toMillis(1), CHANNEL);
+        await(() -> client.nearCacheStats().isSubscribed() && other.nearCacheStats().isSubscribed());
+        client.set("a\nb", "v1");
+        client.hset("h\n", "f\n1", "1");
+        assertEquals("v1", client.get("a\nb"));
+        assertEquals("1", client.hget("h\n", "f\n1"));
+
+        // 其他程序发到同一频道的消息不影响订阅线程
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            jedis.publish(CHANNEL, "hello");
+            jedis.publish(CHANNEL, "x\nnot-a-number\nk");
+            jedis.publish(CHANNEL, "2:id3:abc1:k");
+        }
+        other.set("a\nb", "v2");
+        other.hset("h\n", "f\n1", "2");
+        await(() -> "v2".equals(client.get("a\nb")));
+        await(() -> "2".equals(client.hget("h\n", "f\n1")));
+        assertTrue(client.nearCacheStats().isSubscribed());
+        assertEquals(0, client.nearCacheStats().getResets());
+    }
+
+    @Test(timeout = 10000)
+    public void evictsLeastRecentlyUsedEntryOfASegment() throws Exception {
+        // 每个分段最多2个条目
+        final NearCache cache = client.createNearCache(32, NearCache.EvictionPolicy.LRU, 0, 0, CHANNEL);
+        try {
+            await(() -> cache.stats().isSubscribed());
+            final List<String> keys = sameSegment(3);
+            final AtomicInteger loads = new AtomicInteger();
+            for (String key : keys) {
+                cache.get(key, () -> key + loads.incrementAndGet());
+            }
+            assertEquals(3, loads.get());
+            assertEquals(1, cache.stats().getEvictions());
+
+            // 第一个key已被淘汰，重新加载后淘汰的是最久未访问的第二个
+            assertEquals(keys.get(2) + 3, cache.get(keys.get(2), () -> "reloaded"));
+            assertEquals(keys.get(0) + 4, cache.get(keys.get(0), () -> keys.get(0) + loads.incrementAndGet()));
+            assertEquals(keys.get(2) + 3, cache.get(keys.get(2), () -> "reloaded"));
+            assertEquals(keys.get(1) + 5, cache.get(keys.get(1), () -> keys.get(1) + loads.incrementAndGet()));
+            assertEquals(3, cache.stats().getEvictions());
+            assertEquals(2, cache.stats().getSize());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void writesDuringALoadAreNotOverwrittenByTheLoadedValue() throws Exception {
+        final NearCache cache = client.createNearCache(100, NearCache.EvictionPolicy.LRU, 0, 0, CHANNEL);
+        try {
+            await(() -> cache.stats().isSubscribed());
+            // 加载期间key被写入，加载到的旧值不能放入缓存
+            assertEquals("old", cache.get("k", () -> {
+                cache.invalidate("k");
+                return "old";
+            }));
+            assertEquals("new", cache.get("k", () -> "new"));
+
+            // 加载期间写入的新值保留在缓存里
+            assertEquals("old", cache.hget("h", "f", () -> {
+                cache.put("h", "f", "written");
+                return "old";
+            }));
+            assertEquals("written", cache.hget("h", "f", () -> "loaded"));
+
+            // hash任一field的写入都会让整个hash的加载作废
+            assertEquals(Collections.singletonMap("x", "old"), cache.hgetAll("h", () -> {
+                cache.invalidate("h", "x");
+                return Collections.singletonMap("x", "old");
+            }));
+            assertEquals(Collections.singletonMap("x", "new"),
+                    cache.hgetAll("h", () -> Collections.singletonMap("x", "new")));
+
+            // negativeTtlMillis为0时不缓存不存在的值
+            assertNull(cache.get("missing", () -> null));
+            assertEquals("found", cache.get("missing", () -> "found"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void reconnectClearsTheCacheAndBypassesItMeanwhile() throws Exception {
+        final NearCache cache = client.createNearCache(100, NearCache.EvictionPolicy.LFU, 0, 0, CHANNEL);
+        try {
+            await(() -> cache.stats().isSubscribed());
+            assertEquals("v", cache.get("k", () -> "v"));
+            assertEquals("v", cache.get("k", () -> "stale"));
+
+            redis.restart(0);
+            await(() -> cache.stats().getResets() == 1);
+            await(() -> cache.stats().isSubscribed());
+            assertEquals("fresh", cache.get("k", () -> "fresh"));
+            assertEquals(1, cache.stats().getHits());
+        } finally {
+            cache.close();
+        }
+    }
+
+    /**
+     * 找出落在同一个分段里的key，分段按31 * key.hashCode()对16取模.
+     */
+    private static List<String> sameSegment(final int count) {
+        final List<String> keys = new ArrayList<>(count);
+        final int segment = segment("k0");
+        for (int i = 0; keys.size() < count; i++) {
+            if (segment("k" + i) == segment) {
+                keys.add("k" + i);
+            }
+        }
+        return keys;
+    }
+
+    private static int segment(final String key) {
+        return (31 * key.hashCode() & 0x7fffffff) % 16;
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
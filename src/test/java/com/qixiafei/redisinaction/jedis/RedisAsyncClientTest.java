@@ -0,0 +1,156 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RedisAsyncClientTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    @Test(timeout = 10000)
+    public void commandsCompleteWithTheirResults() throws Exception {
+        final RedisClient client = redis.client();
+        client.configureAsync(16, 2);
+        final RedisAsyncClient async = client.async();
+
+        assertTrue(async.set("k", "v").get());
+        assertEquals("v", async.get("k").get());
+        assertNull(async.get("missing").get());
+        assertTrue(async.setNotExist("lock", "1", 10).get());
+        assertFalse(async.setNotExist("lock", "2", 10).get());
+        assertEquals(1L, async.hset("h", "f", "1").get().longValue());
+        assertEquals(Collections.singletonMap("f", "1"), async.hgetAll("h").get());
+        assertEquals(3L, async.rpush("l", "a", "b", "c").get().longValue());
+        assertTrue(async.ltrim("l", 0, 1).get());
+        assertEquals(Arrays.asList("a", "b"), async.lrange("l", 0, -1).get());
+        assertEquals(1L, async.zadd("z", 2, "b").get().longValue());
+        assertEquals(1L, async.zadd("z", 1, "a").get().longValue());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b")), async.zrange("z", 0, -1).get());
+
+        // 多个线程并发发出的命令共享连接，全部完成且互不丢失
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> async.incr("n"), executor)
+                        .thenCompose(future -> future));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            final List<Long> values = new ArrayList<>();
+            for (CompletableFuture<Long> future : futures) {
+                values.add(future.get());
+            }
+            Collections.sort(values);
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(i + 1, values.get(i).longValue());
+            }
+            assertEquals("1000", client.get("n"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void errorsOnlyFailTheirOwnFuture() throws Exception {
+        final RedisAsyncClient async = redis.client().async();
+        assertTrue(async.set("s", "string").get());
+
+        // redis返回的错误和入队时的参数错误都只让本命令的future异常结束
+        final CompletableFuture<Long> wrongType = async.hset("s", "f", "1");
+        final CompletableFuture<Boolean> nullKey = async.set(null, "v");
+        final CompletableFuture<Long> ok = async.incr("n");
+        assertCause(JedisDataException.class, wrongType);
+        assertCause(JedisDataException.class, nullKey);
+        assertEquals(1L, ok.get().longValue());
+        assertEquals("string", async.get("s").get());
+
+        // 连接断开时本批命令以连接异常结束，之后重新获取连接
+        redis.restart(0);
+        while (true) {
+            try {
+                assertTrue(async.set("k", "v").get());
+                break;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof JedisConnectionException);
+            }
+        }
+        assertEquals("v", async.get("k").get());
+    }
+
+    @Test(timeout = 20000)
+    public void closeCompletesEveryFuture() throws Exception {
+        final RedisClient client = RedisClient.standAlonePool("127.0.0.1", redis.port(), 1000, 1000, null, 8, 8, 0,
+                false);
+        final RedisAsyncClient async;
+        final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        try {
+            async = client.async();
+            assertEquals(1L, async.incr("n").get().longValue());
+            try {
+                client.configureAsync(16, 2);
+                fail();
+            } catch (IllegalStateException expected) {
+                // 异步门面创建后不能再修改配置
+            }
+            for (int i = 0; i < 10000; i++) {
+                futures.add(async.incr("n"));
+            }
+        } finally {
+            client.close();
+        }
+
+        // 关闭前提交的命令要么已经执行，要么以异常结束，不会一直挂起
+        int executed = 0;
+        for (CompletableFuture<Long> future : futures) {
+            try {
+                future.get();
+                executed++;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof JedisException);
+            }
+        }
+        assertEquals(Long.toString(executed + 1), redis.client().get("n"));
+
+        // 关闭后提交的命令立即异常结束
+        final CompletableFuture<String> afterClose = async.get("n");
+        assertTrue(afterClose.isCompletedExceptionally());
+        try {
+            afterClose.get(0, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("auto pipeline已关闭", e.getCause().getMessage());
+        }
+    }
+
+    private static void assertCause(final Class<? extends Throwable> type, final CompletableFuture<?> future)
+            throws InterruptedException {
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+        }
+    }
+}
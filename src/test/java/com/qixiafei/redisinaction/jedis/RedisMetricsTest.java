@@ -0,0 +1,35 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.junit.Assert;
+import org.junit.Test;
+import redis.clients.jedis.Protocol.Command;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+
+public class RedisMetricsTest {
+
+    @Test
+    public void commandsOutsideProtocolCommandAreNamedInTheSnapshot() {
+        final RedisMetrics metrics = new RedisMetrics();
+        metrics.record(StreamCommand.XADD, 1000);
+        metrics.record(StreamCommand.XADD, 3000);
+        metrics.recordError(StreamCommand.XADD, new IllegalStateException());
+        metrics.recordError(StreamCommand.XLEN, new JedisConnectionException(new SocketTimeoutException()));
+        metrics.record(Command.GET, 2000);
+
+        RedisMetrics.Snapshot snapshot = metrics.snapshot(Collections.emptyMap());
+        final RedisMetrics.CommandStats xadd = snapshot.getCommands().get("XADD");
+        Assert.assertEquals(2, xadd.getCount());
+        Assert.assertEquals(1, xadd.getErrors());
+        Assert.assertEquals(0, xadd.getTimeouts());
+        Assert.assertEquals(1, snapshot.getCommands().get("XLEN").getTimeouts());
+        Assert.assertEquals(1, snapshot.getCommands().get("GET").getCount());
+
+        metrics.reset();
+        snapshot = metrics.snapshot(Collections.emptyMap());
+        Assert.assertEquals(0, snapshot.getCommands().get("XADD").getCount());
+        Assert.assertEquals(0, snapshot.getCommands().get("XADD").getErrors());
+    }
+}
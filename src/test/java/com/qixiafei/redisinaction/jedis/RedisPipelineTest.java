@@ -0,0 +1,176 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RedisPipelineTest {
+
+    /**
+     * 连接池只有一个连接，事务前后用的是同一个连接.
+     */
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone(1);
+
+    @Test
+    public void flushesEveryMaxCommands() {
+        final RedisClient client = redis.client();
+        final List<Object> results = client.pipelined("k", 3, Long.MAX_VALUE, true, pipeline -> {
+            final Response<String> first = pipeline.set("k1", "v1");
+            pipeline.set("k2", "v2");
+            Assert.assertFalse(flushed(first));
+            pipeline.set("k3", "v3");
+            // 第3条命令触发flush
+            Assert.assertTrue(flushed(first));
+            final Response<String> fourth = pipeline.get("k1");
+            Assert.assertFalse(flushed(fourth));
+        });
+        Assert.assertEquals(Arrays.asList("OK", "OK", "OK", "v1"), results);
+    }
+
+    @Test
+    public void flushesEveryMaxBytes() {
+        final RedisClient client = redis.client();
+        final String value = repeat('x', 40);
+        // 每条set估算1 + 8 + 40 + 8 = 57字节，第2条达到100字节
+        client.pipelined("k", Integer.MAX_VALUE, 100, true, pipeline -> {
+            final Response<String> first = pipeline.set("a", value);
+            Assert.assertFalse(flushed(first));
+            pipeline.set("b", value);
+            Assert.assertTrue(flushed(first));
+            final Response<String> third = pipeline.set("c", value);
+            Assert.assertFalse(flushed(third));
+        });
+        Assert.assertEquals(value, client.get("c"));
+    }
+
+    @Test
+    public void resultsKeepTheirOrderAcrossFlushes() {
+        final RedisClient client = redis.client();
+        final List<Object> results = client.pipelined("n", 4, Long.MAX_VALUE, true, pipeline -> {
+            for (int i = 0; i < 10; i++) {
+                pipeline.incr("n");
+            }
+        });
+        final List<Object> expected = new ArrayList<>();
+        for (long i = 1; i <= 10; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, results);
+    }
+
+    @Test
+    public void failedCommandIsAJedisDataExceptionAtItsPosition() {
+        final RedisClient client = redis.client();
+        client.set("s", "string");
+        final List<Object> results = client.pipelined("s", 2, Long.MAX_VALUE, true, pipeline -> {
+            pipeline.incr("n");
+            pipeline.hget("s", "f");
+            pipeline.incr("n");
+        });
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(1L, results.get(0));
+        Assert.assertTrue(results.get(1) instanceof JedisDataException);
+        Assert.assertTrue(((JedisDataException) results.get(1)).getMessage().startsWith("WRONGTYPE"));
+        Assert.assertEquals(2L, results.get(2));
+    }
+
+    @Test
+    public void resultsAreNotCollectedWhenDisabled() {
+        final RedisClient client = redis.client();
+        final List<Response<Long>> responses = new ArrayList<>();
+        final List<Object> results = client.pipelined("n", 2, Long.MAX_VALUE, false, pipeline -> {
+            for (int i = 0; i < 5; i++) {
+                responses.add(pipeline.incr("n"));
+            }
+        });
+        Assert.assertTrue(results.isEmpty());
+        // 命令都已发送，调用方持有的Response仍然可用
+        Assert.assertEquals("5", client.get("n"));
+        Assert.assertEquals(Long.valueOf(5), responses.get(4).get());
+    }
+
+    @Test
+    public void transactionRetriesOnWatchConflict() {
+        final RedisClient client = redis.client();
+        client.set("balance", "10");
+        final AtomicInteger attempts = new AtomicInteger();
+        final List<Object> result = client.transaction(new String[]{"balance"}, WatchRetryPolicy.of(3, 0), jedis -> {
+            final int balance = Integer.parseInt(jedis.get("balance"));
+            if (attempts.incrementAndGet() == 1) {
+                // 第一次尝试时其他客户端修改了watch的key，EXEC被放弃
+                try (Jedis other = new Jedis("127.0.0.1", redis.port())) {
+                    other.set("balance", "20");
+                }
+            }
+            final Transaction transaction = jedis.multi();
+            transaction.set("balance", String.valueOf(balance - 1));
+            return transaction;
+        });
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals(Arrays.asList("OK"), result);
+        Assert.assertEquals("19", client.get("balance"));
+    }
+
+    @Test
+    public void transactionGivesUpWhenRetriesRunOut() {
+        final RedisClient client = redis.client();
+        client.set("balance", "10");
+        final List<Object> result = client.transaction(new String[]{"balance"}, WatchRetryPolicy.NONE, jedis -> {
+            try (Jedis other = new Jedis("127.0.0.1", redis.port())) {
+                other.set("balance", "20");
+            }
+            final Transaction transaction = jedis.multi();
+            transaction.set("balance", "0");
+            return transaction;
+        });
+        Assert.assertNull(result);
+        Assert.assertEquals("20", client.get("balance"));
+    }
+
+    @Test
+    public void nullTaskUnwatchesTheConnection() {
+        final RedisClient client = redis.client();
+        client.set("flag", "0");
+        Assert.assertNull(client.transaction(new String[]{"flag"}, WatchRetryPolicy.NONE, jedis -> null));
+        // 连接已归还且不再watch flag，之后修改flag不能让同一连接上的下一个事务被放弃
+        try (Jedis other = new Jedis("127.0.0.1", redis.port())) {
+            other.set("flag", "1");
+        }
+        final List<Object> result = client.transaction(new String[]{"other"}, WatchRetryPolicy.NONE, jedis -> {
+            final Transaction transaction = jedis.multi();
+            transaction.set("other", "v");
+            return transaction;
+        });
+        Assert.assertEquals(Arrays.asList("OK"), result);
+        Assert.assertEquals("v", client.get("other"));
+    }
+
+    /**
+     * 管道sync之前调用Response.get会抛出异常.
+     */
+    private static boolean flushed(final Response<?> response) {
+        try {
+            response.get();
+            return true;
+        } catch (JedisDataException e) {
+            return false;
+        }
+    }
+
+    private static String repeat(final char c, final int n) {
+        final char[] chars = new char[n];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,170 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisServer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RedisScriptTest {
+
+    /**
+     * 依次对两个key做INCR，返回第二个key的新值.
+     */
+    private static final RedisScript INCR_BOTH = RedisScript.of("incrBoth",
+            "redis.call('incr', KEYS[1]) return redis.call('incr', KEYS[2])");
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    @Rule
+    public final EmbeddedRedisRule sharded = EmbeddedRedisRule.sharded(1, 1);
+
+    @Before
+    public void setUp() {
+        final List<EmbeddedRedisServer> servers = new ArrayList<>(redis.servers());
+        servers.addAll(sharded.servers());
+        for (EmbeddedRedisServer server : servers) {
+            server.registerScript(INCR_BOTH, (call, keys, args) -> {
+                call.call("incr", keys.get(0));
+                return call.call("incr", keys.get(1));
+            });
+        }
+    }
+
+    @Test
+    public void sha1MatchesScriptLoad() {
+        // 与redis SCRIPT LOAD "return 1"的返回值一致
+        Assert.assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", RedisScript.of("one", "return 1").getSha1());
+    }
+
+    @Test
+    public void evalshaRunsTheScript() {
+        final RedisClient client = redis.client();
+        final List<String> lock = Collections.singletonList("lock");
+        client.set("lock", "owner");
+        // 解锁脚本返回锁原来的值和DEL的结果，不是持有者时返回第二个参数
+        Assert.assertEquals(Arrays.asList("owner", "0"),
+                client.evalsha(RedisClient.UNLOCK_SCRIPT, lock, Arrays.asList("other", "0")));
+        Assert.assertEquals("owner", client.get("lock"));
+        Assert.assertEquals(Arrays.asList("owner", 1L),
+                client.evalsha(RedisClient.UNLOCK_SCRIPT, lock, Arrays.asList("owner", "0")));
+        Assert.assertNull(client.get("lock"));
+
+        Assert.assertEquals(1L, client.evalsha(INCR_BOTH, Arrays.asList("a", "b"), Collections.emptyList()));
+        Assert.assertEquals(2L, client.evalsha(INCR_BOTH, Arrays.asList("a", "b"), Collections.emptyList()));
+        Assert.assertEquals("2", client.get("a"));
+    }
+
+    @Test
+    public void evalshaFallsBackToEvalOnNoscript() {
+        final RedisClient client = redis.client();
+        final List<String> keys = Arrays.asList("a", "b");
+        // 服务端还没有缓存脚本，EVALSHA返回NOSCRIPT后改用EVAL
+        Assert.assertEquals(1L, client.evalsha(INCR_BOTH, keys, Collections.emptyList()));
+        Assert.assertEquals(1, errors(client, "EVALSHA"));
+        Assert.assertEquals(1, count(client, "EVAL"));
+        Assert.assertTrue(scriptExists(INCR_BOTH));
+
+        // EVAL已经顺带缓存了脚本，之后直接EVALSHA
+        Assert.assertEquals(2L, client.evalsha(INCR_BOTH, keys, Collections.emptyList()));
+        Assert.assertEquals(2, count(client, "EVALSHA"));
+        Assert.assertEquals(1, errors(client, "EVALSHA"));
+        Assert.assertEquals(1, count(client, "EVAL"));
+
+        // SCRIPT FLUSH后再次回退
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            jedis.scriptFlush();
+        }
+        Assert.assertEquals(3L, client.evalsha(INCR_BOTH, keys, Collections.emptyList()));
+        Assert.assertEquals(2, errors(client, "EVALSHA"));
+        Assert.assertEquals(2, count(client, "EVAL"));
+        Assert.assertEquals("3", client.get("a"));
+    }
+
+    @Test
+    public void pipelineSendsEvalUntilTheScriptIsCached() {
+        final RedisClient client = redis.client();
+        final List<String> keys = Arrays.asList("a", "b");
+        final AtomicReference<Response<Object>> result = new AtomicReference<>();
+        // 没有确认服务端缓存过脚本，发送EVAL
+        client.execPipeLine(pipeline -> {
+            result.set(client.evalsha(pipeline, INCR_BOTH, keys, Collections.emptyList()));
+            pipeline.sync();
+        });
+        Assert.assertEquals(1L, result.get().get());
+
+        client.loadScripts();
+        Assert.assertTrue(scriptExists(INCR_BOTH));
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            jedis.scriptFlush();
+        }
+        // 已缓存标记过期时管道里的EVALSHA报NOSCRIPT，之后的管道改用EVAL
+        try {
+            client.execPipeLine(pipeline -> {
+                result.set(client.evalsha(pipeline, INCR_BOTH, keys, Collections.emptyList()));
+                pipeline.sync();
+                result.get().get();
+            });
+            Assert.fail();
+        } catch (JedisNoScriptException expected) {
+            // 服务端脚本缓存丢失
+        }
+        client.execPipeLine(pipeline -> {
+            result.set(client.evalsha(pipeline, INCR_BOTH, keys, Collections.emptyList()));
+            pipeline.sync();
+        });
+        Assert.assertEquals(2L, result.get().get());
+    }
+
+    @Test
+    public void keysOfOneScriptMustShareASlot() {
+        final RedisClient client = sharded.client();
+        // 20个key不可能都落在同一个节点上
+        final List<String> spread = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            spread.add("k" + i);
+        }
+        try {
+            client.evalsha(INCR_BOTH, spread, Collections.emptyList());
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // 校验在发送前完成，不会执行到一半
+        }
+        for (String key : spread) {
+            Assert.assertNull(client.get(key));
+        }
+
+        // 同一个hash tag的key落在同一个节点上
+        final List<String> tagged = Arrays.asList("{user}:a", "{user}:b");
+        Assert.assertEquals(1L, client.evalsha(INCR_BOTH, tagged, Collections.emptyList()));
+        Assert.assertEquals("1", client.get("{user}:a"));
+        Assert.assertEquals(2L, client.evalsha(INCR_BOTH, Arrays.asList("k0", "k0"), Collections.emptyList()));
+    }
+
+    private boolean scriptExists(final RedisScript script) {
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            return jedis.scriptExists(script.getSha1());
+        }
+    }
+
+    private static long count(final RedisClient client, final String command) {
+        final RedisMetrics.CommandStats stats = client.metricsSnapshot().getCommands().get(command);
+        return stats == null ? 0 : stats.getCount();
+    }
+
+    private static long errors(final RedisClient client, final String command) {
+        final RedisMetrics.CommandStats stats = client.metricsSnapshot().getCommands().get(command);
+        return stats == null ? 0 : stats.getErrors();
+    }
+}
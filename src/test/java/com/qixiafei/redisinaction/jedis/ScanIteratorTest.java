@@ -0,0 +1,93 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import redis.clients.jedis.ScanResult;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class ScanIteratorTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * 模拟三页结果，游标依次为0->1->2->0.
+     */
+    private final AtomicInteger fetched = new AtomicInteger();
+
+    private final Function<String, ScanResult<String>> fetcher = cursor -> {
+        fetched.incrementAndGet();
+        final int page = Integer.parseInt(cursor);
+        final String next = page == 2 ? "0" : String.valueOf(page + 1);
+        return new ScanResult<>(next, Arrays.asList("k" + page + "a", "k" + page + "b"));
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void iteratesAllPagesOnDemand() {
+        try (ScanIterator<String> it = new ScanIterator<>(fetcher, 0, executor)) {
+            Assert.assertEquals("k0a", it.next());
+            Assert.assertEquals(1, fetched.get());
+            final List<String> rest = it.stream().collect(Collectors.toList());
+            Assert.assertEquals(Arrays.asList("k0b", "k1a", "k1b", "k2a", "k2b"), rest);
+            Assert.assertFalse(it.hasNext());
+            Assert.assertEquals(3, fetched.get());
+        }
+    }
+
+    @Test
+    public void prefetchReturnsSameElements() {
+        try (ScanIterator<String> it = new ScanIterator<>(fetcher, 1, executor)) {
+            Assert.assertEquals(Arrays.asList("k0a", "k0b", "k1a", "k1b", "k2a", "k2b"),
+                    it.stream().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void closeStopsIteration() {
+        final ScanIterator<String> it = new ScanIterator<>(fetcher, 1, executor);
+        Assert.assertTrue(it.hasNext());
+        it.next();
+        it.next();
+        it.close();
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void closeInTheMiddleOfAPageDropsTheRest() {
+        for (int prefetch : new int[]{0, 1}) {
+            final ScanIterator<String> it = new ScanIterator<>(fetcher, prefetch, executor);
+            Assert.assertEquals("k0a", it.next());
+            it.close();
+            Assert.assertFalse(it.hasNext());
+            try {
+                it.next();
+                Assert.fail();
+            } catch (NoSuchElementException expected) {
+                // 当前页剩下的k0b不再返回
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void prefetchPropagatesError() {
+        final Function<String, ScanResult<String>> failing = cursor -> {
+            throw new IllegalStateException("boom");
+        };
+        try (ScanIterator<String> it = new ScanIterator<>(failing, 2, executor)) {
+            it.hasNext();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisServer;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.Pool;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SentinelReplicaRouterTest {
+
+    private static final String MASTER_NAME = "mymaster";
+
+    private EmbeddedRedisServer master;
+
+    private final List<EmbeddedRedisServer> replicas = new ArrayList<>();
+
+    private FakeSentinel sentinel;
+
+    private SentinelReplicaRouter router;
+
+    @Before
+    public void setUp() throws Exception {
+        master = new EmbeddedRedisServer(0).start();
+        set(master, "k", "master");
+        for (int i = 0; i < 3; i++) {
+            final EmbeddedRedisServer replica = new EmbeddedRedisServer(0).start();
+            set(replica, "k", "r" + i);
+            replicas.add(replica);
+        }
+        sentinel = new FakeSentinel().start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (router != null) {
+            router.close();
+        }
+        sentinel.close();
+        replicas.forEach(EmbeddedRedisServer::close);
+        master.close();
+    }
+
+    @Test(timeout = 10000)
+    public void readsGoToHealthyReplicasInTurn() {
+        sentinel.report(replica(0, "slave", "ok"), replica(1, "slave", "ok"),
+                replica(2, "slave,s_down", "ok"));
+        router = router(ReadPreference.REPLICA);
+        assertTrue(router.routesReads());
+
+        final Map<String, Integer> served = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            served.merge(router.executeRead("k", jedis -> jedis.get("k")), 1, Integer::sum);
+        }
+        // 下线的r2不参与轮询，两个健康的从节点各分到一半
+        assertEquals(new HashSet<>(Arrays.asList("r0", "r1")), served.keySet());
+        assertEquals(3, served.get("r0").intValue());
+        // 写命令始终走master
+        assertEquals("master", router.execute("k", jedis -> jedis.get("k")));
+        assertEquals(new HashSet<>(Arrays.asList("master", "replica " + address(0), "replica " + address(1))),
+                router.pools().keySet());
+    }
+
+    @Test(timeout = 10000)
+    public void readsFallBackToMasterOnlyWhenPreferred() {
+        // 复制断开的从节点不可读
+        sentinel.report(replica(0, "slave", "err"));
+        router = router(ReadPreference.REPLICA_PREFERRED);
+        assertEquals("master", router.executeRead("k", jedis -> jedis.get("k")));
+        router.close();
+
+        router = router(ReadPreference.REPLICA);
+        try {
+            router.executeRead("k", jedis -> jedis.get("k"));
+            fail();
+        } catch (JedisException e) {
+            assertEquals("没有可用的从节点", e.getMessage());
+        }
+        router.close();
+
+        sentinel.report(replica(0, "slave", "ok"));
+        router = router(ReadPreference.MASTER);
+        assertFalse(router.routesReads());
+        assertEquals("master", router.executeRead("k", jedis -> jedis.get("k")));
+    }
+
+    @Test(timeout = 10000)
+    public void failedReplicaIsSkippedAndReplacedOnRefresh() throws Exception {
+        sentinel.report(replica(0, "slave", "ok"), replica(1, "slave", "ok"));
+        router = router(ReadPreference.REPLICA);
+        replicas.get(0).close();
+        // 哨兵发现之前，连不上的从节点被跳过，读请求由另一个从节点处理
+        for (int i = 0; i < 4; i++) {
+            assertEquals("r1", router.executeRead("k", jedis -> jedis.get("k")));
+        }
+
+        // 哨兵摘掉r0、加入r2后，刷新时为r2建池，r0的连接池移出列表，下一次刷新时才关闭
+        final Pool<Jedis> removed = router.pools().get("replica " + address(0));
+        sentinel.report(replica(1, "slave", "ok"), replica(2, "slave", "ok"));
+        await(() -> router.pools().containsKey("replica " + address(2)));
+        assertFalse(router.pools().containsKey("replica " + address(0)));
+        assertFalse(removed.isClosed());
+        await(removed::isClosed);
+        final Set<String> served = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            served.add(router.executeRead("k", jedis -> jedis.get("k")));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("r1", "r2")), served);
+
+        // 所有哨兵都不可用时保留现有的从节点
+        sentinel.close();
+        TimeUnit.MILLISECONDS.sleep(1500);
+        assertEquals(3, router.pools().size());
+    }
+
+    @Test(timeout = 10000)
+    public void busyOrClosedReplicaFallsThroughToTheNextNode() {
+        // 每个连接池只有一个连接，耗尽时立即失败
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(1);
+        config.setBlockWhenExhausted(false);
+        sentinel.report(replica(0, "slave", "ok"), replica(1, "slave", "ok"));
+        router = router(ReadPreference.REPLICA, config);
+        try (Jedis busy = router.pools().get("replica " + address(0)).getResource()) {
+            for (int i = 0; i < 4; i++) {
+                assertEquals("r1", router.executeRead("k", jedis -> jedis.get("k")));
+            }
+        }
+        router.pools().get("replica " + address(1)).close();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("r0", router.executeRead("k", jedis -> jedis.get("k")));
+        }
+        router.close();
+
+        sentinel.report(replica(0, "slave", "ok"));
+        router = router(ReadPreference.REPLICA_PREFERRED, config);
+        try (Jedis busy = router.pools().get("replica " + address(0)).getResource()) {
+            assertEquals("master", router.executeRead("k", jedis -> jedis.get("k")));
+        }
+        // 命令本身的错误不换节点重试
+        try {
+            router.executeRead("k", jedis -> jedis.hget("k", "f"));
+            fail();
+        } catch (JedisDataException e) {
+            assertTrue(e.getMessage().startsWith("WRONGTYPE"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void keyDistributionCountsOnlyTheMaster() throws Exception {
+        sentinel.report(replica(0, "slave", "ok"), replica(1, "slave", "ok"));
+        final SentinelReplicaRouter sentinelRouter = router(ReadPreference.REPLICA);
+        final Constructor<RedisClient> constructor =
+                RedisClient.class.getDeclaredConstructor(JedisRouter.class, Pool.class);
+        constructor.setAccessible(true);
+        final RedisClient client = constructor.newInstance(sentinelRouter, sentinelRouter.getPool());
+        try {
+            // 从节点上的同名key是主节点的副本
+            for (String key : new String[]{"a:1", "a:2", "b:1"}) {
+                client.set(key, "v");
+                set(replicas.get(0), key, "v");
+                set(replicas.get(1), key, "v");
+            }
+            assertEquals(4, client.keyDistribution(null, 10).getTotal());
+            final ShardDistribution distribution = client.keyDistribution("a:*", 10);
+            assertEquals(2, distribution.getTotal());
+            assertEquals(1, distribution.getNodes().size());
+            assertEquals("master", distribution.getNodes().get(0).getName());
+            assertEquals(1D, distribution.getMaxSkew(), 0);
+        } finally {
+            client.close();
+        }
+    }
+
+    private SentinelReplicaRouter router(final ReadPreference readPreference) {
+        return router(readPreference, new GenericObjectPoolConfig());
+    }
+
+    private SentinelReplicaRouter router(final ReadPreference readPreference, final GenericObjectPoolConfig config) {
+        return new SentinelReplicaRouter(new JedisPool(config, "127.0.0.1", master.getPort(), 1000), MASTER_NAME,
+                "127.0.0.1:" + sentinel.getPort(), config, 1000, 1000, null, readPreference, 1);
+    }
+
+    private Map<String, String> replica(final int index, final String flags, final String linkStatus) {
+        final Map<String, String> replica = new LinkedHashMap<>();
+        replica.put("name", address(index));
+        replica.put("ip", "127.0.0.1");
+        replica.put("port", Integer.toString(replicas.get(index).getPort()));
+        replica.put("flags", flags);
+        replica.put("master-link-status", linkStatus);
+        return replica;
+    }
+
+    private String address(final int index) {
+        return "127.0.0.1:" + replicas.get(index).getPort();
+    }
+
+    private static void set(final EmbeddedRedisServer server, final String key, final String value) {
+        try (Jedis jedis = new Jedis("127.0.0.1", server.getPort())) {
+            jedis.set(key, value);
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    /**
+     * 只会应答SENTINEL SLAVES的哨兵，返回的从节点列表由测试指定.
+     */
+    private static final class FakeSentinel implements Closeable {
+
+        private final ServerSocket server;
+
+        private volatile List<Map<String, String>> slaves = new ArrayList<>();
+
+        private FakeSentinel() throws IOException {
+            server = new ServerSocket(0);
+        }
+
+        FakeSentinel start() {
+            final Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try (Socket socket = server.accept()) {
+                        serve(socket);
+                    } catch (IOException e) {
+                        // 连接断开或哨兵关闭
+                    }
+                }
+            }, "fake-sentinel");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            return this;
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        @SafeVarargs
+        final void report(final Map<String, String>... slaves) {
+            this.slaves = Arrays.asList(slaves);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+
+        private void serve(final Socket socket) throws IOException {
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+            String line;
+            while ((line = readLine(in)) != null) {
+                final List<String> args = new ArrayList<>();
+                for (int i = Integer.parseInt(line.substring(1)); i > 0; i--) {
+                    readLine(in);
+                    args.add(readLine(in));
+                }
+                final StringBuilder reply = new StringBuilder();
+                if (args.size() == 3 && "sentinel".equalsIgnoreCase(args.get(0))
+                        && "slaves".equalsIgnoreCase(args.get(1)) && MASTER_NAME.equals(args.get(2))) {
+                    final List<Map<String, String>> current = slaves;
+                    reply.append('*').append(current.size()).append("\r\n");
+                    for (Map<String, String> slave : current) {
+                        reply.append('*').append(slave.size() * 2).append("\r\n");
+                        for (Map.Entry<String, String> entry : slave.entrySet()) {
+                            bulk(reply, entry.getKey());
+                            bulk(reply, entry.getValue());
+                        }
+                    }
+                } else {
+                    reply.append("-ERR unsupported\r\n");
+                }
+                out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+
+        private static void bulk(final StringBuilder reply, final String value) {
+            reply.append('$').append(value.getBytes(StandardCharsets.UTF_8).length).append("\r\n")
+                    .append(value).append("\r\n");
+        }
+
+        private static String readLine(final InputStream in) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    return null;
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
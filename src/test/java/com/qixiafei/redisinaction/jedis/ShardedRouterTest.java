@@ -0,0 +1,101 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisServer;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedRouterTest {
+
+    /**
+     * 最后一个节点权重为2.
+     */
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.sharded(1, 1, 2);
+
+    private RedisClient client;
+
+    private String nodes;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        nodes = redis.nodes();
+    }
+
+    @Test
+    public void ownershipFollowsWeights() {
+        final ShardedRouter router = new ShardedRouter(nodes, new GenericObjectPoolConfig(), 1000, 1000,
+                null, 160, 1);
+        try {
+            final List<Double> shares = new ArrayList<>(router.ownership().values());
+            assertEquals(1, shares.get(0) + shares.get(1) + shares.get(2), 1e-9);
+            assertEquals(0.5, shares.get(2), 0.1);
+            assertEquals(0.25, shares.get(0), 0.1);
+        } finally {
+            router.close();
+        }
+    }
+
+    @Test
+    public void keysWithSameHashTagShareNode() {
+        final ShardedRouter router = new ShardedRouter(nodes, new GenericObjectPoolConfig(), 1000, 1000,
+                null, 160, 1);
+        try {
+            for (int i = 0; i < 100; i++) {
+                final String tag = ClusterKeys.hashTag("token" + i);
+                assertEquals(router.nodeOf("cart:" + tag), router.nodeOf("view:" + tag));
+            }
+            assertEquals(3, router.partition(keys(100)).size());
+        } finally {
+            router.close();
+        }
+    }
+
+    @Test
+    public void multiKeyCommandsSpanShards() {
+        final Map<String, String> hash = new HashMap<>();
+        for (String key : keys(3000)) {
+            hash.put(key, "v" + key);
+        }
+        assertTrue(client.mset(hash));
+        final List<String> values = client.mget(hash.keySet());
+        int i = 0;
+        for (String key : hash.keySet()) {
+            assertEquals("v" + key, values.get(i++));
+        }
+        for (EmbeddedRedisServer server : redis.servers()) {
+            try (Jedis jedis = new Jedis("127.0.0.1", server.getPort())) {
+                assertTrue(jedis.dbSize() > 0);
+            }
+        }
+
+        final ShardDistribution distribution = client.keyDistribution("key:*", 1000);
+        assertEquals(3000, distribution.getTotal());
+        assertEquals(3, distribution.getNodes().size());
+        assertTrue(distribution.getMaxSkew() < 1.3);
+        assertEquals(distribution.getTotal(), client.keyDistribution(null, 1000).getTotal());
+
+        assertEquals(3000L, client.del(hash.keySet().toArray(new String[0])).longValue());
+        assertEquals(0, client.keyDistribution(null, 1000).getTotal());
+    }
+
+    private static String[] keys(final int count) {
+        final String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = "key:" + i;
+        }
+        return keys;
+    }
+}
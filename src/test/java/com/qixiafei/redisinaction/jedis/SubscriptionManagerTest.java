@@ -0,0 +1,152 @@
+package com.qixiafei.redisinaction.jedis;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionManagerTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone(4);
+
+    private RedisClient client;
+
+    private SubscriptionManager manager;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        client.configureSubscriptions(2, 2, SubscriptionManager.OverflowPolicy.DROP, 0, 200);
+        manager = client.subscriptions();
+    }
+
+    @Test
+    public void addsAndRemovesSubscriptionsAtRuntime() throws Exception {
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final SubscriptionManager.Subscription news = manager.subscribe("news", (c, m) -> received.add(c + "=" + m));
+        awaitSubscribers("news", 1);
+        manager.psubscribe("user.*", (c, m) -> received.add(c + "=" + m));
+        awaitPatterns(1);
+
+        publish("news", "a");
+        publish("user.1", "b");
+        await(() -> received.size() == 2);
+        assertTrue(received.contains("news=a"));
+        assertTrue(received.contains("user.1=b"));
+
+        news.close();
+        awaitSubscribers("news", 0);
+        assertEquals(1, manager.stats().getSubscriptions());
+        assertTrue(manager.stats().isConnected());
+    }
+
+    @Test(timeout = 20000)
+    public void concurrentSubscribeAndCloseNeverLoseSubscriptions() throws Exception {
+        final Thread churn = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                manager.subscribe("shared", (c, m) -> {
+                }).close();
+            }
+        });
+        churn.start();
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 200; i++) {
+            manager.subscribe("shared", (c, m) -> received.add(m));
+        }
+        churn.join();
+
+        // 关闭时列表变空被移除，并发添加的订阅不能跟着丢失
+        assertEquals(200, manager.stats().getSubscriptions());
+        awaitSubscribers("shared", 1);
+        publish("shared", "m");
+        await(() -> received.size() == 200);
+    }
+
+    @Test
+    public void slowHandlerOnlyDropsItsOwnMessages() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        manager.subscribe("slow", (c, m) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final List<String> fast = Collections.synchronizedList(new ArrayList<>());
+        manager.subscribe("fast", (c, m) -> fast.add(m));
+        awaitSubscribers("fast", 1);
+        awaitSubscribers("slow", 1);
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            for (int i = 0; i < 20; i++) {
+                jedis.publish("slow", Integer.toString(i));
+            }
+            await(() -> manager.stats().getDropped() > 0);
+            for (int i = 0; i < 20; i++) {
+                jedis.publish("fast", Integer.toString(i));
+                final int expected = i + 1;
+                await(() -> fast.size() == expected);
+            }
+        }
+        assertEquals("19", fast.get(19));
+        release.countDown();
+    }
+
+    @Test
+    public void resubscribesAfterReconnect() throws Exception {
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        manager.subscribe("events", (c, m) -> received.add(m));
+        manager.psubscribe("audit.*", (c, m) -> received.add(m));
+        awaitSubscribers("events", 1);
+
+        redis.restart(0);
+        awaitSubscribers("events", 1);
+        awaitPatterns(1);
+
+        publish("events", "after");
+        publish("audit.x", "audited");
+        await(() -> received.size() == 2);
+        assertTrue(manager.stats().getReconnects() > 0);
+    }
+
+    private void publish(final String channel, final String message) {
+        try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+            jedis.publish(channel, message);
+        }
+    }
+
+    private void awaitSubscribers(final String channel, final long expected) throws InterruptedException {
+        await(() -> {
+            try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+                return Long.parseLong(jedis.pubsubNumSub(channel).get(channel)) == expected;
+            }
+        });
+    }
+
+    private void awaitPatterns(final long expected) throws InterruptedException {
+        await(() -> {
+            try (Jedis jedis = new Jedis("127.0.0.1", redis.port())) {
+                return jedis.pubsubNumPat() == expected;
+            }
+        });
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("等待超时", System.currentTimeMillis() < deadline);
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+}
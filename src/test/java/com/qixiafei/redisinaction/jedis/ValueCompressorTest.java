@@ -0,0 +1,61 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ValueCompressorTest {
+
+    private final ValueCompressor compressor = new ValueCompressor(64, 1, "cache:", "inv:");
+
+    @Test
+    public void prefixes() {
+        Assert.assertTrue(compressor.enabledFor("cache:/index"));
+        Assert.assertTrue(compressor.enabledFor("inv:1"));
+        Assert.assertFalse(compressor.enabledFor("login:"));
+    }
+
+    @Test
+    public void largeValuesRoundTrip() {
+        final StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            page.append("<li>商品").append(i).append("</li>");
+        }
+        final byte[] raw = page.toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] stored = compressor.compress(raw);
+        Assert.assertEquals(ValueCompressor.HEADER, stored[0]);
+        Assert.assertTrue(stored.length < raw.length / 2);
+        Assert.assertArrayEquals(raw, compressor.decompress(stored));
+        final ValueCompressor.Stats stats = compressor.stats();
+        Assert.assertEquals(1, stats.getCompressed());
+        Assert.assertEquals(1, stats.getDecompressed());
+        Assert.assertTrue(stats.getRatio() < 0.5);
+    }
+
+    @Test
+    public void smallValuesAreStoredAsIs() {
+        final byte[] raw = "hello".getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(raw, compressor.compress(raw));
+        Assert.assertSame(raw, compressor.decompress(raw));
+    }
+
+    @Test
+    public void incompressibleValuesAreStoredAsIs() {
+        final byte[] raw = new byte[256];
+        new Random(1).nextBytes(raw);
+        raw[0] = 1;
+        Assert.assertSame(raw, compressor.compress(raw));
+        Assert.assertEquals(1, compressor.stats().getSkipped());
+    }
+
+    @Test
+    public void valuesStartingWithHeaderAreAlwaysCompressed() {
+        final byte[] raw = {ValueCompressor.HEADER, 1, 2};
+        final byte[] stored = compressor.compress(raw);
+        Assert.assertFalse(Arrays.equals(raw, stored));
+        Assert.assertArrayEquals(raw, compressor.decompress(stored));
+    }
+}
@@ -0,0 +1,33 @@
+package com.qixiafei.redisinaction.jedis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WatchRetryPolicyTest {
+
+    @Test
+    public void noneNeverRetries() {
+        Assert.assertFalse(WatchRetryPolicy.NONE.retry(1));
+    }
+
+    @Test
+    public void retriesUntilMaxAttempts() {
+        final WatchRetryPolicy policy = WatchRetryPolicy.of(3, 0);
+        Assert.assertTrue(policy.retry(1));
+        Assert.assertTrue(policy.retry(2));
+        Assert.assertFalse(policy.retry(3));
+    }
+
+    @Test
+    public void firstRetryBacksOffBriefly() {
+        final WatchRetryPolicy policy = WatchRetryPolicy.of(100, 1);
+        final long begin = System.nanoTime();
+        Assert.assertTrue(policy.retry(1));
+        Assert.assertTrue(System.nanoTime() - begin < 500_000_000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroAttempts() {
+        WatchRetryPolicy.of(0, 10);
+    }
+}
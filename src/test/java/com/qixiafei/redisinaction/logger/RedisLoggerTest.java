@@ -0,0 +1,64 @@
+package com.qixiafei.redisinaction.logger;
+
+import com.qixiafei.redisinaction.RedisKeyConstants;
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.StreamEntry;
+import com.qixiafei.redisinaction.queue.EventStream;
+import com.qixiafei.redisinaction.queue.StreamWorker;
+import com.qixiafei.redisinaction.queue.WorkerConfig;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class RedisLoggerTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    private RedisClient client;
+
+    private RedisLogger logger;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        client.enableBlockingPool(4, 4, 500);
+        logger = new RedisLogger();
+        ReflectionTestUtils.setField(logger, "redisClient", client);
+    }
+
+    @Test(timeout = 10000)
+    public void logEventsReachConsumersOnlyWhenEnabled() throws Exception {
+        logger.logRecent("app", RedisLogger.Level.INFO, "before");
+        final EventStream events = logger.enableEventStream(1000);
+        for (int i = 0; i < 150; i++) {
+            logger.logRecent("app", RedisLogger.Level.ERROR, "m" + i);
+        }
+        // 最近日志列表只保留100条，事件流里是完整的150条
+        assertEquals(100, client.lrange("recent:logger:error::app", 0, -1).size());
+        assertEquals(150, events.size());
+
+        final List<StreamEntry> consumed = new CopyOnWriteArrayList<>();
+        try (StreamWorker worker = events.startWorker("archiver", "c1", consumed::add, new WorkerConfig())) {
+            while (worker.stats().getAcked() < 150) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        }
+        assertEquals(150, consumed.size());
+        // 多个处理线程并行，处理顺序不固定
+        final Map<String, String> fields = consumed.stream().map(StreamEntry::getFields)
+                .filter(f -> "m0".equals(f.get("message"))).findFirst().orElseThrow(AssertionError::new);
+        assertEquals("app", fields.get("name"));
+        assertEquals("ERROR", fields.get("level"));
+        assertEquals(RedisKeyConstants.LOG_EVENT_STREAM_KEY, events.getKey());
+    }
+}
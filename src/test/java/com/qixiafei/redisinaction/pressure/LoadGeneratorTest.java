@@ -0,0 +1,110 @@
+package com.qixiafei.redisinaction.pressure;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.ScanIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    @Rule
+    public final EmbeddedRedisRule shardedRedis = EmbeddedRedisRule.sharded(1, 1);
+
+    private RedisClient client;
+
+    private final LoadGenerator generator = new LoadGenerator();
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        ReflectionTestUtils.setField(generator, "redisClient", client);
+    }
+
+    @After
+    public void tearDown() {
+        generator.shutdown();
+    }
+
+    @Test
+    public void runsAtTargetRateAndStopsAfterDuration() throws Exception {
+        final LoadConfig config = new LoadConfig();
+        config.setThreads(2);
+        config.setRate(500);
+        config.setWarmupSeconds(0);
+        config.setDurationSeconds(2);
+        config.setMix("get:1,set:1,hset:1,zadd:1,pipeline:1,lua:1");
+        generator.start(config);
+        for (int i = 0; i < 50 && generator.stats().getPhase() != LoadStats.Phase.STOPPED; i++) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        final LoadStats stats = generator.stats();
+        assertEquals(LoadStats.Phase.STOPPED, stats.getPhase());
+        assertEquals(0, stats.getErrors());
+        assertEquals(6, stats.getPerOperation().size());
+        assertEquals(500, stats.getThroughput(), 100);
+        assertTrue(stats.getLatency().getP99Micros() >= stats.getServiceTime().getP50Micros());
+        assertTrue(stats.getTimeline().size() >= 1);
+        // 结束时已删除本次压测写入的key
+        assertTrue(stats.getCleanedKeys() > 0);
+        try (ScanIterator<String> keys = client.scan("pressure:*", 100)) {
+            assertFalse(keys.hasNext());
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void pipelineKeysStayOnTheNodeOfTheirTag() throws Exception {
+        final LoadGenerator sharded = new LoadGenerator();
+        ReflectionTestUtils.setField(sharded, "redisClient", shardedRedis.client());
+        final LoadConfig config = new LoadConfig();
+        config.setThreads(2);
+        config.setWarmupSeconds(0);
+        config.setMix("pipeline:1");
+        config.setKeys(50);
+        config.setPipelineSize(4);
+        config.setCleanup(false);
+        sharded.start(config);
+        TimeUnit.MILLISECONDS.sleep(300);
+        final LoadStats stats = sharded.stop();
+        assertEquals(0, stats.getErrors());
+        assertEquals(0, stats.getCleanedKeys());
+
+        // 同一次PIPELINE写入的key共用一个hash tag，全部在同一个节点上
+        final Map<String, Integer> nodeOfTag = new HashMap<>();
+        int total = 0;
+        for (int i = 0; i < shardedRedis.servers().size(); i++) {
+            try (Jedis jedis = new Jedis("127.0.0.1", shardedRedis.servers().get(i).getPort())) {
+                for (String key : jedis.keys("pressure:*")) {
+                    assertTrue(key, key.matches("pressure:\\d+:\\{\\d+\\}:p[0-3]"));
+                    final Integer previous = nodeOfTag.put(key.substring(0, key.indexOf('}')), i);
+                    assertTrue(key, previous == null || previous == i);
+                    total++;
+                }
+            }
+        }
+        assertTrue(total > 0);
+        assertEquals(total, shardedRedis.client().deleteMatching("pressure:*", 10));
+        assertEquals(0, shardedRedis.client().deleteMatching("pressure:*", 10));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsSecondRun() {
+        generator.start(new LoadConfig());
+        generator.start(new LoadConfig());
+    }
+}
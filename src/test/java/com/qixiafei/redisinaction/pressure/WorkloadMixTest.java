@@ -0,0 +1,35 @@
+package com.qixiafei.redisinaction.pressure;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WorkloadMixTest {
+
+    @Test
+    public void picksByWeight() {
+        final WorkloadMix mix = WorkloadMix.parse("get:75, SET:25, lua:0");
+        final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        for (int i = 0; i < 100000; i++) {
+            counts.merge(mix.pick(ThreadLocalRandom.current()), 1, Integer::sum);
+        }
+        assertEquals(2, counts.size());
+        assertFalse(counts.containsKey(Operation.LUA));
+        assertEquals(0.75, counts.get(Operation.GET) / 100000.0, 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOperation() {
+        WorkloadMix.parse("get:1,flushall:1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyMix() {
+        WorkloadMix.parse("get:0");
+    }
+}
@@ -0,0 +1,123 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.StreamEntry;
+import com.qixiafei.redisinaction.jedis.StreamPending;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventStreamTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    private RedisClient client;
+
+    private EventStream stream;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        client.enableBlockingPool(4, 4, 500);
+        stream = new EventStream(client, "events");
+    }
+
+    @Test
+    public void consumerGroupCommands() {
+        assertTrue(client.xgroupCreate("events", "g", "0", true));
+        assertFalse(client.xgroupCreate("events", "g", "0", true));
+        final String first = stream.publish(Collections.singletonMap("n", "1"));
+        stream.publish(Collections.singletonMap("n", "2"));
+
+        final Map<String, List<StreamEntry>> read = client.xreadGroup("g", "c1", 10, -1, false,
+                Collections.singletonMap("events", ">"));
+        assertEquals(2, read.get("events").size());
+        assertEquals("1", read.get("events").get(0).getFields().get("n"));
+        assertTrue(client.xreadGroup("g", "c1", 10, 100, false, Collections.singletonMap("events", ">")).isEmpty());
+
+        final List<StreamPending> pending = client.xpending("events", "g", "-", "+", 10, null);
+        assertEquals(2, pending.size());
+        assertEquals("c1", pending.get(0).getConsumer());
+        assertEquals(1L, client.xack("events", "g", first).longValue());
+        assertEquals(1, client.xpending("events", "g", "-", "+", 10, "c1").size());
+        assertEquals(1, client.xclaim("events", "g", "c2", 0, pending.get(1).getId()).size());
+        assertEquals("c2", client.xpending("events", "g", "-", "+", 10, null).get(0).getConsumer());
+    }
+
+    @Test(timeout = 30000)
+    public void everyEventIsProcessedAndAcked() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            stream.publish(Collections.singletonMap("n", Integer.toString(i)));
+        }
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        final WorkerConfig config = new WorkerConfig();
+        config.setConcurrency(4);
+        config.setPrefetch(50);
+        try (StreamWorker first = stream.startWorker("g", "c1", entry -> done.add(entry.getFields().get("n")), config);
+             StreamWorker second = stream.startWorker("g", "c2", entry -> done.add(entry.getFields().get("n")),
+                     config)) {
+            await(() -> done.size() == 2000);
+            await(() -> first.stats().getAcked() + second.stats().getAcked() == 2000);
+        }
+        assertTrue(client.xpending("events", "g", "-", "+", 10, null).isEmpty());
+        assertEquals(2000, stream.size());
+    }
+
+    @Test(timeout = 30000)
+    public void failedEventsMoveToFailedStream() throws Exception {
+        stream.publish(Collections.singletonMap("n", "ok"));
+        stream.publish(Collections.singletonMap("n", "bad"));
+        try (StreamWorker worker = stream.startWorker("g", "c1", entry -> {
+            if ("bad".equals(entry.getFields().get("n"))) {
+                throw new IllegalStateException("bad");
+            }
+        }, new WorkerConfig())) {
+            await(() -> worker.stats().getAcked() == 1 && worker.stats().getFailed() == 1);
+        }
+        assertEquals(1, stream.failedSize());
+        assertTrue(client.xpending("events", "g", "-", "+", 10, null).isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void pendingEventsAreRecoveredAndClaimed() throws Exception {
+        client.xgroupCreate("events", "g", "0", true);
+        for (int i = 0; i < 6; i++) {
+            stream.publish(Collections.singletonMap("n", Integer.toString(i)));
+        }
+        // c1重启前读走3条未确认，dead读走3条后宕机
+        client.xreadGroup("g", "c1", 3, -1, false, Collections.singletonMap("events", ">"));
+        client.xreadGroup("g", "dead", 3, -1, false, Collections.singletonMap("events", ">"));
+
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        final WorkerConfig config = new WorkerConfig();
+        config.setDeadAfterMillis(200);
+        config.setReapIntervalMillis(100);
+        try (StreamWorker worker = stream.startWorker("g", "c1", entry -> done.add(entry.getFields().get("n")),
+                config)) {
+            await(() -> done.size() == 6);
+            await(() -> worker.stats().getAcked() == 6);
+            assertEquals(3, worker.stats().getClaimed());
+        }
+        assertTrue(client.xpending("events", "g", "-", "+", 10, null).isEmpty());
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
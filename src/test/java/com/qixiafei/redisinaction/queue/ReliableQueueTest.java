@@ -0,0 +1,137 @@
+package com.qixiafei.redisinaction.queue;
+
+import com.qixiafei.redisinaction.embedded.EmbeddedRedisRule;
+import com.qixiafei.redisinaction.jedis.RedisClient;
+import com.qixiafei.redisinaction.jedis.ScanIterator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReliableQueueTest {
+
+    @Rule
+    public final EmbeddedRedisRule redis = EmbeddedRedisRule.standalone();
+
+    private RedisClient client;
+
+    private ReliableQueue queue;
+
+    @Before
+    public void setUp() {
+        client = redis.client();
+        client.enableBlockingPool(4, 4, 500);
+        queue = new ReliableQueue(client, "jobs");
+    }
+
+    @Test(timeout = 30000)
+    public void everyJobIsProcessedAndAcked() throws Exception {
+        final List<String> jobs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            jobs.add("job-" + i);
+        }
+        queue.pushAll(jobs);
+        assertEquals(5000, queue.size());
+
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        final WorkerConfig config = new WorkerConfig();
+        config.setConcurrency(4);
+        config.setPrefetch(50);
+        try (QueueWorker first = queue.startWorker(done::add, config);
+             QueueWorker second = queue.startWorker(done::add, config)) {
+            await(() -> done.size() == 5000);
+            await(() -> first.stats().getAcked() + second.stats().getAcked() == 5000);
+            assertTrue(first.stats().getFetched() > 0);
+            assertTrue(second.stats().getFetched() > 0);
+        }
+        assertEquals(0, queue.size());
+        assertTrue(client.zrangeByScore("queue:{jobs}:workers", 0, Double.MAX_VALUE).isEmpty());
+        try (ScanIterator<String> processing = client.scan("queue:{jobs}:processing:*", 100)) {
+            assertFalse(processing.hasNext());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void pushAllFlushesWithTheConfiguredPipelineLimits() {
+        // 每3条lpush发送一批，100条lpush分多批发送
+        client.configurePipeline(3, 1 << 20);
+        final ReliableQueue small = new ReliableQueue(client, "small", 10);
+        final List<String> jobs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            jobs.add("job-" + i);
+        }
+        small.pushAll(jobs);
+        assertEquals(1000, small.size());
+        // lpush从左侧推入，最早的任务在右侧
+        final List<String> pending = client.lrange("queue:{small}:pending", 0, -1);
+        assertEquals("job-999", pending.get(0));
+        assertEquals("job-0", pending.get(999));
+    }
+
+    @Test(timeout = 30000)
+    public void failedJobsMoveToFailedList() throws Exception {
+        queue.push("ok");
+        queue.push("bad");
+        final WorkerConfig config = new WorkerConfig();
+        try (QueueWorker worker = queue.startWorker(job -> {
+            if ("bad".equals(job)) {
+                throw new IllegalStateException(job);
+            }
+        }, config)) {
+            await(() -> worker.stats().getAcked() == 1 && worker.stats().getFailed() == 1);
+        }
+        assertEquals(1, queue.failedSize());
+        assertEquals("bad", client.lrange("queue:{jobs}:failed", 0, -1).get(0));
+    }
+
+    @Test(timeout = 30000)
+    public void reaperReturnsJobsOfDeadWorkers() throws Exception {
+        client.zadd("queue:{jobs}:workers", 0, "dead");
+        client.lpush("queue:{jobs}:processing:dead", "a", "b", "c");
+
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        final WorkerConfig config = new WorkerConfig();
+        config.setDeadAfterMillis(1000);
+        config.setReapIntervalMillis(100);
+        try (QueueWorker worker = queue.startWorker(done::add, config)) {
+            await(() -> done.size() == 3);
+            assertEquals(3, worker.stats().getFetched());
+        }
+        assertEquals(3, queue.getReaped());
+        assertTrue(client.lrange("queue:{jobs}:processing:dead", 0, -1).isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void jobsMovedByAFailedFetchAreRequeued() throws Exception {
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        final WorkerConfig config = new WorkerConfig();
+        try (QueueWorker worker = queue.startWorker(done::add, config)) {
+            // 模拟rpoplpush已执行但结果没有返回：任务在处理中list里，接着这一轮取任务失败
+            client.lpush("queue:{jobs}:processing:" + worker.getId(), "lost");
+            client.set("queue:{jobs}:pending", "not a list");
+            TimeUnit.MILLISECONDS.sleep(1500);
+            client.del("queue:{jobs}:pending");
+            queue.push("next");
+            await(() -> done.size() == 2);
+            assertTrue(done.contains("lost"));
+            await(() -> worker.stats().getAcked() == 2);
+        }
+        assertEquals(0, queue.size());
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}